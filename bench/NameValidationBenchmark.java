@@ -0,0 +1,48 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH comparison of the regular expression split that setName used to run
+ * with the single-pass {@link NameTokens} scanner. Run with the GC profiler
+ * to see the allocations the split makes per name.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NameValidationBenchmark {
+
+    @Param({"Bob Smith", "  Jackmerius   Tacktheritrix  ", "Torque (Construction Noise) Lewith", "Bob"})
+    public String name;
+
+    @Benchmark
+    public int split() {
+        return name.split("\\s+").length;
+    }
+
+    @Benchmark
+    public int scanner() {
+        return NameTokens.count(name);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NameValidationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks grouping a computed batch by filing status, age flag and
+ * bracket, either the way the reports used to, with boxed sums in a
+ * {@code HashMap<String, Double>}, or with a {@link TaxAggregator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxAggregatorBenchmark {
+
+    /**
+     * The number of records per invocation.
+     */
+    static final int SIZE = 65536;
+
+    private TaxBatch batch;
+
+    @Setup
+    public void setUp() {
+        batch = TaxBatchBenchmark.randomBatch(SIZE, false);
+        batch.compute();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public Map<String, Double> hashMap() {
+        TaxYear rules = TaxYearRegistry.getDefault();
+        Map<String, Double> taxDue = new HashMap<>();
+        Map<String, Double> taxableIncome = new HashMap<>();
+        Map<String, Double> returnsRequired = new HashMap<>();
+        for (int index = 0; index < SIZE; index++) {
+            int status = batch.getFilingStatus()[index];
+            double taxable = batch.getTaxableIncome()[index];
+            String key = status + "," + (batch.getAge()[index] >= TaxYear.AGED) + ","
+                    + rules.schedule(status).bracketOf(taxable);
+            taxDue.merge(key, batch.getTaxDue()[index], Double::sum);
+            taxableIncome.merge(key, taxable, Double::sum);
+            returnsRequired.merge(key, batch.getReturnRequired()[index] ? 1.0 : 0.0, Double::sum);
+        }
+        return taxDue;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public TaxAggregator aggregator() {
+        TaxAggregator aggregator = new TaxAggregator();
+        aggregator.add(batch, 0, SIZE);
+        return aggregator;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxAggregatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks comparing the scalar batch loop with the Vector API kernel
+ * and the integer cents engine. Results are reported per record. The forked JVMs add the
+ * jdk.incubator.vector module; the vector/ source root must be on the
+ * classpath for the kernel to be found.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class TaxBatchBenchmark {
+
+    /**
+     * The number of records in the batch.
+     */
+    static final int SIZE = 4096;
+
+    /**
+     * Whether every record has the same filing status, or the statuses are
+     * mixed at random.
+     */
+    @Param({"mixed", "single"})
+    public String statuses;
+
+    private TaxBatch batch;
+    private CentsTaxBatch centsBatch;
+
+    @Setup
+    public void setUp() {
+        if (!TaxBatch.isVectorized()) {
+            throw new IllegalStateException("The Vector API kernel is not available.");
+        }
+        batch = randomBatch(SIZE, "single".equals(statuses));
+        centsBatch = CentsTaxBatch.of(batch);
+    }
+
+    /**
+     * Build a batch of random taxpayers.
+     *
+     * @param size       The number of records.
+     * @param singleOnly true to make every record a single filer.
+     * @return The batch, with its output columns allocated.
+     */
+    static TaxBatch randomBatch(int size, boolean singleOnly) {
+        int[] allStatuses = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+                TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+                TaxCalculatorInterface.QUALIFYING_WIDOWER};
+        Random random = new Random(42);
+        int[] filingStatus = new int[size];
+        int[] age = new int[size];
+        int[] spouseAge = new int[size];
+        double[] grossIncome = new double[size];
+        for (int index = 0; index < size; index++) {
+            filingStatus[index] = singleOnly ? TaxCalculatorInterface.SINGLE
+                    : allStatuses[random.nextInt(allStatuses.length)];
+            age[index] = 18 + random.nextInt(70);
+            spouseAge[index] = 18 + random.nextInt(70);
+            grossIncome[index] = Math.round(random.nextDouble() * 50000000) / 100.0;
+        }
+        return new TaxBatch(filingStatus, age, spouseAge, grossIncome, new double[size],
+                new double[size], new double[size], new double[size], new boolean[size]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public TaxBatch scalar() {
+        batch.compute();
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public TaxBatch vectorized() {
+        batch.computeVectorized();
+        return batch;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public CentsTaxBatch cents() {
+        centsBatch.compute();
+        return centsBatch;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
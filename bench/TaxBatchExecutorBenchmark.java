@@ -0,0 +1,68 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH scaling benchmark for the parallel batch executor. Throughput is
+ * reported in records per microsecond for each parallelism, so near-linear
+ * scaling shows up as a score proportional to the parallelism until the
+ * core count or memory bandwidth is reached.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class TaxBatchExecutorBenchmark {
+
+    /**
+     * The number of records in the batch.
+     */
+    static final int SIZE = 1 << 22;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int parallelism;
+
+    @Param({"4096"})
+    public int chunkSize;
+
+    private TaxBatch batch;
+    private TaxBatchExecutor executor;
+
+    @Setup
+    public void setUp() {
+        batch = TaxBatchBenchmark.randomBatch(SIZE, false);
+        executor = new TaxBatchExecutor(parallelism, chunkSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public TaxTotals compute() {
+        return executor.compute(batch);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxBatchExecutorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
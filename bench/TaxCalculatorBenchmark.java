@@ -0,0 +1,173 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for every method of {@link TaxCalculatorInterface}. This is
+ * the baseline the hot path changes are measured against.
+ * <p>
+ * The benchmarks are parameterized over every filing status, both sides of the
+ * age 65 boundary for the filer and the spouse, and gross incomes from zero to
+ * past the top 357700 bracket. Run {@link #main(String[])} with jmh-core and
+ * jmh-generator-annprocess on the classpath; it attaches the GC profiler so
+ * that bytes/op is reported next to ns/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxCalculatorBenchmark {
+
+    /**
+     * The filing status, by the name of its constant in the interface.
+     */
+    @Param({"SINGLE", "HEAD_OF_HOUSEHOLD", "MARRIED_FILING_JOINTLY",
+            "MARRIED_FILING_SEPARATELY", "QUALIFYING_WIDOWER"})
+    public String filingStatus;
+
+    /**
+     * The age of the filer, on either side of the 65 boundary.
+     */
+    @Param({"64", "65"})
+    public int age;
+
+    /**
+     * The age of the spouse, on either side of the 65 boundary. It is ignored
+     * for the statuses that do not have a spouse.
+     */
+    @Param({"64", "65"})
+    public int spouseAge;
+
+    /**
+     * The gross income, from zero through every bracket to past the top one.
+     */
+    @Param({"0", "8950", "30000", "75000", "150000", "250000", "357700", "1000000"})
+    public double grossIncome;
+
+    private int status;
+    private boolean married;
+    private TaxCalculatorInterface calculator;
+
+    @Setup
+    public void setUp() {
+        status = statusNamed(filingStatus);
+        married = (status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY);
+        calculator = construct();
+    }
+
+    @Benchmark
+    public TaxCalculatorInterface construction() {
+        return construct();
+    }
+
+    @Benchmark
+    public double getStandardDeduction() {
+        return calculator.getStandardDeduction();
+    }
+
+    @Benchmark
+    public boolean isReturnRequired() {
+        return calculator.isReturnRequired();
+    }
+
+    @Benchmark
+    public double getTaxableIncome() {
+        return calculator.getTaxableIncome();
+    }
+
+    @Benchmark
+    public double getTaxDue() {
+        return calculator.getTaxDue();
+    }
+
+    @Benchmark
+    public double getNetTaxRate() {
+        return calculator.getNetTaxRate();
+    }
+
+    @Benchmark
+    public void setGrossIncome() {
+        calculator.setGrossIncome(grossIncome);
+    }
+
+    /**
+     * Read every output after setting the income, the way a caller reporting
+     * a full result does. The income is set each time so the cached values
+     * are recomputed once per invocation.
+     */
+    @Benchmark
+    public void readAllGetters(Blackhole blackhole) {
+        calculator.setGrossIncome(grossIncome);
+        blackhole.consume(calculator.getStandardDeduction());
+        blackhole.consume(calculator.isReturnRequired());
+        blackhole.consume(calculator.getTaxableIncome());
+        blackhole.consume(calculator.getTaxDue());
+        blackhole.consume(calculator.getNetTaxRate());
+    }
+
+    private TaxCalculatorInterface construct() {
+        TaxCalculator result;
+        if (married) {
+            result = new TaxCalculator("Bob Smith", age, status, spouseAge);
+        } else {
+            result = new TaxCalculator("Bob Smith", age, status);
+        }
+        result.setGrossIncome(grossIncome);
+        return result;
+    }
+
+    static int statusNamed(String name) {
+        switch (name) {
+            case "SINGLE":
+                return TaxCalculatorInterface.SINGLE;
+            case "HEAD_OF_HOUSEHOLD":
+                return TaxCalculatorInterface.HEAD_OF_HOUSEHOLD;
+            case "MARRIED_FILING_JOINTLY":
+                return TaxCalculatorInterface.MARRIED_FILING_JOINTLY;
+            case "MARRIED_FILING_SEPARATELY":
+                return TaxCalculatorInterface.MARRIED_FILING_SEPARATELY;
+            case "QUALIFYING_WIDOWER":
+                return TaxCalculatorInterface.QUALIFYING_WIDOWER;
+            default:
+                throw new IllegalArgumentException("Unknown filing status " + name);
+        }
+    }
+
+    /**
+     * Run the benchmarks in this class with the GC profiler attached. Any
+     * arguments are treated as additional benchmark include patterns.
+     *
+     * @param args Optional include patterns.
+     * @throws RunnerException Thrown if JMH fails to run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        if (args.length == 0) {
+            builder.include(TaxCalculatorBenchmark.class.getSimpleName());
+        }
+        for (String include : args) {
+            builder.include(include);
+        }
+        Options options = builder.addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
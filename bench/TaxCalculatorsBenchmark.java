@@ -0,0 +1,101 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks comparing the generic {@link TaxCalculator} with the
+ * calculators of {@link TaxCalculators}. Every invocation sets a new gross
+ * income on each calculator of a pool and reads the tax due. With a single
+ * status the call site sees one specialized class; with mixed statuses it sees
+ * all five, which is the case where the generic class may win.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxCalculatorsBenchmark {
+
+    /**
+     * The number of calculators per invocation.
+     */
+    static final int SIZE = 1024;
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * Whether the pool holds every filing status or only single filers.
+     */
+    @Param({"single", "mixed"})
+    public String workload;
+
+    private TaxCalculatorInterface[] generic;
+    private TaxCalculatorInterface[] specialized;
+    private double[] incomes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        generic = new TaxCalculatorInterface[SIZE];
+        specialized = new TaxCalculatorInterface[SIZE];
+        incomes = new double[SIZE];
+        for (int index = 0; index < SIZE; index++) {
+            int status = workload.equals("mixed") ? STATUSES[random.nextInt(STATUSES.length)]
+                    : TaxCalculatorInterface.SINGLE;
+            int age = 60 + random.nextInt(10);
+            if ((status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+                generic[index] = new TaxCalculator("Bob Smith", age, status, age);
+                specialized[index] = TaxCalculators.create("Bob Smith", age, status, age);
+            } else {
+                generic[index] = new TaxCalculator("Bob Smith", age, status);
+                specialized[index] = TaxCalculators.create("Bob Smith", age, status);
+            }
+            incomes[index] = random.nextInt(400000);
+        }
+    }
+
+    private double taxDue(TaxCalculatorInterface[] calculators) {
+        double sum = 0;
+        for (int index = 0; index < SIZE; index++) {
+            TaxCalculatorInterface calculator = calculators[index];
+            calculator.setGrossIncome(incomes[index]);
+            sum += calculator.getTaxDue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public double generic() {
+        return taxDue(generic);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public double specialized() {
+        return taxDue(specialized);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxCalculatorsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the latency of one lookup through {@link TaxDaemon}: the
+ * round trip of a connected client to a daemon in the same JVM, against a
+ * {@link TaxCalculator} built and computed in process. The sample time mode
+ * reports the percentiles of the round trip. The cost this replaces, starting
+ * a JVM per lookup, is hundreds of milliseconds and is not a JMH measurement.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxDaemonBenchmark {
+
+    private Path directory;
+    private TaxDaemon daemon;
+    private TaxDaemonClient client;
+    private double income;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-daemon");
+        daemon = new TaxDaemon(directory.resolve("tax.sock"));
+        daemon.start();
+        client = new TaxDaemonClient(daemon.getSocket());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        daemon.close();
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public double daemonRoundTrip() throws IOException {
+        income = (income + 1013) % 400000;
+        return client.compute("Bob Smith", 45, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 43, income)
+                .getTaxDue();
+    }
+
+    @Benchmark
+    public double inProcess() {
+        income = (income + 1013) % 400000;
+        TaxCalculator calculator = new TaxCalculator("Bob Smith", 45, TaxCalculatorInterface.MARRIED_FILING_JOINTLY,
+                43);
+        calculator.setGrossIncome(income);
+        return calculator.getTaxDue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxDaemonBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the quantile histograms: recording the results of a
+ * computed batch into per status distributions, and answering a percentile of
+ * the tax due from a filled histogram, at several precisions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxHistogramBenchmark {
+
+    /**
+     * The number of records per invocation.
+     */
+    static final int SIZE = 65536;
+
+    /**
+     * The precision of the histograms.
+     */
+    @Param({"5", "7", "10"})
+    public int precisionBits;
+
+    private TaxBatch batch;
+    private TaxDistributions filled;
+
+    @Setup
+    public void setUp() {
+        batch = TaxBatchBenchmark.randomBatch(SIZE, false);
+        batch.compute();
+        filled = new TaxDistributions(precisionBits);
+        filled.add(batch, 0, SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public TaxDistributions record() {
+        TaxDistributions distributions = new TaxDistributions(precisionBits);
+        distributions.add(batch, 0, SIZE);
+        return distributions;
+    }
+
+    @Benchmark
+    public double percentile99() {
+        return filled.getTaxDue(TaxCalculatorInterface.SINGLE).getQuantile(0.99);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxHistogramBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the cost of making a run resumable: a taxpayer file
+ * processed through a {@link TaxJournal} and exported, for a range of sync
+ * intervals, against the same file processed straight into a
+ * {@link TaxResultWriter}. How much syncing costs depends on the device the
+ * temporary directory is on. The times are per record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaxJournalBenchmark {
+
+    /**
+     * The number of taxpayers.
+     */
+    static final int POPULATION = 1000000;
+
+    /**
+     * The number of chunks between syncs, 0 for never.
+     */
+    @Param({"0", "16", "1"})
+    public int syncEvery;
+
+    private Path directory;
+    private Path input;
+    private Path journal;
+    private Path output;
+    private final TaxFileProcessor processor = new TaxFileProcessor();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-journal");
+        input = directory.resolve("taxpayers.csv");
+        journal = directory.resolve("results.taxj");
+        output = directory.resolve("results.taxr");
+        Random random = new Random(42);
+        StringBuilder lines = new StringBuilder();
+        for (int index = 0; index < POPULATION; index++) {
+            int status = -random.nextInt(TaxYear.STATUSES);
+            boolean married = (status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY);
+            lines.append("Taxpayer Number,").append(18 + random.nextInt(70)).append(',')
+                    .append(married ? 18 + random.nextInt(70) : 0).append(',').append(status).append(',')
+                    .append(random.nextInt(400000)).append('\n');
+        }
+        Files.write(input, lines.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(input);
+        Files.deleteIfExists(journal);
+        Files.deleteIfExists(output);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public long journaled() throws IOException {
+        Files.deleteIfExists(journal);
+        return TaxJournal.run(processor, input, journal, output, syncEvery);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public long direct() throws IOException {
+        try (TaxResultWriter writer = new TaxResultWriter(output, TaxYearRegistry.DEFAULT_YEAR)) {
+            return processor.process(input, writer);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxJournalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the cost of {@link TaxMetrics}. Every invocation sets a
+ * new gross income on each calculator of a mixed status pool and reads all
+ * five results. The benchmarks are identical and differ only in the flags of
+ * their forks: the metrics off, on with the default sample rate, and on with
+ * every call sampled. The first must match the calculator without metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxMetricsBenchmark {
+
+    /**
+     * The number of calculators per invocation.
+     */
+    static final int SIZE = 1024;
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    private TaxCalculator[] calculators;
+    private double[] incomes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        calculators = new TaxCalculator[SIZE];
+        incomes = new double[SIZE];
+        for (int index = 0; index < SIZE; index++) {
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            int age = 60 + random.nextInt(10);
+            if ((status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+                calculators[index] = new TaxCalculator("Bob Smith", age, status, age);
+            } else {
+                calculators[index] = new TaxCalculator("Bob Smith", age, status);
+            }
+            incomes[index] = random.nextInt(400000);
+        }
+    }
+
+    private double readAll() {
+        double sum = 0;
+        for (int index = 0; index < SIZE; index++) {
+            TaxCalculator calculator = calculators[index];
+            calculator.setGrossIncome(incomes[index]);
+            sum += calculator.getStandardDeduction() + calculator.getTaxableIncome() + calculator.getTaxDue()
+                    + calculator.getNetTaxRate() + (calculator.isReturnRequired() ? 1 : 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public double metricsOff() {
+        return readAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    @Fork(value = 1, jvmArgsAppend = "-Dtax.metrics=true")
+    public double metricsOn() {
+        return readAll();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    @Fork(value = 1, jvmArgsAppend = {"-Dtax.metrics=true", "-Dtax.metrics.sampleRate=1"})
+    public double metricsOnEveryCallSampled() {
+        return readAll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxMetricsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
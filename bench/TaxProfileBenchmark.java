@@ -0,0 +1,78 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for per-request traffic on several threads: every request
+ * either creates a calculator, or derives a profile with its income from one
+ * {@link TaxProfile} shared by every thread, and reads every result. Run
+ * {@link #main(String[])} to attach the GC profiler; in the steady state the
+ * derived profiles are scalar replaced and gc.alloc.rate.norm is about 0
+ * bytes/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TaxProfileBenchmark {
+
+    private final TaxProfile shared = TaxProfile.of("Bob Smith", 66, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 60);
+
+    /**
+     * The request sequence of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private long seed = System.nanoTime();
+
+        double nextIncome() {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            return 250 * ((seed >>> 33) % 1600);
+        }
+    }
+
+    @Benchmark
+    public void calculator(Requests requests, Blackhole blackhole) {
+        TaxCalculator calculator = new TaxCalculator("Bob Smith", 66, TaxCalculatorInterface.MARRIED_FILING_JOINTLY,
+                60);
+        calculator.setGrossIncome(requests.nextIncome());
+        blackhole.consume(calculator.getStandardDeduction());
+        blackhole.consume(calculator.isReturnRequired());
+        blackhole.consume(calculator.getTaxableIncome());
+        blackhole.consume(calculator.getTaxDue());
+        blackhole.consume(calculator.getNetTaxRate());
+    }
+
+    @Benchmark
+    public void sharedProfile(Requests requests, Blackhole blackhole) {
+        TaxProfile profile = shared.withGrossIncome(requests.nextIncome());
+        blackhole.consume(profile.getStandardDeduction());
+        blackhole.consume(profile.isReturnRequired());
+        blackhole.consume(profile.getTaxableIncome());
+        blackhole.consume(profile.getTaxDue());
+        blackhole.consume(profile.getNetTaxRate());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxProfileBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build()).run();
+    }
+}
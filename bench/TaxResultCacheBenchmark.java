@@ -0,0 +1,109 @@
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for payroll-style traffic: every request creates a
+ * calculator for one of a fixed number of salary bands and reads every
+ * result, either directly or through a {@link MemoizingTaxCalculator} sharing
+ * one cache between the benchmark threads. The tear down prints the cache
+ * counters, so the hit rate can be compared with the capacity.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class TaxResultCacheBenchmark {
+
+    /**
+     * The number of distinct salary bands per filing status.
+     */
+    @Param({"16", "1024", "65536"})
+    public int bands;
+
+    /**
+     * The capacity of the cache.
+     */
+    @Param({"4096"})
+    public int capacity;
+
+    private TaxResultCache cache;
+
+    @Setup
+    public void setUp() {
+        cache = new TaxResultCache(capacity);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("hits " + cache.getHits() + " misses " + cache.getMisses()
+                + " evictions " + cache.getEvictions());
+    }
+
+    /**
+     * The request sequence of one benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private long seed = System.nanoTime();
+
+        int next(int bound) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            return (int) ((seed >>> 33) % bound);
+        }
+    }
+
+    private TaxCalculator calculator(Requests requests) {
+        int band = requests.next(bands * 2);
+        TaxCalculator calculator;
+        if ((band & 1) == 0) {
+            calculator = new TaxCalculator("Bob Smith", 40, TaxCalculatorInterface.SINGLE);
+        } else {
+            calculator = new TaxCalculator("Bob Smith", 66, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 60);
+        }
+        calculator.setGrossIncome(20000 + 250 * (band >>> 1));
+        return calculator;
+    }
+
+    private static void readAll(TaxCalculatorInterface calculator, Blackhole blackhole) {
+        blackhole.consume(calculator.getStandardDeduction());
+        blackhole.consume(calculator.isReturnRequired());
+        blackhole.consume(calculator.getTaxableIncome());
+        blackhole.consume(calculator.getTaxDue());
+        blackhole.consume(calculator.getNetTaxRate());
+    }
+
+    @Benchmark
+    public void calculator(Requests requests, Blackhole blackhole) {
+        readAll(calculator(requests), blackhole);
+    }
+
+    @Benchmark
+    public void memoized(Requests requests, Blackhole blackhole) {
+        readAll(new MemoizingTaxCalculator(calculator(requests), cache), blackhole);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxResultCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the results of a taxpayer file written and read back as
+ * the CSV of {@link TaxFileProcessor} and as a binary file of
+ * {@link TaxResultWriter}. The writes include processing the input, which is
+ * the same for both; the reads total the tax due, parsing every CSV line
+ * against reading the mapped binary records in place. The times are per
+ * record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaxResultFileBenchmark {
+
+    /**
+     * The number of taxpayers.
+     */
+    static final int POPULATION = 1000000;
+
+    private Path directory;
+    private Path input;
+    private Path csv;
+    private Path binary;
+    private final TaxFileProcessor processor = new TaxFileProcessor();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-result");
+        input = directory.resolve("taxpayers.csv");
+        csv = directory.resolve("results.csv");
+        binary = directory.resolve("results.taxr");
+        Random random = new Random(42);
+        StringBuilder lines = new StringBuilder();
+        for (int index = 0; index < POPULATION; index++) {
+            int status = -random.nextInt(TaxYear.STATUSES);
+            boolean married = (status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY);
+            lines.append("Taxpayer Number,").append(18 + random.nextInt(70)).append(',')
+                    .append(married ? 18 + random.nextInt(70) : 0).append(',').append(status).append(',')
+                    .append(random.nextInt(400000)).append('\n');
+        }
+        Files.write(input, lines.toString().getBytes(StandardCharsets.US_ASCII));
+        writeCsv();
+        writeBinary();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(input);
+        Files.delete(csv);
+        Files.delete(binary);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public long writeCsv() throws IOException {
+        return processor.process(input, csv);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public long writeBinary() throws IOException {
+        try (TaxResultWriter writer = new TaxResultWriter(binary, TaxYearRegistry.DEFAULT_YEAR)) {
+            return processor.process(input, writer);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public double readCsv() throws IOException {
+        double taxDue = 0.0;
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.US_ASCII)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] fields = line.split(",");
+                if (fields.length == 6) {
+                    taxDue += Double.parseDouble(fields[3]);
+                }
+            }
+        }
+        return taxDue;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public double readBinary() throws IOException {
+        double taxDue = 0.0;
+        try (TaxResultReader reader = new TaxResultReader(binary)) {
+            TaxResultReader.Cursor cursor = reader.cursor();
+            while (cursor.next()) {
+                taxDue += cursor.getTaxDue();
+            }
+        }
+        return taxDue;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxResultFileBenchmark.class.getSimpleName()).build()).run();
+    }
+}
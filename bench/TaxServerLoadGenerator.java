@@ -0,0 +1,151 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A closed loop load generator for {@link TaxServer}. It starts a server on a
+ * free local port and runs a number of clients, each sending its next request
+ * as soon as the last one is answered, first to warm up and then to measure.
+ * It reports the throughput, the p50, p99 and p99.9 latencies and the mean
+ * number of records per coalesced batch run.
+ * <p>
+ * Run it with {@code clients seconds recordsPerRequest format lingerMicros},
+ * all optional, for instance {@code 64 10 1 json 0}. JMH is not used because a
+ * request is dominated by the network stack and the interesting figure is the
+ * latency distribution under concurrent load, not the time of one call.
+ */
+public final class TaxServerLoadGenerator {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    private TaxServerLoadGenerator() {
+    }
+
+    /**
+     * Build a request body of random taxpayers.
+     */
+    static String body(Random random, int records, boolean json) {
+        StringBuilder body = new StringBuilder();
+        body.append(json && (records > 1) ? "[" : "");
+        for (int index = 0; index < records; index++) {
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            boolean married = (status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY);
+            int age = 18 + random.nextInt(70);
+            int spouseAge = married ? 18 + random.nextInt(70) : 0;
+            int income = random.nextInt(400000);
+            if (json) {
+                body.append((index == 0) ? "" : ",").append("{\"name\":\"Bob Smith\",\"age\":").append(age)
+                        .append(",\"spouseAge\":").append(spouseAge).append(",\"filingStatus\":").append(status)
+                        .append(",\"grossIncome\":").append(income).append('}');
+            } else {
+                body.append("Bob Smith,").append(age).append(',').append(spouseAge).append(',').append(status)
+                        .append(',').append(income).append('\n');
+            }
+        }
+        body.append(json && (records > 1) ? "]" : "");
+        return body.toString();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int clients = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        int records = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+        boolean json = (args.length <= 3) || args[3].equals("json");
+        long lingerNanos = (args.length > 4) ? TimeUnit.MICROSECONDS.toNanos(Long.parseLong(args[4])) : 0;
+
+        try (TaxServer server = new TaxServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                TaxServer.DEFAULT_MAX_BATCH_SIZE, lingerNanos)) {
+            server.start();
+            URI uri = URI.create("http://localhost:" + server.getPort() + TaxServer.PATH);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String type = json ? "application/json" : "text/csv";
+
+            run(client, uri, type, clients, Math.max(1, seconds / 2), records, json);
+            long runs = server.getBatchRuns();
+            long batched = server.getBatchedRecords();
+            Result result = run(client, uri, type, clients, seconds, records, json);
+            runs = server.getBatchRuns() - runs;
+            batched = server.getBatchedRecords() - batched;
+
+            System.out.printf("%d clients, %d %s records per request, %s threads, linger %d us%n", clients,
+                    records, json ? "JSON" : "CSV", server.isVirtualThreads() ? "virtual" : "platform",
+                    TimeUnit.NANOSECONDS.toMicros(lingerNanos));
+            System.out.printf("throughput  %.0f requests/s, %.0f records/s%n", result.requests / result.seconds,
+                    result.requests * records / result.seconds);
+            System.out.printf("latency     p50 %.1f us, p99 %.1f us, p99.9 %.1f us%n",
+                    result.latency.getQuantile(0.5) / 1e3, result.latency.getQuantile(0.99) / 1e3,
+                    result.latency.getQuantile(0.999) / 1e3);
+            System.out.printf("batches     %.1f records per run%n", (runs == 0) ? 0.0 : (double) batched / runs);
+            if (result.failures > 0) {
+                System.out.printf("failures    %d%n", result.failures);
+            }
+        }
+    }
+
+    private static Result run(HttpClient client, URI uri, String type, int clients, int seconds, int records,
+                              boolean json) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        for (int index = 0; index < clients; index++) {
+            Result result = new Result();
+            results.add(result);
+            Random random = new Random(index);
+            Thread thread = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = HttpRequest.newBuilder(uri).header("Content-Type", type)
+                            .POST(HttpRequest.BodyPublishers.ofString(body(random, records, json))).build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        result.failures += (response.statusCode() == 200) ? 0 : 1;
+                    } catch (IOException e) {
+                        result.failures++;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    result.latency.record(System.nanoTime() - start);
+                    result.requests++;
+                }
+            });
+            threads.add(thread);
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Result total = new Result();
+        total.seconds = (System.nanoTime() - start) / 1e9;
+        for (Result result : results) {
+            total.requests += result.requests;
+            total.failures += result.failures;
+            total.latency.merge(result.latency);
+        }
+        return total;
+    }
+
+    /**
+     * The requests of one client, or of all of them.
+     */
+    private static final class Result {
+
+        final TaxHistogram latency = new TaxHistogram(7, 1e3, 1e11);
+        long requests;
+        long failures;
+        double seconds;
+    }
+}
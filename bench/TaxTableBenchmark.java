@@ -0,0 +1,88 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for the dense tax tables. The taxable incomes are random
+ * whole dollars below the income ceiling, with statuses mixed at random, so
+ * the loads do not all hit the same cache lines. A ceiling of -1 uses the
+ * bracket walk.
+ * <p>
+ * Each distinct schedule of a year has its own table of 8 bytes per dollar of
+ * ceiling; 2008 has four distinct schedules, so a $200,000 ceiling takes about
+ * 6.4 MB, more than a typical L2 cache. The table wins while its lines stay
+ * cached, which depends on how concentrated the incomes are, so measure with
+ * the income range of the real traffic.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TaxTableBenchmark {
+
+    /**
+     * The number of lookups per invocation.
+     */
+    static final int SIZE = 4096;
+
+    /**
+     * The table ceiling, or -1 for no table.
+     */
+    @Param({"-1", "50000", "200000"})
+    public int ceiling;
+
+    /**
+     * The largest taxable income looked up.
+     */
+    @Param({"50000", "200000"})
+    public int incomes;
+
+    private TaxSchedule[] schedules;
+    private double[] taxable;
+
+    @Setup
+    public void setUp() {
+        TaxYear rules = TaxYearRegistry.getDefault();
+        if (ceiling >= 0) {
+            rules = rules.withTaxTables(ceiling);
+        }
+        Random random = new Random(42);
+        schedules = new TaxSchedule[SIZE];
+        taxable = new double[SIZE];
+        for (int index = 0; index < SIZE; index++) {
+            schedules[index] = rules.schedule(-random.nextInt(TaxYear.STATUSES));
+            taxable[index] = random.nextInt(incomes);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public double taxDue() {
+        double sum = 0;
+        for (int index = 0; index < SIZE; index++) {
+            sum += schedules[index].taxDue(taxable[index]);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxTableBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks totaling the taxes of a population held three ways: a
+ * {@link TaxCalculator} per taxpayer, a {@link TaxBatch} of columns, and an
+ * off-heap {@link TaxpayerStore}. The setup prints the heap used by each, so
+ * the footprint can be compared next to the time per taxpayer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class TaxpayerStoreBenchmark {
+
+    /**
+     * The number of taxpayers.
+     */
+    static final int POPULATION = 1000000;
+
+    private TaxCalculator[] calculators;
+    private TaxBatch batch;
+    private TaxpayerStore store;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int[] status = new int[POPULATION];
+        int[] age = new int[POPULATION];
+        int[] spouseAge = new int[POPULATION];
+        double[] income = new double[POPULATION];
+        for (int index = 0; index < POPULATION; index++) {
+            status[index] = -random.nextInt(TaxYear.STATUSES);
+            age[index] = 18 + random.nextInt(70);
+            if ((status[index] == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status[index] == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+                spouseAge[index] = 18 + random.nextInt(70);
+            }
+            income[index] = random.nextInt(400000);
+        }
+
+        long before = usedHeap();
+        calculators = new TaxCalculator[POPULATION];
+        for (int index = 0; index < POPULATION; index++) {
+            String name = "Taxpayer Number" + index;
+            calculators[index] = (spouseAge[index] > 0)
+                    ? new TaxCalculator(name, age[index], status[index], spouseAge[index])
+                    : new TaxCalculator(name, age[index], status[index]);
+            calculators[index].setGrossIncome(income[index]);
+        }
+        long afterCalculators = usedHeap();
+        store = new TaxpayerStore();
+        for (int index = 0; index < POPULATION; index++) {
+            String name = "Taxpayer Number" + index;
+            int id = (spouseAge[index] > 0)
+                    ? store.add(name, age[index], status[index], spouseAge[index])
+                    : store.add(name, age[index], status[index]);
+            store.setGrossIncome(id, income[index]);
+        }
+        long afterStore = usedHeap();
+        batch = new TaxBatch(status, age, spouseAge, income, new double[POPULATION], new double[POPULATION],
+                new double[POPULATION], new double[POPULATION], new boolean[POPULATION]);
+        long afterBatch = usedHeap();
+        System.out.printf("heap bytes per taxpayer: calculators %.1f, store %.1f, batch %.1f%n",
+                (afterCalculators - before) / (double) POPULATION, (afterStore - afterCalculators) / (double) POPULATION,
+                (afterBatch - afterStore) / (double) POPULATION);
+    }
+
+    private static long usedHeap() {
+        for (int gc = 0; gc < 3; gc++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public TaxTotals calculators() {
+        TaxTotals totals = new TaxTotals();
+        for (TaxCalculator calculator : calculators) {
+            // Setting the income again discards the cached results.
+            calculator.setGrossIncome(calculator.getGrossIncome());
+            totals.add(calculator.getFilingStatus(), calculator.getTaxDue(), calculator.isReturnRequired());
+        }
+        return totals;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public TaxTotals batch() {
+        TaxTotals totals = new TaxTotals();
+        batch.compute();
+        totals.add(batch, 0, batch.size());
+        return totals;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POPULATION)
+    public TaxTotals store() {
+        return store.compute();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaxpayerStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
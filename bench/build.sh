@@ -0,0 +1,21 @@
+#!/bin/sh
+# Compile the JMH benchmarks into out/bench. See bench/README.md.
+#
+# JMH rejects benchmarks in the default package, so the sources of src, vector
+# and bench are copied into the taxbench package and compiled together.
+set -e
+cd "$(dirname "$0")/.."
+LIB=${JMH_LIB:-bench/lib}
+OUT=out/bench
+MODULES="--add-modules jdk.incubator.vector"
+
+rm -rf "$OUT"
+mkdir -p "$OUT/src/taxbench" "$OUT/classes"
+for source in src/*.java vector/*.java bench/*.java; do
+    { echo "package taxbench;"; echo; cat "$source"; } > "$OUT/src/taxbench/$(basename "$source")"
+done
+cp src/tax-years.bin "$OUT/classes/"
+javac $MODULES -cp "$LIB/jmh-core-1.37.jar" \
+    -processorpath "$LIB/jmh-generator-annprocess-1.37.jar:$LIB/jmh-core-1.37.jar" \
+    -d "$OUT/classes" "$OUT"/src/taxbench/*.java
+echo "Run with: java $MODULES -cp $OUT/classes:$LIB/jmh-core-1.37.jar:$LIB/jopt-simple-5.0.4.jar:$LIB/commons-math3-3.6.1.jar org.openjdk.jmh.Main <benchmark>"
@@ -0,0 +1,205 @@
+/**
+ * This class holds the taxpayer, the cached results and the rules shared by
+ * {@link TaxCalculator} and the calculators of {@link TaxCalculators}. The
+ * subclasses only supply the filing status through
+ * {@link #getFilingStatus()}: a field for TaxCalculator, a constant for the
+ * specialized calculators, which the JIT folds into the getters once a call
+ * site only sees one of them.
+ * <p>
+ * The standard deduction only depends on the filing status and the ages, so
+ * it is computed once, the first time it is needed. The taxable income, tax
+ * due and net tax rate are computed together the first time one of them is
+ * read after the gross income changes. Both are recomputed if new rules are
+ * published for the tax year. Like the rest of the class, the cache is not
+ * thread safe.
+ */
+abstract class AbstractTaxCalculator implements TaxCalculatorInterface {
+    private String name; // This holds the name of the tax payer.
+    private int age; // This is the age of the tax payer.
+    private int spouseAge; // This is the age of the spouse.
+    private double grossIncome; // This is the gross income for the taxpayer.
+    private int taxYear = TaxYearRegistry.DEFAULT_YEAR; // This is the year of the tax tables.
+
+    private TaxYear cachedRules; // The rules the cached values were computed with.
+    private double standardDeduction; // The cached standard deduction.
+    private boolean incomeCached; // Whether the values below match the gross income.
+    private double taxableIncome; // The cached taxable income.
+    private double taxDue; // The cached tax due.
+    private double netTaxRate; // The cached net tax rate.
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        this.name = name;
+    }
+
+    /**
+     * Obtain the year of the tax tables used by this calculator.
+     *
+     * @return The tax year.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * Look up the rules of the tax year. Every public method looks them up
+     * once, so its result comes from a single set of rules even if new rules
+     * are published meanwhile.
+     */
+    private TaxYear rules() {
+        return TaxYearRegistry.forYear(this.taxYear);
+    }
+
+    /**
+     * Recompute the standard deduction if the rules have changed since it was
+     * computed, which also invalidates the values that depend on the income.
+     */
+    private void refreshDeduction(TaxYear rules) {
+        if (rules != this.cachedRules) {
+            this.standardDeduction = rules.standardDeduction(getFilingStatus(), this.age, this.spouseAge);
+            this.cachedRules = rules;
+            this.incomeCached = false;
+        }
+    }
+
+    /**
+     * Bring every cached value up to date with the current rules and income.
+     *
+     * @return The rules the cached values were computed with.
+     */
+    private TaxYear refresh() {
+        TaxYear rules = rules();
+        refreshDeduction(rules);
+        if (!this.incomeCached) {
+            this.taxableIncome = TaxRules.taxableIncome(this.grossIncome, this.standardDeduction);
+            this.taxDue = rules.taxDue(getFilingStatus(), this.taxableIncome);
+            this.netTaxRate = TaxRules.netTaxRate(this.grossIncome, this.taxDue);
+            this.incomeCached = true;
+        }
+        return rules;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getStandardDeduction()
+     */
+    public double getStandardDeduction() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.STANDARD_DEDUCTION, getFilingStatus()) : 0;
+        refreshDeduction(rules());
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.STANDARD_DEDUCTION, start);
+        }
+        return this.standardDeduction;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#isReturnRequired()
+     */
+    public boolean isReturnRequired() {
+        long start = TaxMetrics.ENABLED ? TaxMetrics.begin(TaxMetrics.RETURN_REQUIRED, getFilingStatus()) : 0;
+        boolean required = refresh().returnRequired(getFilingStatus(), this.age, this.spouseAge, this.grossIncome);
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.RETURN_REQUIRED, start);
+        }
+        return required;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getAge()
+     */
+    public int getAge() {
+        return age;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getSpouseAge()
+     */
+    public int getSpouseAge() {
+        return spouseAge;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getGrossIncome()
+     */
+    public double getGrossIncome() {
+        return grossIncome;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getTaxableIncome()
+     */
+    public double getTaxableIncome() {
+        long start = TaxMetrics.ENABLED ? TaxMetrics.begin(TaxMetrics.TAXABLE_INCOME, getFilingStatus()) : 0;
+        refresh();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.TAXABLE_INCOME, start);
+        }
+        return this.taxableIncome;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#setGrossIncome(double)
+     */
+    public void setGrossIncome(double grossIncome) {
+        this.grossIncome = TaxRules.grossIncome(this.grossIncome, grossIncome);
+        this.incomeCached = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getTaxDue()
+     */
+    public double getTaxDue() {
+        long start = TaxMetrics.ENABLED ? TaxMetrics.begin(TaxMetrics.TAX_DUE, getFilingStatus()) : 0;
+        refresh();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.TAX_DUE, start);
+        }
+        return this.taxDue;
+    }
+
+    @Override
+    public double getNetTaxRate() {
+        long start = TaxMetrics.ENABLED ? TaxMetrics.begin(TaxMetrics.NET_TAX_RATE, getFilingStatus()) : 0;
+        refresh();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.NET_TAX_RATE, start);
+        }
+        return this.netTaxRate;
+    }
+
+    final void setTaxYear(int taxYear) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.taxYear = taxYear;
+    }
+
+    final void setAge(int age) {
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        this.age = age;
+    }
+
+    final void setSpouseAge(int spouseAge) {
+        // Check that the spouse age is valid.
+        TaxpayerValidator.check(TaxpayerValidator.validateSpouseAge(spouseAge));
+        this.spouseAge = spouseAge;
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * This class computes taxes over columns of primitive values in integer
+ * cents, the fixed-point counterpart of {@link TaxBatch}. The caller provides
+ * both the input columns and the output columns, and record i of every column
+ * belongs to the same taxpayer. The rounding rules are those of
+ * {@link TaxCents}; the net tax rate is not stored, since
+ * {@link TaxCents#netTaxRate(long, long)} derives it from two columns.
+ * <p>
+ * Every amount is exact, so sums of the tax due do not depend on the order in
+ * which they are added. Use {@link TaxCentsDiscrepancies} to find the records
+ * where this engine and the double engine disagree.
+ */
+public final class CentsTaxBatch {
+
+    private final int[] filingStatus;
+    private final int[] age;
+    private final int[] spouseAge;
+    private final long[] grossIncome;
+
+    private final long[] standardDeduction;
+    private final long[] taxableIncome;
+    private final long[] taxDue;
+    private final boolean[] returnRequired;
+
+    private int taxYear = TaxYearRegistry.DEFAULT_YEAR; // The year of the tax tables.
+
+    /**
+     * @param filingStatus      The filing status of each taxpayer.
+     * @param age               The age of each taxpayer.
+     * @param spouseAge         The age of each spouse, 0 if there is none.
+     * @param grossIncome       The gross income of each taxpayer in cents.
+     * @param standardDeduction Receives the standard deduction in cents.
+     * @param taxableIncome     Receives the taxable income in cents.
+     * @param taxDue            Receives the tax due in cents.
+     * @param returnRequired    Receives whether a return is required.
+     * @throws IllegalArgumentException Thrown if the columns are not all the
+     *                                  same length.
+     */
+    public CentsTaxBatch(int[] filingStatus, int[] age, int[] spouseAge, long[] grossIncome,
+                         long[] standardDeduction, long[] taxableIncome, long[] taxDue,
+                         boolean[] returnRequired) {
+        int size = filingStatus.length;
+        if ((age.length != size) || (spouseAge.length != size) || (grossIncome.length != size)
+                || (standardDeduction.length != size) || (taxableIncome.length != size)
+                || (taxDue.length != size) || (returnRequired.length != size)) {
+            throw new IllegalArgumentException("All columns must be the same length.");
+        }
+        this.filingStatus = filingStatus;
+        this.age = age;
+        this.spouseAge = spouseAge;
+        this.grossIncome = grossIncome;
+        this.standardDeduction = standardDeduction;
+        this.taxableIncome = taxableIncome;
+        this.taxDue = taxDue;
+        this.returnRequired = returnRequired;
+    }
+
+    /**
+     * Create a batch with the same taxpayers and tax year as a double batch.
+     * The input columns other than the income are shared, the incomes are
+     * converted with {@link TaxCents#toCents(double)} and the output columns
+     * are allocated.
+     *
+     * @param batch The double batch.
+     * @return The cents batch.
+     * @throws IllegalArgumentException Thrown if an income cannot be converted.
+     */
+    public static CentsTaxBatch of(TaxBatch batch) {
+        int size = batch.size();
+        long[] income = new long[size];
+        double[] dollars = batch.getGrossIncome();
+        for (int index = 0; index < size; index++) {
+            income[index] = TaxCents.toCents(dollars[index]);
+        }
+        CentsTaxBatch result = new CentsTaxBatch(batch.getFilingStatus(), batch.getAge(), batch.getSpouseAge(),
+                income, new long[size], new long[size], new long[size], new boolean[size]);
+        result.taxYear = batch.getTaxYear();
+        return result;
+    }
+
+    /**
+     * @return The number of records in the batch.
+     */
+    public int size() {
+        return filingStatus.length;
+    }
+
+    /**
+     * Compute every record in the batch.
+     *
+     * @throws ArithmeticException Thrown if a taxable income is too large.
+     */
+    public void compute() {
+        compute(0, size());
+    }
+
+    /**
+     * Compute a range of records in the batch.
+     *
+     * @param from The first record to compute, inclusive.
+     * @param to   The last record to compute, exclusive.
+     * @throws IndexOutOfBoundsException Thrown if the range is outside the batch.
+     * @throws ArithmeticException       Thrown if a taxable income is too large.
+     */
+    public void compute(int from, int to) {
+        compute(getRules(), from, to);
+    }
+
+    /**
+     * Compute a range of records in the batch with the given rules.
+     */
+    void compute(CentsTaxYear rules, int from, int to) {
+        checkRange(from, to);
+        for (int index = from; index < to; index++) {
+            int status = filingStatus[index];
+            long income = TaxCents.grossIncome(grossIncome[index]);
+            long deduction = rules.standardDeduction(status, age[index], spouseAge[index]);
+            long taxable = TaxCents.taxableIncome(income, deduction);
+
+            standardDeduction[index] = deduction;
+            taxableIncome[index] = taxable;
+            taxDue[index] = rules.taxDue(status, taxable);
+            returnRequired[index] = rules.returnRequired(status, age[index], spouseAge[index], income);
+        }
+    }
+
+    /**
+     * @return The year of the tax tables used by the batch.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * @param taxYear The year of the tax tables to use.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     */
+    public void setTaxYear(int taxYear) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.taxYear = taxYear;
+    }
+
+    /**
+     * @return The rules of the tax year used by the batch, in cents.
+     */
+    CentsTaxYear getRules() {
+        return TaxYearRegistry.forYear(taxYear).cents();
+    }
+
+    void checkRange(int from, int to) {
+        if ((from < 0) || (to > size()) || (from > to)) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to
+                    + " for a batch of " + size() + ".");
+        }
+    }
+
+    public int[] getFilingStatus() {
+        return filingStatus;
+    }
+
+    public int[] getAge() {
+        return age;
+    }
+
+    public int[] getSpouseAge() {
+        return spouseAge;
+    }
+
+    public long[] getGrossIncome() {
+        return grossIncome;
+    }
+
+    public long[] getStandardDeduction() {
+        return standardDeduction;
+    }
+
+    public long[] getTaxableIncome() {
+        return taxableIncome;
+    }
+
+    public long[] getTaxDue() {
+        return taxDue;
+    }
+
+    public boolean[] getReturnRequired() {
+        return returnRequired;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This class holds the rules of a {@link TaxYear} in integer cents and basis
+ * points, following the rounding rules of {@link TaxCents}. Obtain it with
+ * {@link TaxYear#cents()}, so each published year has exactly one. Instances
+ * are immutable.
+ * <p>
+ * The tax owed on every bracket below the top one is an exact integer in
+ * units of cents times basis points, so unlike the double schedule the sums
+ * below each bracket can be precomputed without changing any result.
+ */
+public final class CentsTaxYear {
+
+    private final int year; // The tax year.
+    private final long agedDeduction; // The extra deduction per aged person.
+    private final long[] baseDeductions; // The base deduction of each status.
+    private final long[][] thresholds; // The return threshold of each status by aged people.
+    private final long[][] floors; // The bracket floors of each status.
+    private final int[][] rates; // The bracket rates of each status in basis points.
+    private final long[][] taxBelow; // The exact tax owed below each bracket of each status.
+
+    /**
+     * @param rules The rules to convert.
+     * @throws IllegalArgumentException Thrown if a rate is not a whole number
+     *                                  of basis points.
+     */
+    CentsTaxYear(TaxYear rules) {
+        this.year = rules.getYear();
+        this.agedDeduction = TaxCents.toCents(rules.getAgedDeduction());
+        this.baseDeductions = new long[TaxYear.STATUSES];
+        this.thresholds = new long[TaxYear.STATUSES][];
+        this.floors = new long[TaxYear.STATUSES][];
+        this.rates = new int[TaxYear.STATUSES][];
+        this.taxBelow = new long[TaxYear.STATUSES][];
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            baseDeductions[status] = TaxCents.toCents(rules.getBaseDeduction(-status));
+            double[] dollars = rules.getThresholds(-status);
+            thresholds[status] = new long[dollars.length];
+            for (int index = 0; index < dollars.length; index++) {
+                thresholds[status][index] = TaxCents.toCents(dollars[index]);
+            }
+            TaxSchedule schedule = rules.schedule(-status);
+            int brackets = schedule.getBracketCount();
+            floors[status] = new long[brackets];
+            rates[status] = new int[brackets];
+            taxBelow[status] = new long[brackets];
+            for (int bracket = 0; bracket < brackets; bracket++) {
+                floors[status][bracket] = TaxCents.toCents(schedule.getFloor(bracket));
+                rates[status][bracket] = TaxCents.toBasisPoints(schedule.getRate(bracket));
+                if (bracket > 0) {
+                    taxBelow[status][bracket] = taxBelow[status][bracket - 1]
+                            + (floors[status][bracket] - floors[status][bracket - 1]) * rates[status][bracket - 1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculate the standard deduction.
+     *
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @return The standard deduction in cents.
+     */
+    public long standardDeduction(int filingStatus, int age, int spouseAge) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            return 0;
+        }
+        return baseDeductions[status] + agedDeduction * TaxYear.agedPeople(status, age, spouseAge);
+    }
+
+    /**
+     * Determine if a tax return is required.
+     *
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @param grossIncome  The gross income in cents.
+     * @return true if a tax return is required.
+     */
+    public boolean returnRequired(int filingStatus, int age, int spouseAge, long grossIncome) {
+        int status = TaxRules.statusIndex(filingStatus);
+        return (status >= 0) && (grossIncome >= thresholds[status][TaxYear.agedPeople(status, age, spouseAge)]);
+    }
+
+    /**
+     * Calculate the tax due.
+     *
+     * @param filingStatus  The filing status. Unknown statuses are taxed on
+     *                      the single schedule.
+     * @param taxableIncome The taxable income in cents.
+     * @return The tax due in cents.
+     * @throws ArithmeticException Thrown if the taxable income is too large.
+     */
+    public long taxDue(int filingStatus, long taxableIncome) {
+        int status = Math.max(TaxRules.statusIndex(filingStatus), 0);
+        long[] floor = floors[status];
+        int bracket = floor.length - 1;
+        while ((bracket >= 0) && (taxableIncome <= floor[bracket])) {
+            bracket--;
+        }
+        if (bracket < 0) {
+            return 0;
+        }
+        long top = Math.multiplyExact(taxableIncome - floor[bracket], (long) rates[status][bracket]);
+        return TaxCents.divideHalfEven(Math.addExact(top, taxBelow[status][bracket]), TaxCents.BASIS_POINTS);
+    }
+
+    /**
+     * @return The tax year.
+     */
+    public int getYear() {
+        return year;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * This class decorates a calculator with a shared {@link TaxResultCache}. The
+ * first read of a result looks the taxpayer's profile up in the cache, and
+ * only on a miss are the results computed by the decorated calculator and
+ * stored for the next calculator with the same profile. Reads return exactly
+ * what the decorated calculator would have returned.
+ * <p>
+ * The decorated calculator must compute the given tax year, which
+ * {@link #MemoizingTaxCalculator(TaxCalculator, TaxResultCache)} guarantees.
+ * Like {@link TaxCalculator}, instances are not thread safe; the cache is.
+ * <p>
+ * Every read of a result is counted by {@link TaxMetrics}, hit or miss. A
+ * miss also counts the five results the decorated calculator computes for
+ * the cache.
+ */
+public class MemoizingTaxCalculator implements TaxCalculatorInterface {
+
+    private final TaxCalculatorInterface delegate; // Computes the results on a miss.
+    private final TaxResultCache cache; // The shared results.
+    private final int key; // The cache key of everything but the income.
+
+    private TaxResultCache.Result result; // The result for the current income, or null.
+    private long resultGeneration; // The rules generation the result is valid for.
+
+    /**
+     * @param delegate The calculator to decorate.
+     * @param cache    The cache to share.
+     */
+    public MemoizingTaxCalculator(TaxCalculator delegate, TaxResultCache cache) {
+        this(delegate, delegate.getTaxYear(), cache);
+    }
+
+    /**
+     * @param delegate The calculator to decorate.
+     * @param taxYear  The tax year the calculator computes.
+     * @param cache    The cache to share.
+     */
+    public MemoizingTaxCalculator(TaxCalculatorInterface delegate, int taxYear, TaxResultCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.key = TaxResultCache.key(taxYear, delegate.getFilingStatus(), delegate.getAge(),
+                delegate.getSpouseAge());
+    }
+
+    /**
+     * Find the result for the current income and rules, computing and caching
+     * it if no calculator has yet.
+     */
+    private TaxResultCache.Result result() {
+        long generation = TaxYearRegistry.getGeneration();
+        TaxResultCache.Result current = this.result;
+        if ((current != null) && (this.resultGeneration == generation)) {
+            return current;
+        }
+        double grossIncome = delegate.getGrossIncome();
+        current = cache.get(key, grossIncome, generation);
+        while (current == null) {
+            current = new TaxResultCache.Result(delegate.getStandardDeduction(), delegate.getTaxableIncome(),
+                    delegate.getTaxDue(), delegate.getNetTaxRate(), delegate.isReturnRequired());
+            long computedGeneration = TaxYearRegistry.getGeneration();
+            if (computedGeneration != generation) {
+                // New rules were published while computing, so the values
+                // may come from both; compute them again.
+                generation = computedGeneration;
+                current = null;
+            } else {
+                cache.put(key, grossIncome, generation, current);
+            }
+        }
+        this.result = current;
+        this.resultGeneration = generation;
+        return current;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getStandardDeduction()
+     */
+    public double getStandardDeduction() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.STANDARD_DEDUCTION, delegate.getFilingStatus()) : 0;
+        double deduction = result().getStandardDeduction();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.STANDARD_DEDUCTION, start);
+        }
+        return deduction;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#isReturnRequired()
+     */
+    public boolean isReturnRequired() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.RETURN_REQUIRED, delegate.getFilingStatus()) : 0;
+        boolean required = result().isReturnRequired();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.RETURN_REQUIRED, start);
+        }
+        return required;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getFilingStatus()
+     */
+    public int getFilingStatus() {
+        return delegate.getFilingStatus();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getAge()
+     */
+    public int getAge() {
+        return delegate.getAge();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getSpouseAge()
+     */
+    public int getSpouseAge() {
+        return delegate.getSpouseAge();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getGrossIncome()
+     */
+    public double getGrossIncome() {
+        return delegate.getGrossIncome();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getTaxableIncome()
+     */
+    public double getTaxableIncome() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.TAXABLE_INCOME, delegate.getFilingStatus()) : 0;
+        double taxable = result().getTaxableIncome();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.TAXABLE_INCOME, start);
+        }
+        return taxable;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#setGrossIncome(double)
+     */
+    public void setGrossIncome(double grossIncome) {
+        delegate.setGrossIncome(grossIncome);
+        this.result = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see TaxCalculatorInterface#getTaxDue()
+     */
+    public double getTaxDue() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.TAX_DUE, delegate.getFilingStatus()) : 0;
+        double tax = result().getTaxDue();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.TAX_DUE, start);
+        }
+        return tax;
+    }
+
+    @Override
+    public double getNetTaxRate() {
+        long start = TaxMetrics.ENABLED
+                ? TaxMetrics.begin(TaxMetrics.NET_TAX_RATE, delegate.getFilingStatus()) : 0;
+        double rate = result().getNetTaxRate();
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.end(TaxMetrics.NET_TAX_RATE, start);
+        }
+        return rate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void setName(String name) {
+        delegate.setName(name);
+    }
+}
@@ -0,0 +1,108 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class counts the whitespace separated tokens of a name in a single
+ * pass, without a regular expression and without allocating. The count is
+ * exactly the length of the array {@code name.split("\\s+")} returns:
+ * whitespace is any of space, tab, line feed, vertical tab, form feed and
+ * carriage return; leading whitespace produces an empty first token when a
+ * real token follows it; trailing whitespace produces nothing; and a name
+ * without any whitespace is one token, even when it is empty.
+ * <p>
+ * Names can be scanned from a CharSequence or from a range of ASCII or UTF-8
+ * bytes, such as a record in an ingest buffer. Bytes of multi-byte UTF-8
+ * characters are never whitespace, which matches {@code \s} without the
+ * UNICODE_CHARACTER_CLASS flag.
+ */
+public final class NameTokens {
+
+    private NameTokens() {
+    }
+
+    /**
+     * @param name The name.
+     * @return The number of tokens {@code name.split("\\s+")} would return.
+     */
+    public static int count(CharSequence name) {
+        int length = name.length();
+        int tokens = 0;
+        boolean whitespace = false;
+        boolean previousWhitespace = true;
+        for (int index = 0; index < length; index++) {
+            boolean current = isWhitespace(name.charAt(index));
+            if (!current && previousWhitespace) {
+                tokens++;
+            }
+            whitespace |= current;
+            previousWhitespace = current;
+        }
+        return result(tokens, whitespace, (length > 0) && isWhitespace(name.charAt(0)));
+    }
+
+    /**
+     * @param name The bytes of the name.
+     * @param from The first byte of the name, inclusive.
+     * @param to   The last byte of the name, exclusive.
+     * @return The number of tokens {@code name.split("\\s+")} would return.
+     */
+    public static int count(byte[] name, int from, int to) {
+        int tokens = 0;
+        boolean whitespace = false;
+        boolean previousWhitespace = true;
+        for (int index = from; index < to; index++) {
+            boolean current = isWhitespace(name[index]);
+            if (!current && previousWhitespace) {
+                tokens++;
+            }
+            whitespace |= current;
+            previousWhitespace = current;
+        }
+        return result(tokens, whitespace, (to > from) && isWhitespace(name[from]));
+    }
+
+    /**
+     * @param name The buffer holding the name. Its position is not used or
+     *             changed.
+     * @param from The first byte of the name, inclusive.
+     * @param to   The last byte of the name, exclusive.
+     * @return The number of tokens {@code name.split("\\s+")} would return.
+     */
+    public static int count(ByteBuffer name, int from, int to) {
+        int tokens = 0;
+        boolean whitespace = false;
+        boolean previousWhitespace = true;
+        for (int index = from; index < to; index++) {
+            boolean current = isWhitespace(name.get(index));
+            if (!current && previousWhitespace) {
+                tokens++;
+            }
+            whitespace |= current;
+            previousWhitespace = current;
+        }
+        return result(tokens, whitespace, (to > from) && isWhitespace(name.get(from)));
+    }
+
+    /**
+     * Turn the number of non-empty tokens into what split returns.
+     */
+    private static int result(int tokens, boolean whitespace, boolean leadingWhitespace) {
+        if (!whitespace) {
+            // Without a match, split returns the whole input.
+            return 1;
+        }
+        if ((tokens > 0) && leadingWhitespace) {
+            // The empty token before leading whitespace is kept unless
+            // everything after it is empty too.
+            return tokens + 1;
+        }
+        return tokens;
+    }
+
+    /**
+     * @param value A character.
+     * @return true if {@code \s} matches the character.
+     */
+    public static boolean isWhitespace(int value) {
+        return (value == ' ') || ((value >= '\t') && (value <= '\r'));
+    }
+}
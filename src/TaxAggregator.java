@@ -0,0 +1,285 @@
+/**
+ * This class groups computed taxes by filing status, by whether the filer is
+ * 65 or older, and by the highest bracket the taxable income reaches, and
+ * accumulates per group the number of records, the number of returns
+ * required, the tax due and the taxable income. A group is a dense int, so
+ * the accumulators are primitive arrays indexed by group and nothing is
+ * boxed per record.
+ * <p>
+ * The sums are compensated (Neumaier's variant of Kahan summation), so their
+ * error does not grow with the number of records. Like {@link TaxTotals}, an
+ * aggregator is not thread safe: each worker fills its own and they are
+ * merged afterwards with {@link #merge(TaxAggregator)}.
+ * <p>
+ * Records are added one at a time, a range of a computed {@link TaxBatch} at a
+ * time, or streamed from a file, since an aggregator is a
+ * {@link TaxFileProcessor.Sink}. The brackets are those of the rules of the
+ * tax year when the aggregator was created.
+ */
+public final class TaxAggregator implements TaxFileProcessor.Sink {
+
+    private static final int TAX_DUE = 0; // The offset of the tax due sum of a group.
+    private static final int TAXABLE_INCOME = 2; // The offset of the taxable income sum.
+    private static final int SUMS = 4; // A sum and its compensation per summed value.
+    private static final int RECORDS = 0; // The offset of the record count of a group.
+    private static final int RETURNS_REQUIRED = 1; // The offset of the returns required count.
+    private static final int COUNTS = 2; // The counts per group.
+
+    private final TaxYear rules; // The rules that define the brackets.
+    private final int brackets; // The bracket slots per status and age, including no tax.
+    private final double[] sums; // The compensated sums, SUMS per group.
+    private final long[] counts; // The counts, COUNTS per group.
+
+    /**
+     * Create an aggregator for the default tax year.
+     */
+    public TaxAggregator() {
+        this(TaxYearRegistry.DEFAULT_YEAR);
+    }
+
+    /**
+     * @param taxYear The year whose brackets group the records.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     */
+    public TaxAggregator(int taxYear) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.rules = TaxYearRegistry.forYear(taxYear);
+        int most = 0;
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            most = Math.max(most, rules.schedule(-status).getBracketCount());
+        }
+        this.brackets = most + 1;
+        int groups = TaxYear.STATUSES * 2 * brackets;
+        this.sums = new double[groups * SUMS];
+        this.counts = new long[groups * COUNTS];
+    }
+
+    /**
+     * Find the group of a filing status, age flag and bracket.
+     *
+     * @param filingStatus The filing status.
+     * @param aged         Whether the filer is 65 or older.
+     * @param bracket      The highest bracket reached, or -1 if no tax is owed.
+     * @return The group, from 0 to {@link #getGroups()} - 1.
+     * @throws IllegalArgumentException Thrown if the status or the bracket is
+     *                                  out of bounds.
+     */
+    public int group(int filingStatus, boolean aged, int bracket) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            throw new IllegalArgumentException("Invalid filing status " + filingStatus + ".");
+        }
+        if ((bracket < -1) || (bracket >= brackets - 1)) {
+            throw new IllegalArgumentException("Invalid bracket " + bracket + ".");
+        }
+        return (status * 2 + (aged ? 1 : 0)) * brackets + bracket + 1;
+    }
+
+    /**
+     * Add the results of one record.
+     *
+     * @param filingStatus   The filing status.
+     * @param age            The age of the filer.
+     * @param taxableIncome  The taxable income.
+     * @param taxDue         The tax due.
+     * @param returnRequired Whether a return is required.
+     * @throws IllegalArgumentException Thrown if the filing status is unknown.
+     */
+    public void add(int filingStatus, int age, double taxableIncome, double taxDue, boolean returnRequired) {
+        int bracket = rules.schedule(filingStatus).bracketOf(taxableIncome);
+        int group = group(filingStatus, age >= TaxYear.AGED, bracket);
+        int sum = group * SUMS;
+        add(sum + TAX_DUE, taxDue);
+        add(sum + TAXABLE_INCOME, taxableIncome);
+        int count = group * COUNTS;
+        counts[count + RECORDS]++;
+        if (returnRequired) {
+            counts[count + RETURNS_REQUIRED]++;
+        }
+    }
+
+    /**
+     * Add the computed results of a range of records in a batch.
+     *
+     * @param batch The computed batch.
+     * @param from  The first record, inclusive.
+     * @param to    The last record, exclusive.
+     * @throws IllegalArgumentException Thrown if a record has an unknown
+     *                                  filing status.
+     */
+    public void add(TaxBatch batch, int from, int to) {
+        batch.checkRange(from, to);
+        int[] filingStatus = batch.getFilingStatus();
+        int[] age = batch.getAge();
+        double[] taxableIncome = batch.getTaxableIncome();
+        double[] taxDue = batch.getTaxDue();
+        boolean[] returnRequired = batch.getReturnRequired();
+        for (int index = from; index < to; index++) {
+            add(filingStatus[index], age[index], taxableIncome[index], taxDue[index], returnRequired[index]);
+        }
+    }
+
+    /**
+     * Add the records of a batch streamed from a file, skipping the records
+     * with errors.
+     */
+    @Override
+    public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) {
+        int[] filingStatus = batch.getFilingStatus();
+        int[] age = batch.getAge();
+        double[] taxableIncome = batch.getTaxableIncome();
+        double[] taxDue = batch.getTaxDue();
+        boolean[] returnRequired = batch.getReturnRequired();
+        for (int index = 0; index < count; index++) {
+            if (errors[index] == TaxpayerValidator.VALID) {
+                add(filingStatus[index], age[index], taxableIncome[index], taxDue[index], returnRequired[index]);
+            }
+        }
+    }
+
+    /**
+     * Add a value to a compensated sum.
+     */
+    private void add(int index, double value) {
+        double sum = sums[index];
+        double total = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            sums[index + 1] += (sum - total) + value;
+        } else {
+            sums[index + 1] += (value - total) + sum;
+        }
+        sums[index] = total;
+    }
+
+    /**
+     * Add the groups of another aggregator to this one.
+     *
+     * @param other The aggregator to add.
+     * @return This aggregator.
+     * @throws IllegalArgumentException Thrown if the other aggregator has
+     *                                  different groups: it is for another
+     *                                  tax year, or its brackets have other
+     *                                  floors.
+     */
+    public TaxAggregator merge(TaxAggregator other) {
+        if (!hasSameGroups(other)) {
+            throw new IllegalArgumentException("The aggregators have different groups.");
+        }
+        for (int index = 0; index < sums.length; index += 2) {
+            add(index, other.sums[index]);
+            add(index, other.sums[index + 1]);
+        }
+        for (int index = 0; index < counts.length; index++) {
+            counts[index] += other.counts[index];
+        }
+        return this;
+    }
+
+    /**
+     * Check whether another aggregator groups records the same way. The
+     * rates of the brackets may differ, since they do not change the group of
+     * a record.
+     */
+    private boolean hasSameGroups(TaxAggregator other) {
+        if ((other.rules.getYear() != rules.getYear()) || (other.brackets != brackets)) {
+            return false;
+        }
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            TaxSchedule schedule = rules.schedule(-status);
+            TaxSchedule otherSchedule = other.rules.schedule(-status);
+            if (otherSchedule.getBracketCount() != schedule.getBracketCount()) {
+                return false;
+            }
+            for (int bracket = 0; bracket < schedule.getBracketCount(); bracket++) {
+                if (otherSchedule.getFloor(bracket) != schedule.getFloor(bracket)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of groups.
+     */
+    public int getGroups() {
+        return counts.length / COUNTS;
+    }
+
+    /**
+     * @param group The group.
+     * @return The filing status of the group.
+     */
+    public int getFilingStatus(int group) {
+        return -(group / brackets / 2);
+    }
+
+    /**
+     * @param group The group.
+     * @return Whether the filers of the group are 65 or older.
+     */
+    public boolean isAged(int group) {
+        return ((group / brackets) & 1) != 0;
+    }
+
+    /**
+     * @param group The group.
+     * @return The highest bracket reached by the group, or -1 for no tax.
+     */
+    public int getBracket(int group) {
+        return group % brackets - 1;
+    }
+
+    /**
+     * @param group The group.
+     * @return The number of records in the group.
+     */
+    public long getRecords(int group) {
+        return counts[group * COUNTS + RECORDS];
+    }
+
+    /**
+     * @param group The group.
+     * @return The number of records in the group for which a return is
+     * required.
+     */
+    public long getReturnsRequired(int group) {
+        return counts[group * COUNTS + RETURNS_REQUIRED];
+    }
+
+    /**
+     * @param group The group.
+     * @return The sum of the tax due of the group.
+     */
+    public double getTaxDue(int group) {
+        int index = group * SUMS + TAX_DUE;
+        return sums[index] + sums[index + 1];
+    }
+
+    /**
+     * @param group The group.
+     * @return The sum of the taxable income of the group.
+     */
+    public double getTaxableIncome(int group) {
+        int index = group * SUMS + TAXABLE_INCOME;
+        return sums[index] + sums[index + 1];
+    }
+
+    /**
+     * @return One line per group with records, as
+     * {@code status,aged,bracket,records,returnsRequired,taxDue,taxableIncome}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int group = 0; group < getGroups(); group++) {
+            if (getRecords(group) > 0) {
+                builder.append(getFilingStatus(group)).append(',').append(isAged(group)).append(',')
+                        .append(getBracket(group)).append(',').append(getRecords(group)).append(',')
+                        .append(getReturnsRequired(group)).append(',').append(getTaxDue(group)).append(',')
+                        .append(getTaxableIncome(group)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+}
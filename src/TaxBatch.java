@@ -0,0 +1,253 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * This class computes taxes over columns of primitive values instead of one
+ * {@link TaxCalculator} per taxpayer. The caller provides both the input
+ * columns and the output columns, and record i of every column belongs to
+ * the same taxpayer. Each record is computed by
+ * {@link TaxYear#compute(int, int, int, double)}, like every other path that
+ * computes a single record; once the loop is compiled, escape analysis removes
+ * the result object, so nothing is allocated per record.
+ * <p>
+ * Inputs are not validated the way the calculator constructors validate
+ * them; a filing status or age that a constructor would reject is computed
+ * as-is. A gross income is normalized the same way
+ * {@link TaxCalculatorInterface#setGrossIncome(double)} normalizes it for a
+ * new calculator. The batch uses the tax tables of {@link #getTaxYear()},
+ * looked up once per call, so every record of a call is computed with the same
+ * rules even if new rules are published meanwhile.
+ * <p>
+ * {@link #computeVectorized(int, int)} uses the Java Vector API kernel in
+ * TaxBatchVector when the jdk.incubator.vector module is available (run with
+ * {@code --add-modules jdk.incubator.vector}) and the scalar loop otherwise.
+ * Both produce bit-identical results.
+ */
+public final class TaxBatch {
+
+    /**
+     * The vectorized kernel, or null if the Vector API is not available.
+     */
+    private static final MethodHandle VECTOR_KERNEL = findVectorKernel();
+
+    private final int[] filingStatus;
+    private final int[] age;
+    private final int[] spouseAge;
+    private final double[] grossIncome;
+
+    private final double[] standardDeduction;
+    private final double[] taxableIncome;
+    private final double[] taxDue;
+    private final double[] netTaxRate;
+    private final boolean[] returnRequired;
+
+    private int taxYear = TaxYearRegistry.DEFAULT_YEAR; // The year of the tax tables.
+
+    /**
+     * @param filingStatus      The filing status of each taxpayer.
+     * @param age               The age of each taxpayer.
+     * @param spouseAge         The age of each spouse, 0 if there is none.
+     * @param grossIncome       The gross income of each taxpayer.
+     * @param standardDeduction Receives the standard deduction.
+     * @param taxableIncome     Receives the taxable income.
+     * @param taxDue            Receives the tax due.
+     * @param netTaxRate        Receives the net tax rate.
+     * @param returnRequired    Receives whether a return is required.
+     * @throws IllegalArgumentException Thrown if the columns are not all the
+     *                                  same length.
+     */
+    public TaxBatch(int[] filingStatus, int[] age, int[] spouseAge, double[] grossIncome,
+                    double[] standardDeduction, double[] taxableIncome, double[] taxDue,
+                    double[] netTaxRate, boolean[] returnRequired) {
+        int size = filingStatus.length;
+        if ((age.length != size) || (spouseAge.length != size) || (grossIncome.length != size)
+                || (standardDeduction.length != size) || (taxableIncome.length != size)
+                || (taxDue.length != size) || (netTaxRate.length != size)
+                || (returnRequired.length != size)) {
+            throw new IllegalArgumentException("All columns must be the same length.");
+        }
+        this.filingStatus = filingStatus;
+        this.age = age;
+        this.spouseAge = spouseAge;
+        this.grossIncome = grossIncome;
+        this.standardDeduction = standardDeduction;
+        this.taxableIncome = taxableIncome;
+        this.taxDue = taxDue;
+        this.netTaxRate = netTaxRate;
+        this.returnRequired = returnRequired;
+    }
+
+    /**
+     * @return The number of records in the batch.
+     */
+    public int size() {
+        return filingStatus.length;
+    }
+
+    /**
+     * Compute every record in the batch.
+     */
+    public void compute() {
+        compute(0, size());
+    }
+
+    /**
+     * Compute a range of records in the batch.
+     *
+     * @param from The first record to compute, inclusive.
+     * @param to   The last record to compute, exclusive.
+     * @throws IndexOutOfBoundsException Thrown if the range is outside the batch.
+     */
+    public void compute(int from, int to) {
+        TaxBatchEvent event = new TaxBatchEvent();
+        event.begin();
+        TaxYear rules = getRules();
+        compute(rules, from, to);
+        TaxMetrics.batchRun(event, rules.getYear(), to - from, false);
+    }
+
+    /**
+     * Compute a range of records in the batch with the given rules.
+     */
+    void compute(TaxYear rules, int from, int to) {
+        checkRange(from, to);
+        for (int index = from; index < to; index++) {
+            TaxResultCache.Result result = rules.compute(filingStatus[index], age[index], spouseAge[index],
+                    grossIncome[index]);
+            standardDeduction[index] = result.getStandardDeduction();
+            taxableIncome[index] = result.getTaxableIncome();
+            taxDue[index] = result.getTaxDue();
+            netTaxRate[index] = result.getNetTaxRate();
+            returnRequired[index] = result.isReturnRequired();
+        }
+    }
+
+    /**
+     * Compute every record in the batch with the vectorized kernel if it is
+     * available.
+     */
+    public void computeVectorized() {
+        computeVectorized(0, size());
+    }
+
+    /**
+     * Compute a range of records in the batch with the vectorized kernel if it
+     * is available.
+     *
+     * @param from The first record to compute, inclusive.
+     * @param to   The last record to compute, exclusive.
+     * @throws IndexOutOfBoundsException Thrown if the range is outside the batch.
+     */
+    public void computeVectorized(int from, int to) {
+        TaxBatchEvent event = new TaxBatchEvent();
+        event.begin();
+        TaxYear rules = getRules();
+        computeVectorized(rules, from, to);
+        TaxMetrics.batchRun(event, rules.getYear(), to - from, true);
+    }
+
+    /**
+     * Compute a range of records in the batch with the given rules and the
+     * vectorized kernel if it is available.
+     */
+    void computeVectorized(TaxYear rules, int from, int to) {
+        if (VECTOR_KERNEL == null) {
+            compute(rules, from, to);
+            return;
+        }
+        try {
+            VECTOR_KERNEL.invokeExact(this, rules, from, to);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return true if {@link #computeVectorized(int, int)} uses the Vector API.
+     */
+    public static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
+    }
+
+    private static MethodHandle findVectorKernel() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            Class<?> kernel = Class.forName(TaxBatch.class.getName() + "Vector");
+            return MethodHandles.lookup().findStatic(kernel, "compute",
+                    MethodType.methodType(void.class, TaxBatch.class, TaxYear.class, int.class, int.class));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The year of the tax tables used by the batch.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * @param taxYear The year of the tax tables to use.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     */
+    public void setTaxYear(int taxYear) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.taxYear = taxYear;
+    }
+
+    /**
+     * @return The rules of the tax year used by the batch.
+     */
+    TaxYear getRules() {
+        return TaxYearRegistry.forYear(taxYear);
+    }
+
+    void checkRange(int from, int to) {
+        if ((from < 0) || (to > size()) || (from > to)) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to
+                    + " for a batch of " + size() + ".");
+        }
+    }
+
+    public int[] getFilingStatus() {
+        return filingStatus;
+    }
+
+    public int[] getAge() {
+        return age;
+    }
+
+    public int[] getSpouseAge() {
+        return spouseAge;
+    }
+
+    public double[] getGrossIncome() {
+        return grossIncome;
+    }
+
+    public double[] getStandardDeduction() {
+        return standardDeduction;
+    }
+
+    public double[] getTaxableIncome() {
+        return taxableIncome;
+    }
+
+    public double[] getTaxDue() {
+        return taxDue;
+    }
+
+    public double[] getNetTaxRate() {
+        return netTaxRate;
+    }
+
+    public boolean[] getReturnRequired() {
+        return returnRequired;
+    }
+}
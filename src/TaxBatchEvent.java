@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR event of a {@link TaxBatch} run, from the start to the end of the
+ * computation.
+ */
+@Name("tax.BatchRun")
+@Label("Tax Batch Run")
+@Category("Tax")
+@Description("The computation of a range of records of a tax batch.")
+final class TaxBatchEvent extends Event {
+
+    @Label("Tax Year")
+    int taxYear;
+
+    @Label("Records")
+    int records;
+
+    @Label("Vectorized")
+    boolean vectorized;
+}
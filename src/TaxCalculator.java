@@ -4,36 +4,22 @@
  * @author schilling This class will calculate a users tax bill based upon their
  * gross income and their status. It assumes no dependents and the user
  * only uses the standard deduction (i.e. no itemization.) It is based
- * upon the 2008 tax tables.
+ * upon the tax tables of a year in {@link TaxYearRegistry}, 2008 unless
+ * another year is given.
+ * <p>
+ * The results are cached as described in {@link AbstractTaxCalculator}, which
+ * holds everything but the filing status.
  */
-public class TaxCalculator implements TaxCalculatorInterface {
-    private String name; // This holds the name of the tax payer.
+public class TaxCalculator extends AbstractTaxCalculator {
     private int filingStatus; // This holds the filing status of the tax payer.
-    private int age; // This is the age of the tax payer.
-    private int spouseAge; // This is the age of the spouse.
-    private double grossIncome; // This is the gross income for the taxpayer.
 
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-
-        if (name.length() <= 0) {
-            throw new IllegalArgumentException(
-                    "Name must be longer than 0 characters in length. ");
-        }
-
-        // Check to make certain that a first and last name is provided.
-        if (name.split("\\s+").length < 2) {
-            throw new IllegalArgumentException(
-                    "Name must have at least a first and last name.");
-        }
-
-        this.name = name;
+    private TaxCalculator(String name, int age) {
+        setName(name);
+        setAge(age);
     }
 
-    private TaxCalculator(String name, int age) {
+    private TaxCalculator(int taxYear, String name, int age) {
+        setTaxYear(taxYear);
         setName(name);
         setAge(age);
     }
@@ -60,7 +46,6 @@ public class TaxCalculator implements TaxCalculatorInterface {
         // Set the appropriate attributes of the class.
 
         setFilingStatusSingle(filingStatus);
-
     }
 
     /**
@@ -84,148 +69,52 @@ public class TaxCalculator implements TaxCalculatorInterface {
         setSpouseAge(spouseAge);
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getStandardDeduction()
+    /**
+     * @param taxYear      This is the year of the tax tables to use. It must be
+     *                     supported by {@link TaxYearRegistry}.
+     * @param name         This is the name of the taxpayer. It must be a non-empty
+     *                     string.
+     * @param age          This is the age of the taxpayer. Must be greater than 0 years.
+     * @param filingStatus This is the filing status for the person. Single, Head of
+     *                     Household, and Qualifying widower may use this constructor.
+     * @throws IllegalArgumentException An exception will be thrown if the tax year is not
+     *                                  supported, or for any of the reasons given by
+     *                                  {@link #TaxCalculator(String, int, int)}.
      */
-    public double getStandardDeduction() {
-        double baseStandardDeduction = 0;
-        // Based on the filing status, select the right value with the case
-        // statement.
-        switch (this.filingStatus) {
-            case SINGLE:
-                baseStandardDeduction = 5450;
-                // If the filer is older than 65, the standard deduction increases
-                // as
-                // well.
-                if (age >= 65) {
-                    baseStandardDeduction += 1050;
-                }
-
-                break;
-            case MARRIED_FILING_JOINTLY:
-                baseStandardDeduction = 10900;
-                // If the filer is older than 65, the standard deduction increases
-                // as
-                // well.
-                if ((age >= 65) && (this.spouseAge >= 65)) {
-                    baseStandardDeduction += 2100;
-                } else if ((age < 65) && (this.spouseAge >= 65)) {
-                    baseStandardDeduction += 1050;
-                } else if ((age >= 65) && (this.spouseAge < 65)) {
-                    baseStandardDeduction += 1050;
-                } else {
-                    // Add nothing extra.
-                }
-                break;
-            case QUALIFYING_WIDOWER:
-                baseStandardDeduction = 10900;
-                // If the filer is older than 65, the standard deduction increases
-                // as
-                // well.
-                if (age >= 65) {
-                    baseStandardDeduction += 1050;
-                }
-                break;
-            case MARRIED_FILING_SEPARATELY:
-                baseStandardDeduction = 5450;
-                // If the filer is older than 65, the standard deduction increases
-                // as
-                // well.
-                if (age >= 65) {
-                    baseStandardDeduction += 1050;
-                }
-                break;
-            case HEAD_OF_HOUSEHOLD:
-                baseStandardDeduction = 8000;
-                // If the filer is older than 65, the standard deduction increases
-                // as
-                // well.
-                if (age >= 65) {
-                    baseStandardDeduction += 1050;
-                }
-                break;
-            default:
-                break;
-        }
+    public TaxCalculator(int taxYear, String name, int age, int filingStatus) {
+        this(taxYear, name, age);
+        setFilingStatusSingle(filingStatus);
+    }
 
-        return baseStandardDeduction;
+    /**
+     * @param taxYear      This is the year of the tax tables to use. It must be
+     *                     supported by {@link TaxYearRegistry}.
+     * @param name         This is the name of the taxpayer. It must be a non-empty
+     *                     string.
+     * @param age          This is the age of the taxpayer. Must be greater than 0 years.
+     * @param filingStatus This is the filing status for the person. Single, Head of
+     *                     Household, and Qualifying widower may not use this
+     *                     constructor.
+     * @param spouseAge    This is the age of the spouse. Must be greater than 0 years
+     *                     old.
+     * @throws IllegalArgumentException An exception will be thrown if the tax year is not
+     *                                  supported, or for any of the reasons given by
+     *                                  {@link #TaxCalculator(String, int, int, int)}.
+     */
+    public TaxCalculator(int taxYear, String name, int age, int filingStatus, int spouseAge) {
+        this(taxYear, name, age);
+        setFilingStatusMarried(filingStatus);
+        setSpouseAge(spouseAge);
     }
 
-    /*
-     * (non-Javadoc)
+    /**
+     * Take an immutable snapshot of this calculator, which can be shared
+     * between threads.
      *
-     * @see TaxCalculatorInterface#isReturnRequired()
+     * @return The profile of the taxpayer, with the current gross income.
      */
-    public boolean isReturnRequired() {
-
-        double currentThreshold;
-
-        if (age < 65) {
-            switch (this.filingStatus) {
-
-                case SINGLE:
-                    currentThreshold = 8950;
-                    break;
-
-                case HEAD_OF_HOUSEHOLD:
-                    currentThreshold = 11500;
-                    break;
-
-                case MARRIED_FILING_JOINTLY:
-                    currentThreshold = 17900;
-                    break;
-
-                case MARRIED_FILING_SEPARATELY:
-                    currentThreshold = 3500;
-                    break;
-
-                case QUALIFYING_WIDOWER:
-                    currentThreshold = 14400;
-                    break;
-                default:
-                    currentThreshold = Double.MAX_VALUE;
-            }
-
-        } else {
-            switch (this.filingStatus) {
-
-                case SINGLE:
-                    currentThreshold = 10300;
-                    break;
-
-                case HEAD_OF_HOUSEHOLD:
-                    currentThreshold = 12850;
-                    break;
-
-                case MARRIED_FILING_JOINTLY:
-                    currentThreshold = 20000;
-                    break;
-
-                case MARRIED_FILING_SEPARATELY:
-                    currentThreshold = 3500;
-                    break;
-
-                case QUALIFYING_WIDOWER:
-                    currentThreshold = 15450;
-                    break;
-                default:
-                    currentThreshold = Double.MAX_VALUE;
-            }
-        }
-        // Adjust for married filing jointly exceptions. */
-        if (this.filingStatus == TaxCalculatorInterface.MARRIED_FILING_JOINTLY) {
-            if ((age >= 65) && (spouseAge >= 65)) {
-                currentThreshold = 20000;
-            } else if (((age < 65) && (spouseAge >= 65))
-                    || ((age >= 65) && (spouseAge < 65))) {
-                currentThreshold = 18950;
-            } else {
-                currentThreshold = 17900;
-            }
-        }
-        return !(this.grossIncome < currentThreshold);
+    public TaxProfile toProfile() {
+        return TaxProfile.of(getTaxYear(), this);
     }
 
     /*
@@ -237,160 +126,15 @@ public class TaxCalculator implements TaxCalculatorInterface {
         return filingStatus;
     }
 
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getAge()
-     */
-    public int getAge() {
-        return age;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getSpouseAge()
-     */
-    public int getSpouseAge() {
-        return spouseAge;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getGrossIncome()
-     */
-    public double getGrossIncome() {
-        return grossIncome;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getTaxableIncome()
-     */
-    public double getTaxableIncome() {
-        double taxableIncome;
-        taxableIncome = this.grossIncome - this.getStandardDeduction();
-
-        if (this.grossIncome - this.getStandardDeduction() > 0) {
-            taxableIncome = this.grossIncome - this.getStandardDeduction();
-        } else if (this.grossIncome - this.getStandardDeduction() < 0) {
-            taxableIncome = 0.0;
-        } else if (this.grossIncome - this.getStandardDeduction() == 0) {
-            taxableIncome = 0.0;
-        } else {
-            // A really strange thing has happened. I do not know what to do.
-            taxableIncome = Double.NEGATIVE_INFINITY;
-        }
-        return taxableIncome;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#setGrossIncome(double)
-     */
-    public void setGrossIncome(double grossIncome) {
-        if (grossIncome < 0.0000001) {
-            this.grossIncome = 0.0;
-        } else if (grossIncome > 0.0) {
-            this.grossIncome = grossIncome;
-        }
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see TaxCalculatorInterface#getTaxDue()
-     */
-    public double getTaxDue() {
-        double taxRate[] = {.1, .15, .25, .28, .33, .35};
-        double taxTable[] = {0, 8025, 32550, 78850, 164550, 357700, 0, 11450,
-                43650, 112650, 182400, 357700, 0, 16050, 65100, 131450, 200300,
-                357700, 0, 8025, 32550, 65725, 100150, 178850, 0, 16050, 65100,
-                131450, 200300, 357700};
-
-        int startingOffset;
-
-        switch (this.filingStatus) {
-            case SINGLE:
-                startingOffset = 0;
-                break;
-            case HEAD_OF_HOUSEHOLD:
-                startingOffset = 6;
-                break;
-            case MARRIED_FILING_JOINTLY:
-                startingOffset = 12;
-                break;
-            case QUALIFYING_WIDOWER:
-                startingOffset = 24;
-                break;
-            case MARRIED_FILING_SEPARATELY:
-                startingOffset = 18;
-                break;
-            default:
-                startingOffset = 0;
-        }
-
-        int index = 5;
-        double remainingTaxableSalary = this.getTaxableIncome();
-        double totalTax = 0.00;
-
-        while (index >= 0) {
-            if (remainingTaxableSalary > taxTable[startingOffset + index]) {
-                totalTax += (remainingTaxableSalary - taxTable[startingOffset
-                        + index])
-                        * taxRate[index];
-                remainingTaxableSalary = taxTable[startingOffset + index];
-            }
-            index--;
-        }
-
-        return totalTax;
-    }
-
-    @Override
-    public double getNetTaxRate() {
-        if (this.getGrossIncome() > 0) {
-            return this.getTaxDue() / this.getGrossIncome();
-        } else {
-            return 0.0;
-        }
-    }
-
     private void setFilingStatusSingle(int filingStatus) {
         // Check that the filing status is valid for a person who does not have
         // a spouse.
-        if ((filingStatus != SINGLE) && (filingStatus != HEAD_OF_HOUSEHOLD)
-                && (filingStatus != QUALIFYING_WIDOWER)) {
-            throw new IllegalArgumentException("Invalid filing status for this constructor.");
-        }
+        TaxpayerValidator.check(TaxpayerValidator.validateSingleFilingStatus(filingStatus));
         this.filingStatus = filingStatus;
     }
 
     private void setFilingStatusMarried(int filingStatus) {
-
-        if ((filingStatus != MARRIED_FILING_JOINTLY)
-                && (filingStatus != MARRIED_FILING_SEPARATELY)) {
-            throw new IllegalArgumentException("Invalid filing status for this constructor.");
-        }
-
+        TaxpayerValidator.check(TaxpayerValidator.validateMarriedFilingStatus(filingStatus));
         this.filingStatus = filingStatus;
     }
-
-    private void setAge(int age) {
-        if (age <= 0) {
-            throw new IllegalArgumentException("Invalid Age.");
-        }
-        this.age = age;
-    }
-
-    private void setSpouseAge(int spouseAge) {
-        // Check that the spouse age is valid.
-        if (spouseAge <= 0) {
-            throw new IllegalArgumentException("Invalid Age.");
-        }
-        this.spouseAge = spouseAge;
-    }
 }
@@ -0,0 +1,212 @@
+/**
+ * This class creates calculators specialized for their filing status. The
+ * filing status never changes after construction, so instead of the generic
+ * {@link TaxCalculator}, which passes its status field to every rule, each
+ * status gets its own final class that passes the status as a constant. Once
+ * a call site only sees one of those classes, the JIT inlines the getter and
+ * folds the status lookups of the rules away.
+ * <p>
+ * Only the status is folded. The rules of the year are still looked up in
+ * {@link TaxYearRegistry} by every getter, one volatile read, so that rules
+ * published at runtime are seen by the next call as they are by
+ * {@link TaxCalculator}. The schedule of brackets is therefore a load from the
+ * rules of the year, not a constant the JIT can fold into the getter.
+ * <p>
+ * The calculators validate their parameters exactly like the
+ * {@link TaxCalculator} constructors, with the same messages, and return
+ * bit-identical results: apart from the filing status, they share the state,
+ * caching and metrics of TaxCalculator through {@link AbstractTaxCalculator}.
+ * <p>
+ * Specialization is a trade: a call site that sees calculators of every
+ * status becomes megamorphic, which costs more than the status lookups it
+ * saves. Prefer these calculators where traffic of one status goes through
+ * its own code path.
+ */
+public final class TaxCalculators {
+
+    private TaxCalculators() {
+    }
+
+    /**
+     * Create a calculator for a taxpayer without a spouse.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Single, Head of Household or Qualifying widower.
+     * @return The calculator.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int)}.
+     */
+    public static TaxCalculatorInterface create(String name, int age, int filingStatus) {
+        return create(TaxYearRegistry.DEFAULT_YEAR, name, age, filingStatus);
+    }
+
+    /**
+     * Create a calculator for a married taxpayer.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Married filing jointly or separately.
+     * @param spouseAge    The age of the spouse.
+     * @return The calculator.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int, int)}.
+     */
+    public static TaxCalculatorInterface create(String name, int age, int filingStatus, int spouseAge) {
+        return create(TaxYearRegistry.DEFAULT_YEAR, name, age, filingStatus, spouseAge);
+    }
+
+    /**
+     * Create a calculator for a taxpayer without a spouse.
+     *
+     * @param taxYear      The year of the tax tables to use.
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Single, Head of Household or Qualifying widower.
+     * @return The calculator.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(int, String, int, int)}.
+     */
+    public static TaxCalculatorInterface create(int taxYear, String name, int age, int filingStatus) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateSingleFilingStatus(filingStatus));
+        switch (filingStatus) {
+            case TaxCalculatorInterface.SINGLE:
+                return new Single(taxYear, name, age);
+            case TaxCalculatorInterface.HEAD_OF_HOUSEHOLD:
+                return new HeadOfHousehold(taxYear, name, age);
+            default:
+                return new QualifyingWidower(taxYear, name, age);
+        }
+    }
+
+    /**
+     * Create a calculator for a married taxpayer.
+     *
+     * @param taxYear      The year of the tax tables to use.
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Married filing jointly or separately.
+     * @param spouseAge    The age of the spouse.
+     * @return The calculator.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(int, String, int, int, int)}.
+     */
+    public static TaxCalculatorInterface create(int taxYear, String name, int age, int filingStatus,
+                                                int spouseAge) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateMarriedFilingStatus(filingStatus));
+        TaxpayerValidator.check(TaxpayerValidator.validateSpouseAge(spouseAge));
+        if (filingStatus == TaxCalculatorInterface.MARRIED_FILING_JOINTLY) {
+            return new MarriedFilingJointly(taxYear, name, age, spouseAge);
+        }
+        return new MarriedFilingSeparately(taxYear, name, age, spouseAge);
+    }
+
+    /**
+     * The constructor shared by the specialized calculators, which take
+     * everything else from {@link AbstractTaxCalculator} and only return
+     * their status from a final {@link #getFilingStatus()}. The parameters are
+     * validated by the factory methods.
+     */
+    abstract static class Specialized extends AbstractTaxCalculator {
+
+        Specialized(int taxYear, String name, int age, int spouseAge) {
+            setTaxYear(taxYear);
+            setName(name);
+            setAge(age);
+            if (spouseAge != 0) {
+                setSpouseAge(spouseAge);
+            }
+        }
+    }
+
+    /**
+     * A calculator for the single filing status.
+     */
+    static final class Single extends Specialized {
+
+        private static final int STATUS = TaxCalculatorInterface.SINGLE;
+
+        Single(int taxYear, String name, int age) {
+            super(taxYear, name, age, 0);
+        }
+
+        @Override
+        public int getFilingStatus() {
+            return STATUS;
+        }
+    }
+
+    /**
+     * A calculator for the head of household filing status.
+     */
+    static final class HeadOfHousehold extends Specialized {
+
+        private static final int STATUS = TaxCalculatorInterface.HEAD_OF_HOUSEHOLD;
+
+        HeadOfHousehold(int taxYear, String name, int age) {
+            super(taxYear, name, age, 0);
+        }
+
+        @Override
+        public int getFilingStatus() {
+            return STATUS;
+        }
+    }
+
+    /**
+     * A calculator for the married filing jointly filing status.
+     */
+    static final class MarriedFilingJointly extends Specialized {
+
+        private static final int STATUS = TaxCalculatorInterface.MARRIED_FILING_JOINTLY;
+
+        MarriedFilingJointly(int taxYear, String name, int age, int spouseAge) {
+            super(taxYear, name, age, spouseAge);
+        }
+
+        @Override
+        public int getFilingStatus() {
+            return STATUS;
+        }
+    }
+
+    /**
+     * A calculator for the married filing separately filing status.
+     */
+    static final class MarriedFilingSeparately extends Specialized {
+
+        private static final int STATUS = TaxCalculatorInterface.MARRIED_FILING_SEPARATELY;
+
+        MarriedFilingSeparately(int taxYear, String name, int age, int spouseAge) {
+            super(taxYear, name, age, spouseAge);
+        }
+
+        @Override
+        public int getFilingStatus() {
+            return STATUS;
+        }
+    }
+
+    /**
+     * A calculator for the qualifying widower filing status.
+     */
+    static final class QualifyingWidower extends Specialized {
+
+        private static final int STATUS = TaxCalculatorInterface.QUALIFYING_WIDOWER;
+
+        QualifyingWidower(int taxYear, String name, int age) {
+            super(taxYear, name, age, 0);
+        }
+
+        @Override
+        public int getFilingStatus() {
+            return STATUS;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * This class holds the fixed-point arithmetic of the integer cents engine.
+ * Money is a long number of cents and a rate is an int number of basis points
+ * (1/100 of a percent), so every sum of money is exact.
+ * <p>
+ * The rounding rules are:
+ * <ul>
+ * <li>A dollar amount becomes the nearest whole number of cents, ties to
+ * even, of the dollar amount multiplied by 100 in double precision.</li>
+ * <li>A rate must be a whole number of basis points.</li>
+ * <li>The tax on a taxable income is summed exactly in units of cents times
+ * basis points over every bracket and then rounded once to the nearest cent,
+ * ties to even.</li>
+ * </ul>
+ * Amounts whose tax in those units does not fit a long, which is past about
+ * 9 trillion dollars of taxable income, throw an {@link ArithmeticException}.
+ */
+public final class TaxCents {
+
+    /**
+     * The number of cents in a dollar.
+     */
+    public static final int CENTS_PER_DOLLAR = 100;
+
+    /**
+     * The number of basis points in a rate of 1.
+     */
+    public static final int BASIS_POINTS = 10000;
+
+    /**
+     * The largest dollar amount that is converted to cents, past which a
+     * double no longer holds every cent.
+     */
+    private static final double MAX_DOLLARS = (1L << 53) / (double) CENTS_PER_DOLLAR;
+
+    private TaxCents() {
+    }
+
+    /**
+     * Convert a dollar amount to cents.
+     *
+     * @param dollars The dollar amount.
+     * @return The nearest number of cents, ties to even.
+     * @throws IllegalArgumentException Thrown if the amount is not a number or
+     *                                  is too large to hold every cent.
+     */
+    public static long toCents(double dollars) {
+        if (!(Math.abs(dollars) <= MAX_DOLLARS)) {
+            throw new IllegalArgumentException("Invalid dollar amount " + dollars + ".");
+        }
+        return (long) Math.rint(dollars * CENTS_PER_DOLLAR);
+    }
+
+    /**
+     * Convert cents to dollars.
+     *
+     * @param cents The number of cents.
+     * @return The dollar amount.
+     */
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+
+    /**
+     * Convert a rate to basis points.
+     *
+     * @param rate The rate, such as .15 for 15%.
+     * @return The rate in basis points.
+     * @throws IllegalArgumentException Thrown if the rate is not a whole number
+     *                                  of basis points.
+     */
+    public static int toBasisPoints(double rate) {
+        double basisPoints = rate * BASIS_POINTS;
+        long rounded = Math.round(basisPoints);
+        if (!(Math.abs(basisPoints - rounded) < 1e-6) || (Math.abs(rounded) > BASIS_POINTS)) {
+            throw new IllegalArgumentException("Rate " + rate + " is not a whole number of basis points.");
+        }
+        return (int) rounded;
+    }
+
+    /**
+     * Divide and round to the nearest integer, ties to even.
+     *
+     * @param dividend The dividend.
+     * @param divisor  The divisor. Must be positive.
+     * @return The rounded quotient.
+     */
+    static long divideHalfEven(long dividend, long divisor) {
+        long quotient = Math.floorDiv(dividend, divisor);
+        long twiceRemainder = 2 * Math.floorMod(dividend, divisor);
+        if ((twiceRemainder > divisor) || ((twiceRemainder == divisor) && ((quotient & 1) != 0))) {
+            quotient++;
+        }
+        return quotient;
+    }
+
+    /**
+     * Normalize a gross income the way
+     * {@link TaxCalculatorInterface#setGrossIncome(double)} does for a new
+     * calculator: anything below a cent is no income.
+     *
+     * @param grossIncome The gross income in cents.
+     * @return The gross income in cents, never less than 0.
+     */
+    public static long grossIncome(long grossIncome) {
+        return (grossIncome > 0) ? grossIncome : 0;
+    }
+
+    /**
+     * Calculate the taxable income. It is never less than 0.
+     *
+     * @param grossIncome       The gross income in cents.
+     * @param standardDeduction The standard deduction in cents.
+     * @return The taxable income in cents.
+     */
+    public static long taxableIncome(long grossIncome, long standardDeduction) {
+        return Math.max(grossIncome - standardDeduction, 0);
+    }
+
+    /**
+     * Calculate the net tax rate.
+     *
+     * @param grossIncome The gross income in cents.
+     * @param taxDue      The tax due in cents.
+     * @return The tax due divided by the gross income, or 0 without income.
+     */
+    public static double netTaxRate(long grossIncome, long taxDue) {
+        return (grossIncome > 0) ? (double) taxDue / grossIncome : 0.0;
+    }
+}
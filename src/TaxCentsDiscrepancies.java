@@ -0,0 +1,166 @@
+/**
+ * This class reports where the integer cents engine and the double engine
+ * disagree on a batch. Both engines compute the same taxpayers with the same
+ * rules, every double result is rounded to the nearest cent with
+ * {@link TaxCents#toCents(double)}, and a record differs if any of its results
+ * then differs from the cents result.
+ * <p>
+ * The differing fields of a record are reported as a bit mask, like the
+ * validation errors of {@link TaxpayerValidator}. Every differing record is
+ * counted, but only the first ones, up to a limit, are kept.
+ */
+public final class TaxCentsDiscrepancies {
+
+    /**
+     * The standard deduction differs.
+     */
+    public static final int STANDARD_DEDUCTION = 1;
+
+    /**
+     * The taxable income differs.
+     */
+    public static final int TAXABLE_INCOME = 1 << 1;
+
+    /**
+     * The tax due differs.
+     */
+    public static final int TAX_DUE = 1 << 2;
+
+    /**
+     * Whether a return is required differs.
+     */
+    public static final int RETURN_REQUIRED = 1 << 3;
+
+    private final int[] records; // The first differing records.
+    private final int[] fields; // The differing fields of each kept record.
+    private int kept; // The number of kept records.
+    private long differing; // The number of differing records.
+    private long maxTaxDifference; // The largest tax difference in cents.
+    private double doubleTaxTotal; // The sum of the double tax due.
+    private long centsTaxTotal; // The sum of the cents tax due.
+
+    private TaxCentsDiscrepancies(int limit) {
+        this.records = new int[limit];
+        this.fields = new int[limit];
+    }
+
+    /**
+     * Compute a batch with both engines and compare the results. The output
+     * columns of the batch receive the double results.
+     *
+     * @param batch The batch to compute.
+     * @param limit The largest number of differing records to keep.
+     * @return The discrepancies.
+     * @throws IllegalArgumentException Thrown if the limit is negative or an
+     *                                  income cannot be converted to cents.
+     */
+    public static TaxCentsDiscrepancies compare(TaxBatch batch, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Invalid limit.");
+        }
+        TaxYear rules = batch.getRules();
+        batch.computeVectorized(rules, 0, batch.size());
+        CentsTaxBatch cents = CentsTaxBatch.of(batch);
+        cents.compute(rules.cents(), 0, cents.size());
+
+        TaxCentsDiscrepancies report = new TaxCentsDiscrepancies(limit);
+        for (int index = 0; index < batch.size(); index++) {
+            long taxDifference = TaxCents.toCents(batch.getTaxDue()[index]) - cents.getTaxDue()[index];
+            int differs = 0;
+            if (TaxCents.toCents(batch.getStandardDeduction()[index]) != cents.getStandardDeduction()[index]) {
+                differs |= STANDARD_DEDUCTION;
+            }
+            if (TaxCents.toCents(batch.getTaxableIncome()[index]) != cents.getTaxableIncome()[index]) {
+                differs |= TAXABLE_INCOME;
+            }
+            if (taxDifference != 0) {
+                differs |= TAX_DUE;
+            }
+            if (batch.getReturnRequired()[index] != cents.getReturnRequired()[index]) {
+                differs |= RETURN_REQUIRED;
+            }
+            report.add(index, differs, Math.abs(taxDifference));
+            report.doubleTaxTotal += batch.getTaxDue()[index];
+            report.centsTaxTotal += cents.getTaxDue()[index];
+        }
+        return report;
+    }
+
+    private void add(int record, int differs, long taxDifference) {
+        if (differs == 0) {
+            return;
+        }
+        if (kept < records.length) {
+            records[kept] = record;
+            fields[kept] = differs;
+            kept++;
+        }
+        differing++;
+        maxTaxDifference = Math.max(maxTaxDifference, taxDifference);
+    }
+
+    /**
+     * @return The number of records whose results differ.
+     */
+    public long getDifferingRecords() {
+        return differing;
+    }
+
+    /**
+     * @return The number of differing records kept, at most the limit.
+     */
+    public int getKeptRecords() {
+        return kept;
+    }
+
+    /**
+     * @param index The index of a kept record, from 0.
+     * @return The index of the record in the batch.
+     */
+    public int getRecord(int index) {
+        checkKept(index);
+        return records[index];
+    }
+
+    /**
+     * @param index The index of a kept record, from 0.
+     * @return The bit mask of the fields that differ.
+     */
+    public int getFields(int index) {
+        checkKept(index);
+        return fields[index];
+    }
+
+    /**
+     * @return The largest difference in the tax due of a record, in cents.
+     */
+    public long getMaxTaxDifference() {
+        return maxTaxDifference;
+    }
+
+    /**
+     * @return The sum of the tax due computed with doubles, in dollars.
+     */
+    public double getDoubleTaxTotal() {
+        return doubleTaxTotal;
+    }
+
+    /**
+     * @return The exact sum of the tax due computed in cents.
+     */
+    public long getCentsTaxTotal() {
+        return centsTaxTotal;
+    }
+
+    private void checkKept(int index) {
+        if ((index < 0) || (index >= kept)) {
+            throw new IndexOutOfBoundsException("Invalid record " + index + ".");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return differing + " differing records, max tax difference " + maxTaxDifference
+                + " cents, double total " + doubleTaxTotal + ", cents total " + centsTaxTotal;
+    }
+}
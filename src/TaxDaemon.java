@@ -0,0 +1,231 @@
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class keeps the tax rules resident behind a Unix domain socket, so
+ * that short-lived callers such as shell pipelines pay a socket round trip to
+ * JIT-compiled code instead of starting a JVM per lookup. Each connection is
+ * served on its own thread (a virtual thread when the JDK has them) and may
+ * carry any number of requests; requests sent back to back without waiting are
+ * answered in order, with the answers to every complete request read at once
+ * written together.
+ * <p>
+ * The protocol is binary and big-endian. A request is
+ * <pre>
+ * u16 length       the number of bytes that follow, 24 + the name bytes
+ * i32 taxYear      0 for {@link TaxYearRegistry#DEFAULT_YEAR}
+ * i32 filingStatus one of the constants in {@link TaxCalculatorInterface}
+ * i32 age
+ * i32 spouseAge    0 for the statuses without a spouse
+ * f64 grossIncome
+ * u8[] name        UTF-8
+ * </pre>
+ * and its response is {@value #RESPONSE_SIZE} bytes:
+ * <pre>
+ * i32 errors       the bits of {@link TaxpayerValidator}, 0 if valid
+ * f64 standardDeduction
+ * f64 taxableIncome
+ * f64 taxDue
+ * f64 netTaxRate
+ * u8  returnRequired 1 or 0
+ * </pre>
+ * The results of a request with errors are 0. A request shorter than 24
+ * bytes is a protocol error and closes the connection. A request is
+ * validated exactly as a {@link TaxCalculator} constructor would validate it
+ * and computed exactly as a {@link TaxBatch} record, without allocating.
+ */
+public final class TaxDaemon implements AutoCloseable {
+
+    /**
+     * The size of the fixed fields of a request, after its length.
+     */
+    public static final int REQUEST_FIELDS_SIZE = 24;
+
+    /**
+     * The largest name of a request, in bytes.
+     */
+    public static final int MAX_NAME_SIZE = 0xFFFF - REQUEST_FIELDS_SIZE;
+
+    /**
+     * The size of a response.
+     */
+    public static final int RESPONSE_SIZE = 37;
+
+    private final Path socket; // The path of the socket file.
+    private final ServerSocketChannel server;
+    private final ExecutorService connections; // Serves one connection per task.
+    private final Thread acceptor;
+
+    /**
+     * Bind a daemon to a socket file. A file left behind by a daemon that is
+     * no longer running is replaced.
+     *
+     * @param socket The path of the socket file.
+     * @throws IOException Thrown if another daemon listens on the path or the
+     *                     path cannot be bound.
+     */
+    public TaxDaemon(Path socket) throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+        if (Files.exists(socket)) {
+            if (isListening(address)) {
+                throw new IOException("A daemon is already listening on " + socket + ".");
+            }
+            Files.deleteIfExists(socket);
+        }
+        this.socket = socket;
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            server.bind(address);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        ExecutorService virtual = TaxServer.newVirtualThreadExecutor();
+        connections = (virtual != null) ? virtual : Executors.newCachedThreadPool();
+        acceptor = new Thread(this::accept, "tax-daemon");
+    }
+
+    private static boolean isListening(UnixDomainSocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Start accepting connections.
+     */
+    public void start() {
+        acceptor.start();
+    }
+
+    /**
+     * @return The path of the socket file.
+     */
+    public Path getSocket() {
+        return socket;
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            }
+        } catch (IOException e) {
+            // Closed.
+        }
+    }
+
+    private static void serve(SocketChannel channel) {
+        // A whole request of the largest size always fits into the input buffer.
+        ByteBuffer in = ByteBuffer.allocate(1 << 17);
+        ByteBuffer out = ByteBuffer.allocate(RESPONSE_SIZE << 8);
+        try (channel) {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= 2) {
+                    int length = Short.toUnsignedInt(in.getShort(in.position()));
+                    if (length < REQUEST_FIELDS_SIZE) {
+                        flush(channel, out);
+                        return;
+                    }
+                    if (in.remaining() < 2 + length) {
+                        break;
+                    }
+                    if (out.remaining() < RESPONSE_SIZE) {
+                        flush(channel, out);
+                    }
+                    answer(in, in.position() + 2, length, out);
+                    in.position(in.position() + 2 + length);
+                }
+                in.compact();
+                flush(channel, out);
+            }
+        } catch (IOException e) {
+            // The caller went away.
+        }
+    }
+
+    /**
+     * Validate and compute one request, appending its response.
+     */
+    static void answer(ByteBuffer in, int from, int length, ByteBuffer out) {
+        int taxYear = in.getInt(from);
+        int filingStatus = in.getInt(from + 4);
+        int age = in.getInt(from + 8);
+        int spouseAge = in.getInt(from + 12);
+        double grossIncome = in.getDouble(from + 16);
+        taxYear = (taxYear == 0) ? TaxYearRegistry.DEFAULT_YEAR : taxYear;
+        int errors = TaxpayerValidator.validateTaxYear(taxYear)
+                | TaxpayerValidator.validateName(in, from + REQUEST_FIELDS_SIZE, from + length)
+                | TaxpayerValidator.validateRecord(age, filingStatus, spouseAge);
+        out.putInt(errors);
+        if (errors != TaxpayerValidator.VALID) {
+            out.putDouble(0.0).putDouble(0.0).putDouble(0.0).putDouble(0.0).put((byte) 0);
+            return;
+        }
+        TaxResultCache.Result result = TaxYearRegistry.forYear(taxYear).compute(filingStatus, age, spouseAge,
+                grossIncome);
+        out.putDouble(result.getStandardDeduction()).putDouble(result.getTaxableIncome())
+                .putDouble(result.getTaxDue()).putDouble(result.getNetTaxRate())
+                .put(result.isReturnRequired() ? (byte) 1 : (byte) 0);
+    }
+
+    private static void flush(SocketChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Stop the daemon, close its connections and remove the socket file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+            connections.shutdownNow();
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    /**
+     * Run a daemon until the JVM is stopped.
+     *
+     * @param args The path of the socket file.
+     * @throws IOException Thrown if the path cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: TaxDaemon socket");
+            System.exit(2);
+        }
+        TaxDaemon daemon = new TaxDaemon(Paths.get(args[0]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // Exiting anyway.
+            }
+        }));
+        daemon.start();
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A client of {@link TaxDaemon}. It keeps one connection open and sends one
+ * request per call, so a long-running caller pays a single socket round trip
+ * per lookup. A taxpayer the daemon rejects is reported with the same
+ * IllegalArgumentException a {@link TaxCalculator} constructor would throw.
+ * <p>
+ * The client is not thread-safe; use one per thread.
+ */
+public final class TaxDaemonClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer request = ByteBuffer.allocate(2 + 0xFFFF);
+    private final ByteBuffer response = ByteBuffer.allocate(TaxDaemon.RESPONSE_SIZE);
+
+    /**
+     * Connect to a daemon.
+     *
+     * @param socket The path of the socket file of the daemon.
+     * @throws IOException Thrown if no daemon listens on the path.
+     */
+    public TaxDaemonClient(Path socket) throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Compute a taxpayer with the rules of {@link TaxYearRegistry#DEFAULT_YEAR}.
+     *
+     * @see #compute(int, String, int, int, int, double)
+     */
+    public Result compute(String name, int age, int filingStatus, int spouseAge, double grossIncome)
+            throws IOException {
+        return compute(0, name, age, filingStatus, spouseAge, grossIncome);
+    }
+
+    /**
+     * Compute a taxpayer.
+     *
+     * @param taxYear      The tax year, 0 for the default year.
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus The filing status.
+     * @param spouseAge    The age of the spouse, 0 for the statuses without
+     *                     a spouse.
+     * @param grossIncome  The gross income.
+     * @return The results.
+     * @throws IllegalArgumentException Thrown if the daemon rejects the
+     *                                  taxpayer, or if the name is longer than
+     *                                  {@link TaxDaemon#MAX_NAME_SIZE} bytes.
+     * @throws IOException              Thrown if the daemon cannot be reached.
+     */
+    public Result compute(int taxYear, String name, int age, int filingStatus, int spouseAge, double grossIncome)
+            throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > TaxDaemon.MAX_NAME_SIZE) {
+            throw new IllegalArgumentException("Name is too long.");
+        }
+        request.clear();
+        request.putShort((short) (TaxDaemon.REQUEST_FIELDS_SIZE + bytes.length)).putInt(taxYear)
+                .putInt(filingStatus).putInt(age).putInt(spouseAge).putDouble(grossIncome).put(bytes).flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        response.clear();
+        while (response.hasRemaining()) {
+            if (channel.read(response) < 0) {
+                throw new EOFException("The daemon closed the connection.");
+            }
+        }
+        response.flip();
+        TaxpayerValidator.check(response.getInt());
+        return new Result(response.getDouble(), response.getDouble(), response.getDouble(), response.getDouble(),
+                response.get() != 0);
+    }
+
+    /**
+     * Disconnect from the daemon.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The results of a taxpayer computed by the daemon.
+     */
+    public static final class Result {
+
+        private final double standardDeduction;
+        private final double taxableIncome;
+        private final double taxDue;
+        private final double netTaxRate;
+        private final boolean returnRequired;
+
+        Result(double standardDeduction, double taxableIncome, double taxDue, double netTaxRate,
+               boolean returnRequired) {
+            this.standardDeduction = standardDeduction;
+            this.taxableIncome = taxableIncome;
+            this.taxDue = taxDue;
+            this.netTaxRate = netTaxRate;
+            this.returnRequired = returnRequired;
+        }
+
+        /**
+         * @return The standard deduction.
+         */
+        public double getStandardDeduction() {
+            return standardDeduction;
+        }
+
+        /**
+         * @return The taxable income.
+         */
+        public double getTaxableIncome() {
+            return taxableIncome;
+        }
+
+        /**
+         * @return The tax due.
+         */
+        public double getTaxDue() {
+            return taxDue;
+        }
+
+        /**
+         * @return The net tax rate.
+         */
+        public double getNetTaxRate() {
+            return netTaxRate;
+        }
+
+        /**
+         * @return Whether a return is required.
+         */
+        public boolean isReturnRequired() {
+            return returnRequired;
+        }
+
+        /**
+         * @return The results as
+         * {@code standardDeduction,taxableIncome,taxDue,netTaxRate,returnRequired}.
+         */
+        @Override
+        public String toString() {
+            return standardDeduction + "," + taxableIncome + "," + taxDue + "," + netTaxRate + "," + returnRequired;
+        }
+    }
+
+    /**
+     * Compute one taxpayer and print its results as one CSV line.
+     *
+     * @param args The socket file, name, age, filing status, spouse age, gross
+     *             income and optionally the tax year.
+     * @throws IOException Thrown if the daemon cannot be reached.
+     */
+    public static void main(String[] args) throws IOException {
+        if ((args.length != 6) && (args.length != 7)) {
+            System.err.println("Usage: TaxDaemonClient socket name age filingStatus spouseAge grossIncome [taxYear]");
+            System.exit(2);
+        }
+        try (TaxDaemonClient client = new TaxDaemonClient(Paths.get(args[0]))) {
+            int taxYear = (args.length == 7) ? Integer.parseInt(args[6]) : 0;
+            System.out.println(client.compute(taxYear, args[1], Integer.parseInt(args[2]),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]), Double.parseDouble(args[5])));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
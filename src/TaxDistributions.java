@@ -0,0 +1,146 @@
+/**
+ * This class records the distributions of the net tax rate and of the tax due
+ * per filing status in {@link TaxHistogram}s, so their percentiles can be
+ * published for populations too large to sort. Like {@link TaxAggregator} it
+ * is fed a computed {@link TaxBatch} at a time or streamed from a file as a
+ * {@link TaxFileProcessor.Sink}, each worker fills its own, and they are
+ * merged at the end.
+ */
+public final class TaxDistributions implements TaxFileProcessor.Sink {
+
+    /**
+     * The default precision, for quantiles within 0.4% of the exact value.
+     */
+    public static final int DEFAULT_PRECISION_BITS = 7;
+
+    /**
+     * The smallest tracked net tax rate; smaller rates are reported as the
+     * smallest recorded rate.
+     */
+    static final double LOWEST_RATE = 1e-6;
+
+    /**
+     * The smallest tracked tax due, a cent.
+     */
+    static final double LOWEST_TAX = 0.01;
+
+    /**
+     * The largest tracked tax due.
+     */
+    static final double HIGHEST_TAX = 1e12;
+
+    private final TaxHistogram[] netTaxRate = new TaxHistogram[TaxYear.STATUSES];
+    private final TaxHistogram[] taxDue = new TaxHistogram[TaxYear.STATUSES];
+
+    /**
+     * Create distributions with the default precision.
+     */
+    public TaxDistributions() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits The precision of the histograms, see
+     *                      {@link TaxHistogram#TaxHistogram(int, double, double)}.
+     * @throws IllegalArgumentException Thrown if the precision is out of bounds.
+     */
+    public TaxDistributions(int precisionBits) {
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            netTaxRate[status] = new TaxHistogram(precisionBits, LOWEST_RATE, 1);
+            taxDue[status] = new TaxHistogram(precisionBits, LOWEST_TAX, HIGHEST_TAX);
+        }
+    }
+
+    /**
+     * Add the results of one record.
+     *
+     * @param filingStatus The filing status.
+     * @param taxDue       The tax due.
+     * @param netTaxRate   The net tax rate.
+     * @throws IllegalArgumentException Thrown if the filing status is unknown
+     *                                  or a value is out of bounds.
+     */
+    public void add(int filingStatus, double taxDue, double netTaxRate) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            throw new IllegalArgumentException("Invalid filing status " + filingStatus + ".");
+        }
+        this.taxDue[status].record(taxDue);
+        this.netTaxRate[status].record(netTaxRate);
+    }
+
+    /**
+     * Add the computed results of a range of records in a batch.
+     *
+     * @param batch The computed batch.
+     * @param from  The first record, inclusive.
+     * @param to    The last record, exclusive.
+     * @throws IllegalArgumentException Thrown if a record has an unknown
+     *                                  filing status.
+     */
+    public void add(TaxBatch batch, int from, int to) {
+        batch.checkRange(from, to);
+        int[] filingStatus = batch.getFilingStatus();
+        double[] tax = batch.getTaxDue();
+        double[] rate = batch.getNetTaxRate();
+        for (int index = from; index < to; index++) {
+            add(filingStatus[index], tax[index], rate[index]);
+        }
+    }
+
+    /**
+     * Add the records of a batch streamed from a file, skipping the records
+     * with errors.
+     */
+    @Override
+    public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) {
+        int[] filingStatus = batch.getFilingStatus();
+        double[] tax = batch.getTaxDue();
+        double[] rate = batch.getNetTaxRate();
+        for (int index = 0; index < count; index++) {
+            if (errors[index] == TaxpayerValidator.VALID) {
+                add(filingStatus[index], tax[index], rate[index]);
+            }
+        }
+    }
+
+    /**
+     * Add the distributions of another instance to this one.
+     *
+     * @param other The distributions to add.
+     * @return This instance.
+     * @throws IllegalArgumentException Thrown if the other distributions have
+     *                                  a different precision.
+     */
+    public TaxDistributions merge(TaxDistributions other) {
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            netTaxRate[status].merge(other.netTaxRate[status]);
+            taxDue[status].merge(other.taxDue[status]);
+        }
+        return this;
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The distribution of the net tax rate of the status.
+     */
+    public TaxHistogram getNetTaxRate(int filingStatus) {
+        return netTaxRate[index(filingStatus)];
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The distribution of the tax due of the status.
+     */
+    public TaxHistogram getTaxDue(int filingStatus) {
+        return taxDue[index(filingStatus)];
+    }
+
+    private static int index(int filingStatus) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            throw new IllegalArgumentException("Invalid filing status " + filingStatus + ".");
+        }
+        return status;
+    }
+}
@@ -0,0 +1,555 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class streams a taxpayer file through the tax rules. The input is
+ * memory-mapped one window at a time and the fields are parsed straight from
+ * the mapped bytes, so no String is created for a well-formed record. Records
+ * are collected into a reusable {@link TaxBatch}, computed a batch at a time
+ * and handed to a {@link Sink}. Memory use is bounded by the window and batch
+ * sizes no matter how large the file is.
+ * <p>
+ * Each line of the input holds one taxpayer as
+ * {@code name,age,spouseAge,filingStatus,grossIncome}, where the filing status
+ * is one of the constants in {@link TaxCalculatorInterface} and the spouse age
+ * is 0 for the statuses without a spouse. Blank lines are skipped and lines may
+ * end with CRLF. A record that cannot be parsed, or that a
+ * {@link TaxCalculator} constructor would reject, is reported to the sink with
+ * its error bits rather than stopping the run.
+ */
+public final class TaxFileProcessor {
+
+    /**
+     * The default size of a mapped window of the input.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    /**
+     * The default number of records computed together.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * The error bit of a record that is not in the expected format. It is
+     * outside the bits of {@link TaxpayerValidator}, which describe records
+     * that parse but would be rejected by a constructor.
+     */
+    public static final int MALFORMED = 1 << 8;
+
+    /**
+     * Exact powers of ten, for parsing decimal incomes.
+     */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+            1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Receives the computed records of a file, one batch at a time.
+     */
+    public interface Sink {
+
+        /**
+         * Accept a computed batch of records.
+         *
+         * @param firstRecord The number of the first record in the batch,
+         *                    counting the records of the file from 0.
+         * @param batch       The computed batch. Only the first count records
+         *                    are part of this call.
+         * @param errors      The error bits of each record, either
+         *                    {@link #MALFORMED} or the bits of
+         *                    {@link TaxpayerValidator}. Only the results of
+         *                    records without errors are meaningful.
+         * @param count       The number of records in this call.
+         * @throws IOException Thrown if the records cannot be written.
+         */
+        void accept(long firstRecord, TaxBatch batch, int[] errors, int count) throws IOException;
+
+        /**
+         * Called after each batch with the point the file is processed up to,
+         * from which {@link #process(Path, long, long, Sink)} can resume. The
+         * default does nothing.
+         *
+         * @param nextRecord  The number of the next record.
+         * @param inputOffset The offset of the first byte of the input not yet
+         *                    processed, at the start of a line.
+         * @throws IOException Thrown if the checkpoint cannot be written.
+         */
+        default void checkpoint(long nextRecord, long inputOffset) throws IOException {
+        }
+    }
+
+    private final int windowSize; // The largest part of the input mapped at once.
+    private final int batchSize; // The number of records computed together.
+
+    public TaxFileProcessor() {
+        this(DEFAULT_WINDOW_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param windowSize The largest number of bytes mapped at once. Every line
+     *                   of the input must be shorter than this.
+     * @param batchSize  The number of records computed together.
+     * @throws IllegalArgumentException Thrown if a parameter is not positive.
+     */
+    public TaxFileProcessor(int windowSize, int batchSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid window size.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        }
+        this.windowSize = windowSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Process a taxpayer file, writing the results as CSV. Each output line is
+     * {@code record,standardDeduction,taxableIncome,taxDue,netTaxRate,returnRequired}
+     * for a valid record, or {@code record,invalid,errors} otherwise.
+     *
+     * @param input  The taxpayer file.
+     * @param output The result file, which is replaced.
+     * @return The number of records processed.
+     * @throws IOException Thrown if a file cannot be read or written.
+     */
+    public long process(Path input, Path output) throws IOException {
+        try (CsvSink sink = new CsvSink(output)) {
+            return process(input, sink);
+        }
+    }
+
+    /**
+     * Process a taxpayer file.
+     *
+     * @param input The taxpayer file.
+     * @param sink  Receives the computed records.
+     * @return The number of records processed.
+     * @throws IOException Thrown if the file cannot be read, if a line is
+     *                     longer than the window size, or if the sink fails.
+     */
+    public long process(Path input, Sink sink) throws IOException {
+        return process(input, 0, 0, sink);
+    }
+
+    /**
+     * Process a taxpayer file from a checkpoint, as passed to
+     * {@link Sink#checkpoint(long, long)} by an earlier run over the same
+     * file. The records are numbered and batched as in a run from the start.
+     *
+     * @param input       The taxpayer file.
+     * @param inputOffset The offset to start at, at the start of a line.
+     * @param firstRecord The number of the record at that offset.
+     * @param sink        Receives the computed records.
+     * @return The number of records in the file, including those before the
+     * offset.
+     * @throws IllegalArgumentException Thrown if the offset or the record
+     *                                  number is negative.
+     * @throws IOException              Thrown if the file cannot be read, if
+     *                                  the offset is past its end, if a line is
+     *                                  longer than the window size, or if the
+     *                                  sink fails.
+     */
+    public long process(Path input, long inputOffset, long firstRecord, Sink sink) throws IOException {
+        if ((inputOffset < 0) || (firstRecord < 0)) {
+            throw new IllegalArgumentException("Invalid checkpoint.");
+        }
+        Records records = new Records(batchSize);
+        records.first = firstRecord;
+        records.next = firstRecord;
+        long size;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (inputOffset > size) {
+                throw new IOException("Checkpoint past the end of the file.");
+            }
+            long position = inputOffset;
+            while (position < size) {
+                int length = (int) Math.min(windowSize, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int offset = 0;
+                while (offset < length) {
+                    int end = indexOf(window, (byte) '\n', offset, length);
+                    if (end < 0) {
+                        if (!last) {
+                            break;
+                        }
+                        end = length;
+                    }
+                    records.parse(window, offset, end);
+                    if (records.count == batchSize) {
+                        records.flush(sink);
+                        sink.checkpoint(records.next, position + Math.min(end + 1, length));
+                    }
+                    offset = end + 1;
+                }
+                if (offset == 0) {
+                    throw new IOException("Line at byte " + position + " is longer than the window size.");
+                }
+                position += Math.min(offset, length);
+            }
+        }
+        records.flush(sink);
+        sink.checkpoint(records.next, size);
+        return records.next;
+    }
+
+    /**
+     * Parse taxpayer lines held in memory, in the format of a file, without
+     * computing them.
+     *
+     * @param input The lines, from position 0 to the limit.
+     * @return The parsed records.
+     */
+    static Records parse(ByteBuffer input) {
+        int length = input.limit();
+        int lines = 1;
+        for (int index = 0; index < length; index++) {
+            lines += (input.get(index) == '\n') ? 1 : 0;
+        }
+        Records records = new Records(lines);
+        int offset = 0;
+        while (offset < length) {
+            int end = indexOf(input, (byte) '\n', offset, length);
+            end = (end < 0) ? length : end;
+            records.parse(input, offset, end);
+            offset = end + 1;
+        }
+        return records;
+    }
+
+    static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int index = from; index < to; index++) {
+            if (buffer.get(index) == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The fields of a parsed line.
+     */
+    static final class Fields {
+
+        int nameEnd; // The end of the name, exclusive.
+        int age;
+        int spouseAge;
+        int filingStatus;
+        double grossIncome;
+    }
+
+    /**
+     * The batch being filled with parsed records.
+     */
+    static final class Records {
+
+        private final TaxBatch batch;
+        private final int[] errors;
+        private final Fields fields = new Fields(); // The fields of the line being parsed.
+        private long next; // The number of the next record in the file.
+        private long first; // The number of the first record in the batch.
+        private int count; // The number of records in the batch.
+
+        Records(int size) {
+            batch = new TaxBatch(new int[size], new int[size], new int[size], new double[size],
+                    new double[size], new double[size], new double[size], new double[size],
+                    new boolean[size]);
+            errors = new int[size];
+        }
+
+        /**
+         * Parse a line into the next slot of the batch. Blank lines are skipped.
+         */
+        void parse(ByteBuffer line, int from, int to) {
+            to = lineEnd(line, from, to);
+            if (to == from) {
+                return;
+            }
+            int slot = count++;
+            next++;
+            int error = parseFields(line, from, to, fields);
+            if (error == TaxpayerValidator.VALID) {
+                batch.getFilingStatus()[slot] = fields.filingStatus;
+                batch.getAge()[slot] = fields.age;
+                batch.getSpouseAge()[slot] = fields.spouseAge;
+                batch.getGrossIncome()[slot] = fields.grossIncome;
+                error = TaxpayerValidator.validateName(line, from, fields.nameEnd)
+                        | TaxpayerValidator.validateRecord(fields.age, fields.filingStatus, fields.spouseAge);
+            }
+            setErrors(slot, error);
+        }
+
+        /**
+         * Add a record whose fields were parsed elsewhere. A malformed record
+         * only needs its error.
+         *
+         * @param error The {@link #MALFORMED} bit, or {@link TaxpayerValidator#VALID}
+         *              to validate the fields.
+         */
+        void add(int error, CharSequence name, int age, int spouseAge, int filingStatus, double grossIncome) {
+            int slot = count++;
+            next++;
+            if (error == TaxpayerValidator.VALID) {
+                batch.getFilingStatus()[slot] = filingStatus;
+                batch.getAge()[slot] = age;
+                batch.getSpouseAge()[slot] = spouseAge;
+                batch.getGrossIncome()[slot] = grossIncome;
+                error = TaxpayerValidator.validate(name, age, filingStatus, spouseAge);
+            }
+            setErrors(slot, error);
+        }
+
+        private void setErrors(int slot, int error) {
+            if (error != TaxpayerValidator.VALID) {
+                // Keep the batch computable; the results of this slot are ignored.
+                batch.getFilingStatus()[slot] = TaxCalculatorInterface.SINGLE;
+                batch.getAge()[slot] = 1;
+                batch.getSpouseAge()[slot] = 0;
+                batch.getGrossIncome()[slot] = 0.0;
+            }
+            errors[slot] = error;
+        }
+
+        TaxBatch getBatch() {
+            return batch;
+        }
+
+        int[] getErrors() {
+            return errors;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Find the end of a line without its CR, if it ends with CRLF. A line
+         * which ends where it starts is blank.
+         */
+        static int lineEnd(ByteBuffer line, int from, int to) {
+            return ((to > from) && (line.get(to - 1) == '\r')) ? to - 1 : to;
+        }
+
+        /**
+         * Parse the fields of a line, without validating them.
+         *
+         * @param line   The buffer holding the line.
+         * @param from   The first byte of the line, inclusive.
+         * @param to     The end of the line, exclusive, without its CR.
+         * @param fields Receives the fields of a well-formed line.
+         * @return {@link #MALFORMED} or {@link TaxpayerValidator#VALID}.
+         */
+        static int parseFields(ByteBuffer line, int from, int to, Fields fields) {
+            int nameEnd = indexOf(line, (byte) ',', from, to);
+            int ageEnd = (nameEnd < 0) ? -1 : indexOf(line, (byte) ',', nameEnd + 1, to);
+            int spouseAgeEnd = (ageEnd < 0) ? -1 : indexOf(line, (byte) ',', ageEnd + 1, to);
+            int statusEnd = (spouseAgeEnd < 0) ? -1 : indexOf(line, (byte) ',', spouseAgeEnd + 1, to);
+            if ((statusEnd < 0) || (indexOf(line, (byte) ',', statusEnd + 1, to) >= 0)) {
+                return MALFORMED;
+            }
+            long age = parseInt(line, nameEnd + 1, ageEnd);
+            long spouseAge = parseInt(line, ageEnd + 1, spouseAgeEnd);
+            long status = parseInt(line, spouseAgeEnd + 1, statusEnd);
+            double income = parseDouble(line, statusEnd + 1, to);
+            if ((age == Long.MIN_VALUE) || (spouseAge == Long.MIN_VALUE)
+                    || (status == Long.MIN_VALUE) || Double.isNaN(income)) {
+                return MALFORMED;
+            }
+            fields.nameEnd = nameEnd;
+            fields.age = (int) age;
+            fields.spouseAge = (int) spouseAge;
+            fields.filingStatus = (int) status;
+            fields.grossIncome = income;
+            return TaxpayerValidator.VALID;
+        }
+
+        /**
+         * Parse a decimal int. Returns Long.MIN_VALUE if it is malformed.
+         */
+        private static long parseInt(ByteBuffer line, int from, int to) {
+            boolean negative = (from < to) && (line.get(from) == '-');
+            int index = negative ? from + 1 : from;
+            if (index == to) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            for (; index < to; index++) {
+                int digit = line.get(index) - '0';
+                if ((digit < 0) || (digit > 9)) {
+                    return Long.MIN_VALUE;
+                }
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            value = negative ? -value : value;
+            return (value > Integer.MAX_VALUE) ? Long.MIN_VALUE : value;
+        }
+
+        /**
+         * Parse a decimal income. Plain decimals with up to 15 significant
+         * digits are converted exactly with one correctly rounded division;
+         * longer ones and those with an exponent go through
+         * Double.parseDouble. Returns NaN if it is malformed or too large for
+         * a double.
+         */
+        private static double parseDouble(ByteBuffer line, int from, int to) {
+            boolean negative = (from < to) && (line.get(from) == '-');
+            int index = negative ? from + 1 : from;
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            for (; index < to; index++) {
+                byte value = line.get(index);
+                if ((value == '.') && (fraction < 0)) {
+                    fraction = 0;
+                } else if ((value >= '0') && (value <= '9') && (digits < 15)) {
+                    mantissa = mantissa * 10 + (value - '0');
+                    digits += (mantissa == 0) ? 0 : 1;
+                    fraction += (fraction < 0) ? 0 : 1;
+                } else {
+                    return parseSlowly(line, from, to);
+                }
+            }
+            if (fraction >= POWERS_OF_TEN.length) {
+                return parseSlowly(line, from, to);
+            }
+            boolean hasDigits = (to - from) > ((negative ? 1 : 0) + ((fraction < 0) ? 0 : 1));
+            if (!hasDigits) {
+                return Double.NaN;
+            }
+            double result = (fraction <= 0) ? (double) mantissa : mantissa / POWERS_OF_TEN[fraction];
+            return negative ? -result : result;
+        }
+
+        /**
+         * Parse an income of the form [-]digits[.digits][e[+-]digits], with
+         * digits on at least one side of the point. Anything else that
+         * Double.parseDouble would take, such as hexadecimal, Infinity,
+         * spaces or a type suffix, is malformed.
+         */
+        private static double parseSlowly(ByteBuffer line, int from, int to) {
+            int index = ((from < to) && (line.get(from) == '-')) ? from + 1 : from;
+            int digits = 0;
+            for (; (index < to) && isDigit(line.get(index)); index++) {
+                digits++;
+            }
+            if ((index < to) && (line.get(index) == '.')) {
+                for (index++; (index < to) && isDigit(line.get(index)); index++) {
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                return Double.NaN;
+            }
+            if ((index < to) && ((line.get(index) == 'e') || (line.get(index) == 'E'))) {
+                index++;
+                if ((index < to) && ((line.get(index) == '+') || (line.get(index) == '-'))) {
+                    index++;
+                }
+                int exponentStart = index;
+                while ((index < to) && isDigit(line.get(index))) {
+                    index++;
+                }
+                if (index == exponentStart) {
+                    return Double.NaN;
+                }
+            }
+            if (index != to) {
+                return Double.NaN;
+            }
+            byte[] bytes = new byte[to - from];
+            for (index = from; index < to; index++) {
+                bytes[index - from] = line.get(index);
+            }
+            double value = Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+            return Double.isFinite(value) ? value : Double.NaN;
+        }
+
+        private static boolean isDigit(byte value) {
+            return (value >= '0') && (value <= '9');
+        }
+
+        /**
+         * Compute the batch and hand it to the sink.
+         */
+        void flush(Sink sink) throws IOException {
+            if (count == 0) {
+                return;
+            }
+            batch.computeVectorized(0, count);
+            sink.accept(first, batch, errors, count);
+            first += count;
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes the results of a file as CSV through a reusable buffer.
+     */
+    static final class CsvSink implements Sink, AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final StringBuilder line = new StringBuilder(128);
+
+        CsvSink(Path output) throws IOException {
+            channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) throws IOException {
+            for (int index = 0; index < count; index++) {
+                line.setLength(0);
+                append(line, firstRecord + index, batch, errors, index);
+                if (buffer.remaining() < line.length()) {
+                    drain();
+                }
+                for (int character = 0; character < line.length(); character++) {
+                    buffer.put((byte) line.charAt(character));
+                }
+            }
+        }
+
+        /**
+         * Append the output line of a computed record.
+         */
+        static void append(StringBuilder line, long record, TaxBatch batch, int[] errors, int index) {
+            line.append(record).append(',');
+            if (errors[index] != TaxpayerValidator.VALID) {
+                line.append("invalid,").append(errors[index]);
+            } else {
+                line.append(batch.getStandardDeduction()[index]).append(',')
+                        .append(batch.getTaxableIncome()[index]).append(',')
+                        .append(batch.getTaxDue()[index]).append(',')
+                        .append(batch.getNetTaxRate()[index]).append(',')
+                        .append(batch.getReturnRequired()[index]);
+            }
+            line.append('\n');
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
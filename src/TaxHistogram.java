@@ -0,0 +1,200 @@
+import java.util.Arrays;
+
+/**
+ * This class is a fixed memory histogram of non-negative values, which
+ * answers quantiles within a configurable relative error without keeping the
+ * values. Like an HDR histogram its buckets are log-linear: each power of two
+ * between the lowest and the highest tracked value is split into
+ * 2<sup>precisionBits</sup> buckets of equal width, so a quantile is within
+ * 2<sup>-(precisionBits + 1)</sup> of the exact value, 0.4% for 7 bits. The
+ * bucket of a value is the top bits of its IEEE 754 representation, so
+ * recording does not compute a logarithm.
+ * <p>
+ * Values below the lowest tracked value, such as a tax of zero, are counted
+ * in a bucket of their own and are reported as the smallest recorded value;
+ * values above the highest tracked value are counted in the top bucket. The
+ * smallest and largest values are kept exactly. Histograms with the same
+ * configuration merge exactly, so each worker records into its own and they
+ * are merged at the end. A histogram is not thread safe.
+ */
+public final class TaxHistogram {
+
+    /**
+     * The largest supported number of precision bits.
+     */
+    public static final int MAX_PRECISION_BITS = 16;
+
+    private static final int MANTISSA_BITS = 52;
+
+    private final int precisionBits; // The log2 of the number of buckets per power of two.
+    private final double lowest; // The smallest tracked value.
+    private final double highest; // The largest tracked value.
+    private final int shift; // The low mantissa bits dropped from a value's bucket.
+    private final long lowestBucket; // The bucket of the lowest tracked value.
+    private final long[] counts; // The number of values per bucket.
+
+    private long lowCount; // The number of values below the lowest tracked value.
+    private long count; // The number of values.
+    private double min = Double.POSITIVE_INFINITY; // The smallest value.
+    private double max = Double.NEGATIVE_INFINITY; // The largest value.
+
+    /**
+     * @param precisionBits The log2 of the number of buckets per power of two,
+     *                      from 1 to {@link #MAX_PRECISION_BITS}.
+     * @param lowest        The smallest tracked value. Must be positive.
+     * @param highest       The largest tracked value. Must be larger than the
+     *                      lowest.
+     * @throws IllegalArgumentException Thrown if a parameter is out of bounds
+     *                                  or if the histogram would need more
+     *                                  than 2<sup>24</sup> buckets.
+     */
+    public TaxHistogram(int precisionBits, double lowest, double highest) {
+        if ((precisionBits < 1) || (precisionBits > MAX_PRECISION_BITS)) {
+            throw new IllegalArgumentException("Invalid precision.");
+        }
+        if (!(lowest > 0) || !(highest > lowest) || Double.isInfinite(highest)) {
+            throw new IllegalArgumentException("Invalid range.");
+        }
+        this.precisionBits = precisionBits;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.shift = MANTISSA_BITS - precisionBits;
+        this.lowestBucket = Double.doubleToRawLongBits(lowest) >>> shift;
+        long buckets = (Double.doubleToRawLongBits(highest) >>> shift) - lowestBucket + 1;
+        if (buckets > (1 << 24)) {
+            throw new IllegalArgumentException("Too many buckets.");
+        }
+        this.counts = new long[(int) buckets];
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value The value. Must be finite and not negative.
+     * @throws IllegalArgumentException Thrown if the value is negative, NaN or
+     *                                  infinite.
+     */
+    public void record(double value) {
+        if (!((value >= 0) && (value < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException("Invalid value " + value + ".");
+        }
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        if (value < lowest) {
+            lowCount++;
+        } else {
+            counts[(int) ((Double.doubleToRawLongBits(Math.min(value, highest)) >>> shift) - lowestBucket)]++;
+        }
+    }
+
+    /**
+     * Add the values of another histogram to this one.
+     *
+     * @param other The histogram to add.
+     * @return This histogram.
+     * @throws IllegalArgumentException Thrown if the other histogram has a
+     *                                  different configuration.
+     */
+    public TaxHistogram merge(TaxHistogram other) {
+        if ((other.precisionBits != precisionBits) || (other.lowest != lowest) || (other.highest != highest)) {
+            throw new IllegalArgumentException("The histograms have different configurations.");
+        }
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        lowCount += other.lowCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Find the value at a quantile: the smallest value that at least the given
+     * fraction of the values are less than or equal to, within the relative
+     * error of the histogram.
+     *
+     * @param quantile The quantile, from 0 to 1.
+     * @return The value, or NaN if nothing has been recorded.
+     * @throws IllegalArgumentException Thrown if the quantile is out of bounds.
+     */
+    public double getQuantile(double quantile) {
+        if (!((quantile >= 0) && (quantile <= 1))) {
+            throw new IllegalArgumentException("Invalid quantile " + quantile + ".");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        if (rank == count) {
+            return max;
+        }
+        long seen = lowCount;
+        if (rank <= seen) {
+            return min;
+        }
+        int bucket = 0;
+        while (true) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                break;
+            }
+            bucket++;
+        }
+        long bits = (lowestBucket + bucket) << shift;
+        double low = Double.longBitsToDouble(bits);
+        double high = Double.longBitsToDouble(bits + (1L << shift));
+        return Math.max(min, Math.min(max, low + (high - low) / 2));
+    }
+
+    /**
+     * @return The largest relative error of a quantile of a tracked value.
+     */
+    public double getRelativeError() {
+        return Math.scalb(1.0, -(precisionBits + 1));
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The smallest recorded value, or infinity if there is none.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return The largest recorded value, or negative infinity if there is none.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return The number of buckets, which fixes the memory of the histogram.
+     */
+    public int getBuckets() {
+        return counts.length;
+    }
+
+    /**
+     * Forget every recorded value.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        lowCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+}
@@ -0,0 +1,435 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class makes a run of {@link TaxFileProcessor} over a large taxpayer
+ * file resumable. The results are appended to a journal one batch at a time,
+ * as a chunk which also records the checkpoint the batch ends at: the number
+ * of the next record and the offset of the next line of the input. A run that
+ * is killed or crashes is resumed by opening the journal again, which drops a
+ * torn or corrupt tail, and processing the input from the checkpoint of the
+ * last whole chunk. As the records are batched the same way from a
+ * checkpoint as from the start, a resumed run writes the same journal, and
+ * the same result file, as a run that was never interrupted.
+ * <p>
+ * The journal is little-endian. A {@value #HEADER_BYTES} byte header holds the
+ * magic number TAXJ, the format version short, the record size short, the int
+ * tax year of the results, and the identity of the input: the int CRC32 of
+ * its first {@value #INPUT_BLOCK_BYTES} bytes, its long size and its long
+ * last-modified time in milliseconds. It is followed by the chunks, each a
+ * {@value #CHUNK_HEADER_BYTES} byte header of the int number of records, the
+ * int CRC32 of the chunk without the CRC itself, the long number of the first
+ * record, the long input offset after the last record and 8 reserved bytes,
+ * followed by the records in the format of {@link TaxResultWriter}. A chunk
+ * is only part of the journal if it is whole, its checksum matches, and it
+ * follows on from the chunk before it.
+ * <p>
+ * A journal is only resumed over the input it was created for. An input
+ * rewritten since, even to the same size, has another last-modified time or
+ * first block, and its journal is refused rather than mixed with results of
+ * the other content.
+ * <p>
+ * How often the journal is forced to the storage device trades durability
+ * for throughput. A chunk written to the journal survives the process being
+ * killed at once, but only survives a crash of the operating system or a
+ * power loss once it is forced: with {@link #SYNC_EVERY_CHUNK} a crash loses
+ * at most the batch being written, with a sync every n chunks up to n
+ * batches, and with {@link #SYNC_NEVER} whatever the operating system had not
+ * yet written back. The lost batches are computed again on resume.
+ */
+public final class TaxJournal implements TaxFileProcessor.Sink, AutoCloseable {
+
+    /**
+     * Leave writing the journal back to the operating system.
+     */
+    public static final int SYNC_NEVER = 0;
+
+    /**
+     * Force the journal to the device after every chunk.
+     */
+    public static final int SYNC_EVERY_CHUNK = 1;
+
+    /**
+     * The magic number at the start of a journal.
+     */
+    static final int MAGIC = 0x5441584A;
+
+    /**
+     * The version of the format written by this class.
+     */
+    static final short VERSION = 2;
+
+    /**
+     * The size of the header.
+     */
+    static final int HEADER_BYTES = 32;
+
+    /**
+     * The size of the header of a chunk.
+     */
+    static final int CHUNK_HEADER_BYTES = 32;
+
+    /**
+     * The number of bytes at the start of the input covered by the checksum
+     * in the header.
+     */
+    static final int INPUT_BLOCK_BYTES = 1 << 16;
+
+    private static final int HEADER_INPUT_CHECKSUM = 12;
+    private static final int HEADER_INPUT_SIZE = 16;
+    private static final int HEADER_INPUT_MODIFIED = 24;
+
+    private static final int CHUNK_RECORDS = 0;
+    private static final int CHUNK_CHECKSUM = 4;
+    private static final int CHUNK_FIRST_RECORD = 8;
+    private static final int CHUNK_INPUT_OFFSET = 16;
+
+    private final FileChannel channel;
+    private final int taxYear; // The year of the results.
+    private final long inputSize; // The size of the input the journal is for.
+    private final long inputModified; // The last-modified time of the input, in milliseconds.
+    private final int inputChecksum; // The CRC32 of the first block of the input.
+    private final int syncEvery; // The number of chunks written between syncs.
+    private final CRC32 checksum = new CRC32();
+    private ByteBuffer chunk; // The chunk being filled: its header, then its records.
+    private long size; // The size of the journal.
+    private long nextRecord; // The number of the next record at the last checkpoint.
+    private long inputOffset; // The input offset at the last checkpoint.
+    private long discarded; // The bytes dropped when the journal was opened.
+    private int unsynced; // The chunks written since the last sync.
+
+    /**
+     * Open a journal, creating it if it does not exist. An existing journal is
+     * recovered: whatever follows its last whole chunk is truncated, and the
+     * checkpoint of that chunk is where processing resumes. A journal whose
+     * header is incomplete is started over.
+     *
+     * @param journal   The journal.
+     * @param taxYear   The tax year the results are computed for.
+     * @param input     The taxpayer file, which an existing journal must
+     *                  have been created for.
+     * @param syncEvery The number of chunks written between syncs, or
+     *                  {@link #SYNC_NEVER}.
+     * @throws IllegalArgumentException Thrown if the year is not supported or
+     *                                  if the sync interval is negative.
+     * @throws IOException              Thrown if the input cannot be read, or
+     *                                  the journal cannot be read or written,
+     *                                  is not a journal, or is for another
+     *                                  year or input.
+     */
+    public TaxJournal(Path journal, int taxYear, Path input, int syncEvery) throws IOException {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        if (syncEvery < 0) {
+            throw new IllegalArgumentException("Invalid sync interval.");
+        }
+        this.taxYear = taxYear;
+        this.syncEvery = syncEvery;
+        try (FileChannel file = FileChannel.open(input, StandardOpenOption.READ)) {
+            inputSize = file.size();
+            inputModified = Files.getLastModifiedTime(input).toMillis();
+            ByteBuffer block = ByteBuffer.allocate((int) Math.min(INPUT_BLOCK_BYTES, inputSize));
+            while (block.hasRemaining()) {
+                if (file.read(block) < 0) {
+                    throw new EOFException("Unexpected end of the input.");
+                }
+            }
+            checksum.update(block.flip());
+            inputChecksum = (int) checksum.getValue();
+        }
+        chunk = ByteBuffer.allocateDirect(CHUNK_HEADER_BYTES + TaxFileProcessor.DEFAULT_BATCH_SIZE
+                * TaxResultWriter.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.position(CHUNK_HEADER_BYTES);
+        channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                create();
+            } else {
+                recover();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void create() throws IOException {
+        discarded = channel.size();
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) TaxResultWriter.RECORD_BYTES).putInt(taxYear)
+                .putInt(inputChecksum).putLong(inputSize).putLong(inputModified).flip();
+        writeFully(header, 0);
+        if (syncEvery != SYNC_NEVER) {
+            channel.force(false);
+        }
+        size = HEADER_BYTES;
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(header, 0);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a tax journal.");
+        }
+        if (header.getShort(TaxResultWriter.HEADER_VERSION) != VERSION
+                || header.getShort(TaxResultWriter.HEADER_RECORD_BYTES) != TaxResultWriter.RECORD_BYTES) {
+            throw new IOException("Unsupported tax journal version.");
+        }
+        if ((header.getInt(TaxResultWriter.HEADER_TAX_YEAR) != taxYear)
+                || (header.getInt(HEADER_INPUT_CHECKSUM) != inputChecksum)
+                || (header.getLong(HEADER_INPUT_SIZE) != inputSize)
+                || (header.getLong(HEADER_INPUT_MODIFIED) != inputModified)) {
+            throw new IOException("The journal is for another tax year or input.");
+        }
+
+        long end = channel.size();
+        long position = HEADER_BYTES;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer block = ByteBuffer.allocate(1 << 16);
+        while (end - position >= CHUNK_HEADER_BYTES) {
+            chunkHeader.clear();
+            readFully(chunkHeader, position);
+            int records = chunkHeader.getInt(CHUNK_RECORDS);
+            long first = chunkHeader.getLong(CHUNK_FIRST_RECORD);
+            long offset = chunkHeader.getLong(CHUNK_INPUT_OFFSET);
+            long length = (long) records * TaxResultWriter.RECORD_BYTES;
+            if ((records < 0) || (first != nextRecord) || (offset < inputOffset) || (offset > inputSize)
+                    || (length > end - position - CHUNK_HEADER_BYTES)) {
+                break;
+            }
+            checksum.reset();
+            checksum.update(chunkHeader.array(), 0, CHUNK_CHECKSUM);
+            checksum.update(chunkHeader.array(), CHUNK_FIRST_RECORD, CHUNK_HEADER_BYTES - CHUNK_FIRST_RECORD);
+            for (long read = 0; read < length; read += block.limit()) {
+                block.clear().limit((int) Math.min(block.capacity(), length - read));
+                readFully(block, position + CHUNK_HEADER_BYTES + read);
+                checksum.update(block.array(), 0, block.limit());
+            }
+            if ((int) checksum.getValue() != chunkHeader.getInt(CHUNK_CHECKSUM)) {
+                break;
+            }
+            position += CHUNK_HEADER_BYTES + length;
+            nextRecord = first + records;
+            inputOffset = offset;
+        }
+        if (position < end) {
+            discarded = end - position;
+            channel.truncate(position);
+            channel.force(false);
+        }
+        size = position;
+    }
+
+    /**
+     * @return The number of the next record, at the last checkpoint.
+     */
+    public long getNextRecord() {
+        return nextRecord;
+    }
+
+    /**
+     * @return The offset of the input to resume from, at the last checkpoint.
+     */
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    /**
+     * @return Whether the whole input is in the journal.
+     */
+    public boolean isComplete() {
+        return inputOffset == inputSize;
+    }
+
+    /**
+     * @return The number of bytes of a torn or corrupt tail, or of an
+     * incomplete header, dropped when the journal was opened.
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    /**
+     * Add a computed batch to the chunk being filled. It is written at the
+     * next checkpoint.
+     *
+     * @throws IllegalArgumentException Thrown if the batch is computed for
+     *                                  another tax year, or does not follow
+     *                                  on from the records before it.
+     */
+    @Override
+    public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) {
+        if (batch.getTaxYear() != taxYear) {
+            throw new IllegalArgumentException("The batch is for another tax year.");
+        }
+        if (firstRecord != nextRecord + pending()) {
+            throw new IllegalArgumentException("The batch does not follow on from the journal.");
+        }
+        if (chunk.remaining() < count * TaxResultWriter.RECORD_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(chunk.position() + count * TaxResultWriter.RECORD_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            chunk.flip();
+            chunk = larger.put(chunk);
+        }
+        for (int index = 0; index < count; index++) {
+            TaxResultWriter.put(chunk, firstRecord + index, batch, errors, index);
+        }
+    }
+
+    /**
+     * Append the records accepted since the last checkpoint as a chunk,
+     * forcing the journal to the device as often as the sync interval asks.
+     *
+     * @throws IllegalArgumentException Thrown if the checkpoint does not
+     *                                  match the records accepted.
+     */
+    @Override
+    public void checkpoint(long nextRecord, long inputOffset) throws IOException {
+        int records = pending();
+        if ((nextRecord != this.nextRecord + records) || (inputOffset < this.inputOffset)
+                || (inputOffset > inputSize)) {
+            throw new IllegalArgumentException("Invalid checkpoint.");
+        }
+        if ((records == 0) && (inputOffset == this.inputOffset)) {
+            return;
+        }
+        chunk.putInt(CHUNK_RECORDS, records).putLong(CHUNK_FIRST_RECORD, this.nextRecord)
+                .putLong(CHUNK_INPUT_OFFSET, inputOffset).putLong(CHUNK_INPUT_OFFSET + 8, 0);
+        chunk.flip();
+        ByteBuffer covered = chunk.duplicate();
+        checksum.reset();
+        checksum.update(covered.limit(CHUNK_CHECKSUM));
+        checksum.update(covered.limit(chunk.limit()).position(CHUNK_FIRST_RECORD));
+        chunk.putInt(CHUNK_CHECKSUM, (int) checksum.getValue());
+        size += writeFully(chunk, size);
+        if ((syncEvery != SYNC_NEVER) && (++unsynced >= syncEvery)) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        this.nextRecord = nextRecord;
+        this.inputOffset = inputOffset;
+        chunk.clear().position(CHUNK_HEADER_BYTES);
+    }
+
+    private int pending() {
+        return (chunk.position() - CHUNK_HEADER_BYTES) / TaxResultWriter.RECORD_BYTES;
+    }
+
+    /**
+     * Write the records of a complete journal as a result file of
+     * {@link TaxResultWriter}.
+     *
+     * @param output The result file, which is replaced.
+     * @return The number of records written.
+     * @throws IOException Thrown if the journal is incomplete, or a file
+     *                     cannot be read or written.
+     */
+    public long export(Path output) throws IOException {
+        if (!isComplete()) {
+            throw new IOException("The journal is incomplete.");
+        }
+        ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer block = ByteBuffer.allocateDirect(1 << 20);
+        try (TaxResultWriter writer = new TaxResultWriter(output, taxYear)) {
+            for (long position = HEADER_BYTES; position < size; ) {
+                chunkHeader.clear();
+                readFully(chunkHeader, position);
+                long length = (long) chunkHeader.getInt(CHUNK_RECORDS) * TaxResultWriter.RECORD_BYTES;
+                position += CHUNK_HEADER_BYTES;
+                for (long end = position + length; position < end; position += block.limit()) {
+                    block.clear().limit((int) Math.min(block.capacity(), end - position));
+                    readFully(block, position);
+                    writer.append(block.flip());
+                }
+            }
+            return writer.getCount();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of the journal.");
+            }
+        }
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        return length;
+    }
+
+    /**
+     * Close the journal, forcing the chunks not yet synced if the journal is
+     * synced at all. Records accepted since the last checkpoint are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if ((syncEvery != SYNC_NEVER) && (unsynced > 0)) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Process a taxpayer file through a journal, resuming from the journal's
+     * checkpoint if it exists, and write the results once the whole file is
+     * processed.
+     *
+     * @param processor The processor, whose batch size must be the same for
+     *                  every run over the journal for the runs to write the
+     *                  same chunks.
+     * @param input     The taxpayer file.
+     * @param journal   The journal.
+     * @param output    The result file, which is replaced.
+     * @param syncEvery The number of chunks written between syncs, or
+     *                  {@link #SYNC_NEVER}.
+     * @return The number of records processed by this run.
+     * @throws IOException Thrown if a file cannot be read or written, or if
+     *                     the journal is for another input.
+     */
+    public static long run(TaxFileProcessor processor, Path input, Path journal, Path output, int syncEvery)
+            throws IOException {
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, syncEvery)) {
+            long resumed = sink.getNextRecord();
+            if (!sink.isComplete()) {
+                processor.process(input, sink.getInputOffset(), resumed, sink);
+            }
+            sink.export(output);
+            return sink.getNextRecord() - resumed;
+        }
+    }
+
+    /**
+     * Process a taxpayer file through a journal.
+     *
+     * @param args The taxpayer file, the journal, the result file and
+     *             optionally the number of chunks between syncs, 1 by
+     *             default.
+     */
+    public static void main(String[] args) throws IOException {
+        if ((args.length < 3) || (args.length > 4)) {
+            System.err.println("Usage: TaxJournal input journal output [syncEvery]");
+            System.exit(2);
+        }
+        int syncEvery = (args.length == 4) ? Integer.parseInt(args[3]) : SYNC_EVERY_CHUNK;
+        long records = run(new TaxFileProcessor(), Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]),
+                syncEvery);
+        System.out.println(records + " records processed.");
+    }
+}
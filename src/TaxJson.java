@@ -0,0 +1,299 @@
+/**
+ * This class reads and writes the JSON payloads of {@link TaxServer}. A
+ * request is one taxpayer object, or an array of them, with the members
+ * {@code name}, {@code age}, {@code spouseAge}, {@code filingStatus} and
+ * {@code grossIncome}; {@code spouseAge} may be left out for the statuses
+ * without a spouse and other members are ignored. Only flat objects are
+ * accepted, so the reader is a small recursive descent parser rather than a
+ * general JSON library.
+ * <p>
+ * A document that is not JSON of this shape is rejected as a whole, as is a
+ * number outside the range of a double. An object
+ * with a missing or mistyped member is a record with the
+ * {@link TaxFileProcessor#MALFORMED} error, like a bad line of a file.
+ */
+final class TaxJson {
+
+    private final String text;
+    private int position;
+
+    private TaxJson(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text A request document.
+     * @return Whether the document is an array of taxpayers rather than one.
+     */
+    static boolean isArray(String text) {
+        for (int index = 0; index < text.length(); index++) {
+            char character = text.charAt(index);
+            if (!isWhitespace(character)) {
+                return character == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse a request document.
+     *
+     * @param text The document.
+     * @return The parsed records.
+     * @throws IllegalArgumentException Thrown if the document is not a
+     *                                  taxpayer object or an array of them.
+     */
+    static TaxFileProcessor.Records parse(String text) {
+        TaxJson parser = new TaxJson(text);
+        TaxFileProcessor.Records records;
+        if (isArray(text)) {
+            records = new TaxFileProcessor.Records(Math.max(1, parser.countObjects()));
+            parser.expect('[');
+            if (!parser.consume(']')) {
+                do {
+                    parser.parseTaxpayer(records);
+                } while (parser.consume(','));
+                parser.expect(']');
+            }
+        } else {
+            records = new TaxFileProcessor.Records(1);
+            parser.parseTaxpayer(records);
+        }
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw parser.error();
+        }
+        return records;
+    }
+
+    /**
+     * Append the result object of a computed record.
+     */
+    static void append(StringBuilder out, long record, TaxBatch batch, int[] errors, int index) {
+        out.append("{\"record\":").append(record);
+        if (errors[index] != TaxpayerValidator.VALID) {
+            String message = TaxpayerValidator.describe(errors[index]);
+            out.append(",\"errors\":").append(errors[index]).append(",\"message\":\"")
+                    .append((message == null) ? "Malformed record." : message.trim()).append("\"}");
+        } else {
+            appendNumber(out.append(",\"standardDeduction\":"), batch.getStandardDeduction()[index]);
+            appendNumber(out.append(",\"taxableIncome\":"), batch.getTaxableIncome()[index]);
+            appendNumber(out.append(",\"taxDue\":"), batch.getTaxDue()[index]);
+            appendNumber(out.append(",\"netTaxRate\":"), batch.getNetTaxRate()[index]);
+            out.append(",\"returnRequired\":").append(batch.getReturnRequired()[index]).append('}');
+        }
+    }
+
+    /**
+     * Append a number, or null if it is infinite or NaN, which JSON cannot
+     * represent.
+     */
+    private static void appendNumber(StringBuilder out, double value) {
+        if (Double.isFinite(value)) {
+            out.append(value);
+        } else {
+            out.append("null");
+        }
+    }
+
+    /**
+     * An upper bound of the number of objects in an array, for sizing the
+     * batch.
+     */
+    private int countObjects() {
+        int count = 0;
+        for (int index = 0; index < text.length(); index++) {
+            count += (text.charAt(index) == '{') ? 1 : 0;
+        }
+        return count;
+    }
+
+    private void parseTaxpayer(TaxFileProcessor.Records records) {
+        String name = null;
+        double age = Double.NaN;
+        double spouseAge = 0;
+        double filingStatus = Double.NaN;
+        double grossIncome = Double.NaN;
+        boolean mistyped = false;
+        expect('{');
+        if (!consume('}')) {
+            do {
+                String key = parseString();
+                expect(':');
+                Object value = parseValue();
+                switch (key) {
+                    case "name":
+                        mistyped |= !(value instanceof String);
+                        name = (value instanceof String) ? (String) value : null;
+                        break;
+                    case "age":
+                        age = number(value);
+                        break;
+                    case "spouseAge":
+                        spouseAge = number(value);
+                        break;
+                    case "filingStatus":
+                        filingStatus = number(value);
+                        break;
+                    case "grossIncome":
+                        grossIncome = number(value);
+                        break;
+                    default:
+                        break;
+                }
+            } while (consume(','));
+            expect('}');
+        }
+        if (mistyped || (name == null) || !isInt(age) || !isInt(spouseAge) || !isInt(filingStatus)
+                || Double.isNaN(grossIncome)) {
+            records.add(TaxFileProcessor.MALFORMED, null, 0, 0, 0, 0.0);
+        } else {
+            records.add(TaxpayerValidator.VALID, name, (int) age, (int) spouseAge, (int) filingStatus,
+                    grossIncome);
+        }
+    }
+
+    private static double number(Object value) {
+        return (value instanceof Double) ? (Double) value : Double.NaN;
+    }
+
+    private static boolean isInt(double value) {
+        return (value == Math.rint(value)) && (value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parse a string, number or literal. Nested values are rejected.
+     */
+    private Object parseValue() {
+        skipWhitespace();
+        if (position == text.length()) {
+            throw error();
+        }
+        char character = text.charAt(position);
+        if (character == '"') {
+            return parseString();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        } else if ((character == '-') || ((character >= '0') && (character <= '9'))) {
+            return parseNumber();
+        }
+        throw error();
+    }
+
+    /**
+     * Parse a number. A number too large for a double, such as 1e400, is
+     * rejected rather than read as infinity.
+     */
+    private Double parseNumber() {
+        int start = position;
+        while ((position < text.length()) && ("+-.eE0123456789".indexOf(text.charAt(position)) >= 0)) {
+            position++;
+        }
+        double value;
+        try {
+            value = Double.parseDouble(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error();
+        }
+        if (!Double.isFinite(value)) {
+            position = start;
+            throw error();
+        }
+        return value;
+    }
+
+    private String parseString() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (position >= text.length()) {
+                throw error();
+            }
+            char character = text.charAt(position++);
+            if (character == '"') {
+                return value.toString();
+            } else if (character < 0x20) {
+                throw error();
+            } else if (character != '\\') {
+                value.append(character);
+                continue;
+            }
+            if (position >= text.length()) {
+                throw error();
+            }
+            char escape = text.charAt(position++);
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append(escape);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error();
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error();
+                    }
+                    position += 4;
+                    break;
+                default:
+                    throw error();
+            }
+        }
+    }
+
+    private void expect(char character) {
+        if (!consume(character)) {
+            throw error();
+        }
+    }
+
+    private boolean consume(char character) {
+        skipWhitespace();
+        if ((position < text.length()) && (text.charAt(position) == character)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while ((position < text.length()) && isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(char character) {
+        return (character == ' ') || (character == '\t') || (character == '\n') || (character == '\r');
+    }
+
+    private IllegalArgumentException error() {
+        return new IllegalArgumentException("Malformed JSON at character " + position + ".");
+    }
+}
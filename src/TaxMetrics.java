@@ -0,0 +1,323 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class counts the calls to the results of the calculators per method
+ * and filing status, samples their latency, and counts validation failures
+ * and batch runs. The results of {@link TaxCalculator}, the calculators of
+ * {@link TaxCalculators}, {@link MemoizingTaxCalculator} and
+ * {@link TaxProfile} are counted. A profile computes its results when it is
+ * created, so its calls are only counted: their latency, that of a field
+ * read, would only dilute the histograms of the calculators. The counters are
+ * {@link LongAdder}s, so threads do not contend on them, and the latency of
+ * one call in {@link #SAMPLE_RATE} is recorded in {@link TaxHistogram}s
+ * striped by thread, which are merged when they are read.
+ * <p>
+ * The metrics are off unless the JVM is started with
+ * {@code -Dtax.metrics=true}. {@link #ENABLED} is a static final constant, so
+ * when it is false the JIT removes the instrumentation from the hot paths
+ * entirely. The sample rate is set with {@code -Dtax.metrics.sampleRate=N}.
+ * <p>
+ * Batch runs and validation failures are also emitted as the JFR events
+ * {@link TaxBatchEvent} and {@link TaxValidationEvent}, which are controlled
+ * by the JFR recording settings rather than by this flag. The counters are
+ * exposed through JMX once {@link #registerMBean()} is called.
+ */
+public final class TaxMetrics {
+
+    /**
+     * Whether the metrics are collected.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("tax.metrics");
+
+    /**
+     * One call in this many has its latency recorded.
+     */
+    public static final int SAMPLE_RATE = Math.max(1, Integer.getInteger("tax.metrics.sampleRate", 1024));
+
+    /**
+     * The name the MXBean is registered under.
+     */
+    public static final String OBJECT_NAME = "tax:type=TaxMetrics";
+
+    static final int STANDARD_DEDUCTION = 0;
+    static final int RETURN_REQUIRED = 1;
+    static final int TAXABLE_INCOME = 2;
+    static final int TAX_DUE = 3;
+    static final int NET_TAX_RATE = 4;
+
+    private static final String[] METHODS = {"getStandardDeduction", "isReturnRequired", "getTaxableIncome",
+            "getTaxDue", "getNetTaxRate"};
+
+    private static final String[] STATUSES = {"SINGLE", "HEAD_OF_HOUSEHOLD", "MARRIED_FILING_JOINTLY",
+            "MARRIED_FILING_SEPARATELY", "QUALIFYING_WIDOWER"};
+
+    private static final String[] ERRORS = {"NAME_EMPTY", "NAME_INCOMPLETE", "AGE_INVALID",
+            "FILING_STATUS_INVALID", "SPOUSE_AGE_INVALID", "TAX_YEAR_UNSUPPORTED"};
+
+    private static final LongAdder[] CALLS = adders(METHODS.length * TaxYear.STATUSES);
+    private static final LongAdder[] FAILURES = adders(ERRORS.length);
+    private static final LongAdder BATCH_RUNS = new LongAdder();
+    private static final LongAdder BATCH_RECORDS = new LongAdder();
+    /**
+     * The number of latency histograms per method: the power of two at or
+     * above twice the processors, at most 16, so that threads recording every
+     * call rarely share one.
+     */
+    private static final int STRIPES = Math.min(16,
+            Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private static final TaxHistogram[] LATENCY = new TaxHistogram[METHODS.length * STRIPES];
+
+    static {
+        for (int index = 0; index < LATENCY.length; index++) {
+            LATENCY[index] = new TaxHistogram(5, 1, 1e10);
+        }
+    }
+
+    private TaxMetrics() {
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int index = 0; index < count; index++) {
+            adders[index] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Count a call to a method whose latency is not worth sampling, such as
+     * a read of a precomputed result. Only call it if {@link #ENABLED}.
+     *
+     * @param method       The method.
+     * @param filingStatus The filing status of the calculator.
+     */
+    static void count(int method, int filingStatus) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status >= 0) {
+            CALLS[method * TaxYear.STATUSES + status].increment();
+        }
+    }
+
+    /**
+     * Count a call to a method of a calculator. Only call it if
+     * {@link #ENABLED}.
+     *
+     * @param method       The method.
+     * @param filingStatus The filing status of the calculator.
+     * @return The start time of the call if its latency is sampled, 0 if not.
+     */
+    static long begin(int method, int filingStatus) {
+        count(method, filingStatus);
+        if ((SAMPLE_RATE == 1) || (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0)) {
+            return System.nanoTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Record the latency of a sampled call.
+     *
+     * @param method The method.
+     * @param start  The result of {@link #begin(int, int)}.
+     */
+    static void end(int method, long start) {
+        if (start != 0) {
+            long latency = System.nanoTime() - start;
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            TaxHistogram histogram = LATENCY[method * STRIPES + stripe];
+            synchronized (histogram) {
+                histogram.record(Math.max(0, latency));
+            }
+        }
+    }
+
+    /**
+     * Count a validation failure and emit its JFR event.
+     *
+     * @param errors The error bits of {@link TaxpayerValidator}.
+     */
+    static void validationFailed(int errors) {
+        if (ENABLED) {
+            for (int bit = 0; bit < ERRORS.length; bit++) {
+                if ((errors & (1 << bit)) != 0) {
+                    FAILURES[bit].increment();
+                }
+            }
+        }
+        TaxValidationEvent event = new TaxValidationEvent();
+        if (event.shouldCommit()) {
+            event.errors = errors;
+            event.message = TaxpayerValidator.describe(errors);
+            event.commit();
+        }
+    }
+
+    /**
+     * Count a batch run. The event must have been begun before the run.
+     *
+     * @param event      The JFR event of the run.
+     * @param taxYear    The tax year of the batch.
+     * @param records    The number of records computed.
+     * @param vectorized Whether the vectorized kernel was requested.
+     */
+    static void batchRun(TaxBatchEvent event, int taxYear, int records, boolean vectorized) {
+        if (ENABLED) {
+            BATCH_RUNS.increment();
+            BATCH_RECORDS.add(records);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.taxYear = taxYear;
+            event.records = records;
+            event.vectorized = vectorized;
+            event.commit();
+        }
+    }
+
+    /**
+     * Register the MXBean of the metrics with the platform MBean server, once.
+     *
+     * @throws IllegalStateException Thrown if the MXBean cannot be registered.
+     */
+    public static synchronized void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MXBean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the metrics MXBean.", e);
+        }
+    }
+
+    /**
+     * @param method       The method, from {@link #STANDARD_DEDUCTION} to
+     *                     {@link #NET_TAX_RATE}.
+     * @param filingStatus The filing status.
+     * @return The number of calls counted.
+     */
+    static long getCalls(int method, int filingStatus) {
+        return CALLS[method * TaxYear.STATUSES + TaxRules.statusIndex(filingStatus)].sum();
+    }
+
+    /**
+     * @param error An error bit of {@link TaxpayerValidator}.
+     * @return The number of validation failures with the bit.
+     */
+    static long getFailures(int error) {
+        return FAILURES[Integer.numberOfTrailingZeros(error)].sum();
+    }
+
+    /**
+     * @param method The method.
+     * @return A copy of the sampled latencies of the method, in nanoseconds.
+     */
+    static TaxHistogram getLatency(int method) {
+        TaxHistogram copy = new TaxHistogram(5, 1, 1e10);
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            TaxHistogram histogram = LATENCY[method * STRIPES + stripe];
+            synchronized (histogram) {
+                copy.merge(histogram);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Reset every counter and histogram.
+     */
+    static void reset() {
+        for (LongAdder adder : CALLS) {
+            adder.reset();
+        }
+        for (LongAdder adder : FAILURES) {
+            adder.reset();
+        }
+        BATCH_RUNS.reset();
+        BATCH_RECORDS.reset();
+        for (TaxHistogram histogram : LATENCY) {
+            synchronized (histogram) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * The JMX view of the metrics.
+     */
+    private static final class MXBean implements TaxMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public Map<String, Long> getCalls() {
+            Map<String, Long> calls = new LinkedHashMap<>();
+            for (int method = 0; method < METHODS.length; method++) {
+                for (int status = 0; status < TaxYear.STATUSES; status++) {
+                    calls.put(METHODS[method] + "." + STATUSES[status], TaxMetrics.getCalls(method, -status));
+                }
+            }
+            return calls;
+        }
+
+        @Override
+        public Map<String, Long> getValidationFailures() {
+            Map<String, Long> failures = new LinkedHashMap<>();
+            for (int bit = 0; bit < ERRORS.length; bit++) {
+                failures.put(ERRORS[bit], FAILURES[bit].sum());
+            }
+            return failures;
+        }
+
+        @Override
+        public long getBatchRuns() {
+            return BATCH_RUNS.sum();
+        }
+
+        @Override
+        public long getBatchRecords() {
+            return BATCH_RECORDS.sum();
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMedianNanos() {
+            return latencies(0.5);
+        }
+
+        @Override
+        public Map<String, Double> getLatency99thPercentileNanos() {
+            return latencies(0.99);
+        }
+
+        private static Map<String, Double> latencies(double quantile) {
+            Map<String, Double> latencies = new LinkedHashMap<>();
+            for (int method = 0; method < METHODS.length; method++) {
+                latencies.put(METHODS[method], getLatency(method).getQuantile(quantile));
+            }
+            return latencies;
+        }
+
+        @Override
+        public void reset() {
+            TaxMetrics.reset();
+        }
+    }
+}
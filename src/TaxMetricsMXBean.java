@@ -0,0 +1,54 @@
+import java.util.Map;
+
+/**
+ * The JMX view of {@link TaxMetrics}, registered as
+ * {@value TaxMetrics#OBJECT_NAME}.
+ */
+public interface TaxMetricsMXBean {
+
+    /**
+     * @return Whether the metrics are collected.
+     */
+    boolean isEnabled();
+
+    /**
+     * @return One call in this many has its latency sampled.
+     */
+    int getSampleRate();
+
+    /**
+     * @return The number of calls per {@code method.FILING_STATUS}.
+     */
+    Map<String, Long> getCalls();
+
+    /**
+     * @return The number of validation failures per error bit.
+     */
+    Map<String, Long> getValidationFailures();
+
+    /**
+     * @return The number of batch runs.
+     */
+    long getBatchRuns();
+
+    /**
+     * @return The number of records computed by batch runs.
+     */
+    long getBatchRecords();
+
+    /**
+     * @return The median sampled latency per method, NaN if none was sampled.
+     */
+    Map<String, Double> getLatencyMedianNanos();
+
+    /**
+     * @return The 99th percentile sampled latency per method, NaN if none was
+     * sampled.
+     */
+    Map<String, Double> getLatency99thPercentileNanos();
+
+    /**
+     * Reset every counter and latency.
+     */
+    void reset();
+}
@@ -0,0 +1,415 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * This class computes a stream of taxpayer lines as a
+ * {@link Flow.Processor}: subscribe it to a publisher of lines in the format
+ * of {@link TaxFileProcessor}, without their line terminators, and subscribe
+ * a sink such as {@link TotalsSubscriber} to it. The lines are parsed by the
+ * parser of {@link TaxFileProcessor}, so the two accept and number the same
+ * records. The lines flow through three stages, each
+ * with its own worker threads:
+ * <ol>
+ * <li>parse, which turns a line into a {@link Record} and drops blank
+ * lines,</li>
+ * <li>validate, which sets the error bits a {@link TaxCalculator}
+ * constructor would reject the record with,</li>
+ * <li>compute, which sets the results of the valid records.</li>
+ * </ol>
+ * Every stage is bounded. It requests {@code bufferSize} items from upstream
+ * to start and one more each time it hands an item on, and it hands items on
+ * through a {@link SubmissionPublisher} whose buffer holds at most
+ * {@code bufferSize} items per subscriber, blocking the stage's workers when
+ * it is full. A slow sink therefore stops the stages one after the other and
+ * finally the source, and at most a few buffers of records are in flight
+ * however fast the source publishes. A stage only starts requesting once
+ * something is subscribed downstream, so the sink must be subscribed for
+ * records to flow.
+ * <p>
+ * With a parallelism of 1 a stage keeps the order of the records; with more
+ * workers the records may be reordered, and {@link Record#getRecord()} tells
+ * them apart.
+ * <p>
+ * The rules of {@link TaxYearRegistry#DEFAULT_YEAR} are looked up once, when
+ * the pipeline is subscribed to its source, and every record of the stream is
+ * computed with them, as {@link TaxBatch} pins its rules for a call. Rules
+ * published while the stream flows apply to the streams subscribed after.
+ */
+public final class TaxPipeline implements Flow.Processor<String, TaxPipeline.Record> {
+
+    /**
+     * The default number of records buffered by each stage.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+
+    private final Stage<Record, Record> parse;
+    private final Stage<Record, Record> compute;
+    private long records; // The number of the next record.
+    private volatile TaxYear rules; // The rules of the stream, looked up when it is subscribed.
+
+    /**
+     * Create a pipeline with the default buffers and one worker per stage.
+     */
+    public TaxPipeline() {
+        this(DEFAULT_BUFFER_SIZE, 1, 1, 1);
+    }
+
+    /**
+     * @param bufferSize          The number of records each stage buffers.
+     * @param parseParallelism    The number of threads parsing lines.
+     * @param validateParallelism The number of threads validating records.
+     * @param computeParallelism  The number of threads computing records.
+     * @throws IllegalArgumentException Thrown if a parameter is not positive.
+     */
+    public TaxPipeline(int bufferSize, int parseParallelism, int validateParallelism, int computeParallelism) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size.");
+        }
+        if ((parseParallelism <= 0) || (validateParallelism <= 0) || (computeParallelism <= 0)) {
+            throw new IllegalArgumentException("Invalid parallelism.");
+        }
+        parse = new Stage<>("parse", TaxPipeline::parse, parseParallelism, bufferSize);
+        Stage<Record, Record> validate = new Stage<>("validate", TaxPipeline::validate, validateParallelism,
+                bufferSize);
+        compute = new Stage<>("compute", this::compute, computeParallelism, bufferSize);
+        parse.subscribe(validate);
+        validate.subscribe(compute);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (rules == null) {
+            rules = TaxYearRegistry.getDefault();
+        }
+        parse.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(String line) {
+        // A publisher calls onNext serially, so the records are numbered in
+        // order. Blank lines are numbered like TaxFileProcessor numbers them:
+        // not at all, as the parse stage drops them.
+        boolean blank = line.isEmpty() || line.equals("\r");
+        parse.onNext(new Record(blank ? -1 : records++, line));
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        parse.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        parse.onComplete();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Record> subscriber) {
+        compute.subscribe(subscriber);
+    }
+
+    /**
+     * Parse the line of a record with the parser of {@link TaxFileProcessor},
+     * or drop it if it is blank.
+     */
+    private static Record parse(Record record) {
+        ByteBuffer line = ByteBuffer.wrap(record.line.getBytes(StandardCharsets.UTF_8));
+        record.line = null;
+        int end = TaxFileProcessor.Records.lineEnd(line, 0, line.limit());
+        if (end == 0) {
+            return null;
+        }
+        TaxFileProcessor.Fields fields = new TaxFileProcessor.Fields();
+        record.errors = TaxFileProcessor.Records.parseFields(line, 0, end, fields);
+        if (record.errors == TaxpayerValidator.VALID) {
+            record.name = new String(line.array(), 0, fields.nameEnd, StandardCharsets.UTF_8);
+            record.age = fields.age;
+            record.spouseAge = fields.spouseAge;
+            record.filingStatus = fields.filingStatus;
+            record.grossIncome = fields.grossIncome;
+        }
+        return record;
+    }
+
+    private static Record validate(Record record) {
+        if (record.errors == TaxpayerValidator.VALID) {
+            record.errors = TaxpayerValidator.validate(record.name, record.age, record.filingStatus,
+                    record.spouseAge);
+        }
+        return record;
+    }
+
+    private Record compute(Record record) {
+        if (record.errors == TaxpayerValidator.VALID) {
+            TaxResultCache.Result result = rules.compute(record.filingStatus, record.age, record.spouseAge,
+                    record.grossIncome);
+            record.taxDue = result.getTaxDue();
+            record.returnRequired = result.isReturnRequired();
+        }
+        return record;
+    }
+
+    /**
+     * A taxpayer flowing through the pipeline. Each stage fills in its part
+     * before handing the record on, and the publishers between the stages
+     * make those writes visible to the next stage.
+     */
+    public static final class Record {
+
+        private final long record;
+        private String line; // The line, until it is parsed.
+        private String name;
+        private int age;
+        private int spouseAge;
+        private int filingStatus;
+        private double grossIncome;
+        private int errors;
+        private double taxDue;
+        private boolean returnRequired;
+
+        Record(long record, String line) {
+            this.record = record;
+            this.line = line;
+        }
+
+        /**
+         * @return The number of the record, counting the lines of the stream
+         * from 0 without the blank ones, as {@link TaxFileProcessor} does.
+         */
+        public long getRecord() {
+            return record;
+        }
+
+        /**
+         * @return The name of the taxpayer, or null if the line is malformed.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The filing status.
+         */
+        public int getFilingStatus() {
+            return filingStatus;
+        }
+
+        /**
+         * @return The gross income as parsed.
+         */
+        public double getGrossIncome() {
+            return grossIncome;
+        }
+
+        /**
+         * @return {@link TaxFileProcessor#MALFORMED}, the bits of
+         * {@link TaxpayerValidator}, or {@link TaxpayerValidator#VALID}.
+         */
+        public int getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return The tax due, 0 if the record has errors.
+         */
+        public double getTaxDue() {
+            return taxDue;
+        }
+
+        /**
+         * @return Whether a return is required, false if the record has
+         * errors.
+         */
+        public boolean isReturnRequired() {
+            return returnRequired;
+        }
+    }
+
+    /**
+     * A sink which totals the valid records per filing status and counts the
+     * others. It requests records in batches of its buffer size, so it is as
+     * bounded as the stages.
+     */
+    public static final class TotalsSubscriber implements Flow.Subscriber<Record> {
+
+        private final int bufferSize;
+        private final TaxTotals totals = new TaxTotals();
+        private final CompletableFuture<TaxTotals> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long invalid;
+        private int received; // The records received since the last request.
+
+        public TotalsSubscriber() {
+            this(DEFAULT_BUFFER_SIZE);
+        }
+
+        /**
+         * @param bufferSize The number of records requested at a time.
+         * @throws IllegalArgumentException Thrown if the size is not positive.
+         */
+        public TotalsSubscriber(int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("Invalid buffer size.");
+            }
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(bufferSize);
+        }
+
+        @Override
+        public void onNext(Record record) {
+            if (record.getErrors() == TaxpayerValidator.VALID) {
+                totals.add(record.getFilingStatus(), record.getTaxDue(), record.isReturnRequired());
+            } else {
+                invalid++;
+            }
+            if (++received == bufferSize) {
+                received = 0;
+                subscription.request(bufferSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(totals);
+        }
+
+        /**
+         * @return The totals, once the stream completes.
+         */
+        public CompletableFuture<TaxTotals> getResult() {
+            return result;
+        }
+
+        /**
+         * @return The number of records with errors, once the stream
+         * completes.
+         */
+        public long getInvalid() {
+            return invalid;
+        }
+    }
+
+    /**
+     * A bounded processor which applies a function to every item on its own
+     * workers. A null result drops the item.
+     */
+    private static final class Stage<T, R> implements Flow.Processor<T, R> {
+
+        private final Function<? super T, ? extends R> function;
+        private final int bufferSize;
+        private final ExecutorService workers;
+        private final SubmissionPublisher<R> out;
+        // The items being processed, plus one until the upstream completes.
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private Flow.Subscription upstream;
+        private boolean started; // Whether the first items were requested.
+
+        Stage(String name, Function<? super T, ? extends R> function, int parallelism, int bufferSize) {
+            this.function = function;
+            this.bufferSize = bufferSize;
+            workers = Executors.newFixedThreadPool(parallelism, threads("tax-pipeline-" + name + "-"));
+            // The workers block while the buffer is full, so the buffer is drained by
+            // threads of its own.
+            out = new SubmissionPublisher<>(Executors.newCachedThreadPool(threads("tax-pipeline-" + name
+                    + "-delivery-")), bufferSize);
+        }
+
+        private static ThreadFactory threads(String prefix) {
+            AtomicInteger count = new AtomicInteger();
+            return task -> {
+                Thread thread = new Thread(task, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super R> subscriber) {
+            out.subscribe(subscriber);
+            start();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            synchronized (this) {
+                if (upstream != null) {
+                    subscription.cancel();
+                    return;
+                }
+                upstream = subscription;
+            }
+            start();
+        }
+
+        /**
+         * Request the first items once both ends are subscribed.
+         */
+        private synchronized void start() {
+            if (!started && (upstream != null) && out.hasSubscribers()) {
+                started = true;
+                upstream.request(bufferSize);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            pending.incrementAndGet();
+            workers.execute(() -> process(item));
+        }
+
+        private void process(T item) {
+            try {
+                R result = function.apply(item);
+                if (result != null) {
+                    out.submit(result);
+                }
+                if (out.hasSubscribers()) {
+                    upstream.request(1);
+                } else {
+                    upstream.cancel();
+                }
+            } catch (RuntimeException e) {
+                upstream.cancel();
+                out.closeExceptionally(e);
+            } finally {
+                finish();
+            }
+        }
+
+        private void finish() {
+            if (pending.decrementAndGet() == 0) {
+                out.close();
+                workers.shutdown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            out.closeExceptionally(throwable);
+            workers.shutdown();
+        }
+
+        @Override
+        public void onComplete() {
+            finish();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/**
+ * This class is an immutable taxpayer with the results of
+ * {@link TaxCalculatorInterface}. Every field is final and the results are
+ * computed at construction from a single set of rules, so a profile can be
+ * shared between threads without locking and always reads consistently. A
+ * different income or name is a new profile, derived with
+ * {@link #withGrossIncome(double)} or {@link #withName(String)}.
+ * <p>
+ * A derived profile looks the rules of its tax year up again, so a profile
+ * derived after new rules are published uses the new rules. Derived profiles
+ * that do not escape the caller are candidates for scalar replacement, so
+ * deriving a profile per request need not allocate once the JIT has compiled
+ * the caller.
+ * <p>
+ * {@link TaxCalculator} remains the mutable adapter; {@link TaxCalculator#toProfile()}
+ * takes a snapshot of one.
+ */
+public final class TaxProfile {
+
+    private final TaxYear rules; // The rules the results were computed with.
+    private final String name; // The name of the taxpayer.
+    private final int filingStatus; // The filing status of the taxpayer.
+    private final int age; // The age of the taxpayer.
+    private final int spouseAge; // The age of the spouse, 0 if there is none.
+    private final double grossIncome; // The gross income of the taxpayer.
+
+    private final double standardDeduction;
+    private final double taxableIncome;
+    private final double taxDue;
+    private final double netTaxRate;
+    private final boolean returnRequired;
+
+    private TaxProfile(TaxYear rules, String name, int filingStatus, int age, int spouseAge, double grossIncome,
+                       double standardDeduction) {
+        this.rules = rules;
+        this.name = name;
+        this.filingStatus = filingStatus;
+        this.age = age;
+        this.spouseAge = spouseAge;
+        this.grossIncome = grossIncome;
+        this.standardDeduction = standardDeduction;
+        this.taxableIncome = TaxRules.taxableIncome(grossIncome, standardDeduction);
+        this.taxDue = rules.taxDue(filingStatus, this.taxableIncome);
+        this.netTaxRate = TaxRules.netTaxRate(grossIncome, this.taxDue);
+        this.returnRequired = rules.returnRequired(filingStatus, age, spouseAge, grossIncome);
+    }
+
+    /**
+     * Create a profile of a taxpayer that has already been validated.
+     */
+    static TaxProfile create(int taxYear, String name, int filingStatus, int age, int spouseAge,
+                             double grossIncome) {
+        TaxYear rules = TaxYearRegistry.forYear(taxYear);
+        return new TaxProfile(rules, name, filingStatus, age, spouseAge, grossIncome,
+                rules.standardDeduction(filingStatus, age, spouseAge));
+    }
+
+    /**
+     * Create a profile for a taxpayer without a spouse and without income.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Single, Head of Household or Qualifying widower.
+     * @return The profile.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int)}.
+     */
+    public static TaxProfile of(String name, int age, int filingStatus) {
+        return of(TaxYearRegistry.DEFAULT_YEAR, name, age, filingStatus);
+    }
+
+    /**
+     * Create a profile for a married taxpayer without income.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Married filing jointly or separately.
+     * @param spouseAge    The age of the spouse.
+     * @return The profile.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int, int)}.
+     */
+    public static TaxProfile of(String name, int age, int filingStatus, int spouseAge) {
+        return of(TaxYearRegistry.DEFAULT_YEAR, name, age, filingStatus, spouseAge);
+    }
+
+    /**
+     * Create a profile for a taxpayer without a spouse and without income.
+     *
+     * @param taxYear      The year of the tax tables to use.
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Single, Head of Household or Qualifying widower.
+     * @return The profile.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(int, String, int, int)}.
+     */
+    public static TaxProfile of(int taxYear, String name, int age, int filingStatus) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateSingleFilingStatus(filingStatus));
+        return create(taxYear, name, filingStatus, age, 0, 0);
+    }
+
+    /**
+     * Create a profile for a married taxpayer without income.
+     *
+     * @param taxYear      The year of the tax tables to use.
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Married filing jointly or separately.
+     * @param spouseAge    The age of the spouse.
+     * @return The profile.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(int, String, int, int, int)}.
+     */
+    public static TaxProfile of(int taxYear, String name, int age, int filingStatus, int spouseAge) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateMarriedFilingStatus(filingStatus));
+        TaxpayerValidator.check(TaxpayerValidator.validateSpouseAge(spouseAge));
+        return create(taxYear, name, filingStatus, age, spouseAge, 0);
+    }
+
+    /**
+     * Create a snapshot of a calculator. The calculator must already be valid,
+     * so nothing is validated again.
+     */
+    static TaxProfile of(int taxYear, TaxCalculatorInterface calculator) {
+        return create(taxYear, calculator.getName(), calculator.getFilingStatus(), calculator.getAge(),
+                calculator.getSpouseAge(), calculator.getGrossIncome());
+    }
+
+    /**
+     * Derive the profile with another gross income, normalized the way
+     * {@link TaxCalculatorInterface#setGrossIncome(double)} does.
+     *
+     * @param grossIncome The gross income of the new profile.
+     * @return The profile with the income.
+     */
+    public TaxProfile withGrossIncome(double grossIncome) {
+        // A single allocation site, which escape analysis can eliminate; it
+        // gives up on a result that may also be this or another allocation.
+        TaxYear current = TaxYearRegistry.forYear(this.rules.getYear());
+        double deduction = (current == this.rules) ? this.standardDeduction
+                : current.standardDeduction(this.filingStatus, this.age, this.spouseAge);
+        return new TaxProfile(current, this.name, this.filingStatus, this.age, this.spouseAge,
+                TaxRules.grossIncome(this.grossIncome, grossIncome), deduction);
+    }
+
+    /**
+     * Derive the profile with another name.
+     *
+     * @param name The name of the new profile.
+     * @return The profile with the name.
+     * @throws IllegalArgumentException Thrown if the name is not a valid name.
+     */
+    public TaxProfile withName(String name) {
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        return create(this.rules.getYear(), name, this.filingStatus, this.age, this.spouseAge, this.grossIncome);
+    }
+
+    /**
+     * @return The year of the tax tables of this profile.
+     */
+    public int getTaxYear() {
+        return rules.getYear();
+    }
+
+    /**
+     * @return The name of the taxpayer.
+     * @see TaxCalculatorInterface#getName()
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The filing status of the taxpayer.
+     * @see TaxCalculatorInterface#getFilingStatus()
+     */
+    public int getFilingStatus() {
+        return filingStatus;
+    }
+
+    /**
+     * @return The age of the taxpayer.
+     * @see TaxCalculatorInterface#getAge()
+     */
+    public int getAge() {
+        return age;
+    }
+
+    /**
+     * @return The age of the spouse, or 0 if there is none.
+     * @see TaxCalculatorInterface#getSpouseAge()
+     */
+    public int getSpouseAge() {
+        return spouseAge;
+    }
+
+    /**
+     * @return The gross income of the taxpayer.
+     * @see TaxCalculatorInterface#getGrossIncome()
+     */
+    public double getGrossIncome() {
+        return grossIncome;
+    }
+
+    /**
+     * @return The standard deduction.
+     * @see TaxCalculatorInterface#getStandardDeduction()
+     */
+    public double getStandardDeduction() {
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.count(TaxMetrics.STANDARD_DEDUCTION, this.filingStatus);
+        }
+        return standardDeduction;
+    }
+
+    /**
+     * @return The taxable income.
+     * @see TaxCalculatorInterface#getTaxableIncome()
+     */
+    public double getTaxableIncome() {
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.count(TaxMetrics.TAXABLE_INCOME, this.filingStatus);
+        }
+        return taxableIncome;
+    }
+
+    /**
+     * @return The tax due.
+     * @see TaxCalculatorInterface#getTaxDue()
+     */
+    public double getTaxDue() {
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.count(TaxMetrics.TAX_DUE, this.filingStatus);
+        }
+        return taxDue;
+    }
+
+    /**
+     * @return The net tax rate.
+     * @see TaxCalculatorInterface#getNetTaxRate()
+     */
+    public double getNetTaxRate() {
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.count(TaxMetrics.NET_TAX_RATE, this.filingStatus);
+        }
+        return netTaxRate;
+    }
+
+    /**
+     * @return Whether a return is required.
+     * @see TaxCalculatorInterface#isReturnRequired()
+     */
+    public boolean isReturnRequired() {
+        if (TaxMetrics.ENABLED) {
+            TaxMetrics.count(TaxMetrics.RETURN_REQUIRED, this.filingStatus);
+        }
+        return returnRequired;
+    }
+
+    /**
+     * Two profiles are equal if they describe the same taxpayer and were
+     * computed with the same rules.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TaxProfile)) {
+            return false;
+        }
+        TaxProfile profile = (TaxProfile) other;
+        return (rules == profile.rules) && name.equals(profile.name) && (filingStatus == profile.filingStatus)
+                && (age == profile.age) && (spouseAge == profile.spouseAge)
+                && (Double.compare(grossIncome, profile.grossIncome) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = rules.getYear();
+        hash = 31 * hash + name.hashCode();
+        hash = 31 * hash + filingStatus;
+        hash = 31 * hash + age;
+        hash = 31 * hash + spouseAge;
+        return 31 * hash + Double.hashCode(grossIncome);
+    }
+
+    @Override
+    public String toString() {
+        return "TaxProfile[" + rules.getYear() + ", " + name + ", status " + filingStatus + ", age " + age
+                + ", spouse age " + spouseAge + ", gross income " + grossIncome + ", tax due " + taxDue + "]";
+    }
+}
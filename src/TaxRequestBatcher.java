@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class coalesces the small batches of concurrent requests into one
+ * {@link TaxBatch} run. A request thread queues its records and blocks; a
+ * single dispatcher thread takes every queued request that fits into the
+ * work batch, copies their inputs into it, computes it once and copies the
+ * results back before releasing the requests.
+ * <p>
+ * With no linger the dispatcher only takes what is already queued, so an idle
+ * server answers a lone request right away and the batches grow with the load
+ * on their own. A linger makes the dispatcher wait that long for a batch to
+ * fill, trading latency for larger batches.
+ */
+final class TaxRequestBatcher implements AutoCloseable {
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final TaxBatch work; // The batch the requests are coalesced into.
+    private final long lingerNanos; // How long to wait for a batch to fill.
+    private final Thread dispatcher;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param maxBatchSize The largest number of records computed together.
+     * @param lingerNanos  How long to wait for more requests once one is
+     *                     queued, 0 to take only what is queued.
+     * @throws IllegalArgumentException Thrown if a parameter is out of bounds.
+     */
+    TaxRequestBatcher(int maxBatchSize, long lingerNanos) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        }
+        if (lingerNanos < 0) {
+            throw new IllegalArgumentException("Invalid linger.");
+        }
+        work = new TaxBatch(new int[maxBatchSize], new int[maxBatchSize], new int[maxBatchSize],
+                new double[maxBatchSize], new double[maxBatchSize], new double[maxBatchSize],
+                new double[maxBatchSize], new double[maxBatchSize], new boolean[maxBatchSize]);
+        this.lingerNanos = lingerNanos;
+        dispatcher = new Thread(this::dispatch, "tax-request-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * @return The largest number of records computed together.
+     */
+    int getMaxBatchSize() {
+        return work.size();
+    }
+
+    /**
+     * @return The number of batch runs so far.
+     */
+    long getRuns() {
+        return runs.sum();
+    }
+
+    /**
+     * @return The number of records computed so far.
+     */
+    long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * Compute the first records of a batch together with the other queued
+     * requests, and wait for the results.
+     *
+     * @param batch The batch of the request.
+     * @param count The number of records to compute.
+     * @throws IllegalArgumentException Thrown if the count is larger than the
+     *                                  largest batch.
+     * @throws IllegalStateException    Thrown if the batcher is closed.
+     * @throws InterruptedException     Thrown if the thread is interrupted
+     *                                  while it waits.
+     */
+    void compute(TaxBatch batch, int count) throws InterruptedException {
+        batch.checkRange(0, count);
+        if (count > work.size()) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        }
+        Request request = new Request(batch, count);
+        queue.add(request);
+        if (closed && queue.remove(request)) {
+            throw new IllegalStateException("The batcher is closed.");
+        }
+        try {
+            request.done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void dispatch() {
+        List<Request> group = new ArrayList<>();
+        Request carried = null; // A request that did not fit into the last batch.
+        try {
+            while (!closed) {
+                Request request = (carried != null) ? carried : queue.take();
+                carried = null;
+                int size = 0;
+                long deadline = System.nanoTime() + lingerNanos;
+                while (request != null) {
+                    if (size + request.count > work.size()) {
+                        carried = request;
+                        break;
+                    }
+                    group.add(request);
+                    size += request.count;
+                    long remaining = deadline - System.nanoTime();
+                    request = (remaining > 0) && (size < work.size())
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+                run(group, size);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            // Closed.
+        } finally {
+            // Requests queued from now on are refused rather than left waiting.
+            closed = true;
+            IllegalStateException closedException = new IllegalStateException("The batcher is closed.");
+            for (Request request : group) {
+                request.done.completeExceptionally(closedException);
+            }
+            if (carried != null) {
+                carried.done.completeExceptionally(closedException);
+            }
+            for (Request request = queue.poll(); request != null; request = queue.poll()) {
+                request.done.completeExceptionally(closedException);
+            }
+        }
+    }
+
+    /**
+     * Compute a group of requests. Whatever is thrown, an Error included,
+     * fails the requests of the group and leaves the dispatcher running.
+     */
+    private void run(List<Request> group, int size) {
+        try {
+            int offset = 0;
+            for (Request request : group) {
+                TaxBatch batch = request.batch;
+                System.arraycopy(batch.getFilingStatus(), 0, work.getFilingStatus(), offset, request.count);
+                System.arraycopy(batch.getAge(), 0, work.getAge(), offset, request.count);
+                System.arraycopy(batch.getSpouseAge(), 0, work.getSpouseAge(), offset, request.count);
+                System.arraycopy(batch.getGrossIncome(), 0, work.getGrossIncome(), offset, request.count);
+                offset += request.count;
+            }
+            work.computeVectorized(0, size);
+            runs.increment();
+            records.add(size);
+            offset = 0;
+            for (Request request : group) {
+                TaxBatch batch = request.batch;
+                System.arraycopy(work.getStandardDeduction(), offset, batch.getStandardDeduction(), 0,
+                        request.count);
+                System.arraycopy(work.getTaxableIncome(), offset, batch.getTaxableIncome(), 0, request.count);
+                System.arraycopy(work.getTaxDue(), offset, batch.getTaxDue(), 0, request.count);
+                System.arraycopy(work.getNetTaxRate(), offset, batch.getNetTaxRate(), 0, request.count);
+                System.arraycopy(work.getReturnRequired(), offset, batch.getReturnRequired(), 0, request.count);
+                offset += request.count;
+                request.done.complete(null);
+            }
+        } catch (Throwable e) {
+            for (Request request : group) {
+                request.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stop the dispatcher. Queued requests fail with an
+     * IllegalStateException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The records of a waiting request.
+     */
+    private static final class Request {
+
+        final TaxBatch batch;
+        final int count;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Request(TaxBatch batch, int count) {
+            this.batch = batch;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * This class is a concurrent, size-bounded cache of computed tax results for
+ * repeating taxpayer profiles, such as salary bands. It is used through
+ * {@link MemoizingTaxCalculator}.
+ * <p>
+ * A result only depends on the tax year, the filing status, how many of the
+ * people counted by the status are aged 65 or older and the exact gross
+ * income, so the key is those values packed into an int and the bits of the
+ * income in a long. Nothing is boxed to look a result up.
+ * <p>
+ * The cache is set-associative: a key hashes to one set of {@link #WAYS}
+ * entries, and when the set is full the CLOCK (second chance) policy evicts
+ * an entry that was not hit since the hand last passed it, which
+ * approximates LRU within the set. Sets are guarded by a fixed number of
+ * striped locks. A hit is an optimistic read that only takes the read lock if
+ * a writer got in the way, so hits do not block each other.
+ * <p>
+ * Results are tagged with the {@link TaxYearRegistry#getGeneration()
+ * generation} of the rules they were computed with. Once new rules are
+ * published the older results are no longer returned, and a stripe is cleared
+ * the first time a result of the new generation is stored in it.
+ */
+public final class TaxResultCache {
+
+    /**
+     * The number of entries in a set.
+     */
+    public static final int WAYS = 8;
+
+    private static final int MAX_STRIPES = 64;
+
+    private final int setMask; // The number of sets minus 1.
+    private final int stripeMask; // The number of stripes minus 1.
+    private final StampedLock[] locks; // The lock of each stripe.
+    private final long[] generations; // The generation of the results in each stripe.
+
+    private final int[] keys; // The packed key of each entry, 0 if empty.
+    private final long[] incomes; // The raw bits of the gross income of each entry.
+    private final Result[] results; // The result of each entry.
+    private final byte[] referenced; // Whether each entry was hit since the hand passed it.
+    private final byte[] hands; // The CLOCK hand of each set.
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity The largest number of results to hold. It is rounded up
+     *                 to a power of two of at least {@link #WAYS}.
+     * @throws IllegalArgumentException Thrown if the capacity is not positive.
+     */
+    public TaxResultCache(int capacity) {
+        if ((capacity <= 0) || (capacity > (1 << 30))) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        int sets = Math.max(1, Integer.highestOneBit((capacity + WAYS - 1) / WAYS * 2 - 1));
+        int stripes = Math.min(sets, MAX_STRIPES);
+        this.setMask = sets - 1;
+        this.stripeMask = stripes - 1;
+        this.locks = new StampedLock[stripes];
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            locks[stripe] = new StampedLock();
+        }
+        this.generations = new long[stripes];
+        this.keys = new int[sets * WAYS];
+        this.incomes = new long[sets * WAYS];
+        this.results = new Result[sets * WAYS];
+        this.referenced = new byte[sets * WAYS];
+        this.hands = new byte[sets];
+    }
+
+    /**
+     * Pack the parts of a profile that a result depends on, besides the
+     * income, into a key.
+     *
+     * @param taxYear      The tax year.
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @return The key, or 0 if the profile cannot be cached.
+     */
+    static int key(int taxYear, int filingStatus, int age, int spouseAge) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if ((status < 0) || (taxYear < 0) || (taxYear >= (1 << 16))) {
+            return 0;
+        }
+        // Bit 0 marks a used entry, so no valid key is 0.
+        return (taxYear << 8) | (status << 3) | (TaxYear.agedPeople(status, age, spouseAge) << 1) | 1;
+    }
+
+    private int setOf(int key, long income) {
+        long hash = (income ^ (income >>> 29) ^ ((long) key * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+        return (int) (hash >>> 40) & setMask;
+    }
+
+    /**
+     * Look up a result.
+     *
+     * @param taxYear      The tax year.
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @param grossIncome  The gross income, as normalized by
+     *                     {@link TaxRules#grossIncome(double, double)}.
+     * @return The result, or null if it is not cached for the current rules.
+     */
+    public Result get(int taxYear, int filingStatus, int age, int spouseAge, double grossIncome) {
+        return get(key(taxYear, filingStatus, age, spouseAge), grossIncome, TaxYearRegistry.getGeneration());
+    }
+
+    Result get(int key, double grossIncome, long generation) {
+        if (key == 0) {
+            misses.increment();
+            return null;
+        }
+        long income = Double.doubleToRawLongBits(grossIncome);
+        int set = setOf(key, income);
+        int stripe = set & stripeMask;
+        StampedLock lock = locks[stripe];
+        long stamp = lock.tryOptimisticRead();
+        Result result = probe(stripe, set, key, income, generation);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = probe(stripe, set, key, income, generation);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    private Result probe(int stripe, int set, int key, long income, long generation) {
+        if (generations[stripe] != generation) {
+            return null;
+        }
+        int base = set * WAYS;
+        for (int entry = base; entry < base + WAYS; entry++) {
+            if ((keys[entry] == key) && (incomes[entry] == income)) {
+                Result result = results[entry];
+                referenced[entry] = 1;
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store a result.
+     *
+     * @param taxYear      The tax year.
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @param grossIncome  The gross income, as normalized by
+     *                     {@link TaxRules#grossIncome(double, double)}.
+     * @param generation   The generation read before the result was computed.
+     * @param result       The result.
+     */
+    public void put(int taxYear, int filingStatus, int age, int spouseAge, double grossIncome, long generation,
+                    Result result) {
+        put(key(taxYear, filingStatus, age, spouseAge), grossIncome, generation, result);
+    }
+
+    void put(int key, double grossIncome, long generation, Result result) {
+        if (key == 0) {
+            return;
+        }
+        long income = Double.doubleToRawLongBits(grossIncome);
+        int set = setOf(key, income);
+        int stripe = set & stripeMask;
+        StampedLock lock = locks[stripe];
+        long stamp = lock.writeLock();
+        try {
+            if (generations[stripe] != generation) {
+                if (generations[stripe] > generation) {
+                    return; // Computed with rules that have been replaced.
+                }
+                clearStripe(stripe);
+                generations[stripe] = generation;
+            }
+            int base = set * WAYS;
+            int victim = -1;
+            for (int entry = base; entry < base + WAYS; entry++) {
+                if ((keys[entry] == key) && (incomes[entry] == income)) {
+                    results[entry] = result;
+                    return;
+                } else if ((keys[entry] == 0) && (victim < 0)) {
+                    victim = entry;
+                }
+            }
+            if (victim < 0) {
+                victim = evict(set);
+            }
+            keys[victim] = key;
+            incomes[victim] = income;
+            results[victim] = result;
+            referenced[victim] = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Advance the hand of a full set past the entries hit since it last
+     * passed them, clearing their bits, and free the first entry that was not.
+     */
+    private int evict(int set) {
+        int base = set * WAYS;
+        int hand = hands[set];
+        while (referenced[base + hand] != 0) {
+            referenced[base + hand] = 0;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        evictions.increment();
+        return base + hand;
+    }
+
+    private void clearStripe(int stripe) {
+        for (int set = stripe; set <= setMask; set += stripeMask + 1) {
+            for (int entry = set * WAYS; entry < (set + 1) * WAYS; entry++) {
+                keys[entry] = 0;
+                results[entry] = null;
+                referenced[entry] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return The largest number of results the cache holds.
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return The number of lookups that found a result.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups that did not find a result.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of results evicted to make room for another.
+     * Results dropped because new rules were published are not counted.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * The computed results of a taxpayer profile. Instances are immutable.
+     */
+    public static final class Result {
+
+        private final double standardDeduction;
+        private final double taxableIncome;
+        private final double taxDue;
+        private final double netTaxRate;
+        private final boolean returnRequired;
+
+        /**
+         * @param standardDeduction The standard deduction.
+         * @param taxableIncome     The taxable income.
+         * @param taxDue            The tax due.
+         * @param netTaxRate        The net tax rate.
+         * @param returnRequired    Whether a return is required.
+         */
+        public Result(double standardDeduction, double taxableIncome, double taxDue, double netTaxRate,
+                      boolean returnRequired) {
+            this.standardDeduction = standardDeduction;
+            this.taxableIncome = taxableIncome;
+            this.taxDue = taxDue;
+            this.netTaxRate = netTaxRate;
+            this.returnRequired = returnRequired;
+        }
+
+        public double getStandardDeduction() {
+            return standardDeduction;
+        }
+
+        public double getTaxableIncome() {
+            return taxableIncome;
+        }
+
+        public double getTaxDue() {
+            return taxDue;
+        }
+
+        public double getNetTaxRate() {
+            return netTaxRate;
+        }
+
+        public boolean isReturnRequired() {
+            return returnRequired;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads a result file written by {@link TaxResultWriter}. The file
+ * is memory-mapped, in windows of up to {@link #DEFAULT_WINDOW_RECORDS}
+ * records so that files larger than 2 GB can be read, and the records are
+ * read in place through a {@link Cursor}: moving the cursor and reading a
+ * field allocates nothing, and nothing is parsed.
+ * <p>
+ * The mapping is released by the garbage collector once the reader is no
+ * longer referenced; {@link #close()} only drops the reader's references to
+ * it. Any number of threads may read a file, each with its own cursor.
+ */
+public final class TaxResultReader implements AutoCloseable {
+
+    /**
+     * The default number of records in a mapped window, about 1.5 GB.
+     */
+    static final int DEFAULT_WINDOW_RECORDS = 1 << 25;
+
+    private final int version; // The format version of the file.
+    private final int taxYear; // The year of the results.
+    private final long count; // The number of records.
+    private final int recordBytes; // The size of a record in the file.
+    private final int windowRecords; // The number of records in a window.
+    private ByteBuffer[] windows; // The mapped windows of records.
+
+    /**
+     * Open a result file.
+     *
+     * @param input The file.
+     * @throws IOException Thrown if the file cannot be read, is not a result
+     *                     file, is of a later version or is truncated.
+     */
+    public TaxResultReader(Path input) throws IOException {
+        this(input, DEFAULT_WINDOW_RECORDS);
+    }
+
+    /**
+     * @param windowRecords The number of records in a mapped window.
+     */
+    TaxResultReader(Path input, int windowRecords) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(TaxResultWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && (channel.read(header, header.position()) > 0)) {
+                // Keep reading.
+            }
+            if (header.hasRemaining() || (header.getInt(0) != TaxResultWriter.MAGIC)) {
+                throw new IOException("Not a tax result file.");
+            }
+            version = header.getShort(TaxResultWriter.HEADER_VERSION);
+            if (version > TaxResultWriter.VERSION) {
+                throw new IOException("Unsupported tax result file version " + version + ".");
+            }
+            recordBytes = Short.toUnsignedInt(header.getShort(TaxResultWriter.HEADER_RECORD_BYTES));
+            taxYear = header.getInt(TaxResultWriter.HEADER_TAX_YEAR);
+            count = header.getLong(TaxResultWriter.HEADER_RECORD_COUNT);
+            if ((recordBytes < TaxResultWriter.RECORD_BYTES) || (count < 0)
+                    || (count > (channel.size() - TaxResultWriter.HEADER_BYTES) / recordBytes)) {
+                throw new IOException("Truncated or corrupt tax result file.");
+            }
+            this.windowRecords = Math.max(1, Math.min(windowRecords, Integer.MAX_VALUE / recordBytes));
+            windows = new ByteBuffer[(int) ((count + this.windowRecords - 1) / this.windowRecords)];
+            for (int window = 0; window < windows.length; window++) {
+                long first = (long) window * this.windowRecords;
+                long records = Math.min(this.windowRecords, count - first);
+                windows[window] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        TaxResultWriter.HEADER_BYTES + first * recordBytes, records * recordBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * @return The format version of the file.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The tax year of the results.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * @return The number of records in the file.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return A cursor before the first record.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Drop the mapping. Cursors must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        windows = null;
+    }
+
+    /**
+     * A view of one record of the file at a time. A cursor starts before the
+     * first record; {@link #next()} or {@link #seek(long)} moves it, and the
+     * getters read the fields of the current record from the mapping. Once
+     * next() returns false the cursor is after the last record. The getters
+     * throw IllegalStateException while the cursor is not on a record.
+     */
+    public final class Cursor {
+
+        private long index = -1; // The current record.
+        private ByteBuffer buffer; // The window of the current record, null if there is none.
+        private int base; // The offset of the current record in its window.
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next record.
+         *
+         * @return Whether there is one.
+         */
+        public boolean next() {
+            if (index + 1 >= count) {
+                index = count;
+                buffer = null;
+                return false;
+            }
+            moveTo(index + 1);
+            return true;
+        }
+
+        /**
+         * Move to a record.
+         *
+         * @param index The index of the record in the file, from 0.
+         * @throws IndexOutOfBoundsException Thrown if there is no such record.
+         */
+        public void seek(long index) {
+            if ((index < 0) || (index >= count)) {
+                throw new IndexOutOfBoundsException("Invalid record " + index + ".");
+            }
+            moveTo(index);
+        }
+
+        private void moveTo(long index) {
+            this.index = index;
+            buffer = windows[(int) (index / windowRecords)];
+            base = (int) (index % windowRecords) * recordBytes;
+        }
+
+        /**
+         * @return The window of the current record.
+         * @throws IllegalStateException Thrown if the cursor is before the
+         *                               first record or after the last.
+         */
+        private ByteBuffer record() {
+            if (buffer == null) {
+                throw new IllegalStateException("The cursor is not on a record.");
+            }
+            return buffer;
+        }
+
+        /**
+         * @return The index of the current record in the file.
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The id of the taxpayer.
+         */
+        public long getId() {
+            return record().getLong(base + TaxResultWriter.ID);
+        }
+
+        /**
+         * @return The filing status.
+         */
+        public int getFilingStatus() {
+            return record().get(base + TaxResultWriter.FILING_STATUS);
+        }
+
+        /**
+         * @return The error bits, {@link TaxpayerValidator#VALID} if the
+         * record was computed.
+         */
+        public int getErrors() {
+            return record().getInt(base + TaxResultWriter.ERRORS);
+        }
+
+        /**
+         * @return The standard deduction.
+         */
+        public double getStandardDeduction() {
+            return record().getDouble(base + TaxResultWriter.STANDARD_DEDUCTION);
+        }
+
+        /**
+         * @return The taxable income.
+         */
+        public double getTaxableIncome() {
+            return record().getDouble(base + TaxResultWriter.TAXABLE_INCOME);
+        }
+
+        /**
+         * @return The tax due.
+         */
+        public double getTaxDue() {
+            return record().getDouble(base + TaxResultWriter.TAX_DUE);
+        }
+
+        /**
+         * @return The net tax rate.
+         */
+        public double getNetTaxRate() {
+            return record().getDouble(base + TaxResultWriter.NET_TAX_RATE);
+        }
+
+        /**
+         * @return Whether a return is required.
+         */
+        public boolean isReturnRequired() {
+            return (record().get(base + TaxResultWriter.FLAGS) & TaxResultWriter.RETURN_REQUIRED) != 0;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes computed results as a binary result file, to be read
+ * back with {@link TaxResultReader}. Unlike the CSV written by
+ * {@link TaxFileProcessor}, no number is formatted or parsed: the results are
+ * copied into a reusable direct buffer as they are and written a megabyte at a
+ * time. The writer is a {@link TaxFileProcessor.Sink}, so a taxpayer file can
+ * be processed straight into a result file.
+ * <p>
+ * The file is little-endian. A {@value #HEADER_BYTES} byte header holds the
+ * magic number TAXR, the format version short, the record size short, the int
+ * tax year of the results, 4 reserved bytes, the long number of records and 8
+ * reserved bytes. It is followed by the records, each {@value #RECORD_BYTES}
+ * bytes:
+ *
+ * <pre>
+ * 0  long   taxpayer id
+ * 8  double standard deduction
+ * 16 double taxable income
+ * 24 double tax due
+ * 32 double net tax rate
+ * 40 int    error bits, 0 for a valid record
+ * 44 byte   filing status
+ * 45 byte   flags, bit 0 set if a return is required
+ * 46        2 bytes of padding
+ * </pre>
+ *
+ * The doubles are 8-byte aligned, and the results of a record with errors are
+ * 0. Readers step through the records by the size in the header, so a later
+ * version may append fields to a record without breaking them. The number of
+ * records is only written by {@link #close()}; a file that was not closed
+ * reads as empty.
+ */
+public final class TaxResultWriter implements TaxFileProcessor.Sink, AutoCloseable {
+
+    /**
+     * The magic number at the start of a result file.
+     */
+    static final int MAGIC = 0x54415852;
+
+    /**
+     * The version of the format written by this class.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * The size of the header.
+     */
+    public static final int HEADER_BYTES = 32;
+
+    /**
+     * The size of a record.
+     */
+    public static final int RECORD_BYTES = 48;
+
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_BYTES = 6;
+    static final int HEADER_TAX_YEAR = 8;
+    static final int HEADER_RECORD_COUNT = 16;
+
+    static final int ID = 0;
+    static final int STANDARD_DEDUCTION = 8;
+    static final int TAXABLE_INCOME = 16;
+    static final int TAX_DUE = 24;
+    static final int NET_TAX_RATE = 32;
+    static final int ERRORS = 40;
+    static final int FILING_STATUS = 44;
+    static final int FLAGS = 45;
+
+    /**
+     * The flag of a record for which a return is required.
+     */
+    static final int RETURN_REQUIRED = 1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private final int taxYear; // The year of the results.
+    private long count; // The number of records written.
+
+    /**
+     * Create a result file.
+     *
+     * @param output  The file, which is replaced.
+     * @param taxYear The tax year the results are computed for.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     * @throws IOException              Thrown if the file cannot be created.
+     */
+    public TaxResultWriter(Path output, int taxYear) throws IOException {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.taxYear = taxYear;
+        channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_BYTES).putInt(taxYear).putInt(0)
+                .putLong(0).putLong(0);
+    }
+
+    /**
+     * @return The tax year of the results.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * @return The number of records written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Write the results of a valid taxpayer.
+     *
+     * @param id                The id of the taxpayer.
+     * @param filingStatus      The filing status.
+     * @param standardDeduction The standard deduction.
+     * @param taxableIncome     The taxable income.
+     * @param taxDue            The tax due.
+     * @param netTaxRate        The net tax rate.
+     * @param returnRequired    Whether a return is required.
+     * @throws IOException Thrown if the file cannot be written.
+     */
+    public void write(long id, int filingStatus, double standardDeduction, double taxableIncome, double taxDue,
+                      double netTaxRate, boolean returnRequired) throws IOException {
+        if (buffer.remaining() < RECORD_BYTES) {
+            drain();
+        }
+        put(buffer, id, filingStatus, TaxpayerValidator.VALID, standardDeduction, taxableIncome, taxDue, netTaxRate,
+                returnRequired);
+        count++;
+    }
+
+    /**
+     * Write a taxpayer that could not be computed.
+     *
+     * @param id     The id of the taxpayer.
+     * @param errors The error bits, either {@link TaxFileProcessor#MALFORMED}
+     *               or the bits of {@link TaxpayerValidator}.
+     * @throws IOException Thrown if the file cannot be written.
+     */
+    public void writeInvalid(long id, int errors) throws IOException {
+        if (buffer.remaining() < RECORD_BYTES) {
+            drain();
+        }
+        put(buffer, id, 0, errors, 0.0, 0.0, 0.0, 0.0, false);
+        count++;
+    }
+
+    /**
+     * Write the results of a calculator.
+     *
+     * @param id         The id of the taxpayer.
+     * @param calculator The calculator.
+     * @throws IOException Thrown if the file cannot be written.
+     */
+    public void write(long id, TaxCalculatorInterface calculator) throws IOException {
+        write(id, calculator.getFilingStatus(), calculator.getStandardDeduction(), calculator.getTaxableIncome(),
+                calculator.getTaxDue(), calculator.getNetTaxRate(), calculator.isReturnRequired());
+    }
+
+    /**
+     * Write a computed batch, with the record numbers as the taxpayer ids.
+     *
+     * @throws IllegalArgumentException Thrown if the batch is computed for
+     *                                  another tax year.
+     */
+    @Override
+    public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) throws IOException {
+        if (batch.getTaxYear() != taxYear) {
+            throw new IllegalArgumentException("The batch is for another tax year.");
+        }
+        for (int index = 0; index < count; index++) {
+            if (buffer.remaining() < RECORD_BYTES) {
+                drain();
+            }
+            put(buffer, firstRecord + index, batch, errors, index);
+            this.count++;
+        }
+    }
+
+    /**
+     * Write records already in the format of the file.
+     *
+     * @param records The records, from the position to the limit.
+     */
+    void append(ByteBuffer records) throws IOException {
+        count += records.remaining() / RECORD_BYTES;
+        if (buffer.remaining() < records.remaining()) {
+            drain();
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        } else {
+            buffer.put(records);
+        }
+    }
+
+    /**
+     * Put a record at the position of a little-endian buffer.
+     */
+    static void put(ByteBuffer buffer, long id, int filingStatus, int errors, double standardDeduction,
+                    double taxableIncome, double taxDue, double netTaxRate, boolean returnRequired) {
+        buffer.putLong(id).putDouble(standardDeduction).putDouble(taxableIncome).putDouble(taxDue)
+                .putDouble(netTaxRate).putInt(errors).put((byte) filingStatus)
+                .put(returnRequired ? (byte) RETURN_REQUIRED : 0).putShort((short) 0);
+    }
+
+    /**
+     * Put a record of a computed batch at the position of a little-endian
+     * buffer, with the results of a record with errors as 0.
+     */
+    static void put(ByteBuffer buffer, long id, TaxBatch batch, int[] errors, int index) {
+        if (errors[index] != TaxpayerValidator.VALID) {
+            put(buffer, id, 0, errors[index], 0.0, 0.0, 0.0, 0.0, false);
+        } else {
+            put(buffer, id, batch.getFilingStatus()[index], TaxpayerValidator.VALID,
+                    batch.getStandardDeduction()[index], batch.getTaxableIncome()[index], batch.getTaxDue()[index],
+                    batch.getNetTaxRate()[index], batch.getReturnRequired()[index]);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write the buffered records and the number of records, and close the
+     * file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+            buffer.putLong(count).flip();
+            long position = HEADER_RECORD_COUNT;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * This class holds the rules shared by {@link TaxCalculator} and the batch
+ * entry points that do not depend on the tax year; the rules of each year are
+ * in {@link TaxYear}. Every method is a pure function of its arguments, so the
+ * rules can be applied to primitive columns without creating a calculator for
+ * each taxpayer.
+ */
+public final class TaxRules {
+
+    private TaxRules() {
+    }
+
+    /**
+     * Map a filing status to a dense index, for per status arrays.
+     *
+     * @param filingStatus The filing status.
+     * @return An index from 0 to 4, or -1 if the filing status is unknown.
+     */
+    public static int statusIndex(int filingStatus) {
+        if ((filingStatus > TaxCalculatorInterface.SINGLE)
+                || (filingStatus < TaxCalculatorInterface.QUALIFYING_WIDOWER)) {
+            return -1;
+        }
+        return -filingStatus;
+    }
+
+    /**
+     * Normalize a gross income the way
+     * {@link TaxCalculatorInterface#setGrossIncome(double)} does.
+     *
+     * @param currentGrossIncome   The gross income before the change.
+     * @param requestedGrossIncome The gross income being set.
+     * @return The gross income after the change.
+     */
+    public static double grossIncome(double currentGrossIncome, double requestedGrossIncome) {
+        if (requestedGrossIncome < 0.0000001) {
+            return 0.0;
+        } else if (requestedGrossIncome > 0.0) {
+            return requestedGrossIncome;
+        }
+        return currentGrossIncome;
+    }
+
+    /**
+     * Calculate the taxable income. It is never less than 0.
+     *
+     * @param grossIncome       The gross income.
+     * @param standardDeduction The standard deduction.
+     * @return The taxable income.
+     */
+    public static double taxableIncome(double grossIncome, double standardDeduction) {
+        double taxableIncome;
+        taxableIncome = grossIncome - standardDeduction;
+
+        if (taxableIncome > 0) {
+            return taxableIncome;
+        } else if (taxableIncome <= 0) {
+            return 0.0;
+        } else {
+            // A really strange thing has happened. I do not know what to do.
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Calculate the net tax rate.
+     *
+     * @param grossIncome The gross income.
+     * @param taxDue      The tax due.
+     * @return The tax due divided by the gross income, or 0 without income.
+     */
+    public static double netTaxRate(double grossIncome, double taxDue) {
+        if (grossIncome > 0) {
+            return taxDue / grossIncome;
+        } else {
+            return 0.0;
+        }
+    }
+}
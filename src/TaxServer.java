@@ -0,0 +1,281 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class serves the tax rules over HTTP with the JDK's built-in server,
+ * so it needs no dependency. A {@code POST} to {@value #PATH} holds one or
+ * more taxpayers and is answered with their results in the same format:
+ * <ul>
+ * <li>{@code text/csv}: lines in the format of {@link TaxFileProcessor},
+ * answered with its result lines, numbering the records of the request from
+ * 0.</li>
+ * <li>{@code application/json}: a taxpayer object or an array of them, as
+ * described in TaxJson, answered with a result object or an array of
+ * them.</li>
+ * </ul>
+ * A record that a {@link TaxCalculator} constructor would reject is answered
+ * with its error bits rather than failing the request; only a document that
+ * cannot be read fails with 400.
+ * <p>
+ * Each request is handled on its own virtual thread when the JDK has them
+ * (Java 21 and later), and on a cached pool of platform threads otherwise.
+ * Handlers block while their records are computed, which is cheap on a
+ * virtual thread. Requests of up to {@link #getMaxBatchSize()} records are
+ * coalesced with the other requests in flight into one {@link TaxBatch} run;
+ * larger ones are computed on their own by a {@link TaxBatchExecutor}. The
+ * tables of {@link TaxYearRegistry#DEFAULT_YEAR} are used.
+ */
+public final class TaxServer implements AutoCloseable {
+
+    /**
+     * The path of the tax endpoint.
+     */
+    public static final String PATH = "/tax";
+
+    /**
+     * The default largest number of records computed together.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+    /**
+     * The largest request body accepted, in bytes.
+     */
+    public static final int MAX_BODY_SIZE = 16 << 20;
+
+    static {
+        // The JDK server leaves Nagle's algorithm on unless told otherwise, which
+        // holds back every small response until the client's delayed ACK, about
+        // 40 ms. The property is read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers; // Runs one handler per request.
+    private final boolean virtualThreads; // Whether the handlers run on virtual threads.
+    private final TaxRequestBatcher batcher; // Coalesces the small requests.
+    private final TaxBatchExecutor executor; // Computes the large requests.
+
+    /**
+     * Create a server with the default batch size and no linger.
+     *
+     * @param address The address to listen on, with port 0 for any free port.
+     * @throws IOException Thrown if the address cannot be bound.
+     */
+    public TaxServer(InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_MAX_BATCH_SIZE, 0);
+    }
+
+    /**
+     * @param address      The address to listen on, with port 0 for any free
+     *                     port.
+     * @param maxBatchSize The largest number of records computed together.
+     * @param lingerNanos  How long to wait for more requests to fill a batch,
+     *                     0 to only coalesce the requests already waiting.
+     * @throws IOException              Thrown if the address cannot be bound.
+     * @throws IllegalArgumentException Thrown if a parameter is out of bounds.
+     */
+    public TaxServer(InetSocketAddress address, int maxBatchSize, long lingerNanos) throws IOException {
+        batcher = new TaxRequestBatcher(maxBatchSize, lingerNanos);
+        executor = new TaxBatchExecutor();
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        handlers = virtualThreads ? virtual : Executors.newCachedThreadPool();
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            close(null);
+            throw e;
+        }
+        server.setExecutor(handlers);
+        server.createContext(PATH, this::handle);
+    }
+
+    /**
+     * Create a virtual thread per task executor through reflection, so the
+     * class still runs on a JDK without virtual threads.
+     *
+     * @return The executor, or null if virtual threads are not available.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Whether requests are handled on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return The largest number of records coalesced into a batch.
+     */
+    public int getMaxBatchSize() {
+        return batcher.getMaxBatchSize();
+    }
+
+    /**
+     * @return The number of coalesced batch runs so far.
+     */
+    public long getBatchRuns() {
+        return batcher.getRuns();
+    }
+
+    /**
+     * @return The number of records computed by coalesced batch runs so far.
+     */
+    public long getBatchedRecords() {
+        return batcher.getRecords();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "text/plain", "Only POST is supported.\n");
+                return;
+            }
+            String type = exchange.getRequestHeaders().getFirst("Content-Type");
+            type = (type == null) ? "" : type.toLowerCase(Locale.ROOT);
+            boolean json = type.startsWith("application/json");
+            if (!json && !type.startsWith("text/csv")) {
+                respond(exchange, 415, "text/plain", "Content-Type must be text/csv or application/json.\n");
+                return;
+            }
+            byte[] body = read(exchange.getRequestBody());
+            if (body == null) {
+                respond(exchange, 413, "text/plain", "The request is larger than " + MAX_BODY_SIZE + " bytes.\n");
+                return;
+            }
+            if (json) {
+                handleJson(exchange, new String(body, StandardCharsets.UTF_8));
+            } else {
+                TaxFileProcessor.Records records = TaxFileProcessor.parse(ByteBuffer.wrap(body));
+                compute(records);
+                StringBuilder out = new StringBuilder(records.getCount() * 64);
+                for (int index = 0; index < records.getCount(); index++) {
+                    TaxFileProcessor.CsvSink.append(out, index, records.getBatch(), records.getErrors(), index);
+                }
+                respond(exchange, 200, "text/csv", out.toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "text/plain", "The server is shutting down.\n");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "text/plain", "The request could not be computed.\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleJson(HttpExchange exchange, String text) throws IOException, InterruptedException {
+        TaxFileProcessor.Records records;
+        try {
+            records = TaxJson.parse(text);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "text/plain", e.getMessage() + "\n");
+            return;
+        }
+        compute(records);
+        boolean array = TaxJson.isArray(text);
+        StringBuilder out = new StringBuilder(records.getCount() * 128);
+        out.append(array ? "[" : "");
+        for (int index = 0; index < records.getCount(); index++) {
+            out.append((index == 0) ? "" : ",");
+            TaxJson.append(out, index, records.getBatch(), records.getErrors(), index);
+        }
+        out.append(array ? "]\n" : "\n");
+        respond(exchange, 200, "application/json", out.toString());
+    }
+
+    private void compute(TaxFileProcessor.Records records) throws InterruptedException {
+        int count = records.getCount();
+        if (count > batcher.getMaxBatchSize()) {
+            executor.compute(records.getBatch());
+        } else if (count > 0) {
+            batcher.compute(records.getBatch(), count);
+        }
+    }
+
+    /**
+     * Read a request body.
+     *
+     * @return The body, or null if it is larger than {@link #MAX_BODY_SIZE}.
+     */
+    private static byte[] read(InputStream input) throws IOException {
+        byte[] body = input.readNBytes(MAX_BODY_SIZE + 1);
+        return (body.length > MAX_BODY_SIZE) ? null : body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Stop the server. Requests in flight are dropped.
+     */
+    @Override
+    public void close() {
+        close(server);
+    }
+
+    private void close(HttpServer started) {
+        if (started != null) {
+            started.stop(0);
+        }
+        handlers.shutdownNow();
+        batcher.close();
+        executor.close();
+    }
+
+    /**
+     * Run a server until the JVM is stopped.
+     *
+     * @param args The port to listen on, 8080 by default.
+     * @throws IOException Thrown if the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        TaxServer server = new TaxServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Serving " + PATH + " on port " + server.getPort()
+                + (server.isVirtualThreads() ? " with virtual threads." : " with platform threads."));
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * This class accumulates per filing status totals of computed taxes: the
+ * number of records, the sum of the tax due and the number of records for
+ * which a return is required. Each worker fills its own instance and the
+ * instances are merged afterwards, so no state is shared while computing.
+ * <p>
+ * The tax due of records computed in cents is summed exactly in its own
+ * column, so those sums do not depend on how the records are split or merged.
+ * The double sums are only identical for the same split and merge order.
+ */
+public final class TaxTotals {
+
+    private final long[] records = new long[TaxYear.STATUSES];
+    private final double[] taxDue = new double[TaxYear.STATUSES];
+    private final long[] taxDueCents = new long[TaxYear.STATUSES];
+    private final long[] returnsRequired = new long[TaxYear.STATUSES];
+
+    /**
+     * Add the computed results of a range of records in a batch.
+     *
+     * @param batch The computed batch.
+     * @param from  The first record, inclusive.
+     * @param to    The last record, exclusive.
+     * @throws IllegalArgumentException Thrown if a record has an unknown
+     *                                  filing status.
+     */
+    public void add(TaxBatch batch, int from, int to) {
+        int[] filingStatus = batch.getFilingStatus();
+        double[] tax = batch.getTaxDue();
+        boolean[] returnRequired = batch.getReturnRequired();
+        for (int index = from; index < to; index++) {
+            add(filingStatus[index], tax[index], returnRequired[index]);
+        }
+    }
+
+    /**
+     * Add the computed results of a range of records in a cents batch.
+     *
+     * @param batch The computed batch.
+     * @param from  The first record, inclusive.
+     * @param to    The last record, exclusive.
+     * @throws IllegalArgumentException Thrown if a record has an unknown
+     *                                  filing status.
+     */
+    public void add(CentsTaxBatch batch, int from, int to) {
+        int[] filingStatus = batch.getFilingStatus();
+        long[] tax = batch.getTaxDue();
+        boolean[] returnRequired = batch.getReturnRequired();
+        for (int index = from; index < to; index++) {
+            addCents(filingStatus[index], tax[index], returnRequired[index]);
+        }
+    }
+
+    /**
+     * Add the computed results of one record computed in cents.
+     *
+     * @param filingStatus   The filing status.
+     * @param taxDue         The tax due in cents.
+     * @param returnRequired Whether a return is required.
+     * @throws IllegalArgumentException Thrown if the filing status is unknown.
+     */
+    public void addCents(int filingStatus, long taxDue, boolean returnRequired) {
+        int status = index(filingStatus);
+        this.records[status]++;
+        this.taxDueCents[status] += taxDue;
+        if (returnRequired) {
+            this.returnsRequired[status]++;
+        }
+    }
+
+    /**
+     * Add the computed results of one record.
+     *
+     * @param filingStatus   The filing status.
+     * @param taxDue         The tax due.
+     * @param returnRequired Whether a return is required.
+     * @throws IllegalArgumentException Thrown if the filing status is unknown.
+     */
+    public void add(int filingStatus, double taxDue, boolean returnRequired) {
+        int status = index(filingStatus);
+        this.records[status]++;
+        this.taxDue[status] += taxDue;
+        if (returnRequired) {
+            this.returnsRequired[status]++;
+        }
+    }
+
+    /**
+     * Add the totals of another instance to this one.
+     *
+     * @param other The totals to add.
+     * @return This instance.
+     */
+    public TaxTotals merge(TaxTotals other) {
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            records[status] += other.records[status];
+            taxDue[status] += other.taxDue[status];
+            taxDueCents[status] += other.taxDueCents[status];
+            returnsRequired[status] += other.returnsRequired[status];
+        }
+        return this;
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The number of records with the filing status.
+     */
+    public long getRecords(int filingStatus) {
+        return records[index(filingStatus)];
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The sum of the tax due for the filing status, over the records
+     * computed with doubles.
+     */
+    public double getTaxDue(int filingStatus) {
+        return taxDue[index(filingStatus)];
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The exact sum of the tax due in cents for the filing status,
+     * over the records computed in cents.
+     */
+    public long getTaxDueCents(int filingStatus) {
+        return taxDueCents[index(filingStatus)];
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The number of records with the filing status that require a
+     * return.
+     */
+    public long getReturnsRequired(int filingStatus) {
+        return returnsRequired[index(filingStatus)];
+    }
+
+    private static int index(int filingStatus) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            throw new IllegalArgumentException("Invalid filing status " + filingStatus + ".");
+        }
+        return status;
+    }
+}
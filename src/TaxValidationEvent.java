@@ -0,0 +1,21 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The JFR event of a taxpayer rejected by {@link TaxpayerValidator}.
+ */
+@Name("tax.ValidationFailure")
+@Label("Tax Validation Failure")
+@Category("Tax")
+@Description("A taxpayer was rejected with an IllegalArgumentException.")
+final class TaxValidationEvent extends Event {
+
+    @Label("Errors")
+    int errors;
+
+    @Label("Message")
+    String message;
+}
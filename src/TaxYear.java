@@ -0,0 +1,255 @@
+/**
+ * This class holds the tax rules of one tax year: the standard deductions,
+ * the income thresholds above which a return is required and the bracket
+ * schedule of every filing status. Instances are immutable and are looked up
+ * through {@link TaxYearRegistry}.
+ * <p>
+ * The rules follow the shape of the 2008 rules. The standard deduction is a
+ * base amount per filing status plus a fixed amount for each person aged 65
+ * or older, and the return threshold is chosen by the number of such people.
+ * Only married filing jointly counts the spouse; every other status only
+ * counts the filer. Unknown filing statuses get no deduction, never require a
+ * return and are taxed on the single schedule, as the original calculator
+ * did.
+ */
+public final class TaxYear {
+
+    /**
+     * The number of filing statuses, which are indexed by
+     * {@link TaxRules#statusIndex(int)}.
+     */
+    public static final int STATUSES = 5;
+
+    /**
+     * The age from which a person counts as aged.
+     */
+    static final int AGED = 65;
+
+    private final int year; // The tax year.
+    private final double agedDeduction; // The extra deduction per aged person.
+    private final double[] baseDeductions; // The base deduction of each status.
+    private final double[][] thresholds; // The return threshold of each status by aged people.
+    private final TaxSchedule[] schedules; // The bracket schedule of each status.
+    private CentsTaxYear cents; // The rules in cents, created when first used.
+
+    /**
+     * @param year           The tax year.
+     * @param agedDeduction  The extra standard deduction for each person aged
+     *                       65 or older.
+     * @param baseDeductions The base standard deduction of each status.
+     * @param thresholds     The return thresholds of each status, indexed by
+     *                       the number of people aged 65 or older. Married
+     *                       filing jointly needs three, every other status two.
+     * @param schedules      The bracket schedule of each status.
+     * @throws IllegalArgumentException Thrown if an array has the wrong shape.
+     */
+    public TaxYear(int year, double agedDeduction, double[] baseDeductions, double[][] thresholds,
+                   TaxSchedule[] schedules) {
+        if ((baseDeductions.length != STATUSES) || (thresholds.length != STATUSES)
+                || (schedules.length != STATUSES)) {
+            throw new IllegalArgumentException("There must be rules for every filing status.");
+        }
+        this.thresholds = new double[STATUSES][];
+        for (int status = 0; status < STATUSES; status++) {
+            int expected = (status == TaxRules.statusIndex(TaxCalculatorInterface.MARRIED_FILING_JOINTLY)) ? 3 : 2;
+            if (thresholds[status].length != expected) {
+                throw new IllegalArgumentException("Filing status " + (-status) + " needs "
+                        + expected + " return thresholds.");
+            }
+            if (schedules[status] == null) {
+                throw new IllegalArgumentException("Filing status " + (-status) + " needs a schedule.");
+            }
+            this.thresholds[status] = thresholds[status].clone();
+        }
+        this.year = year;
+        this.agedDeduction = agedDeduction;
+        this.baseDeductions = baseDeductions.clone();
+        this.schedules = schedules.clone();
+    }
+
+    /**
+     * Build the 2008 rules the calculator was originally written for.
+     *
+     * @return The 2008 rules.
+     */
+    static TaxYear builtIn2008() {
+        double[] rates = {.1, .15, .25, .28, .33, .35};
+        TaxSchedule marriedJointly = new TaxSchedule(rates,
+                new double[]{0, 16050, 65100, 131450, 200300, 357700});
+        return new TaxYear(2008, 1050,
+                new double[]{5450, 8000, 10900, 5450, 10900},
+                new double[][]{{8950, 10300}, {11500, 12850}, {17900, 18950, 20000}, {3500, 3500},
+                        {14400, 15450}},
+                new TaxSchedule[]{
+                        new TaxSchedule(rates, new double[]{0, 8025, 32550, 78850, 164550, 357700}),
+                        new TaxSchedule(rates, new double[]{0, 11450, 43650, 112650, 182400, 357700}),
+                        marriedJointly,
+                        new TaxSchedule(rates, new double[]{0, 8025, 32550, 65725, 100150, 178850}),
+                        marriedJointly});
+    }
+
+    /**
+     * Create a copy of these rules whose schedules hold a table of the tax due
+     * on every whole-dollar taxable income up to a ceiling; see
+     * {@link TaxSchedule#withTable(int)}. Statuses with the same brackets share
+     * a table. Publish the copy with {@link TaxYearRegistry#publish(TaxYear)}
+     * to use it.
+     *
+     * @param ceiling The largest taxable income in the tables.
+     * @return The copy.
+     * @throws IllegalArgumentException Thrown if the ceiling is out of bounds.
+     */
+    public TaxYear withTaxTables(int ceiling) {
+        TaxSchedule[] tabled = new TaxSchedule[STATUSES];
+        for (int status = 0; status < STATUSES; status++) {
+            for (int shared = 0; (shared < status) && (tabled[status] == null); shared++) {
+                if (schedules[shared].hasSameBrackets(schedules[status])) {
+                    tabled[status] = tabled[shared];
+                }
+            }
+            if (tabled[status] == null) {
+                tabled[status] = schedules[status].withTable(ceiling);
+            }
+        }
+        return new TaxYear(year, agedDeduction, baseDeductions, thresholds, tabled);
+    }
+
+    /**
+     * Count the people whose age adds to the deduction and the threshold.
+     *
+     * @param status The index of the filing status.
+     */
+    static int agedPeople(int status, int age, int spouseAge) {
+        int aged = (age >= AGED) ? 1 : 0;
+        if ((status == TaxRules.statusIndex(TaxCalculatorInterface.MARRIED_FILING_JOINTLY))
+                && (spouseAge >= AGED)) {
+            aged++;
+        }
+        return aged;
+    }
+
+    /**
+     * Calculate the standard deduction.
+     *
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @return The standard deduction.
+     */
+    public double standardDeduction(int filingStatus, int age, int spouseAge) {
+        int status = TaxRules.statusIndex(filingStatus);
+        if (status < 0) {
+            return 0;
+        }
+        return baseDeductions[status] + agedDeduction * agedPeople(status, age, spouseAge);
+    }
+
+    /**
+     * Determine if a tax return is required.
+     *
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @param grossIncome  The gross income.
+     * @return true if a tax return is required.
+     */
+    public boolean returnRequired(int filingStatus, int age, int spouseAge, double grossIncome) {
+        int status = TaxRules.statusIndex(filingStatus);
+        double currentThreshold = Double.MAX_VALUE;
+        if (status >= 0) {
+            currentThreshold = thresholds[status][agedPeople(status, age, spouseAge)];
+        }
+        return !(grossIncome < currentThreshold);
+    }
+
+    /**
+     * Compute every result of a taxpayer, as {@link TaxCalculator} does. This
+     * is the one place the rules are chained for a single record; the batch,
+     * the daemon and the pipeline all call it.
+     *
+     * @param filingStatus The filing status.
+     * @param age          The age of the filer.
+     * @param spouseAge    The age of the spouse, or 0 if there is no spouse.
+     * @param grossIncome  The gross income as given, normalized like
+     *                     {@link TaxCalculatorInterface#setGrossIncome(double)}.
+     * @return The results.
+     */
+    public TaxResultCache.Result compute(int filingStatus, int age, int spouseAge, double grossIncome) {
+        double income = TaxRules.grossIncome(0.0, grossIncome);
+        double deduction = standardDeduction(filingStatus, age, spouseAge);
+        double taxable = TaxRules.taxableIncome(income, deduction);
+        double tax = taxDue(filingStatus, taxable);
+        return new TaxResultCache.Result(deduction, taxable, tax, TaxRules.netTaxRate(income, tax),
+                returnRequired(filingStatus, age, spouseAge, income));
+    }
+
+    /**
+     * Calculate the tax due.
+     *
+     * @param filingStatus  The filing status.
+     * @param taxableIncome The taxable income.
+     * @return The tax due.
+     */
+    public double taxDue(int filingStatus, double taxableIncome) {
+        return schedule(filingStatus).taxDue(taxableIncome);
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The bracket schedule of the status. Unknown statuses get the
+     * single schedule.
+     */
+    public TaxSchedule schedule(int filingStatus) {
+        int status = TaxRules.statusIndex(filingStatus);
+        return schedules[(status < 0) ? 0 : status];
+    }
+
+    /**
+     * Obtain these rules in integer cents and basis points. They are converted
+     * when first used; the conversion is immutable, so a race only converts
+     * twice.
+     *
+     * @return The rules in cents.
+     * @throws IllegalArgumentException Thrown if a rate is not a whole number
+     *                                  of basis points.
+     */
+    public CentsTaxYear cents() {
+        CentsTaxYear result = cents;
+        if (result == null) {
+            result = new CentsTaxYear(this);
+            cents = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The tax year.
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return The extra standard deduction for each person aged 65 or older.
+     */
+    public double getAgedDeduction() {
+        return agedDeduction;
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The base standard deduction of the status.
+     */
+    public double getBaseDeduction(int filingStatus) {
+        return baseDeductions[TaxRules.statusIndex(filingStatus)];
+    }
+
+    /**
+     * @param filingStatus The filing status.
+     * @return The return thresholds of the status, indexed by the number of
+     * people aged 65 or older.
+     */
+    public double[] getThresholds(int filingStatus) {
+        return thresholds[TaxRules.statusIndex(filingStatus)].clone();
+    }
+}
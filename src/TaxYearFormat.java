@@ -0,0 +1,314 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class converts tax year rules between the text source format and the
+ * compact binary format that {@link TaxYearRegistry} loads.
+ * <p>
+ * The text format is line based; blank lines and lines starting with # are
+ * ignored. Each year is written as:
+ *
+ * <pre>
+ * year 2008
+ * aged-deduction 1050
+ * rates .10 .15 .25 .28 .33 .35
+ * status SINGLE deduction 5450 thresholds 8950 10300 brackets 0 8025 32550 78850 164550 357700
+ * ... one status line for each of the five filing statuses ...
+ * end
+ * </pre>
+ * <p>
+ * The binary format is big-endian: the magic number TAXY, a format version
+ * short and a year count short, then for each year its int year, the aged
+ * deduction double and a bracket count byte, followed for each status in
+ * {@link TaxRules#statusIndex(int)} order by the base deduction, a threshold
+ * count byte, the thresholds, the rates and the floors as doubles. A CRC32 of
+ * everything before it ends the file.
+ * <p>
+ * Run {@link #main(String[])} to compile a text file into a binary file.
+ */
+public final class TaxYearFormat {
+
+    /**
+     * The magic number at the start of a binary file.
+     */
+    static final int MAGIC = 0x54415859;
+
+    /**
+     * The version of the binary format written by this class.
+     */
+    static final short VERSION = 1;
+
+    private static final String[] STATUS_NAMES = {"SINGLE", "HEAD_OF_HOUSEHOLD",
+            "MARRIED_FILING_JOINTLY", "MARRIED_FILING_SEPARATELY", "QUALIFYING_WIDOWER"};
+
+    private TaxYearFormat() {
+    }
+
+    /**
+     * Compile a text file into a binary file.
+     *
+     * @param args The text file and the binary file.
+     * @throws IOException Thrown if a file cannot be read, parsed or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TaxYearFormat <source.txt> <output.bin>");
+            System.exit(2);
+        }
+        List<TaxYear> years;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            years = parseText(reader);
+        }
+        Path output = Paths.get(args[1]);
+        try (OutputStream stream = Files.newOutputStream(output)) {
+            writeBinary(years, stream);
+        }
+    }
+
+    /**
+     * Parse tax years from the text format.
+     *
+     * @param source The text to parse.
+     * @return The years, in the order they appear.
+     * @throws IOException Thrown if the text cannot be read or is malformed.
+     */
+    public static List<TaxYear> parseText(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<TaxYear> years = new ArrayList<>();
+        YearBuilder builder = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] words = line.split("\\s+");
+            try {
+                if (words[0].equals("year")) {
+                    if (builder != null) {
+                        throw new IllegalArgumentException("Missing end of the previous year.");
+                    }
+                    builder = new YearBuilder(Integer.parseInt(words[1]));
+                } else if (builder == null) {
+                    throw new IllegalArgumentException("Expected a year.");
+                } else if (words[0].equals("aged-deduction")) {
+                    builder.agedDeduction = Double.parseDouble(words[1]);
+                } else if (words[0].equals("rates")) {
+                    builder.rates = numbers(words, 1, words.length);
+                } else if (words[0].equals("status")) {
+                    builder.status(words);
+                } else if (words[0].equals("end")) {
+                    years.add(builder.build());
+                    builder = null;
+                } else {
+                    throw new IllegalArgumentException("Unknown keyword " + words[0] + ".");
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (builder != null) {
+            throw new IOException("Missing end of year " + builder.year + ".");
+        }
+        return years;
+    }
+
+    private static double[] numbers(String[] words, int from, int to) {
+        double[] values = new double[to - from];
+        for (int index = from; index < to; index++) {
+            values[index - from] = Double.parseDouble(words[index]);
+        }
+        return values;
+    }
+
+    /**
+     * Write tax years in the binary format.
+     *
+     * @param years  The years to write.
+     * @param output Receives the binary file.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public static void writeBinary(List<TaxYear> years, OutputStream output) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(years.size());
+        for (TaxYear year : years) {
+            int brackets = year.schedule(TaxCalculatorInterface.SINGLE).getBracketCount();
+            data.writeInt(year.getYear());
+            data.writeDouble(year.getAgedDeduction());
+            data.writeByte(brackets);
+            for (int status = 0; status < TaxYear.STATUSES; status++) {
+                int filingStatus = -status;
+                TaxSchedule schedule = year.schedule(filingStatus);
+                if (schedule.getBracketCount() != brackets) {
+                    throw new IOException("Every schedule of " + year.getYear()
+                            + " must have the same number of brackets.");
+                }
+                double[] thresholds = year.getThresholds(filingStatus);
+                data.writeDouble(year.getBaseDeduction(filingStatus));
+                data.writeByte(thresholds.length);
+                for (double threshold : thresholds) {
+                    data.writeDouble(threshold);
+                }
+                for (int bracket = 0; bracket < brackets; bracket++) {
+                    data.writeDouble(schedule.getRate(bracket));
+                }
+                for (int bracket = 0; bracket < brackets; bracket++) {
+                    data.writeDouble(schedule.getFloor(bracket));
+                }
+            }
+        }
+        data.flush();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        data.writeInt((int) checksum.getValue());
+        data.flush();
+        bytes.writeTo(output);
+    }
+
+    /**
+     * Read tax years from the binary format.
+     *
+     * @param input The binary file. Its position is advanced past the file.
+     * @return The years, in the order they were written.
+     * @throws IOException Thrown if the input is not a valid binary file.
+     */
+    public static List<TaxYear> readBinary(ByteBuffer input) throws IOException {
+        int start = input.position();
+        if ((input.remaining() < 12) || (input.getInt() != MAGIC)) {
+            throw new IOException("Not a tax year file.");
+        }
+        short version = input.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported tax year file version " + version + ".");
+        }
+        CRC32 checksum = new CRC32();
+        ByteBuffer body = input.duplicate();
+        body.position(start).limit(input.limit() - 4);
+        checksum.update(body);
+        if ((int) checksum.getValue() != input.getInt(input.limit() - 4)) {
+            throw new IOException("Tax year file checksum mismatch.");
+        }
+        try {
+            int count = input.getShort();
+            List<TaxYear> years = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                int year = input.getInt();
+                double agedDeduction = input.getDouble();
+                int brackets = input.get();
+                double[] baseDeductions = new double[TaxYear.STATUSES];
+                double[][] thresholds = new double[TaxYear.STATUSES][];
+                TaxSchedule[] schedules = new TaxSchedule[TaxYear.STATUSES];
+                for (int status = 0; status < TaxYear.STATUSES; status++) {
+                    baseDeductions[status] = input.getDouble();
+                    thresholds[status] = doubles(input, input.get());
+                    double[] rates = doubles(input, brackets);
+                    schedules[status] = new TaxSchedule(rates, doubles(input, brackets));
+                }
+                share(schedules);
+                years.add(new TaxYear(year, agedDeduction, baseDeductions, thresholds, schedules));
+            }
+            input.position(input.limit());
+            return years;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed tax year file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Make the statuses with the same brackets share one schedule, as the
+     * built-in rules do, so that they share a lane of the vector kernel.
+     */
+    private static void share(TaxSchedule[] schedules) {
+        for (int status = 1; status < schedules.length; status++) {
+            for (int shared = 0; shared < status; shared++) {
+                if (schedules[shared].hasSameBrackets(schedules[status])) {
+                    schedules[status] = schedules[shared];
+                    break;
+                }
+            }
+        }
+    }
+
+    private static double[] doubles(ByteBuffer input, int count) {
+        double[] values = new double[count];
+        for (int index = 0; index < count; index++) {
+            values[index] = input.getDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Collects the lines of one year in the text format.
+     */
+    private static final class YearBuilder {
+
+        private final int year;
+        private double agedDeduction = Double.NaN;
+        private double[] rates;
+        private final double[] baseDeductions = new double[TaxYear.STATUSES];
+        private final double[][] thresholds = new double[TaxYear.STATUSES][];
+        private final double[][] floors = new double[TaxYear.STATUSES][];
+
+        YearBuilder(int year) {
+            this.year = year;
+        }
+
+        void status(String[] words) {
+            int status = -1;
+            for (int index = 0; index < STATUS_NAMES.length; index++) {
+                if (STATUS_NAMES[index].equals(words[1])) {
+                    status = index;
+                }
+            }
+            if (status < 0) {
+                throw new IllegalArgumentException("Unknown filing status " + words[1] + ".");
+            }
+            if (!words[2].equals("deduction") || !words[4].equals("thresholds")) {
+                throw new IllegalArgumentException("Expected deduction, thresholds and brackets.");
+            }
+            int bracketsAt = 5;
+            while ((bracketsAt < words.length) && !words[bracketsAt].equals("brackets")) {
+                bracketsAt++;
+            }
+            if (bracketsAt == words.length) {
+                throw new IllegalArgumentException("Expected brackets.");
+            }
+            baseDeductions[status] = Double.parseDouble(words[3]);
+            thresholds[status] = numbers(words, 5, bracketsAt);
+            floors[status] = numbers(words, bracketsAt + 1, words.length);
+        }
+
+        TaxYear build() {
+            if (Double.isNaN(agedDeduction) || (rates == null)) {
+                throw new IllegalArgumentException("Year " + year + " needs an aged-deduction and rates.");
+            }
+            TaxSchedule[] schedules = new TaxSchedule[TaxYear.STATUSES];
+            for (int status = 0; status < TaxYear.STATUSES; status++) {
+                if (floors[status] == null) {
+                    throw new IllegalArgumentException("Year " + year + " is missing "
+                            + STATUS_NAMES[status] + ".");
+                }
+                schedules[status] = new TaxSchedule(rates, floors[status]);
+            }
+            share(schedules);
+            return new TaxYear(year, agedDeduction, baseDeductions, thresholds, schedules);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class holds the tax rules of every supported year. The rules are
+ * loaded once from the tax-years.bin resource, which is compiled from
+ * tax-years.txt by {@link TaxYearFormat}, and a year is looked up with a
+ * single array index. The 2008 rules are built in, so they are available even
+ * if the resource is missing; a 2008 entry in the resource replaces them.
+ * <p>
+ * Corrected rules can be published at runtime with {@link #publish(List)}.
+ * The registry keeps an immutable snapshot of every year behind a single
+ * atomic reference: a lookup is one volatile read and never locks, and a
+ * publish builds a new snapshot and swaps it in with compare-and-set. A
+ * {@link TaxYear} is itself immutable, so a calculation that looked up its
+ * rules before a publish finishes on the old rules and the next lookup sees
+ * the new ones. Callers must look the rules up once per calculation to get
+ * that guarantee, as {@link TaxCalculator} and {@link TaxBatch} do.
+ */
+public final class TaxYearRegistry {
+
+    /**
+     * The year used when none is given.
+     */
+    public static final int DEFAULT_YEAR = 2008;
+
+    /**
+     * The name of the resource the years are loaded from.
+     */
+    static final String RESOURCE = "/tax-years.bin";
+
+    private static final AtomicReference<Years> YEARS = new AtomicReference<>(new Years(load(), 0));
+
+    private TaxYearRegistry() {
+    }
+
+    /**
+     * Obtain the rules of a tax year.
+     *
+     * @param year The tax year.
+     * @return The rules of the year.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     */
+    public static TaxYear forYear(int year) {
+        TaxYear rules = YEARS.get().find(year);
+        if (rules == null) {
+            throw new IllegalArgumentException("Unsupported tax year.");
+        }
+        return rules;
+    }
+
+    /**
+     * @param year The tax year.
+     * @return true if there are rules for the year.
+     */
+    public static boolean isSupported(int year) {
+        return YEARS.get().find(year) != null;
+    }
+
+    /**
+     * @return The rules of {@link #DEFAULT_YEAR}.
+     */
+    public static TaxYear getDefault() {
+        return forYear(DEFAULT_YEAR);
+    }
+
+    /**
+     * @return Every supported year, in increasing order.
+     */
+    public static int[] getYears() {
+        return YEARS.get().years();
+    }
+
+    /**
+     * Publish new rules. Each year replaces the rules of the same year, if
+     * there are any; every other year is kept. Lookups made after this returns
+     * see the new rules.
+     *
+     * @param years The rules to publish, for instance read with
+     *              {@link TaxYearFormat#readBinary(ByteBuffer)}.
+     * @return The generation of the snapshot holding the new rules.
+     */
+    public static long publish(List<TaxYear> years) {
+        List<TaxYear> published = Collections.unmodifiableList(new ArrayList<>(years));
+        return YEARS.updateAndGet(current -> current.with(published)).generation;
+    }
+
+    /**
+     * Publish the rules of a single year.
+     *
+     * @param year The rules to publish.
+     * @return The generation of the snapshot holding the new rules.
+     * @see #publish(List)
+     */
+    public static long publish(TaxYear year) {
+        return publish(Collections.singletonList(year));
+    }
+
+    /**
+     * @return The number of publishes since the registry was loaded. It only
+     * ever grows, so a change means that some rules may have changed.
+     */
+    public static long getGeneration() {
+        return YEARS.get().generation;
+    }
+
+    private static List<TaxYear> load() {
+        List<TaxYear> years = new ArrayList<>();
+        years.add(TaxYear.builtIn2008());
+        try (InputStream stream = TaxYearRegistry.class.getResourceAsStream(RESOURCE)) {
+            if (stream != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, read);
+                }
+                years.addAll(TaxYearFormat.readBinary(ByteBuffer.wrap(bytes.toByteArray())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load " + RESOURCE, e);
+        }
+        return years;
+    }
+
+    /**
+     * An immutable snapshot of every year, indexed by the year itself.
+     */
+    static final class Years {
+
+        private final int firstYear; // The year at index 0 of the table.
+        private final TaxYear[] byYear; // The rules of each year, null for gaps.
+        private final long generation; // The number of publishes before this snapshot.
+
+        /**
+         * @param years      The rules to hold. A later entry for the same year
+         *                   replaces an earlier one.
+         * @param generation The generation of the snapshot.
+         */
+        Years(List<TaxYear> years, long generation) {
+            int first = Integer.MAX_VALUE;
+            int last = Integer.MIN_VALUE;
+            for (TaxYear year : years) {
+                first = Math.min(first, year.getYear());
+                last = Math.max(last, year.getYear());
+            }
+            if (years.isEmpty()) {
+                first = 0;
+                last = -1;
+            }
+            this.firstYear = first;
+            this.byYear = new TaxYear[last - first + 1];
+            this.generation = generation;
+            for (TaxYear year : years) {
+                byYear[year.getYear() - first] = year;
+            }
+        }
+
+        /**
+         * @param years The rules to add or replace.
+         * @return The next snapshot, holding these rules and every other year.
+         */
+        Years with(List<TaxYear> years) {
+            List<TaxYear> merged = new ArrayList<>(byYear.length + years.size());
+            for (TaxYear year : byYear) {
+                if (year != null) {
+                    merged.add(year);
+                }
+            }
+            merged.addAll(years);
+            return new Years(merged, generation + 1);
+        }
+
+        TaxYear find(int year) {
+            int index = year - firstYear;
+            if ((index < 0) || (index >= byYear.length)) {
+                return null;
+            }
+            return byYear[index];
+        }
+
+        int[] years() {
+            int count = 0;
+            for (TaxYear year : byYear) {
+                count += (year == null) ? 0 : 1;
+            }
+            int[] result = new int[count];
+            count = 0;
+            for (TaxYear year : byYear) {
+                if (year != null) {
+                    result[count++] = year.getYear();
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class stores a population of taxpayers off the heap. Each taxpayer is
+ * a fixed width record of {@link #RECORD_BYTES} bytes in a direct buffer, and
+ * the names are UTF-8 bytes in a separate arena of direct buffers. Neither
+ * grows the heap per taxpayer: the heap cost grows with the number of chunks
+ * of records or names, about 140 bytes for each direct buffer and the Cleaner
+ * that frees it. A hundred million taxpayers with 12 byte names fill about
+ * 3,000 chunks of records and 1,200 chunks of names, some 600 kilobytes of
+ * heap. The direct memory is limited by -XX:MaxDirectMemorySize, which
+ * defaults to the maximum heap size.
+ * <p>
+ * Taxpayers are identified by the order they were added in, from 0 to
+ * {@link #size()} - 1, so the store is iterated by id or with a
+ * {@link Cursor}. The rules are run over the records directly with
+ * {@link #compute(int, int, TaxTotals)}, without creating a calculator per
+ * taxpayer; {@link #getProfile(int)} computes every result of one taxpayer.
+ * <p>
+ * Like {@link TaxBatch}, a store is not thread safe while taxpayers are added
+ * or incomes are set. Once it is filled, any number of threads may read and
+ * compute it, for instance with {@link TaxBatchExecutor#compute(TaxpayerStore)}.
+ */
+public final class TaxpayerStore {
+
+    /**
+     * The size of a record: the gross income, the position of the name in the
+     * arena, the ages, the filing status and the length of the name.
+     */
+    public static final int RECORD_BYTES = 32;
+
+    private static final int GROSS_INCOME = 0;
+    private static final int NAME_POSITION = 8;
+    private static final int AGE = 16;
+    private static final int SPOUSE_AGE = 20;
+    private static final int FILING_STATUS = 24;
+    private static final int NAME_LENGTH = 28;
+
+    /**
+     * The default number of records in a chunk, 1 MB of records.
+     */
+    static final int DEFAULT_CHUNK_RECORDS = 1 << 15;
+
+    /**
+     * The default size of a chunk of the name arena.
+     */
+    static final int DEFAULT_NAME_CHUNK_BYTES = 1 << 20;
+
+    private final int chunkShift; // The log2 of the number of records in a chunk.
+    private final int chunkMask; // The index of a record in its chunk.
+    private final int nameChunkBytes; // The size of a chunk of the name arena.
+
+    private ByteBuffer[] records = new ByteBuffer[16]; // The chunks of records.
+    private ByteBuffer[] names = new ByteBuffer[16]; // The chunks of the name arena.
+    private int size; // The number of taxpayers.
+    private int nameChunks; // The number of chunks in the name arena.
+    private int namePosition; // The next free byte of the last name chunk.
+    private int taxYear = TaxYearRegistry.DEFAULT_YEAR; // The year of the tax tables.
+
+    /**
+     * Create an empty store.
+     */
+    public TaxpayerStore() {
+        this(DEFAULT_CHUNK_RECORDS, DEFAULT_NAME_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkRecords   The number of records in a chunk, a power of 2.
+     * @param nameChunkBytes The size of a chunk of the name arena, which is
+     *                       also the longest name.
+     */
+    TaxpayerStore(int chunkRecords, int nameChunkBytes) {
+        if ((chunkRecords <= 0) || (Integer.bitCount(chunkRecords) != 1)) {
+            throw new IllegalArgumentException("Invalid chunk size.");
+        }
+        if (nameChunkBytes <= 0) {
+            throw new IllegalArgumentException("Invalid name chunk size.");
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkRecords);
+        this.chunkMask = chunkRecords - 1;
+        this.nameChunkBytes = nameChunkBytes;
+        this.namePosition = nameChunkBytes;
+    }
+
+    /**
+     * Add a taxpayer without a spouse and without income.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Single, Head of Household or Qualifying widower.
+     * @return The id of the taxpayer.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int)},
+     *                                  or if the name does not fit in a chunk
+     *                                  of the name arena.
+     */
+    public int add(String name, int age, int filingStatus) {
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateSingleFilingStatus(filingStatus));
+        return append(name, age, filingStatus, 0);
+    }
+
+    /**
+     * Add a married taxpayer without income.
+     *
+     * @param name         The name of the taxpayer.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus Married filing jointly or separately.
+     * @param spouseAge    The age of the spouse.
+     * @return The id of the taxpayer.
+     * @throws IllegalArgumentException Thrown for the same reasons as
+     *                                  {@link TaxCalculator#TaxCalculator(String, int, int, int)},
+     *                                  or if the name does not fit in a chunk
+     *                                  of the name arena.
+     */
+    public int add(String name, int age, int filingStatus, int spouseAge) {
+        TaxpayerValidator.check(TaxpayerValidator.validateName(name));
+        TaxpayerValidator.check(TaxpayerValidator.validateAge(age));
+        TaxpayerValidator.check(TaxpayerValidator.validateMarriedFilingStatus(filingStatus));
+        TaxpayerValidator.check(TaxpayerValidator.validateSpouseAge(spouseAge));
+        return append(name, age, filingStatus, spouseAge);
+    }
+
+    private int append(String name, int age, int filingStatus, int spouseAge) {
+        if (size == Integer.MAX_VALUE) {
+            throw new IllegalStateException("The store is full.");
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > nameChunkBytes) {
+            throw new IllegalArgumentException("Name too long.");
+        }
+        if (bytes.length > nameChunkBytes - namePosition) {
+            if (nameChunks == names.length) {
+                names = Arrays.copyOf(names, nameChunks * 2);
+            }
+            names[nameChunks++] = ByteBuffer.allocateDirect(nameChunkBytes);
+            namePosition = 0;
+        }
+        long position = (long) (nameChunks - 1) * nameChunkBytes + namePosition;
+        names[nameChunks - 1].put(namePosition, bytes);
+        namePosition += bytes.length;
+
+        int id = size;
+        int chunk = id >>> chunkShift;
+        if (chunk == records.length) {
+            records = Arrays.copyOf(records, chunk * 2);
+        }
+        if (records[chunk] == null) {
+            records[chunk] = ByteBuffer.allocateDirect((chunkMask + 1) * RECORD_BYTES).order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer buffer = records[chunk];
+        int base = (id & chunkMask) * RECORD_BYTES;
+        buffer.putDouble(base + GROSS_INCOME, 0.0);
+        buffer.putLong(base + NAME_POSITION, position);
+        buffer.putInt(base + AGE, age);
+        buffer.putInt(base + SPOUSE_AGE, spouseAge);
+        buffer.putInt(base + FILING_STATUS, filingStatus);
+        buffer.putInt(base + NAME_LENGTH, bytes.length);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * @return The number of taxpayers.
+     */
+    public int size() {
+        return size;
+    }
+
+    private ByteBuffer chunk(int id) {
+        if ((id < 0) || (id >= size)) {
+            throw new IndexOutOfBoundsException("Invalid id " + id + " for a store of " + size + ".");
+        }
+        return records[id >>> chunkShift];
+    }
+
+    private int base(int id) {
+        return (id & chunkMask) * RECORD_BYTES;
+    }
+
+    /**
+     * @param id The id of the taxpayer.
+     * @return The name of the taxpayer.
+     */
+    public String getName(int id) {
+        ByteBuffer buffer = chunk(id);
+        int base = base(id);
+        long position = buffer.getLong(base + NAME_POSITION);
+        byte[] bytes = new byte[buffer.getInt(base + NAME_LENGTH)];
+        names[(int) (position / nameChunkBytes)].get((int) (position % nameChunkBytes), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param id The id of the taxpayer.
+     * @return The age of the taxpayer.
+     */
+    public int getAge(int id) {
+        return chunk(id).getInt(base(id) + AGE);
+    }
+
+    /**
+     * @param id The id of the taxpayer.
+     * @return The age of the spouse, or 0 if there is none.
+     */
+    public int getSpouseAge(int id) {
+        return chunk(id).getInt(base(id) + SPOUSE_AGE);
+    }
+
+    /**
+     * @param id The id of the taxpayer.
+     * @return The filing status of the taxpayer.
+     */
+    public int getFilingStatus(int id) {
+        return chunk(id).getInt(base(id) + FILING_STATUS);
+    }
+
+    /**
+     * @param id The id of the taxpayer.
+     * @return The gross income of the taxpayer.
+     */
+    public double getGrossIncome(int id) {
+        return chunk(id).getDouble(base(id) + GROSS_INCOME);
+    }
+
+    /**
+     * Set the gross income of a taxpayer, normalized the way
+     * {@link TaxCalculatorInterface#setGrossIncome(double)} does.
+     *
+     * @param id          The id of the taxpayer.
+     * @param grossIncome The gross income.
+     */
+    public void setGrossIncome(int id, double grossIncome) {
+        ByteBuffer buffer = chunk(id);
+        int offset = base(id) + GROSS_INCOME;
+        buffer.putDouble(offset, TaxRules.grossIncome(buffer.getDouble(offset), grossIncome));
+    }
+
+    /**
+     * Compute every result of a taxpayer.
+     *
+     * @param id The id of the taxpayer.
+     * @return The profile of the taxpayer.
+     */
+    public TaxProfile getProfile(int id) {
+        ByteBuffer buffer = chunk(id);
+        int base = base(id);
+        return TaxProfile.create(taxYear, getName(id), buffer.getInt(base + FILING_STATUS),
+                buffer.getInt(base + AGE), buffer.getInt(base + SPOUSE_AGE), buffer.getDouble(base + GROSS_INCOME));
+    }
+
+    /**
+     * Compute every taxpayer and total the results.
+     *
+     * @return The per filing status totals.
+     */
+    public TaxTotals compute() {
+        TaxTotals totals = new TaxTotals();
+        compute(0, size, totals);
+        return totals;
+    }
+
+    /**
+     * Compute a range of taxpayers and add the results to the totals.
+     *
+     * @param from   The first taxpayer to compute, inclusive.
+     * @param to     The last taxpayer to compute, exclusive.
+     * @param totals The totals to add to.
+     */
+    public void compute(int from, int to, TaxTotals totals) {
+        compute(getRules(), from, to, totals);
+    }
+
+    /**
+     * Compute a range of taxpayers with the given rules.
+     */
+    void compute(TaxYear rules, int from, int to, TaxTotals totals) {
+        if ((from < 0) || (to > size) || (from > to)) {
+            throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to
+                    + " for a store of " + size + ".");
+        }
+        int id = from;
+        while (id < to) {
+            ByteBuffer buffer = records[id >>> chunkShift];
+            int end = Math.min(to, (id | chunkMask) + 1);
+            for (int base = base(id); id < end; id++, base += RECORD_BYTES) {
+                int status = buffer.getInt(base + FILING_STATUS);
+                TaxResultCache.Result result = rules.compute(status, buffer.getInt(base + AGE),
+                        buffer.getInt(base + SPOUSE_AGE), buffer.getDouble(base + GROSS_INCOME));
+                totals.add(status, result.getTaxDue(), result.isReturnRequired());
+            }
+        }
+    }
+
+    /**
+     * @return A cursor before the first taxpayer.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * @return The year of the tax tables used by the store.
+     */
+    public int getTaxYear() {
+        return taxYear;
+    }
+
+    /**
+     * @param taxYear The year of the tax tables to use.
+     * @throws IllegalArgumentException Thrown if the year is not supported.
+     */
+    public void setTaxYear(int taxYear) {
+        TaxpayerValidator.check(TaxpayerValidator.validateTaxYear(taxYear));
+        this.taxYear = taxYear;
+    }
+
+    /**
+     * @return The rules of the tax year used by the store.
+     */
+    TaxYear getRules() {
+        return TaxYearRegistry.forYear(taxYear);
+    }
+
+    /**
+     * A flyweight over the records of the store, which iterates them in id
+     * order without creating an object per taxpayer. The getters read the
+     * taxpayer {@link #next()} last moved to.
+     */
+    public final class Cursor {
+
+        private int id = -1; // The current taxpayer.
+        private ByteBuffer buffer; // The chunk of the current taxpayer.
+        private int base; // The offset of the current taxpayer in its chunk.
+
+        private Cursor() {
+        }
+
+        /**
+         * Move to the next taxpayer.
+         *
+         * @return Whether there is one.
+         */
+        public boolean next() {
+            if (id + 1 >= size) {
+                id = size;
+                return false;
+            }
+            id++;
+            buffer = records[id >>> chunkShift];
+            base = base(id);
+            return true;
+        }
+
+        /**
+         * @return The id of the current taxpayer.
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return The name of the current taxpayer.
+         */
+        public String getName() {
+            return TaxpayerStore.this.getName(id);
+        }
+
+        /**
+         * @return The age of the current taxpayer.
+         */
+        public int getAge() {
+            return buffer.getInt(base + AGE);
+        }
+
+        /**
+         * @return The age of the spouse of the current taxpayer.
+         */
+        public int getSpouseAge() {
+            return buffer.getInt(base + SPOUSE_AGE);
+        }
+
+        /**
+         * @return The filing status of the current taxpayer.
+         */
+        public int getFilingStatus() {
+            return buffer.getInt(base + FILING_STATUS);
+        }
+
+        /**
+         * @return The gross income of the current taxpayer.
+         */
+        public double getGrossIncome() {
+            return buffer.getDouble(base + GROSS_INCOME);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.nio.ByteBuffer;
+
+/**
+ * This class validates taxpayer details without throwing. Each check returns
+ * a bitmask of the problems it found, {@link #VALID} if there are none, and
+ * the error message is only built when {@link #describe(int)} is called. The
+ * {@link TaxCalculator} constructors throw the message of the first problem
+ * in the order they check the parameters: tax year, name, age, filing status
+ * and then the spouse age.
+ */
+public final class TaxpayerValidator {
+
+    /**
+     * No problem was found.
+     */
+    public static final int VALID = 0;
+
+    /**
+     * The name is empty.
+     */
+    public static final int NAME_EMPTY = 1;
+
+    /**
+     * The name does not have at least a first and a last name.
+     */
+    public static final int NAME_INCOMPLETE = 1 << 1;
+
+    /**
+     * The age of the taxpayer is not greater than 0.
+     */
+    public static final int AGE_INVALID = 1 << 2;
+
+    /**
+     * The filing status is unknown, or does not match whether there is a
+     * spouse.
+     */
+    public static final int FILING_STATUS_INVALID = 1 << 3;
+
+    /**
+     * The age of the spouse is not greater than 0.
+     */
+    public static final int SPOUSE_AGE_INVALID = 1 << 4;
+
+    /**
+     * There are no tax tables for the tax year.
+     */
+    public static final int TAX_YEAR_UNSUPPORTED = 1 << 5;
+
+    private TaxpayerValidator() {
+    }
+
+    /**
+     * Validate the name of a taxpayer.
+     *
+     * @param name The name. It must not be null.
+     * @return {@link #NAME_EMPTY}, {@link #NAME_INCOMPLETE} or {@link #VALID}.
+     */
+    public static int validateName(CharSequence name) {
+        if (name.length() <= 0) {
+            return NAME_EMPTY;
+        }
+        // Check to make certain that a first and last name is provided.
+        if (NameTokens.count(name) < 2) {
+            return NAME_INCOMPLETE;
+        }
+        return VALID;
+    }
+
+    /**
+     * Validate the name of a taxpayer held as ASCII or UTF-8 bytes.
+     *
+     * @param name The buffer holding the name.
+     * @param from The first byte of the name, inclusive.
+     * @param to   The last byte of the name, exclusive.
+     * @return {@link #NAME_EMPTY}, {@link #NAME_INCOMPLETE} or {@link #VALID}.
+     */
+    public static int validateName(ByteBuffer name, int from, int to) {
+        if (to <= from) {
+            return NAME_EMPTY;
+        }
+        if (NameTokens.count(name, from, to) < 2) {
+            return NAME_INCOMPLETE;
+        }
+        return VALID;
+    }
+
+    /**
+     * @param taxYear The tax year.
+     * @return {@link #TAX_YEAR_UNSUPPORTED} or {@link #VALID}.
+     */
+    public static int validateTaxYear(int taxYear) {
+        return TaxYearRegistry.isSupported(taxYear) ? VALID : TAX_YEAR_UNSUPPORTED;
+    }
+
+    /**
+     * @param age The age of the taxpayer.
+     * @return {@link #AGE_INVALID} or {@link #VALID}.
+     */
+    public static int validateAge(int age) {
+        return (age <= 0) ? AGE_INVALID : VALID;
+    }
+
+    /**
+     * @param spouseAge The age of the spouse.
+     * @return {@link #SPOUSE_AGE_INVALID} or {@link #VALID}.
+     */
+    public static int validateSpouseAge(int spouseAge) {
+        return (spouseAge <= 0) ? SPOUSE_AGE_INVALID : VALID;
+    }
+
+    /**
+     * @param filingStatus The filing status of a taxpayer without a spouse.
+     * @return {@link #FILING_STATUS_INVALID} unless the status is single, head
+     * of household or qualifying widower.
+     */
+    public static int validateSingleFilingStatus(int filingStatus) {
+        if ((filingStatus != TaxCalculatorInterface.SINGLE)
+                && (filingStatus != TaxCalculatorInterface.HEAD_OF_HOUSEHOLD)
+                && (filingStatus != TaxCalculatorInterface.QUALIFYING_WIDOWER)) {
+            return FILING_STATUS_INVALID;
+        }
+        return VALID;
+    }
+
+    /**
+     * @param filingStatus The filing status of a taxpayer with a spouse.
+     * @return {@link #FILING_STATUS_INVALID} unless the status is married
+     * filing jointly or separately.
+     */
+    public static int validateMarriedFilingStatus(int filingStatus) {
+        if ((filingStatus != TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                && (filingStatus != TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+            return FILING_STATUS_INVALID;
+        }
+        return VALID;
+    }
+
+    /**
+     * Validate everything but the name of a taxpayer record. The married
+     * statuses are checked like the constructor with a spouse, and every other
+     * status like the constructor without one, whose spouse age is ignored.
+     *
+     * @param age          The age of the taxpayer.
+     * @param filingStatus The filing status.
+     * @param spouseAge    The age of the spouse.
+     * @return The bitmask of the problems found.
+     */
+    public static int validateRecord(int age, int filingStatus, int spouseAge) {
+        int errors = validateAge(age);
+        if (validateMarriedFilingStatus(filingStatus) == VALID) {
+            errors |= validateSpouseAge(spouseAge);
+        } else {
+            errors |= validateSingleFilingStatus(filingStatus);
+        }
+        return errors;
+    }
+
+    /**
+     * Validate a taxpayer record.
+     *
+     * @param name         The name. It must not be null.
+     * @param age          The age of the taxpayer.
+     * @param filingStatus The filing status.
+     * @param spouseAge    The age of the spouse.
+     * @return The bitmask of the problems found.
+     * @see #validateRecord(int, int, int)
+     */
+    public static int validate(CharSequence name, int age, int filingStatus, int spouseAge) {
+        return validateName(name) | validateRecord(age, filingStatus, spouseAge);
+    }
+
+    /**
+     * Build the message for the first problem in a bitmask, in the order the
+     * constructors check them.
+     *
+     * @param errors The bitmask of problems.
+     * @return The message the constructors would throw, or null if the
+     * bitmask is {@link #VALID}.
+     */
+    public static String describe(int errors) {
+        if ((errors & TAX_YEAR_UNSUPPORTED) != 0) {
+            return "Unsupported tax year.";
+        } else if ((errors & NAME_EMPTY) != 0) {
+            return "Name must be longer than 0 characters in length. ";
+        } else if ((errors & NAME_INCOMPLETE) != 0) {
+            return "Name must have at least a first and last name.";
+        } else if ((errors & AGE_INVALID) != 0) {
+            return "Invalid Age.";
+        } else if ((errors & FILING_STATUS_INVALID) != 0) {
+            return "Invalid filing status for this constructor.";
+        } else if ((errors & SPOUSE_AGE_INVALID) != 0) {
+            return "Invalid Age.";
+        }
+        return null;
+    }
+
+    /**
+     * Throw the exception for the first problem in a bitmask, if there is one.
+     *
+     * @param errors The bitmask of problems.
+     * @throws IllegalArgumentException Thrown unless the bitmask is {@link #VALID}.
+     */
+    static void check(int errors) {
+        if (errors != VALID) {
+            TaxMetrics.validationFailed(errors);
+            throw new IllegalArgumentException(describe(errors));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This class provides TestNG tests for the name token scanner. The scanner
+ * must agree with {@code name.split("\\s+").length} for every name.
+ */
+public class NameTokensTest {
+
+    /**
+     * The characters the fuzzed names are made of: every whitespace character
+     * {@code \s} matches, some letters, and some characters it does not match.
+     */
+    private static final char[] ALPHABET = {' ', '\t', '\n', '\u000B', '\f', '\r', 'a', 'B', '.', '-',
+            '\'', '\u00A0', '\u2003', '\u00E9', '\u0085', '\u001C'};
+
+    @DataProvider(name = "nameDataProvider")
+    public Object[][] nameDataProvider() {
+        return new Object[][]{
+                new Object[]{""}, new Object[]{" "}, new Object[]{"   "}, new Object[]{"Bob"},
+                new Object[]{"Bob Smith"}, new Object[]{" Bob"}, new Object[]{"Bob "},
+                new Object[]{" Bob "}, new Object[]{"\tBob\r\nSmith\f"}, new Object[]{"Bob\u00A0Smith"},
+                new Object[]{"  Bob   Smith  Jr  "}, new Object[]{"\u000B"}
+        };
+    }
+
+    @Test(dataProvider = "nameDataProvider")
+    public void testCountMatchesSplit(String name) {
+        assertCountMatchesSplit(name);
+    }
+
+    @Test
+    public void testCountMatchesSplitForFuzzedNames() {
+        Random random = new Random(832);
+        StringBuilder name = new StringBuilder();
+        for (int count = 0; count < 200000; count++) {
+            name.setLength(0);
+            int length = random.nextInt(12);
+            for (int index = 0; index < length; index++) {
+                name.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertCountMatchesSplit(name.toString());
+        }
+    }
+
+    private static void assertCountMatchesSplit(String name) {
+        int expected = name.split("\\s+").length;
+        byte[] bytes = ("x" + name + "x").getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(NameTokens.count(name), expected, "\"" + name + "\"");
+        assertEquals(NameTokens.count(new StringBuilder(name)), expected, "\"" + name + "\"");
+        assertEquals(NameTokens.count(bytes, 1, bytes.length - 1), expected, "\"" + name + "\"");
+        assertEquals(NameTokens.count(ByteBuffer.wrap(bytes), 1, bytes.length - 1), expected,
+                "\"" + name + "\"");
+    }
+}
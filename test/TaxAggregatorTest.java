@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the group-by aggregator. Counts must be
+ * exact and sums must be within an ulp or so of the exact sum.
+ */
+public class TaxAggregatorTest {
+
+    private static final int MERGE_YEAR = 2103;
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    @Test
+    public void testGroupsMatchTheCalculators() {
+        TaxBatch batch = TaxBatchTest.randomBatch(20000, 22);
+        batch.compute();
+        TaxAggregator aggregator = new TaxAggregator();
+        aggregator.add(batch, 0, batch.size());
+
+        int groups = aggregator.getGroups();
+        long[] records = new long[groups];
+        long[] returns = new long[groups];
+        BigDecimal[] taxDue = new BigDecimal[groups];
+        BigDecimal[] taxable = new BigDecimal[groups];
+        for (int group = 0; group < groups; group++) {
+            taxDue[group] = BigDecimal.ZERO;
+            taxable[group] = BigDecimal.ZERO;
+        }
+        TaxYear rules = TaxYearRegistry.getDefault();
+        for (int index = 0; index < batch.size(); index++) {
+            TaxCalculator calculator = TaxBatchTest.calculatorFor(batch, index);
+            int status = calculator.getFilingStatus();
+            int group = aggregator.group(status, calculator.getAge() >= 65,
+                    rules.schedule(status).bracketOf(calculator.getTaxableIncome()));
+            records[group]++;
+            if (calculator.isReturnRequired()) {
+                returns[group]++;
+            }
+            taxDue[group] = taxDue[group].add(new BigDecimal(calculator.getTaxDue()));
+            taxable[group] = taxable[group].add(new BigDecimal(calculator.getTaxableIncome()));
+        }
+
+        long total = 0;
+        for (int group = 0; group < groups; group++) {
+            assertEquals(aggregator.getRecords(group), records[group]);
+            assertEquals(aggregator.getReturnsRequired(group), returns[group]);
+            assertEquals(aggregator.getTaxDue(group), taxDue[group].doubleValue(),
+                    Math.ulp(taxDue[group].doubleValue()));
+            assertEquals(aggregator.getTaxableIncome(group), taxable[group].doubleValue(),
+                    Math.ulp(taxable[group].doubleValue()));
+            total += aggregator.getRecords(group);
+        }
+        assertEquals(total, batch.size());
+    }
+
+    @Test
+    public void testCompensatedSumIsExactWhereNaiveSumDrifts() {
+        TaxAggregator aggregator = new TaxAggregator();
+        double naive = 0;
+        BigDecimal exact = BigDecimal.ZERO;
+        for (int index = 0; index < 1000000; index++) {
+            aggregator.add(TaxCalculatorInterface.SINGLE, 30, 10000, 0.1, true);
+            naive += 0.1;
+            exact = exact.add(new BigDecimal(0.1));
+        }
+        int group = aggregator.group(TaxCalculatorInterface.SINGLE, false, 1);
+
+        assertEquals(aggregator.getRecords(group), 1000000L);
+        assertEquals(aggregator.getTaxDue(group), exact.doubleValue());
+        assertEquals(aggregator.getTaxableIncome(group), 1e10);
+        assertTrue(naive != exact.doubleValue());
+    }
+
+    @Test
+    public void testMergedPartialsMatchOnePass() {
+        TaxBatch batch = TaxBatchTest.randomBatch(30000, 23);
+        batch.compute();
+        TaxAggregator whole = new TaxAggregator();
+        whole.add(batch, 0, batch.size());
+
+        TaxAggregator merged = new TaxAggregator();
+        for (int from = 0; from < batch.size(); from += 7000) {
+            TaxAggregator partial = new TaxAggregator();
+            partial.add(batch, from, Math.min(batch.size(), from + 7000));
+            merged.merge(partial);
+        }
+
+        for (int group = 0; group < whole.getGroups(); group++) {
+            assertEquals(merged.getRecords(group), whole.getRecords(group));
+            assertEquals(merged.getReturnsRequired(group), whole.getReturnsRequired(group));
+            assertEquals(merged.getTaxDue(group), whole.getTaxDue(group), 2 * Math.ulp(whole.getTaxDue(group)));
+            assertEquals(merged.getTaxableIncome(group), whole.getTaxableIncome(group),
+                    2 * Math.ulp(whole.getTaxableIncome(group)));
+        }
+    }
+
+    @Test
+    public void testAggregatorsWithOtherGroupsAreNotMerged() {
+        TaxYearRegistry.publish(oneBracketYear(MERGE_YEAR, 0, .1));
+        TaxAggregator aggregator = new TaxAggregator(MERGE_YEAR);
+        TaxYearRegistry.publish(oneBracketYear(MERGE_YEAR, 0, .2));
+        // Other rates group the records the same way.
+        aggregator.merge(new TaxAggregator(MERGE_YEAR));
+
+        TaxYearRegistry.publish(oneBracketYear(MERGE_YEAR, 100, .1));
+        assertMergeRejected(aggregator, new TaxAggregator(MERGE_YEAR));
+        TaxYearRegistry.publish(oneBracketYear(MERGE_YEAR + 1, 0, .1));
+        assertMergeRejected(aggregator, new TaxAggregator(MERGE_YEAR + 1));
+        assertMergeRejected(aggregator, new TaxAggregator());
+    }
+
+    private static void assertMergeRejected(TaxAggregator aggregator, TaxAggregator other) {
+        try {
+            aggregator.merge(other);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Build rules with a single bracket for every status.
+     */
+    private static TaxYear oneBracketYear(int year, double floor, double rate) {
+        double[] deductions = new double[TaxYear.STATUSES];
+        double[][] thresholds = new double[TaxYear.STATUSES][];
+        TaxSchedule[] schedules = new TaxSchedule[TaxYear.STATUSES];
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            deductions[status] = 1000;
+            thresholds[status] = (status == 2) ? new double[]{1, 1, 1} : new double[]{1, 1};
+            schedules[status] = new TaxSchedule(new double[]{rate}, new double[]{floor});
+        }
+        return new TaxYear(year, 0, deductions, thresholds, schedules);
+    }
+
+    @Test
+    public void testStreamsAFileSkippingInvalidRecords() throws IOException {
+        Path in = Files.createTempFile("tax-aggregate", ".csv");
+        try {
+            Files.write(in, ("Bob Smith,30,0,0,50000\n"
+                    + "Bob,30,0,0,50000\n"
+                    + "Bob Smith,70,66,-2,150000\n"
+                    + "Bob Smith,30,0,0,lots\n").getBytes(StandardCharsets.US_ASCII));
+            TaxAggregator aggregator = new TaxAggregator();
+
+            long records = new TaxFileProcessor().process(in, aggregator);
+
+            TaxCalculator single = new TaxCalculator("Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+            single.setGrossIncome(50000);
+            TaxCalculator joint = new TaxCalculator("Bob Smith", 70, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 66);
+            joint.setGrossIncome(150000);
+            TaxYear rules = TaxYearRegistry.getDefault();
+            int singleGroup = aggregator.group(TaxCalculatorInterface.SINGLE, false,
+                    rules.schedule(TaxCalculatorInterface.SINGLE).bracketOf(single.getTaxableIncome()));
+            int jointGroup = aggregator.group(TaxCalculatorInterface.MARRIED_FILING_JOINTLY, true,
+                    rules.schedule(TaxCalculatorInterface.MARRIED_FILING_JOINTLY).bracketOf(joint.getTaxableIncome()));
+
+            assertEquals(records, 4L);
+            assertEquals(aggregator.getRecords(singleGroup), 1L);
+            assertEquals(aggregator.getTaxDue(singleGroup), single.getTaxDue());
+            assertEquals(aggregator.getRecords(jointGroup), 1L);
+            assertEquals(aggregator.getTaxDue(jointGroup), joint.getTaxDue());
+            assertEquals(aggregator.toString().split("\n").length, 2);
+        } finally {
+            Files.delete(in);
+        }
+    }
+
+    @Test
+    public void testGroupsDecodeBack() {
+        TaxAggregator aggregator = new TaxAggregator();
+        int bracketCount = TaxYearRegistry.getDefault().schedule(TaxCalculatorInterface.SINGLE).getBracketCount();
+        for (int status : STATUSES) {
+            for (int bracket = -1; bracket < bracketCount; bracket++) {
+                int group = aggregator.group(status, true, bracket);
+                assertEquals(aggregator.getFilingStatus(group), status);
+                assertTrue(aggregator.isAged(group));
+                assertEquals(aggregator.getBracket(group), bracket);
+                assertFalse(aggregator.isAged(aggregator.group(status, false, bracket)));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBracketOutOfBoundsIsRejected() {
+        TaxAggregator aggregator = new TaxAggregator();
+        aggregator.group(TaxCalculatorInterface.SINGLE, false, aggregator.getGroups());
+    }
+}
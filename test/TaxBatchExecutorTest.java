@@ -0,0 +1,90 @@
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * This class provides TestNG tests for the parallel batch executor.
+ */
+public class TaxBatchExecutorTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE,
+            TaxCalculatorInterface.HEAD_OF_HOUSEHOLD, TaxCalculatorInterface.MARRIED_FILING_JOINTLY,
+            TaxCalculatorInterface.MARRIED_FILING_SEPARATELY, TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    @Test
+    public void testParallelOutputMatchesSequentialBatch() {
+        TaxBatch sequential = TaxBatchTest.randomBatch(50000, 5);
+        TaxBatch parallel = TaxBatchTest.randomBatch(50000, 5);
+        sequential.compute();
+
+        try (TaxBatchExecutor executor = new TaxBatchExecutor(4, 1000)) {
+            executor.compute(parallel);
+        }
+
+        assertEquals(parallel.getStandardDeduction(), sequential.getStandardDeduction());
+        assertEquals(parallel.getTaxableIncome(), sequential.getTaxableIncome());
+        assertEquals(parallel.getTaxDue(), sequential.getTaxDue());
+        assertEquals(parallel.getNetTaxRate(), sequential.getNetTaxRate());
+        assertEquals(parallel.getReturnRequired(), sequential.getReturnRequired());
+    }
+
+    @Test
+    public void testTotalsMatchTheComputedRecords() {
+        TaxBatch batch = TaxBatchTest.randomBatch(30000, 6);
+        TaxTotals totals;
+
+        try (TaxBatchExecutor executor = new TaxBatchExecutor(3, 777)) {
+            totals = executor.compute(batch);
+        }
+
+        long records = 0;
+        for (int status : STATUSES) {
+            long expectedRecords = 0;
+            long expectedReturns = 0;
+            double expectedTax = 0;
+            for (int index = 0; index < batch.size(); index++) {
+                if (batch.getFilingStatus()[index] == status) {
+                    expectedRecords++;
+                    expectedTax += batch.getTaxDue()[index];
+                    if (batch.getReturnRequired()[index]) {
+                        expectedReturns++;
+                    }
+                }
+            }
+            assertEquals(totals.getRecords(status), expectedRecords);
+            assertEquals(totals.getReturnsRequired(status), expectedReturns);
+            assertEquals(totals.getTaxDue(status), expectedTax, expectedTax * 1e-12);
+            records += totals.getRecords(status);
+        }
+        assertEquals(records, batch.size());
+    }
+
+    @Test
+    public void testTotalsAreIdenticalForAnyParallelism() {
+        TaxTotals serial;
+        TaxTotals parallel;
+
+        try (TaxBatchExecutor executor = new TaxBatchExecutor(1, 512)) {
+            serial = executor.compute(TaxBatchTest.randomBatch(40000, 8));
+        }
+        try (TaxBatchExecutor executor = new TaxBatchExecutor(8, 512)) {
+            parallel = executor.compute(TaxBatchTest.randomBatch(40000, 8));
+        }
+
+        for (int status : STATUSES) {
+            assertEquals(Double.doubleToLongBits(parallel.getTaxDue(status)),
+                    Double.doubleToLongBits(serial.getTaxDue(status)));
+            assertEquals(parallel.getReturnsRequired(status), serial.getReturnsRequired(status));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroParallelismShouldThrowException() {
+        new TaxBatchExecutor(0, 100);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroChunkSizeShouldThrowException() {
+        new TaxBatchExecutor(1, 0);
+    }
+}
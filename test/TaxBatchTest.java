@@ -0,0 +1,172 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the batch entry point. Every output
+ * column must match what a TaxCalculator reports for the same taxpayer.
+ */
+public class TaxBatchTest {
+
+    private static final int[] SINGLE_STATUSES = {TaxCalculatorInterface.SINGLE,
+            TaxCalculatorInterface.HEAD_OF_HOUSEHOLD, TaxCalculatorInterface.QUALIFYING_WIDOWER};
+    private static final int[] MARRIED_STATUSES = {TaxCalculatorInterface.MARRIED_FILING_JOINTLY,
+            TaxCalculatorInterface.MARRIED_FILING_SEPARATELY};
+
+    /**
+     * Build a batch of random taxpayers with output columns allocated.
+     */
+    static TaxBatch randomBatch(int size, long seed) {
+        Random random = new Random(seed);
+        int[] status = new int[size];
+        int[] age = new int[size];
+        int[] spouseAge = new int[size];
+        double[] income = new double[size];
+        for (int index = 0; index < size; index++) {
+            age[index] = 18 + random.nextInt(70);
+            if (random.nextBoolean()) {
+                status[index] = SINGLE_STATUSES[random.nextInt(SINGLE_STATUSES.length)];
+            } else {
+                status[index] = MARRIED_STATUSES[random.nextInt(MARRIED_STATUSES.length)];
+                spouseAge[index] = 18 + random.nextInt(70);
+            }
+            income[index] = Math.round(random.nextDouble() * 50000000) / 100.0;
+        }
+        return new TaxBatch(status, age, spouseAge, income, new double[size], new double[size],
+                new double[size], new double[size], new boolean[size]);
+    }
+
+    /**
+     * Create the calculator that the batch record at an index stands for.
+     */
+    static TaxCalculator calculatorFor(TaxBatch batch, int index) {
+        int status = batch.getFilingStatus()[index];
+        TaxCalculator calculator;
+        if ((status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+            calculator = new TaxCalculator("Bob Smith", batch.getAge()[index], status,
+                    batch.getSpouseAge()[index]);
+        } else {
+            calculator = new TaxCalculator("Bob Smith", batch.getAge()[index], status);
+        }
+        calculator.setGrossIncome(batch.getGrossIncome()[index]);
+        return calculator;
+    }
+
+    /**
+     * Assert that every record in a computed batch matches the calculator.
+     */
+    static void assertMatchesCalculator(TaxBatch batch) {
+        for (int index = 0; index < batch.size(); index++) {
+            TaxCalculator calculator = calculatorFor(batch, index);
+            assertEquals(batch.getStandardDeduction()[index], calculator.getStandardDeduction());
+            assertEquals(batch.getTaxableIncome()[index], calculator.getTaxableIncome());
+            assertEquals(batch.getTaxDue()[index], calculator.getTaxDue());
+            assertEquals(batch.getNetTaxRate()[index], calculator.getNetTaxRate());
+            assertEquals(batch.getReturnRequired()[index], calculator.isReturnRequired());
+        }
+    }
+
+    @Test
+    public void testBatchMatchesCalculatorForRandomTaxpayers() {
+        TaxBatch batch = randomBatch(20000, 42);
+
+        batch.compute();
+
+        assertMatchesCalculator(batch);
+    }
+
+    @Test
+    public void testDefaultYearFitsFourLanes() throws Throwable {
+        TaxYear rules = TaxYearRegistry.getDefault();
+        // The file rules share schedules between statuses the way the built-in rules do.
+        assertSame(rules.schedule(TaxCalculatorInterface.QUALIFYING_WIDOWER),
+                rules.schedule(TaxCalculatorInterface.MARRIED_FILING_JOINTLY));
+        if (!TaxBatch.isVectorized()) {
+            return;
+        }
+        // A 256-bit species of doubles, as on an AVX2 host, must still take the vector path.
+        boolean fits = (boolean) MethodHandles.lookup().findStatic(Class.forName("TaxBatchVector"), "fits",
+                MethodType.methodType(boolean.class, TaxYear.class, int.class)).invoke(rules, 4);
+        assertTrue(fits);
+    }
+
+    @Test
+    public void testVectorizedBatchIsBitIdenticalToScalarBatch() {
+        TaxBatch scalar = randomBatch(10007, 11);
+        TaxBatch vectorized = randomBatch(10007, 11);
+        vectorized.getGrossIncome()[3] = -5;
+        scalar.getGrossIncome()[3] = -5;
+        vectorized.getGrossIncome()[4] = 0.00000001;
+        scalar.getGrossIncome()[4] = 0.00000001;
+
+        scalar.compute();
+        vectorized.computeVectorized();
+
+        assertEquals(vectorized.getStandardDeduction(), scalar.getStandardDeduction());
+        assertEquals(vectorized.getTaxableIncome(), scalar.getTaxableIncome());
+        assertEquals(vectorized.getTaxDue(), scalar.getTaxDue());
+        assertEquals(vectorized.getNetTaxRate(), scalar.getNetTaxRate());
+        assertEquals(vectorized.getReturnRequired(), scalar.getReturnRequired());
+    }
+
+    @Test
+    public void testVectorizedBatchesAlternatingYearsMatchScalarBatches() {
+        for (int round = 0; round < 2; round++) {
+            for (int year : TaxYearRegistry.getYears()) {
+                TaxBatch scalar = randomBatch(1001, year);
+                TaxBatch vectorized = randomBatch(1001, year);
+                scalar.setTaxYear(year);
+                vectorized.setTaxYear(year);
+
+                scalar.compute();
+                vectorized.computeVectorized();
+
+                assertEquals(vectorized.getTaxDue(), scalar.getTaxDue());
+                assertEquals(vectorized.getNetTaxRate(), scalar.getNetTaxRate());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchNormalizesNegativeIncome() {
+        TaxBatch batch = new TaxBatch(new int[]{TaxCalculatorInterface.SINGLE}, new int[]{30},
+                new int[]{0}, new double[]{-1}, new double[1], new double[1], new double[1],
+                new double[1], new boolean[1]);
+
+        batch.compute();
+
+        assertEquals(batch.getTaxDue()[0], 0.0);
+        assertEquals(batch.getNetTaxRate()[0], 0.0);
+        assertEquals(batch.getReturnRequired()[0], false);
+    }
+
+    @Test
+    public void testComputeRangeOnlyWritesThatRange() {
+        TaxBatch batch = randomBatch(10, 7);
+
+        batch.compute(2, 5);
+
+        for (int index = 0; index < batch.size(); index++) {
+            boolean computed = (index >= 2) && (index < 5);
+            assertEquals(batch.getStandardDeduction()[index] > 0, computed);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMismatchedColumnsShouldThrowException() {
+        new TaxBatch(new int[2], new int[2], new int[2], new double[2], new double[2],
+                new double[1], new double[2], new double[2], new boolean[2]);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testComputeOutsideBatchShouldThrowException() {
+        randomBatch(10, 7).compute(5, 11);
+    }
+}
@@ -477,4 +477,26 @@ public class TaxCalculatorTest {
         // Assert
         assertEquals(calculator.getNetTaxRate(), 0.0);
     }
+
+    @Test
+    public void testCachedValuesFollowGrossIncome() {
+        // Arrange - One calculator is read after every change, the other only at the end.
+        TaxCalculator cached = new TaxCalculator("Bob Smith", 66, TaxCalculator.MARRIED_FILING_JOINTLY, 64);
+        double[] incomes = {150000, 20000, -5, 0, 357700.01, 8950};
+
+        for (double income : incomes) {
+            // Act
+            cached.getNetTaxRate();
+            cached.setGrossIncome(income);
+            TaxCalculator fresh = new TaxCalculator("Bob Smith", 66, TaxCalculator.MARRIED_FILING_JOINTLY, 64);
+            fresh.setGrossIncome(cached.getGrossIncome());
+
+            // Assert - The cached values are exactly the freshly computed ones.
+            assertEquals(cached.getStandardDeduction(), fresh.getStandardDeduction());
+            assertEquals(cached.getTaxDue(), fresh.getTaxDue());
+            assertEquals(cached.getTaxableIncome(), fresh.getTaxableIncome());
+            assertEquals(cached.getNetTaxRate(), fresh.getNetTaxRate());
+            assertEquals(cached.isReturnRequired(), fresh.isReturnRequired());
+        }
+    }
 }
@@ -0,0 +1,126 @@
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the status-specialized calculators.
+ * They must validate like {@link TaxCalculator} and return exactly what it
+ * returns.
+ */
+public class TaxCalculatorsTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * Assert that a calculator returns exactly what another computes for the
+     * same taxpayer.
+     */
+    static void assertSameResults(TaxCalculatorInterface actual, TaxCalculatorInterface expected) {
+        assertEquals(actual.getFilingStatus(), expected.getFilingStatus());
+        assertEquals(actual.getAge(), expected.getAge());
+        assertEquals(actual.getSpouseAge(), expected.getSpouseAge());
+        assertEquals(actual.getGrossIncome(), expected.getGrossIncome());
+        assertEquals(actual.getStandardDeduction(), expected.getStandardDeduction());
+        assertEquals(actual.getTaxableIncome(), expected.getTaxableIncome());
+        assertEquals(actual.getTaxDue(), expected.getTaxDue());
+        assertEquals(actual.getNetTaxRate(), expected.getNetTaxRate());
+        assertEquals(actual.isReturnRequired(), expected.isReturnRequired());
+    }
+
+    /**
+     * Assert that a profile holds exactly what a calculator computes for the
+     * same taxpayer.
+     */
+    static void assertSameResults(TaxProfile actual, TaxCalculatorInterface expected) {
+        assertEquals(actual.getName(), expected.getName());
+        assertEquals(actual.getFilingStatus(), expected.getFilingStatus());
+        assertEquals(actual.getAge(), expected.getAge());
+        assertEquals(actual.getSpouseAge(), expected.getSpouseAge());
+        assertEquals(actual.getGrossIncome(), expected.getGrossIncome());
+        assertEquals(actual.getStandardDeduction(), expected.getStandardDeduction());
+        assertEquals(actual.getTaxableIncome(), expected.getTaxableIncome());
+        assertEquals(actual.getTaxDue(), expected.getTaxDue());
+        assertEquals(actual.getNetTaxRate(), expected.getNetTaxRate());
+        assertEquals(actual.isReturnRequired(), expected.isReturnRequired());
+    }
+
+    @Test
+    public void testResultsMatchTheCalculator() {
+        Random random = new Random(15);
+        for (int index = 0; index < 5000; index++) {
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            int age = 60 + random.nextInt(10);
+            int spouseAge = 60 + random.nextInt(10);
+            TaxCalculatorInterface specialized;
+            TaxCalculatorInterface expected;
+            if (TaxpayerValidator.validateMarriedFilingStatus(status) == TaxpayerValidator.VALID) {
+                specialized = TaxCalculators.create("Bob Smith", age, status, spouseAge);
+                expected = new TaxCalculator("Bob Smith", age, status, spouseAge);
+            } else {
+                specialized = TaxCalculators.create("Bob Smith", age, status);
+                expected = new TaxCalculator("Bob Smith", age, status);
+            }
+            for (int income = 0; income < 3; income++) {
+                double grossIncome = random.nextDouble() * 500000;
+                specialized.setGrossIncome(grossIncome);
+                expected.setGrossIncome(grossIncome);
+                assertSameResults(specialized, expected);
+            }
+        }
+    }
+
+    @Test
+    public void testEachStatusHasItsOwnFinalClass() {
+        Set<Class<?>> classes = new HashSet<>();
+        for (int status : STATUSES) {
+            boolean married = TaxpayerValidator.validateMarriedFilingStatus(status) == TaxpayerValidator.VALID;
+            TaxCalculatorInterface calculator = married
+                    ? TaxCalculators.create(2008, "Bob Smith", 40, status, 40)
+                    : TaxCalculators.create(2008, "Bob Smith", 40, status);
+            assertEquals(calculator.getFilingStatus(), status);
+            assertTrue(Modifier.isFinal(calculator.getClass().getModifiers()));
+            classes.add(calculator.getClass());
+        }
+        assertEquals(classes.size(), STATUSES.length);
+    }
+
+    @Test
+    public void testInvalidParametersAreRejectedLikeTheCalculator() {
+        assertSameRejection(() -> TaxCalculators.create("Bob", 21, TaxCalculatorInterface.SINGLE),
+                () -> new TaxCalculator("Bob", 21, TaxCalculatorInterface.SINGLE));
+        assertSameRejection(() -> TaxCalculators.create("Bob Smith", -1, TaxCalculatorInterface.SINGLE),
+                () -> new TaxCalculator("Bob Smith", -1, TaxCalculatorInterface.SINGLE));
+        assertSameRejection(() -> TaxCalculators.create("Bob Smith", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY),
+                () -> new TaxCalculator("Bob Smith", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY));
+        assertSameRejection(() -> TaxCalculators.create("Bob Smith", 40, TaxCalculatorInterface.SINGLE, 40),
+                () -> new TaxCalculator("Bob Smith", 40, TaxCalculatorInterface.SINGLE, 40));
+        assertSameRejection(
+                () -> TaxCalculators.create("Bob Smith", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, -1),
+                () -> new TaxCalculator("Bob Smith", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, -1));
+        assertSameRejection(() -> TaxCalculators.create(1900, "Bob Smith", 40, TaxCalculatorInterface.SINGLE),
+                () -> new TaxCalculator(1900, "Bob Smith", 40, TaxCalculatorInterface.SINGLE));
+    }
+
+    private static void assertSameRejection(Runnable specialized, Runnable expected) {
+        assertEquals(rejection(specialized), rejection(expected));
+    }
+
+    private static String rejection(Runnable constructor) {
+        try {
+            constructor.run();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        fail("Expected an IllegalArgumentException.");
+        return null;
+    }
+}
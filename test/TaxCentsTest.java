@@ -0,0 +1,132 @@
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the integer cents engine. Its results
+ * are checked against amounts worked out by hand and against the double
+ * engine, which may only differ by the final rounding to a cent.
+ */
+public class TaxCentsTest {
+
+    @DataProvider(name = "roundingDataProvider")
+    public Object[][] roundingDataProvider() {
+        return new Object[][]{
+                new Object[]{0.125, 12L}, new Object[]{0.375, 38L}, new Object[]{-0.125, -12L},
+                new Object[]{100000.0, 10000000L}, new Object[]{0.01, 1L}, new Object[]{1234.5678, 123457L},
+        };
+    }
+
+    @Test(dataProvider = "roundingDataProvider")
+    public void testToCentsRoundsTiesToEven(double dollars, long cents) {
+        assertEquals(TaxCents.toCents(dollars), cents);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testToCentsRejectsNaN() {
+        TaxCents.toCents(Double.NaN);
+    }
+
+    @Test
+    public void testBasisPoints() {
+        assertEquals(TaxCents.toBasisPoints(.15), 1500);
+        assertEquals(TaxCents.toBasisPoints(.1234), 1234);
+        assertEquals(TaxCents.toBasisPoints(.35), 3500);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testFractionalBasisPointsAreRejected() {
+        TaxCents.toBasisPoints(.12345);
+    }
+
+    @Test
+    public void testDivideHalfEven() {
+        assertEquals(TaxCents.divideHalfEven(25, 10), 2L);
+        assertEquals(TaxCents.divideHalfEven(35, 10), 4L);
+        assertEquals(TaxCents.divideHalfEven(26, 10), 3L);
+        assertEquals(TaxCents.divideHalfEven(24, 10), 2L);
+        assertEquals(TaxCents.divideHalfEven(-25, 10), -2L);
+    }
+
+    @DataProvider(name = "taxDataProvider")
+    public Object[][] taxDataProvider() {
+        return new Object[][]{
+                // 802.50 + 3678.75 + 11575 + 4396 on a taxable 94550.
+                new Object[]{TaxCalculatorInterface.SINGLE, 30, 0, 10000000L, 2045225L},
+                // A taxable 5 cents owes half a cent, which rounds to even.
+                new Object[]{TaxCalculatorInterface.SINGLE, 30, 0, 545005L, 0L},
+                new Object[]{TaxCalculatorInterface.SINGLE, 30, 0, 545015L, 2L},
+                new Object[]{TaxCalculatorInterface.SINGLE, 30, 0, 545000L, 0L},
+                // Two aged people add 2100 to the 10900 deduction.
+                new Object[]{TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 65, 70, 1300000L + 1605000L, 160500L},
+        };
+    }
+
+    @Test(dataProvider = "taxDataProvider")
+    public void testTaxDueInCents(int status, int age, int spouseAge, long grossIncome, long taxDue) {
+        CentsTaxYear rules = TaxYearRegistry.getDefault().cents();
+        long taxable = TaxCents.taxableIncome(grossIncome, rules.standardDeduction(status, age, spouseAge));
+
+        assertEquals(rules.taxDue(status, taxable), taxDue);
+    }
+
+    @Test(expectedExceptions = ArithmeticException.class)
+    public void testOverflowIsReported() {
+        TaxYearRegistry.getDefault().cents().taxDue(TaxCalculatorInterface.SINGLE, Long.MAX_VALUE / 100);
+    }
+
+    @Test
+    public void testCentsAgreeWithDoublesToTheCent() {
+        TaxBatch batch = TaxBatchTest.randomBatch(20000, 12);
+
+        TaxCentsDiscrepancies report = TaxCentsDiscrepancies.compare(batch, 10);
+
+        assertTrue(report.getMaxTaxDifference() <= 1, report.toString());
+        assertTrue(report.getKeptRecords() <= 10);
+        for (int index = 0; index < report.getKeptRecords(); index++) {
+            assertEquals(report.getFields(index), TaxCentsDiscrepancies.TAX_DUE);
+        }
+        assertEquals(report.getDoubleTaxTotal(), TaxCents.toDollars(report.getCentsTaxTotal()),
+                report.getDifferingRecords() / 100.0 + 1e-3);
+    }
+
+    @Test
+    public void testDiscrepanciesReportDifferingRecords() {
+        TaxBatch batch = TaxBatchTest.randomBatch(3, 3);
+        // The income rounds up to the 8950 return threshold in cents only.
+        batch.getGrossIncome()[1] = 8949.996;
+        batch.getFilingStatus()[1] = TaxCalculatorInterface.SINGLE;
+        batch.getAge()[1] = 30;
+
+        TaxCentsDiscrepancies report = TaxCentsDiscrepancies.compare(batch, 5);
+
+        assertEquals(report.getDifferingRecords(), 1L);
+        assertEquals(report.getRecord(0), 1);
+        assertEquals(report.getFields(0), TaxCentsDiscrepancies.RETURN_REQUIRED);
+    }
+
+    @Test
+    public void testExactTotalsDoNotDependOnTheSplit() {
+        CentsTaxBatch batch = CentsTaxBatch.of(TaxBatchTest.randomBatch(30000, 8));
+        TaxTotals sequential = new TaxTotals();
+        batch.compute();
+        sequential.add(batch, 0, batch.size());
+        int[] statuses = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+                TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+                TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+        for (int chunkSize : new int[]{1000, 777, 4096}) {
+            TaxTotals parallel;
+            try (TaxBatchExecutor executor = new TaxBatchExecutor(3, chunkSize)) {
+                parallel = executor.compute(batch);
+            }
+            for (int status : statuses) {
+                assertEquals(parallel.getTaxDueCents(status), sequential.getTaxDueCents(status));
+                assertEquals(parallel.getRecords(status), sequential.getRecords(status));
+                assertEquals(parallel.getReturnsRequired(status), sequential.getReturnsRequired(status));
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the Unix domain socket daemon. Every
+ * result is checked against a {@link TaxCalculator} for the same taxpayer.
+ */
+public class TaxDaemonTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    private static final String NAME = "Jos\u00e9 Garc\u00eda";
+
+    private Path directory;
+    private Path socket;
+    private TaxDaemon daemon;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        directory = Files.createTempDirectory("tax-daemon");
+        socket = directory.resolve("tax.sock");
+        daemon = new TaxDaemon(socket);
+        daemon.start();
+    }
+
+    @AfterMethod
+    public void stop() throws IOException {
+        daemon.close();
+        Files.deleteIfExists(socket);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testResultsMatchTheCalculator() throws IOException {
+        Random random = new Random(22);
+        try (TaxDaemonClient client = new TaxDaemonClient(socket)) {
+            for (int index = 0; index < 2000; index++) {
+                int status = STATUSES[random.nextInt(STATUSES.length)];
+                int age = 1 + random.nextInt(90);
+                boolean married = TaxpayerValidator.validateMarriedFilingStatus(status) == TaxpayerValidator.VALID;
+                int spouseAge = married ? 1 + random.nextInt(90) : 0;
+                double income = random.nextInt(500000) + random.nextInt(100) / 100.0;
+                TaxCalculator calculator = married
+                        ? new TaxCalculator(NAME, age, status, spouseAge)
+                        : new TaxCalculator(NAME, age, status);
+                calculator.setGrossIncome(income);
+
+                TaxDaemonClient.Result result = client.compute(NAME, age, status, spouseAge, income);
+                assertEquals(result.getStandardDeduction(), calculator.getStandardDeduction());
+                assertEquals(result.getTaxableIncome(), calculator.getTaxableIncome());
+                assertEquals(result.getTaxDue(), calculator.getTaxDue());
+                assertEquals(result.getNetTaxRate(), calculator.getNetTaxRate());
+                assertEquals(result.isReturnRequired(), calculator.isReturnRequired());
+            }
+        }
+    }
+
+    @Test
+    public void testTheTaxYearIsApplied() throws IOException {
+        int[] years = TaxYearRegistry.getYears();
+        int year = years[years.length - 1];
+        TaxCalculator calculator = new TaxCalculator(year, "John Doe", 40, TaxCalculatorInterface.SINGLE);
+        calculator.setGrossIncome(75000);
+        try (TaxDaemonClient client = new TaxDaemonClient(socket)) {
+            assertEquals(client.compute(year, "John Doe", 40, TaxCalculatorInterface.SINGLE, 0, 75000).getTaxDue(),
+                    calculator.getTaxDue());
+        }
+    }
+
+    @Test
+    public void testRejectedTaxpayersThrowTheConstructorMessage() throws IOException {
+        try (TaxDaemonClient client = new TaxDaemonClient(socket)) {
+            String[] messages = new String[3];
+            try {
+                client.compute("John", 40, TaxCalculatorInterface.SINGLE, 0, 1000);
+                fail();
+            } catch (IllegalArgumentException e) {
+                messages[0] = e.getMessage();
+            }
+            try {
+                client.compute("John Doe", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 0, 1000);
+                fail();
+            } catch (IllegalArgumentException e) {
+                messages[1] = e.getMessage();
+            }
+            try {
+                client.compute(1066, "John Doe", 40, TaxCalculatorInterface.SINGLE, 0, 1000);
+                fail();
+            } catch (IllegalArgumentException e) {
+                messages[2] = e.getMessage();
+            }
+            assertEquals(messages[0], "Name must have at least a first and last name.");
+            assertEquals(messages[1], "Invalid Age.");
+            assertEquals(messages[2], "Unsupported tax year.");
+
+            // The connection is still usable after a rejection.
+            assertTrue(client.compute("John Doe", 70, TaxCalculatorInterface.SINGLE, 0, 1000).getTaxDue() >= 0);
+        }
+    }
+
+    private static ByteBuffer request(String name, int age, int status, int spouseAge, double income) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer request = ByteBuffer.allocate(2 + TaxDaemon.REQUEST_FIELDS_SIZE + bytes.length);
+        request.putShort((short) (TaxDaemon.REQUEST_FIELDS_SIZE + bytes.length)).putInt(0).putInt(status)
+                .putInt(age).putInt(spouseAge).putDouble(income).put(bytes).flip();
+        return request;
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+            // Keep reading.
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        int count = 1000;
+        ByteBuffer requests = ByteBuffer.allocate(count * 64);
+        for (int index = 0; index < count; index++) {
+            requests.put(request("John Doe", 30, TaxCalculatorInterface.SINGLE, 0, 1000.0 * index));
+        }
+        requests.flip();
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            ByteBuffer responses = readFully(channel, count * TaxDaemon.RESPONSE_SIZE);
+            assertEquals(responses.remaining(), count * TaxDaemon.RESPONSE_SIZE);
+            for (int index = 0; index < count; index++) {
+                TaxCalculator calculator = new TaxCalculator("John Doe", 30, TaxCalculatorInterface.SINGLE);
+                calculator.setGrossIncome(1000.0 * index);
+                int at = index * TaxDaemon.RESPONSE_SIZE;
+                assertEquals(responses.getInt(at), TaxpayerValidator.VALID);
+                assertEquals(responses.getDouble(at + 20), calculator.getTaxDue());
+            }
+        }
+    }
+
+    @Test
+    public void testAShortRequestClosesTheConnection() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ByteBuffer requests = ByteBuffer.allocate(64);
+            requests.put(request("John Doe", 30, TaxCalculatorInterface.SINGLE, 0, 1000));
+            requests.putShort((short) 3).put(new byte[3]).flip();
+            channel.write(requests);
+            ByteBuffer responses = readFully(channel, 2 * TaxDaemon.RESPONSE_SIZE);
+            assertEquals(responses.remaining(), TaxDaemon.RESPONSE_SIZE);
+        }
+    }
+
+    @Test
+    public void testASecondDaemonCannotTakeTheSocket() throws IOException {
+        try {
+            new TaxDaemon(socket).close();
+            fail();
+        } catch (IOException expected) {
+            // The first daemon keeps the socket.
+        }
+        try (TaxDaemonClient client = new TaxDaemonClient(socket)) {
+            assertFalse(client.compute("John Doe", 30, TaxCalculatorInterface.SINGLE, 0, 0).isReturnRequired());
+        }
+    }
+
+    @Test
+    public void testAStaleSocketFileIsReplaced() throws IOException {
+        daemon.close();
+        Files.createFile(socket);
+        daemon = new TaxDaemon(socket);
+        daemon.start();
+        try (TaxDaemonClient client = new TaxDaemonClient(socket)) {
+            assertEquals(client.compute("John Doe", 30, TaxCalculatorInterface.SINGLE, 0, 0).getTaxDue(), 0.0);
+        }
+    }
+}
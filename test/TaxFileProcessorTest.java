@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the memory-mapped file processor.
+ */
+public class TaxFileProcessorTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-file");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Format the line the CSV sink writes for a valid taxpayer.
+     */
+    private static String expectedLine(long record, TaxCalculator calculator) {
+        return record + "," + calculator.getStandardDeduction() + "," + calculator.getTaxableIncome()
+                + "," + calculator.getTaxDue() + "," + calculator.getNetTaxRate() + ","
+                + calculator.isReturnRequired();
+    }
+
+    @Test
+    public void testRandomFileMatchesCalculatorAcrossWindows() throws IOException {
+        TaxBatch taxpayers = TaxBatchTest.randomBatch(5000, 21);
+        StringBuilder input = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(3);
+        for (int index = 0; index < taxpayers.size(); index++) {
+            double income = taxpayers.getGrossIncome()[index];
+            input.append(" Bob  Smith,").append(taxpayers.getAge()[index]).append(',')
+                    .append(taxpayers.getSpouseAge()[index]).append(',')
+                    .append(taxpayers.getFilingStatus()[index]).append(',')
+                    .append(random.nextBoolean() ? Double.toString(income) : String.format("%.2f", income))
+                    .append(random.nextBoolean() ? "\n" : "\r\n");
+            expected.add(expectedLine(index, TaxBatchTest.calculatorFor(taxpayers, index)));
+        }
+        Path in = Files.write(directory.resolve("in.csv"), input.toString().getBytes(StandardCharsets.US_ASCII));
+        Path out = directory.resolve("out.csv");
+
+        long records = new TaxFileProcessor(1000, 64).process(in, out);
+
+        assertEquals(records, 5000L);
+        assertEquals(Files.readAllLines(out), expected);
+    }
+
+    @Test
+    public void testInvalidAndMalformedRecordsAreReported() throws IOException {
+        String input = "Bob Smith,30,0,0,50000\n"
+                + "\n"
+                + "Bob,30,0,0,50000\n"
+                + "Bob Smith,-1,0,0,50000\n"
+                + "Bob Smith,30,0,-2,50000\n"
+                + "Bob Smith,30,0,0,lots\n"
+                + "Bob Smith,30,0\n"
+                + "Bob Smith,30,35,-2,1.5e5";
+        Path in = Files.write(directory.resolve("in.csv"), input.getBytes(StandardCharsets.US_ASCII));
+        Path out = directory.resolve("out.csv");
+        TaxCalculator first = new TaxCalculator("Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+        first.setGrossIncome(50000);
+        TaxCalculator last = new TaxCalculator("Bob Smith", 30, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 35);
+        last.setGrossIncome(150000);
+
+        new TaxFileProcessor().process(in, out);
+
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(lines.size(), 7);
+        assertEquals(lines.get(0), expectedLine(0, first));
+        assertEquals(lines.get(1), "1,invalid," + TaxpayerValidator.NAME_INCOMPLETE);
+        assertEquals(lines.get(2), "2,invalid," + TaxpayerValidator.AGE_INVALID);
+        assertEquals(lines.get(3), "3,invalid," + TaxpayerValidator.SPOUSE_AGE_INVALID);
+        assertEquals(lines.get(4), "4,invalid," + TaxFileProcessor.MALFORMED);
+        assertEquals(lines.get(5), "5,invalid," + TaxFileProcessor.MALFORMED);
+        assertEquals(lines.get(6), expectedLine(6, last));
+    }
+
+    @Test
+    public void testOnlyPlainDecimalIncomesAreParsed() {
+        String[] valid = {"50000", "-1.5", ".5", "5.", "1.5e5", "15E-1", "2e+3", "1234567890123456.75"};
+        String[] malformed = {" 1.5d", "1.5d", "0x10p0", "Infinity", "-Infinity", "NaN", "1e400", "+5", "1e",
+                "1.5e+", ".", "-", "", " 5", "5 ", "1..5", "1e5.5"};
+        for (String income : valid) {
+            assertEquals(parseIncome(income), Double.parseDouble(income), income);
+        }
+        for (String income : malformed) {
+            assertTrue(Double.isNaN(parseIncome(income)), income);
+        }
+    }
+
+    /**
+     * Parse a line with an income, returning NaN if it is malformed.
+     */
+    private static double parseIncome(String income) {
+        TaxFileProcessor.Records records = TaxFileProcessor.parse(
+                ByteBuffer.wrap(("Bob Smith,30,0,0," + income).getBytes(StandardCharsets.US_ASCII)));
+        return (records.getErrors()[0] == TaxFileProcessor.MALFORMED) ? Double.NaN
+                : records.getBatch().getGrossIncome()[0];
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testLineLongerThanWindowShouldThrowException() throws IOException {
+        Path in = Files.write(directory.resolve("in.csv"),
+                "Bob Smith,30,0,0,50000\nBob Smith,30,0,0,50000\n".getBytes(StandardCharsets.US_ASCII));
+
+        new TaxFileProcessor(10, 16).process(in, directory.resolve("out.csv"));
+    }
+}
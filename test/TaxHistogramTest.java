@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the quantile histograms. Every
+ * quantile is checked against the exact value of the sorted input.
+ */
+public class TaxHistogramTest {
+
+    private static final double[] QUANTILES = {0, 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 1};
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * The exact value at a quantile of sorted values, by the nearest rank.
+     */
+    private static double exactQuantile(double[] sorted, double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * sorted.length));
+        return sorted[(int) rank - 1];
+    }
+
+    private static void assertQuantilesWithin(TaxHistogram histogram, double[] values, double lowest) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double quantile : QUANTILES) {
+            double exact = exactQuantile(sorted, quantile);
+            double estimate = histogram.getQuantile(quantile);
+            double tolerance = (exact < lowest) ? lowest : exact * histogram.getRelativeError();
+            assertEquals(estimate, exact, tolerance, "quantile " + quantile);
+        }
+    }
+
+    @Test
+    public void testQuantilesOfWideValuesAreWithinTheRelativeError() {
+        for (int precisionBits : new int[]{3, 7, 12}) {
+            TaxHistogram histogram = new TaxHistogram(precisionBits, 1e-3, 1e12);
+            Random random = new Random(precisionBits);
+            double[] values = new double[200000];
+            for (int index = 0; index < values.length; index++) {
+                values[index] = Math.exp(random.nextGaussian() * 4 + 8);
+                histogram.record(values[index]);
+            }
+            assertEquals(histogram.getCount(), (long) values.length);
+            assertQuantilesWithin(histogram, values, 1e-3);
+        }
+    }
+
+    @Test
+    public void testDistributionsOfABatchMatchTheSortedResults() {
+        TaxBatch batch = TaxBatchTest.randomBatch(100000, 24);
+        batch.compute();
+        TaxDistributions distributions = new TaxDistributions();
+        distributions.add(batch, 0, batch.size());
+
+        for (int status : STATUSES) {
+            int size = 0;
+            double[] taxDue = new double[batch.size()];
+            double[] netTaxRate = new double[batch.size()];
+            for (int index = 0; index < batch.size(); index++) {
+                if (batch.getFilingStatus()[index] == status) {
+                    taxDue[size] = batch.getTaxDue()[index];
+                    netTaxRate[size] = batch.getNetTaxRate()[index];
+                    size++;
+                }
+            }
+            assertEquals(distributions.getTaxDue(status).getCount(), (long) size);
+            assertQuantilesWithin(distributions.getTaxDue(status), Arrays.copyOf(taxDue, size),
+                    TaxDistributions.LOWEST_TAX);
+            assertQuantilesWithin(distributions.getNetTaxRate(status), Arrays.copyOf(netTaxRate, size),
+                    TaxDistributions.LOWEST_RATE);
+        }
+    }
+
+    @Test
+    public void testMergedHistogramsMatchOneHistogram() {
+        TaxHistogram whole = new TaxHistogram(7, 0.01, 1e12);
+        TaxHistogram merged = new TaxHistogram(7, 0.01, 1e12);
+        Random random = new Random(25);
+        for (int part = 0; part < 4; part++) {
+            TaxHistogram partial = new TaxHistogram(7, 0.01, 1e12);
+            for (int index = 0; index < 10000; index++) {
+                double value = (random.nextInt(5) == 0) ? 0 : random.nextDouble() * 1e5;
+                whole.record(value);
+                partial.record(value);
+            }
+            merged.merge(partial);
+        }
+
+        assertEquals(merged.getCount(), whole.getCount());
+        assertEquals(merged.getMin(), whole.getMin());
+        assertEquals(merged.getMax(), whole.getMax());
+        for (double quantile : QUANTILES) {
+            assertEquals(merged.getQuantile(quantile), whole.getQuantile(quantile));
+        }
+        assertEquals(whole.getQuantile(0.1), 0.0);
+    }
+
+    @Test
+    public void testMemoryIsFixed() {
+        TaxHistogram histogram = new TaxHistogram(7, 1e-6, 1);
+        int buckets = histogram.getBuckets();
+        for (int index = 0; index < 100000; index++) {
+            histogram.record(index / 100000.0);
+        }
+        assertEquals(histogram.getBuckets(), buckets);
+        assertTrue(buckets <= 21 * 128, buckets + " buckets");
+    }
+
+    @Test
+    public void testEmptyHistogramHasNoQuantile() {
+        assertTrue(Double.isNaN(new TaxHistogram(7, 1, 2).getQuantile(0.5)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeValueIsRejected() {
+        new TaxHistogram(7, 1, 2).record(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDifferentConfigurationsDoNotMerge() {
+        new TaxHistogram(7, 1, 2).merge(new TaxHistogram(8, 1, 2));
+    }
+}
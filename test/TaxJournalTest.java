@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the resumable results journal.
+ */
+public class TaxJournalTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-journal");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Write a taxpayer file with some blank, malformed and invalid lines.
+     */
+    private Path writeInput(int records, long seed) throws IOException {
+        TaxBatch taxpayers = TaxBatchTest.randomBatch(records, seed);
+        Random random = new Random(seed);
+        StringBuilder lines = new StringBuilder();
+        for (int index = 0; index < taxpayers.size(); index++) {
+            int kind = random.nextInt(100);
+            if (kind == 0) {
+                lines.append('\n');
+            } else if (kind == 1) {
+                lines.append("John Doe,forty,0,0,1000\n");
+            } else if (kind == 2) {
+                lines.append("John,40,0,0,1000\r\n");
+            }
+            lines.append("Bob Smith,").append(taxpayers.getAge()[index]).append(',')
+                    .append(taxpayers.getSpouseAge()[index]).append(',')
+                    .append(taxpayers.getFilingStatus()[index]).append(',')
+                    .append(taxpayers.getGrossIncome()[index]).append('\n');
+        }
+        Path input = directory.resolve("taxpayers.csv");
+        Files.write(input, lines.toString().getBytes(StandardCharsets.US_ASCII));
+        return input;
+    }
+
+    /**
+     * Run over the input uninterrupted, returning the journal and the result
+     * file.
+     */
+    private byte[][] uninterrupted(TaxFileProcessor processor, Path input) throws IOException {
+        Path journal = directory.resolve("uninterrupted.taxj");
+        Path output = directory.resolve("uninterrupted.taxr");
+        TaxJournal.run(processor, input, journal, output, TaxJournal.SYNC_NEVER);
+        return new byte[][]{Files.readAllBytes(journal), Files.readAllBytes(output)};
+    }
+
+    private static long records(byte[] results) {
+        return (results.length - TaxResultWriter.HEADER_BYTES) / TaxResultWriter.RECORD_BYTES;
+    }
+
+    /**
+     * A sink which fails after a number of checkpoints, as a crash would.
+     */
+    private static final class Crashing implements TaxFileProcessor.Sink {
+
+        private final TaxJournal journal;
+        private int checkpoints;
+
+        Crashing(TaxJournal journal, int checkpoints) {
+            this.journal = journal;
+            this.checkpoints = checkpoints;
+        }
+
+        @Override
+        public void accept(long firstRecord, TaxBatch batch, int[] errors, int count) {
+            journal.accept(firstRecord, batch, errors, count);
+        }
+
+        @Override
+        public void checkpoint(long nextRecord, long inputOffset) throws IOException {
+            if (checkpoints-- == 0) {
+                throw new IOException("Crashed.");
+            }
+            journal.checkpoint(nextRecord, inputOffset);
+        }
+    }
+
+    @Test
+    public void testResumedRunMatchesUninterruptedRun() throws IOException {
+        TaxFileProcessor processor = new TaxFileProcessor(4096, 100);
+        Path input = writeInput(2000, 25);
+        byte[][] expected = uninterrupted(processor, input);
+
+        Path journal = directory.resolve("results.taxj");
+        Path output = directory.resolve("results.taxr");
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input,
+                TaxJournal.SYNC_EVERY_CHUNK)) {
+            processor.process(input, sink.getInputOffset(), sink.getNextRecord(), new Crashing(sink, 7));
+            fail();
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), "Crashed.");
+        }
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input,
+                TaxJournal.SYNC_EVERY_CHUNK)) {
+            assertEquals(sink.getNextRecord(), 700L);
+            assertFalse(sink.isComplete());
+            assertEquals(sink.getDiscarded(), 0L);
+        }
+
+        // The first 700 records are not computed again.
+        assertEquals(TaxJournal.run(processor, input, journal, output, TaxJournal.SYNC_EVERY_CHUNK),
+                records(expected[1]) - 700L);
+        assertTrue(Arrays.equals(Files.readAllBytes(journal), expected[0]));
+        assertTrue(Arrays.equals(Files.readAllBytes(output), expected[1]));
+        // A complete journal is only exported again.
+        assertEquals(TaxJournal.run(processor, input, journal, output, TaxJournal.SYNC_EVERY_CHUNK), 0L);
+        assertTrue(Arrays.equals(Files.readAllBytes(output), expected[1]));
+    }
+
+    @Test
+    public void testTornAndCorruptTailsAreTruncated() throws IOException {
+        TaxFileProcessor processor = new TaxFileProcessor(4096, 100);
+        Path input = writeInput(1000, 250);
+        byte[][] expected = uninterrupted(processor, input);
+        Path journal = directory.resolve("results.taxj");
+        Path output = directory.resolve("results.taxr");
+        int chunk = TaxJournal.CHUNK_HEADER_BYTES + 100 * TaxResultWriter.RECORD_BYTES;
+
+        // Half of the fourth chunk was written.
+        Files.write(journal, Arrays.copyOf(expected[0], TaxJournal.HEADER_BYTES + 3 * chunk + chunk / 2));
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1)) {
+            assertEquals(sink.getNextRecord(), 300L);
+            assertEquals(sink.getDiscarded(), (long) chunk / 2);
+        }
+        assertEquals(Files.size(journal), (long) TaxJournal.HEADER_BYTES + 3 * chunk);
+
+        // The fourth chunk was written whole, but a record in it was not.
+        byte[] corrupt = Arrays.copyOf(expected[0], TaxJournal.HEADER_BYTES + 5 * chunk);
+        corrupt[TaxJournal.HEADER_BYTES + 3 * chunk + TaxJournal.CHUNK_HEADER_BYTES + 1000] ^= 1;
+        Files.write(journal, corrupt);
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1)) {
+            assertEquals(sink.getNextRecord(), 300L);
+            assertEquals(sink.getDiscarded(), 2L * chunk);
+        }
+
+        TaxJournal.run(processor, input, journal, output, 1);
+        assertTrue(Arrays.equals(Files.readAllBytes(journal), expected[0]));
+        assertTrue(Arrays.equals(Files.readAllBytes(output), expected[1]));
+    }
+
+    @Test
+    public void testSyncIntervalsWriteTheSameJournal() throws IOException {
+        TaxFileProcessor processor = new TaxFileProcessor(4096, 64);
+        Path input = writeInput(1000, 2500);
+        byte[][] expected = uninterrupted(processor, input);
+        for (int syncEvery : new int[]{TaxJournal.SYNC_EVERY_CHUNK, 3}) {
+            Path journal = directory.resolve("results-" + syncEvery + ".taxj");
+            Path output = directory.resolve("results-" + syncEvery + ".taxr");
+            TaxJournal.run(processor, input, journal, output, syncEvery);
+            assertTrue(Arrays.equals(Files.readAllBytes(journal), expected[0]));
+            assertTrue(Arrays.equals(Files.readAllBytes(output), expected[1]));
+        }
+    }
+
+    @Test
+    public void testResultsMatchTheProcessor() throws IOException {
+        Path input = writeInput(500, 25000);
+        Path journal = directory.resolve("results.taxj");
+        Path output = directory.resolve("results.taxr");
+        Path direct = directory.resolve("direct.taxr");
+        TaxFileProcessor processor = new TaxFileProcessor(4096, 64);
+        TaxJournal.run(processor, input, journal, output, TaxJournal.SYNC_NEVER);
+        try (TaxResultWriter writer = new TaxResultWriter(direct, TaxYearRegistry.DEFAULT_YEAR)) {
+            processor.process(input, writer);
+        }
+        assertTrue(Arrays.equals(Files.readAllBytes(output), Files.readAllBytes(direct)));
+    }
+
+    @Test
+    public void testJournalOfAnotherInputRejected() throws IOException {
+        Path input = writeInput(100, 2);
+        Path journal = directory.resolve("results.taxj");
+        TaxJournal.run(new TaxFileProcessor(), input, journal, directory.resolve("results.taxr"),
+                TaxJournal.SYNC_NEVER);
+        byte[] original = Files.readAllBytes(input);
+        FileTime modified = Files.getLastModifiedTime(input);
+
+        // Another input of the same size, modified at the same time.
+        byte[] changed = original.clone();
+        changed[changed.length / 4] ^= 1;
+        Files.write(input, changed);
+        Files.setLastModifiedTime(input, modified);
+        assertJournalRejected(journal, input);
+
+        // The same content, modified since.
+        Files.write(input, original);
+        Files.setLastModifiedTime(input, FileTime.fromMillis(modified.toMillis() + 1000));
+        assertJournalRejected(journal, input);
+
+        // A longer input.
+        Files.write(input, Arrays.copyOf(original, original.length + 1));
+        Files.setLastModifiedTime(input, modified);
+        assertJournalRejected(journal, input);
+
+        Files.write(input, original);
+        Files.setLastModifiedTime(input, modified);
+        new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1).close();
+
+        Files.write(journal, "name,age".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.TRUNCATE_EXISTING);
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1)) {
+            // A header too short to be whole is started over.
+            assertEquals(sink.getDiscarded(), 8L);
+            assertEquals(sink.getNextRecord(), 0L);
+        }
+        Files.write(journal, new byte[64]);
+        assertJournalRejected(journal, input);
+    }
+
+    private static void assertJournalRejected(Path journal, Path input) throws IOException {
+        long size = Files.size(journal);
+        try {
+            new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1).close();
+            fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(Files.size(journal), size);
+    }
+
+    @Test
+    public void testKilledProcessResumes() throws Exception {
+        Path input = writeInput(1000000, 2);
+        TaxFileProcessor processor = new TaxFileProcessor();
+        byte[][] expected = uninterrupted(processor, input);
+        Path journal = directory.resolve("results.taxj");
+        Path output = directory.resolve("results.taxr");
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "TaxJournal",
+                input.toString(), journal.toString(), output.toString(), "1")
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        // Kill the run once it has written a few chunks.
+        long started = System.nanoTime();
+        while (!Files.exists(journal) || (Files.size(journal) < TaxJournal.HEADER_BYTES
+                + 3 * (TaxJournal.CHUNK_HEADER_BYTES + TaxFileProcessor.DEFAULT_BATCH_SIZE
+                * TaxResultWriter.RECORD_BYTES))) {
+            assertTrue(child.isAlive(), "The run finished before it could be killed.");
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(60));
+            Thread.sleep(1);
+        }
+        child.destroyForcibly();
+        assertTrue(child.waitFor(30, TimeUnit.SECONDS));
+        assertFalse(Files.exists(output));
+
+        long resumedFrom;
+        try (TaxJournal sink = new TaxJournal(journal, TaxYearRegistry.DEFAULT_YEAR, input, 1)) {
+            assertFalse(sink.isComplete());
+            resumedFrom = sink.getNextRecord();
+        }
+        assertTrue(resumedFrom > 0);
+        assertEquals(TaxJournal.run(processor, input, journal, output, 1), records(expected[1]) - resumedFrom);
+        assertTrue(Arrays.equals(Files.readAllBytes(journal), expected[0]));
+        assertTrue(Arrays.equals(Files.readAllBytes(output), expected[1]));
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the calculator metrics. The tests run
+ * with the metrics switched off, so the counters are driven directly, and the
+ * JFR events are checked with a recording of their own.
+ */
+public class TaxMetricsTest {
+
+    @BeforeMethod
+    public void reset() {
+        TaxMetrics.reset();
+    }
+
+    @Test
+    public void testMetricsAreOffByDefault() {
+        assertFalse(TaxMetrics.ENABLED);
+        TaxCalculator calculator = new TaxCalculator("John Doe", 40, TaxCalculatorInterface.SINGLE);
+        calculator.setGrossIncome(50000);
+        calculator.getTaxDue();
+        assertEquals(TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.SINGLE), 0L);
+    }
+
+    @Test
+    public void testCallsAreCountedPerMethodAndFilingStatus() {
+        for (int index = 0; index < 3; index++) {
+            TaxMetrics.end(TaxMetrics.TAX_DUE,
+                    TaxMetrics.begin(TaxMetrics.TAX_DUE, TaxCalculatorInterface.MARRIED_FILING_JOINTLY));
+        }
+        TaxMetrics.begin(TaxMetrics.NET_TAX_RATE, TaxCalculatorInterface.QUALIFYING_WIDOWER);
+
+        assertEquals(TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.MARRIED_FILING_JOINTLY), 3L);
+        assertEquals(TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.SINGLE), 0L);
+        assertEquals(TaxMetrics.getCalls(TaxMetrics.NET_TAX_RATE, TaxCalculatorInterface.QUALIFYING_WIDOWER), 1L);
+    }
+
+    @Test
+    public void testSampledLatenciesAreRecorded() {
+        long sampled = 0;
+        for (int index = 0; index < 100 * TaxMetrics.SAMPLE_RATE; index++) {
+            long start = TaxMetrics.begin(TaxMetrics.TAXABLE_INCOME, TaxCalculatorInterface.SINGLE);
+            if (start != 0) {
+                sampled++;
+            }
+            TaxMetrics.end(TaxMetrics.TAXABLE_INCOME, start);
+        }
+        TaxHistogram latency = TaxMetrics.getLatency(TaxMetrics.TAXABLE_INCOME);
+        assertEquals(latency.getCount(), sampled);
+        assertTrue(sampled > 0);
+        assertTrue(latency.getQuantile(0.5) >= 0);
+        assertEquals(TaxMetrics.getLatency(TaxMetrics.TAX_DUE).getCount(), 0L);
+    }
+
+    @Test
+    public void testLatenciesOfEveryThreadAreMerged() throws InterruptedException {
+        Thread[] threads = new Thread[8];
+        for (int thread = 0; thread < threads.length; thread++) {
+            threads[thread] = new Thread(() -> {
+                for (int index = 0; index < 1000; index++) {
+                    TaxMetrics.end(TaxMetrics.TAX_DUE, System.nanoTime());
+                }
+            });
+            threads[thread].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(TaxMetrics.getLatency(TaxMetrics.TAX_DUE).getCount(), 8000L);
+        TaxMetrics.reset();
+        assertEquals(TaxMetrics.getLatency(TaxMetrics.TAX_DUE).getCount(), 0L);
+    }
+
+    /**
+     * Read a result of every kind of calculator once and print the calls
+     * counted, and the latencies recorded for the profile, for
+     * {@link #testEveryCalculatorIsCounted()} to run with the metrics on and
+     * every call sampled.
+     */
+    public static void main(String[] args) {
+        TaxProfile.of("John Doe", 40, TaxCalculatorInterface.QUALIFYING_WIDOWER).withGrossIncome(50000)
+                .getTaxDue();
+        long profileLatencies = TaxMetrics.getLatency(TaxMetrics.TAX_DUE).getCount();
+        TaxCalculatorInterface specialized = TaxCalculators.create("John Doe", 40,
+                TaxCalculatorInterface.HEAD_OF_HOUSEHOLD);
+        specialized.setGrossIncome(50000);
+        specialized.getTaxDue();
+        TaxCalculator delegate = new TaxCalculator("John Doe", 40, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+                38);
+        MemoizingTaxCalculator memoizing = new MemoizingTaxCalculator(delegate, new TaxResultCache(16));
+        memoizing.setGrossIncome(50000);
+        memoizing.getTaxDue();
+        memoizing.getTaxDue();
+        System.out.println(TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD) + " "
+                + TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.QUALIFYING_WIDOWER) + " "
+                + TaxMetrics.getCalls(TaxMetrics.TAX_DUE, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY) + " "
+                + TaxMetrics.getCalls(TaxMetrics.NET_TAX_RATE, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY) + " "
+                + profileLatencies);
+    }
+
+    @Test
+    public void testEveryCalculatorIsCounted() throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process child = new ProcessBuilder(java, "-Dtax.metrics=true", "-Dtax.metrics.sampleRate=1", "-cp",
+                System.getProperty("java.class.path"), "TaxMetricsTest").redirectErrorStream(true).start();
+        String output = new String(child.getInputStream().readAllBytes(), StandardCharsets.UTF_8).strip();
+        assertEquals(child.waitFor(), 0, output);
+        // The memoizing calculator counts both reads, and its delegate the results of the one miss. A profile
+        // read is counted without a latency.
+        assertEquals(output, "1 1 3 1 0");
+    }
+
+    @Test
+    public void testMXBeanReadsTheCounters() throws MalformedObjectNameException {
+        TaxMetrics.registerMBean();
+        TaxMetrics.registerMBean();
+        TaxMetricsMXBean bean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(TaxMetrics.OBJECT_NAME), TaxMetricsMXBean.class);
+        TaxMetrics.begin(TaxMetrics.STANDARD_DEDUCTION, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD);
+
+        assertEquals(bean.isEnabled(), TaxMetrics.ENABLED);
+        assertEquals(bean.getSampleRate(), TaxMetrics.SAMPLE_RATE);
+        Map<String, Long> calls = bean.getCalls();
+        assertEquals(calls.size(), 25);
+        assertEquals(calls.get("getStandardDeduction.HEAD_OF_HOUSEHOLD"), Long.valueOf(1));
+        assertEquals(calls.get("getTaxDue.SINGLE"), Long.valueOf(0));
+        assertEquals(bean.getValidationFailures().size(), 6);
+        assertTrue(Double.isNaN(bean.getLatencyMedianNanos().get("getTaxDue")));
+
+        bean.reset();
+        assertEquals(bean.getCalls().get("getStandardDeduction.HEAD_OF_HOUSEHOLD"), Long.valueOf(0));
+    }
+
+    @Test
+    public void testBatchRunsAndValidationFailuresAreRecordedByJfr() throws IOException {
+        Path file = Files.createTempFile("tax-metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TaxBatchEvent.class);
+            recording.enable(TaxValidationEvent.class);
+            recording.start();
+            TaxBatch batch = TaxBatchTest.randomBatch(1000, 25);
+            batch.compute(100, 400);
+            try {
+                new TaxCalculator("John", 40, TaxCalculatorInterface.SINGLE);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // The rejection is the event.
+            }
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent run = find(events, "tax.BatchRun");
+            assertEquals(run.getInt("records"), 300);
+            assertEquals(run.getInt("taxYear"), batch.getTaxYear());
+            assertFalse(run.getBoolean("vectorized"));
+            RecordedEvent failure = find(events, "tax.ValidationFailure");
+            assertEquals(failure.getInt("errors"), TaxpayerValidator.NAME_INCOMPLETE);
+            assertEquals(failure.getString("message"), "Name must have at least a first and last name.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " event.");
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the Flow pipeline. An in-process
+ * {@link SubmissionPublisher} stands in for the message queue.
+ */
+public class TaxPipelineTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    private static String randomLine(Random random) {
+        int status = STATUSES[random.nextInt(STATUSES.length)];
+        boolean married = (status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY);
+        return "John Doe," + (1 + random.nextInt(90)) + "," + (married ? 1 + random.nextInt(90) : 0) + ","
+                + status + "," + random.nextInt(400000);
+    }
+
+    /**
+     * Collects every record, requesting one at a time.
+     */
+    private static final class Collector implements Flow.Subscriber<TaxPipeline.Record> {
+
+        final List<TaxPipeline.Record> records = Collections.synchronizedList(new ArrayList<>());
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(TaxPipeline.Record record) {
+            records.add(record);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    @Test
+    public void testRecordsMatchTheCalculatorInOrder() throws Exception {
+        Random random = new Random(23);
+        List<String> lines = new ArrayList<>();
+        for (int index = 0; index < 5000; index++) {
+            lines.add(randomLine(random));
+        }
+        lines.set(10, "");
+        lines.set(11, "John,40,0,0,1000");
+        lines.set(12, "John Doe,forty,0,0,1000");
+        lines.set(13, "John Doe,40,0,-2,1000");
+
+        TaxPipeline pipeline = new TaxPipeline(16, 1, 1, 1);
+        Collector collector = new Collector();
+        pipeline.subscribe(collector);
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(pipeline);
+            lines.forEach(source::submit);
+        }
+        collector.done.get(30, TimeUnit.SECONDS);
+
+        // The blank line is not a record, so the records after it are numbered one lower.
+        lines.remove(10);
+        assertEquals(collector.records.size(), lines.size());
+        for (TaxPipeline.Record record : collector.records) {
+            String[] fields = lines.get((int) record.getRecord()).split(",");
+            if (record.getRecord() == 10) {
+                assertEquals(record.getErrors(), TaxpayerValidator.NAME_INCOMPLETE);
+            } else if (record.getRecord() == 11) {
+                assertEquals(record.getErrors(), TaxFileProcessor.MALFORMED);
+            } else if (record.getRecord() == 12) {
+                assertEquals(record.getErrors(), TaxpayerValidator.SPOUSE_AGE_INVALID);
+            } else {
+                int status = Integer.parseInt(fields[3]);
+                int spouseAge = Integer.parseInt(fields[2]);
+                TaxCalculator calculator = (spouseAge == 0)
+                        ? new TaxCalculator(fields[0], Integer.parseInt(fields[1]), status)
+                        : new TaxCalculator(fields[0], Integer.parseInt(fields[1]), status, spouseAge);
+                calculator.setGrossIncome(Double.parseDouble(fields[4]));
+                assertEquals(record.getErrors(), TaxpayerValidator.VALID);
+                assertEquals(record.getTaxDue(), calculator.getTaxDue());
+                assertEquals(record.isReturnRequired(), calculator.isReturnRequired());
+            }
+        }
+        for (int index = 1; index < collector.records.size(); index++) {
+            assertTrue(collector.records.get(index).getRecord() > collector.records.get(index - 1).getRecord());
+        }
+    }
+
+    @Test
+    public void testStreamKeepsTheRulesItWasSubscribedWith() throws Exception {
+        TaxYear original = TaxYearRegistry.getDefault();
+        TaxPipeline pipeline = new TaxPipeline(16, 1, 1, 1);
+        Collector collector = new Collector();
+        pipeline.subscribe(collector);
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(pipeline);
+            source.submit("John Doe,40,0,0,50000");
+            long started = System.nanoTime();
+            while (collector.records.isEmpty()) {
+                assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(30));
+                Thread.sleep(1);
+            }
+            TaxYearRegistry.publish(TaxYearRegistryTest.flatYear(TaxYearRegistry.DEFAULT_YEAR, 0, .5));
+            try {
+                source.submit("John Doe,40,0,0,50000");
+                source.close();
+                collector.done.get(30, TimeUnit.SECONDS);
+            } finally {
+                TaxYearRegistry.publish(original);
+            }
+        }
+
+        TaxCalculator expected = new TaxCalculator("John Doe", 40, TaxCalculatorInterface.SINGLE);
+        expected.setGrossIncome(50000);
+        assertEquals(collector.records.size(), 2);
+        assertEquals(collector.records.get(0).getTaxDue(), expected.getTaxDue());
+        assertEquals(collector.records.get(1).getTaxDue(), expected.getTaxDue());
+    }
+
+    @Test
+    public void testLinesAreParsedLikeTheFileProcessor() throws Exception {
+        List<String> lines = List.of("Bob Smith,45,43,-2,85000", "", "  Jane Doe,30,0,0,52000.50\r",
+                "\r", "John Doe,40,0,0,NaN", "John Doe,+5,0,0,1000", "John Doe,40,0,0,1e5",
+                "Jos\u00e9 Garc\u00eda,40,0,0,31000", "John,40,0,0,1000", "John Doe,40,0,-2,1000",
+                "John Doe,40,0,0", " ,40,0,0,1000", "John Doe,40,0,0,-500");
+        TaxFileProcessor.Records expected = TaxFileProcessor.parse(ByteBuffer.wrap(
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8)));
+        TaxBatch batch = expected.getBatch();
+        batch.compute(0, expected.getCount());
+
+        TaxPipeline pipeline = new TaxPipeline(4, 1, 1, 1);
+        Collector collector = new Collector();
+        pipeline.subscribe(collector);
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(pipeline);
+            lines.forEach(source::submit);
+        }
+        collector.done.get(30, TimeUnit.SECONDS);
+
+        assertEquals(collector.records.size(), expected.getCount());
+        for (int index = 0; index < expected.getCount(); index++) {
+            TaxPipeline.Record record = collector.records.get(index);
+            assertEquals(record.getRecord(), (long) index);
+            assertEquals(record.getErrors(), expected.getErrors()[index], "record " + index);
+            if (record.getErrors() == TaxpayerValidator.VALID) {
+                assertEquals(record.getFilingStatus(), batch.getFilingStatus()[index]);
+                assertEquals(record.getGrossIncome(), batch.getGrossIncome()[index]);
+                assertEquals(record.getTaxDue(), batch.getTaxDue()[index]);
+                assertEquals(record.isReturnRequired(), batch.getReturnRequired()[index]);
+            }
+        }
+        // Leading spaces stay part of the name.
+        assertEquals(collector.records.get(1).getName(), "  Jane Doe");
+        assertEquals(collector.records.get(5).getName(), "Jos\u00e9 Garc\u00eda");
+    }
+
+    @Test
+    public void testParallelStagesProduceTheSameTotals() throws Exception {
+        Random random = new Random(230);
+        List<String> lines = new ArrayList<>();
+        TaxTotals expected = new TaxTotals();
+        for (int index = 0; index < 20000; index++) {
+            String line = randomLine(random);
+            lines.add(line);
+            String[] fields = line.split(",");
+            int status = Integer.parseInt(fields[3]);
+            int spouseAge = Integer.parseInt(fields[2]);
+            TaxCalculator calculator = (spouseAge == 0)
+                    ? new TaxCalculator(fields[0], Integer.parseInt(fields[1]), status)
+                    : new TaxCalculator(fields[0], Integer.parseInt(fields[1]), status, spouseAge);
+            calculator.setGrossIncome(Double.parseDouble(fields[4]));
+            expected.add(status, calculator.getTaxDue(), calculator.isReturnRequired());
+        }
+
+        TaxPipeline pipeline = new TaxPipeline(32, 2, 3, 4);
+        TaxPipeline.TotalsSubscriber totals = new TaxPipeline.TotalsSubscriber(32);
+        pipeline.subscribe(totals);
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>()) {
+            source.subscribe(pipeline);
+            lines.forEach(source::submit);
+        }
+        TaxTotals actual = totals.getResult().get(30, TimeUnit.SECONDS);
+
+        assertEquals(totals.getInvalid(), 0L);
+        for (int status : STATUSES) {
+            assertEquals(actual.getRecords(status), expected.getRecords(status));
+            assertEquals(actual.getReturnsRequired(status), expected.getReturnsRequired(status));
+            assertEquals(actual.getTaxDue(status), expected.getTaxDue(status), expected.getTaxDue(status) * 1e-12);
+        }
+    }
+
+    @Test
+    public void testRecordsInFlightStayBoundedUnderBursts() throws Exception {
+        int bufferSize = 64;
+        int records = 200000;
+        AtomicLong consumed = new AtomicLong();
+        TaxPipeline pipeline = new TaxPipeline(bufferSize, 2, 2, 2);
+        TaxPipeline.TotalsSubscriber totals = new TaxPipeline.TotalsSubscriber(bufferSize);
+        // A sink much slower than the producer: it stalls for a millisecond every 1000 records.
+        Flow.Subscriber<TaxPipeline.Record> slowSink = new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                totals.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(TaxPipeline.Record record) {
+                if (consumed.incrementAndGet() % 1000 == 0) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                totals.onNext(record);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                totals.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                totals.onComplete();
+            }
+        };
+        pipeline.subscribe(slowSink);
+
+        Random random = new Random(2300);
+        long maxInFlight = 0;
+        try (SubmissionPublisher<String> source = new SubmissionPublisher<>(
+                ForkJoinPool.commonPool(), bufferSize)) {
+            source.subscribe(pipeline);
+            // Bursts of 20000 records published as fast as the pipeline lets the producer.
+            for (int produced = 0; produced < records; ) {
+                for (int burst = 0; burst < 20000; burst++, produced++) {
+                    source.submit(randomLine(random));
+                    maxInFlight = Math.max(maxInFlight, (produced + 1) - consumed.get());
+                }
+                Thread.sleep(5);
+            }
+        }
+        TaxTotals result = totals.getResult().get(60, TimeUnit.SECONDS);
+
+        long total = 0;
+        for (int status : STATUSES) {
+            total += result.getRecords(status);
+        }
+        assertEquals(total + totals.getInvalid(), (long) records);
+        // The source buffer, then per stage the requested records, its output
+        // buffer and one record per blocked worker, then the sink's request.
+        long bound = bufferSize + 3 * (bufferSize + bufferSize + 2) + bufferSize;
+        assertTrue(maxInFlight <= bound, "in flight " + maxInFlight + " > " + bound);
+    }
+
+    @Test
+    public void testSourceFailuresReachTheSink() throws InterruptedException, TimeoutException {
+        TaxPipeline pipeline = new TaxPipeline();
+        TaxPipeline.TotalsSubscriber totals = new TaxPipeline.TotalsSubscriber();
+        pipeline.subscribe(totals);
+        SubmissionPublisher<String> source = new SubmissionPublisher<>();
+        source.subscribe(pipeline);
+        source.submit("John Doe,40,0,0,1000");
+        source.closeExceptionally(new IOException("The queue went away."));
+        try {
+            totals.getResult().get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause().getMessage(), "The queue went away.");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class provides TestNG tests for the immutable taxpayer profile. Its
+ * results must be exactly what a calculator computes for the same taxpayer.
+ */
+public class TaxProfileTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * The year the tests publish rules for, one after that of
+     * {@link TaxResultCacheTest}.
+     */
+    private static final int PROFILE_YEAR = 2102;
+
+    @Test
+    public void testResultsMatchTheCalculator() {
+        Random random = new Random(16);
+        for (int index = 0; index < 5000; index++) {
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            int age = 60 + random.nextInt(10);
+            int spouseAge = 60 + random.nextInt(10);
+            TaxProfile profile;
+            TaxCalculator expected;
+            if (TaxpayerValidator.validateMarriedFilingStatus(status) == TaxpayerValidator.VALID) {
+                profile = TaxProfile.of("Bob Smith", age, status, spouseAge);
+                expected = new TaxCalculator("Bob Smith", age, status, spouseAge);
+            } else {
+                profile = TaxProfile.of("Bob Smith", age, status);
+                expected = new TaxCalculator("Bob Smith", age, status);
+            }
+            TaxCalculatorsTest.assertSameResults(profile, expected);
+            for (int income = 0; income < 3; income++) {
+                double grossIncome = random.nextDouble() * 500000 - 1000;
+                expected.setGrossIncome(grossIncome);
+                TaxCalculatorsTest.assertSameResults(profile.withGrossIncome(grossIncome), expected);
+                TaxCalculatorsTest.assertSameResults(expected.toProfile(), expected);
+            }
+        }
+    }
+
+    @Test
+    public void testDerivingLeavesTheProfileUnchanged() {
+        TaxProfile base = TaxProfile.of("Bob Smith", 40, TaxCalculatorInterface.SINGLE);
+        TaxProfile derived = base.withGrossIncome(50000).withName("Robert Smith");
+
+        assertEquals(base.getGrossIncome(), 0.0);
+        assertEquals(base.getTaxDue(), 0.0);
+        assertEquals(base.getName(), "Bob Smith");
+        assertEquals(derived.getGrossIncome(), 50000.0);
+        assertEquals(derived.getName(), "Robert Smith");
+        assertEquals(derived, TaxProfile.of("Robert Smith", 40, TaxCalculatorInterface.SINGLE).withGrossIncome(50000));
+        assertEquals(derived.hashCode(),
+                TaxProfile.of("Robert Smith", 40, TaxCalculatorInterface.SINGLE).withGrossIncome(50000).hashCode());
+        assertNotEquals(derived, base.withGrossIncome(50000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNameIsRejected() {
+        TaxProfile.of("Bob Smith", 40, TaxCalculatorInterface.SINGLE).withName("Bob");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMarriedStatusWithoutSpouseIsRejected() {
+        TaxProfile.of("Bob Smith", 40, TaxCalculatorInterface.MARRIED_FILING_JOINTLY);
+    }
+
+    @Test
+    public void testDerivedProfilesUsePublishedRules() {
+        TaxYearRegistry.publish(TaxYearRegistryTest.flatYear(PROFILE_YEAR, 0, .1));
+        TaxProfile before = TaxProfile.of(PROFILE_YEAR, "Bob Smith", 40, TaxCalculatorInterface.SINGLE)
+                .withGrossIncome(50000);
+
+        TaxYearRegistry.publish(TaxYearRegistryTest.flatYear(PROFILE_YEAR, 0, .5));
+        TaxProfile after = before.withGrossIncome(50000);
+
+        assertEquals(before.getTaxDue(), 5000.0);
+        assertEquals(after.getTaxDue(), 25000.0);
+        assertNotEquals(before, after);
+    }
+
+    @Test
+    public void testSharedProfileIsDerivedConcurrently() throws InterruptedException {
+        TaxProfile shared = TaxProfile.of("Bob Smith", 66, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 60);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int thread = 0; thread < threads.length; thread++) {
+            long seed = thread;
+            threads[thread] = new Thread(() -> {
+                Random random = new Random(seed);
+                TaxCalculator expected = new TaxCalculator("Bob Smith", 66,
+                        TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 60);
+                try {
+                    for (int index = 0; index < 20000; index++) {
+                        double income = 1000 * random.nextInt(400);
+                        expected.setGrossIncome(income);
+                        TaxCalculatorsTest.assertSameResults(shared.withGrossIncome(income), expected);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[thread].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertFalse(shared.isReturnRequired());
+        assertEquals(shared.getGrossIncome(), 0.0);
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the memoizing calculator and its
+ * shared result cache. A memoized result must be exactly what a calculator
+ * computes for the same taxpayer.
+ */
+public class TaxResultCacheTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * A year no other test uses, so publishing it cannot disturb them.
+     */
+    private static final int CACHE_YEAR = 2101;
+
+    private static TaxCalculator calculator(int taxYear, int status, int age, int spouseAge, double income) {
+        TaxCalculator calculator;
+        if (TaxpayerValidator.validateMarriedFilingStatus(status) == TaxpayerValidator.VALID) {
+            calculator = new TaxCalculator(taxYear, "Bob Smith", age, status, spouseAge);
+        } else {
+            calculator = new TaxCalculator(taxYear, "Bob Smith", age, status);
+        }
+        calculator.setGrossIncome(income);
+        return calculator;
+    }
+
+    @Test
+    public void testMemoizedResultsMatchTheCalculator() {
+        TaxResultCache cache = new TaxResultCache(1024);
+        Random random = new Random(13);
+        for (int index = 0; index < 5000; index++) {
+            int status = STATUSES[random.nextInt(STATUSES.length)];
+            int age = 60 + random.nextInt(10);
+            int spouseAge = 60 + random.nextInt(10);
+            double income = 10000 * (1 + random.nextInt(20));
+            MemoizingTaxCalculator memoized = new MemoizingTaxCalculator(
+                    calculator(2008, status, age, spouseAge, income), cache);
+
+            TaxCalculatorsTest.assertSameResults(memoized, calculator(2008, status, age, spouseAge, income));
+        }
+        assertTrue(cache.getHits() > cache.getMisses(), cache.getHits() + " hits");
+    }
+
+    @Test
+    public void testHitsAndMissesAreCounted() {
+        TaxResultCache cache = new TaxResultCache(64);
+        MemoizingTaxCalculator first = new MemoizingTaxCalculator(
+                calculator(2008, TaxCalculatorInterface.SINGLE, 40, 0, 50000), cache);
+        MemoizingTaxCalculator second = new MemoizingTaxCalculator(
+                calculator(2008, TaxCalculatorInterface.SINGLE, 41, 0, 50000), cache);
+
+        first.getTaxDue();
+        first.getNetTaxRate();
+        second.getTaxDue();
+        second.setGrossIncome(60000);
+        second.getTaxDue();
+
+        assertEquals(cache.getMisses(), 2L);
+        assertEquals(cache.getHits(), 1L);
+        assertEquals(second.getTaxDue(), calculator(2008, TaxCalculatorInterface.SINGLE, 41, 0, 60000).getTaxDue());
+    }
+
+    @Test
+    public void testAgesOnlyMatterAcrossSixtyFive() {
+        assertEquals(TaxResultCache.key(2008, TaxCalculatorInterface.SINGLE, 30, 0),
+                TaxResultCache.key(2008, TaxCalculatorInterface.SINGLE, 64, 80));
+        assertEquals(TaxResultCache.key(2008, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 65, 70),
+                TaxResultCache.key(2008, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 90, 66));
+        assertTrue(TaxResultCache.key(2008, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 65, 64)
+                != TaxResultCache.key(2008, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 65, 65));
+        assertEquals(TaxResultCache.key(2008, 7, 30, 0), 0);
+    }
+
+    @Test
+    public void testCapacityIsBounded() {
+        TaxResultCache cache = new TaxResultCache(100);
+        int capacity = cache.getCapacity();
+        TaxResultCache.Result result = new TaxResultCache.Result(0, 0, 0, 0, false);
+        long generation = TaxYearRegistry.getGeneration();
+        for (int income = 1; income <= 10 * capacity; income++) {
+            cache.put(2008, TaxCalculatorInterface.SINGLE, 30, 0, income, generation, result);
+        }
+
+        int cached = 0;
+        for (int income = 1; income <= 10 * capacity; income++) {
+            if (cache.get(2008, TaxCalculatorInterface.SINGLE, 30, 0, income) != null) {
+                cached++;
+            }
+        }
+        assertEquals(capacity, 128);
+        assertTrue(cached <= capacity);
+        assertEquals(cache.getEvictions(), 10L * capacity - cached);
+    }
+
+    @Test
+    public void testRecentlyHitEntriesSurviveEviction() {
+        TaxResultCache cache = new TaxResultCache(TaxResultCache.WAYS);
+        TaxResultCache.Result hot = new TaxResultCache.Result(1, 1, 1, 1, true);
+        TaxResultCache.Result cold = new TaxResultCache.Result(0, 0, 0, 0, false);
+        long generation = TaxYearRegistry.getGeneration();
+        cache.put(2008, TaxCalculatorInterface.SINGLE, 30, 0, 1, generation, hot);
+        for (int income = 2; income <= 100; income++) {
+            assertSame(cache.get(2008, TaxCalculatorInterface.SINGLE, 30, 0, 1), hot);
+            cache.put(2008, TaxCalculatorInterface.SINGLE, 30, 0, income, generation, cold);
+        }
+        assertSame(cache.get(2008, TaxCalculatorInterface.SINGLE, 30, 0, 1), hot);
+    }
+
+    @Test
+    public void testPublishedRulesInvalidateResults() {
+        TaxYearRegistry.publish(TaxYearRegistryTest.flatYear(CACHE_YEAR, 0, .1));
+        TaxResultCache cache = new TaxResultCache(64);
+        MemoizingTaxCalculator memoized = new MemoizingTaxCalculator(
+                calculator(CACHE_YEAR, TaxCalculatorInterface.SINGLE, 30, 0, 50000), cache);
+        double before = memoized.getTaxDue();
+        assertNotNull(cache.get(CACHE_YEAR, TaxCalculatorInterface.SINGLE, 30, 0, 50000.0));
+
+        TaxYearRegistry.publish(TaxYearRegistryTest.flatYear(CACHE_YEAR, 0, .5));
+
+        assertNull(cache.get(CACHE_YEAR, TaxCalculatorInterface.SINGLE, 30, 0, 50000.0));
+        assertEquals(memoized.getTaxDue(), 25000.0);
+        assertEquals(before, 5000.0);
+        assertEquals(cache.get(CACHE_YEAR, TaxCalculatorInterface.SINGLE, 30, 0, 50000.0).getTaxDue(), 25000.0);
+    }
+
+    @Test
+    public void testConcurrentCalculatorsShareResults() throws InterruptedException {
+        TaxResultCache cache = new TaxResultCache(256);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int thread = 0; thread < threads.length; thread++) {
+            long seed = thread;
+            threads[thread] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int index = 0; index < 20000; index++) {
+                        int status = STATUSES[random.nextInt(STATUSES.length)];
+                        int age = 63 + random.nextInt(4);
+                        double income = 5000 * (1 + random.nextInt(100));
+                        TaxCalculator expected = calculator(2008, status, age, age, income);
+                        TaxCalculatorsTest.assertSameResults(new MemoizingTaxCalculator(
+                                calculator(2008, status, age, age, income), cache), expected);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads[thread].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(cache.getHits() + cache.getMisses(), 4L * 20000);
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the binary result file.
+ */
+public class TaxResultReaderTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tax-result");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static void assertMatches(TaxResultReader.Cursor cursor, TaxCalculatorInterface calculator) {
+        assertEquals(cursor.getErrors(), TaxpayerValidator.VALID);
+        assertEquals(cursor.getFilingStatus(), calculator.getFilingStatus());
+        assertEquals(cursor.getStandardDeduction(), calculator.getStandardDeduction());
+        assertEquals(cursor.getTaxableIncome(), calculator.getTaxableIncome());
+        assertEquals(cursor.getTaxDue(), calculator.getTaxDue());
+        assertEquals(cursor.getNetTaxRate(), calculator.getNetTaxRate());
+        assertEquals(cursor.isReturnRequired(), calculator.isReturnRequired());
+    }
+
+    @Test
+    public void testRoundTripAcrossWindows() throws IOException {
+        TaxBatch taxpayers = TaxBatchTest.randomBatch(1000, 24);
+        Path file = directory.resolve("results.taxr");
+        try (TaxResultWriter writer = new TaxResultWriter(file, TaxYearRegistry.DEFAULT_YEAR)) {
+            for (int index = 0; index < taxpayers.size(); index++) {
+                writer.write(10000 + index, TaxBatchTest.calculatorFor(taxpayers, index));
+            }
+            writer.writeInvalid(99, TaxpayerValidator.AGE_INVALID);
+            assertEquals(writer.getCount(), 1001L);
+        }
+        assertEquals(Files.size(file),
+                TaxResultWriter.HEADER_BYTES + 1001L * TaxResultWriter.RECORD_BYTES);
+
+        // Windows of 7 records, so that records are read from 143 mappings.
+        try (TaxResultReader reader = new TaxResultReader(file, 7)) {
+            assertEquals(reader.getVersion(), 1);
+            assertEquals(reader.getTaxYear(), TaxYearRegistry.DEFAULT_YEAR);
+            assertEquals(reader.getCount(), 1001L);
+            TaxResultReader.Cursor cursor = reader.cursor();
+            for (int index = 0; index < taxpayers.size(); index++) {
+                assertTrue(cursor.next());
+                assertEquals(cursor.getIndex(), (long) index);
+                assertEquals(cursor.getId(), 10000L + index);
+                assertMatches(cursor, TaxBatchTest.calculatorFor(taxpayers, index));
+            }
+            assertTrue(cursor.next());
+            assertEquals(cursor.getId(), 99L);
+            assertEquals(cursor.getErrors(), TaxpayerValidator.AGE_INVALID);
+            assertEquals(cursor.getTaxDue(), 0.0);
+            assertFalse(cursor.next());
+            assertFalse(cursor.next());
+
+            cursor.seek(500);
+            assertEquals(cursor.getId(), 10500L);
+            assertMatches(cursor, TaxBatchTest.calculatorFor(taxpayers, 500));
+            try {
+                cursor.seek(1001);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testCursorOffARecordThrows() throws IOException {
+        Path file = directory.resolve("results.taxr");
+        try (TaxResultWriter writer = new TaxResultWriter(file, TaxYearRegistry.DEFAULT_YEAR)) {
+            writer.writeInvalid(1, TaxpayerValidator.AGE_INVALID);
+        }
+        try (TaxResultReader reader = new TaxResultReader(file, 7)) {
+            TaxResultReader.Cursor cursor = reader.cursor();
+            assertNotOnARecord(cursor);
+            assertTrue(cursor.next());
+            assertEquals(cursor.getId(), 1L);
+            assertFalse(cursor.next());
+            assertNotOnARecord(cursor);
+            cursor.seek(0);
+            assertEquals(cursor.getErrors(), TaxpayerValidator.AGE_INVALID);
+        }
+    }
+
+    private static void assertNotOnARecord(TaxResultReader.Cursor cursor) {
+        try {
+            cursor.getId();
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        try {
+            cursor.isReturnRequired();
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testProcessorWritesResultFile() throws IOException {
+        Path input = directory.resolve("taxpayers.csv");
+        Files.write(input, ("Bob Smith,45,43,-2,85000\n"
+                + "John,40,0,0,1000\n"
+                + "John Doe,forty,0,0,1000\n"
+                + "Jane Doe,30,0,0,52000\n").getBytes(StandardCharsets.US_ASCII));
+        Path output = directory.resolve("results.taxr");
+        try (TaxResultWriter writer = new TaxResultWriter(output, TaxYearRegistry.DEFAULT_YEAR)) {
+            assertEquals(new TaxFileProcessor().process(input, writer), 4L);
+        }
+
+        try (TaxResultReader reader = new TaxResultReader(output)) {
+            assertEquals(reader.getCount(), 4L);
+            TaxResultReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            TaxCalculator calculator = new TaxCalculator("Bob Smith", 45,
+                    TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 43);
+            calculator.setGrossIncome(85000);
+            assertEquals(cursor.getId(), 0L);
+            assertMatches(cursor, calculator);
+            assertTrue(cursor.next());
+            assertEquals(cursor.getErrors(), TaxpayerValidator.NAME_INCOMPLETE);
+            assertTrue(cursor.next());
+            assertEquals(cursor.getErrors(), TaxFileProcessor.MALFORMED);
+            assertTrue(cursor.next());
+            calculator = new TaxCalculator("Jane Doe", 30, TaxCalculatorInterface.SINGLE);
+            calculator.setGrossIncome(52000);
+            assertEquals(cursor.getId(), 3L);
+            assertMatches(cursor, calculator);
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedYearRejected() throws IOException {
+        new TaxResultWriter(directory.resolve("results.taxr"), 1999).close();
+    }
+
+    @Test
+    public void testLongerRecordsOfLaterWritersAreSkipped() throws IOException {
+        // A file whose records carry 8 more bytes than this version writes.
+        int recordBytes = TaxResultWriter.RECORD_BYTES + 8;
+        ByteBuffer buffer = ByteBuffer.allocate(TaxResultWriter.HEADER_BYTES + 2 * recordBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(TaxResultWriter.MAGIC).putShort(TaxResultWriter.VERSION).putShort((short) recordBytes)
+                .putInt(2008).putInt(0).putLong(2).putLong(0);
+        for (int record = 0; record < 2; record++) {
+            int base = TaxResultWriter.HEADER_BYTES + record * recordBytes;
+            buffer.putLong(base + TaxResultWriter.ID, 7 + record);
+            buffer.putDouble(base + TaxResultWriter.TAX_DUE, 100.0 * (record + 1));
+            buffer.putLong(base + TaxResultWriter.RECORD_BYTES, -1L);
+        }
+        Path file = directory.resolve("results.taxr");
+        Files.write(file, buffer.array());
+
+        try (TaxResultReader reader = new TaxResultReader(file)) {
+            TaxResultReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            assertEquals(cursor.getId(), 7L);
+            assertEquals(cursor.getTaxDue(), 100.0);
+            assertTrue(cursor.next());
+            assertEquals(cursor.getId(), 8L);
+            assertEquals(cursor.getTaxDue(), 200.0);
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void testInvalidFilesRejected() throws IOException {
+        Path file = directory.resolve("results.taxr");
+        try (TaxResultWriter writer = new TaxResultWriter(file, TaxYearRegistry.DEFAULT_YEAR)) {
+            writer.writeInvalid(1, TaxpayerValidator.NAME_EMPTY);
+            writer.writeInvalid(2, TaxpayerValidator.NAME_EMPTY);
+        }
+        byte[] valid = Files.readAllBytes(file);
+
+        byte[] bytes = valid.clone();
+        bytes[0] = 'X';
+        assertRejected(file, bytes);
+        bytes = valid.clone();
+        bytes[TaxResultWriter.HEADER_VERSION] = 2;
+        assertRejected(file, bytes);
+        assertRejected(file, java.util.Arrays.copyOf(valid, valid.length - 1));
+        assertRejected(file, java.util.Arrays.copyOf(valid, 10));
+    }
+
+    private static void assertRejected(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes);
+        try {
+            new TaxResultReader(file).close();
+            fail();
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
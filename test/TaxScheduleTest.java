@@ -0,0 +1,180 @@
+import java.util.Random;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+/**
+ * This class provides TestNG tests for the tax schedules. The schedules must
+ * produce exactly the same results as the original bracket walk in
+ * TaxCalculator.getTaxDue().
+ */
+public class TaxScheduleTest {
+
+    /**
+     * This is the original implementation of the bracket walk, kept as the
+     * reference for the schedules.
+     */
+    private static double referenceTaxDue(int filingStatus, double taxableIncome) {
+        double taxRate[] = {.1, .15, .25, .28, .33, .35};
+        double taxTable[] = {0, 8025, 32550, 78850, 164550, 357700, 0, 11450,
+                43650, 112650, 182400, 357700, 0, 16050, 65100, 131450, 200300,
+                357700, 0, 8025, 32550, 65725, 100150, 178850, 0, 16050, 65100,
+                131450, 200300, 357700};
+
+        int startingOffset;
+
+        switch (filingStatus) {
+            case TaxCalculatorInterface.SINGLE:
+                startingOffset = 0;
+                break;
+            case TaxCalculatorInterface.HEAD_OF_HOUSEHOLD:
+                startingOffset = 6;
+                break;
+            case TaxCalculatorInterface.MARRIED_FILING_JOINTLY:
+                startingOffset = 12;
+                break;
+            case TaxCalculatorInterface.QUALIFYING_WIDOWER:
+                startingOffset = 24;
+                break;
+            case TaxCalculatorInterface.MARRIED_FILING_SEPARATELY:
+                startingOffset = 18;
+                break;
+            default:
+                startingOffset = 0;
+        }
+
+        int index = 5;
+        double remainingTaxableSalary = taxableIncome;
+        double totalTax = 0.00;
+
+        while (index >= 0) {
+            if (remainingTaxableSalary > taxTable[startingOffset + index]) {
+                totalTax += (remainingTaxableSalary - taxTable[startingOffset + index])
+                        * taxRate[index];
+                remainingTaxableSalary = taxTable[startingOffset + index];
+            }
+            index--;
+        }
+
+        return totalTax;
+    }
+
+    @DataProvider(name = "filingStatusDataProvider")
+    public Object[][] filingStatusDataProvider() {
+        return new Object[][]{
+                new Object[]{TaxCalculatorInterface.SINGLE},
+                new Object[]{TaxCalculatorInterface.HEAD_OF_HOUSEHOLD},
+                new Object[]{TaxCalculatorInterface.MARRIED_FILING_JOINTLY},
+                new Object[]{TaxCalculatorInterface.MARRIED_FILING_SEPARATELY},
+                new Object[]{TaxCalculatorInterface.QUALIFYING_WIDOWER}
+        };
+    }
+
+    @Test(dataProvider = "filingStatusDataProvider")
+    public void testTaxDueIsBitIdenticalAroundEveryFloor(int status) {
+        TaxSchedule schedule = TaxYearRegistry.getDefault().schedule(status);
+        for (int bracket = 0; bracket < schedule.getBracketCount(); bracket++) {
+            double floor = schedule.getFloor(bracket);
+            double[] incomes = {floor, Math.nextUp(floor), Math.nextDown(floor),
+                    floor + 0.01, floor - 0.01, floor + 1, floor - 1};
+            for (double income : incomes) {
+                assertEquals(Double.doubleToLongBits(schedule.taxDue(income)),
+                        Double.doubleToLongBits(referenceTaxDue(status, income)), "income " + income);
+            }
+        }
+    }
+
+    @Test(dataProvider = "filingStatusDataProvider")
+    public void testTaxDueIsBitIdenticalForRandomIncomes(int status) {
+        TaxSchedule schedule = TaxYearRegistry.getDefault().schedule(status);
+        Random random = new Random(status);
+        for (int count = 0; count < 200000; count++) {
+            double income;
+            if (count % 2 == 0) {
+                income = Math.round(random.nextDouble() * 50000000) / 100.0;
+            } else {
+                income = random.nextDouble() * 1000000;
+            }
+            assertEquals(Double.doubleToLongBits(schedule.taxDue(income)),
+                    Double.doubleToLongBits(referenceTaxDue(status, income)), "income " + income);
+        }
+    }
+
+    @Test(dataProvider = "filingStatusDataProvider")
+    public void testNoTaxIsDueWithoutTaxableIncome(int status) {
+        TaxSchedule schedule = TaxYearRegistry.getDefault().schedule(status);
+        assertEquals(schedule.taxDue(0.0), 0.0);
+        assertEquals(schedule.taxDue(-100.0), 0.0);
+        assertEquals(schedule.bracketOf(0.0), -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testScheduleWithDecreasingFloorsShouldThrowException() {
+        new TaxSchedule(new double[]{.1, .2}, new double[]{100, 0});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testScheduleWithMismatchedArraysShouldThrowException() {
+        new TaxSchedule(new double[]{.1, .2}, new double[]{0});
+    }
+
+    @Test(dataProvider = "filingStatusDataProvider")
+    public void testTableIsBitIdenticalAtEveryDollar(int status) {
+        TaxSchedule schedule = TaxYearRegistry.getDefault().schedule(status);
+        TaxSchedule tabled = schedule.withTable(400000);
+        assertEquals(tabled.getTableCeiling(), 400000);
+        assertEquals(schedule.getTableCeiling(), -1);
+        for (int dollars = 0; dollars <= 400000; dollars++) {
+            assertEquals(Double.doubleToLongBits(tabled.taxDue(dollars)),
+                    Double.doubleToLongBits(referenceTaxDue(status, dollars)), "income " + dollars);
+        }
+    }
+
+    @Test(dataProvider = "filingStatusDataProvider")
+    public void testTableFallsBackToTheBracketWalk(int status) {
+        TaxSchedule tabled = TaxYearRegistry.getDefault().schedule(status).withTable(1000);
+        double[] incomes = {1000.5, 999.99, 1001, 5000000, -1, Math.nextUp(0.0), Double.NaN};
+        for (double income : incomes) {
+            assertEquals(Double.doubleToLongBits(tabled.taxDue(income)),
+                    Double.doubleToLongBits(referenceTaxDue(status, income)), "income " + income);
+        }
+    }
+
+    @Test
+    public void testCalculatorWithTablesIsBitIdentical() {
+        TaxYear original = TaxYearRegistry.getDefault();
+        TaxYear tabled = original.withTaxTables(200000);
+        assertEquals(tabled.schedule(TaxCalculatorInterface.SINGLE).getTableCeiling(), 200000);
+        assertSame(tabled.schedule(TaxCalculatorInterface.QUALIFYING_WIDOWER),
+                tabled.schedule(TaxCalculatorInterface.MARRIED_FILING_JOINTLY));
+        Random random = new Random(14);
+        TaxBatch batch = TaxBatchTest.randomBatch(2000, 14);
+        for (int index = 0; index < batch.size(); index++) {
+            batch.getGrossIncome()[index] = random.nextInt(220000);
+        }
+        TaxBatch expected = TaxBatchTest.randomBatch(2000, 14);
+        System.arraycopy(batch.getGrossIncome(), 0, expected.getGrossIncome(), 0, batch.size());
+        expected.compute();
+
+        TaxYearRegistry.publish(tabled);
+        try {
+            batch.compute();
+            for (int index = 0; index < batch.size(); index++) {
+                TaxCalculator calculator = TaxBatchTest.calculatorFor(batch, index);
+                assertEquals(Double.doubleToLongBits(calculator.getTaxDue()),
+                        Double.doubleToLongBits(expected.getTaxDue()[index]));
+            }
+            assertEquals(batch.getTaxDue(), expected.getTaxDue());
+        } finally {
+            TaxYearRegistry.publish(original);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTableCeilingShouldThrowException() {
+        TaxYearRegistry.getDefault().schedule(TaxCalculatorInterface.SINGLE).withTable(-1);
+    }
+}
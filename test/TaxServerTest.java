@@ -0,0 +1,184 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the HTTP tax service. Every result is
+ * checked against a {@link TaxCalculator} for the same taxpayer.
+ */
+public class TaxServerTest {
+
+    private TaxServer server;
+    private HttpClient client;
+
+    @BeforeMethod
+    public void start() throws IOException {
+        server = new TaxServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterMethod
+    public void stop() {
+        server.close();
+    }
+
+    private static HttpResponse<String> post(HttpClient client, int port, String type, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + TaxServer.PATH))
+                .header("Content-Type", type).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String type, String body) throws IOException, InterruptedException {
+        return post(client, server.getPort(), type, body);
+    }
+
+    private static String expectedJson(long record, TaxCalculator calculator) {
+        return "{\"record\":" + record + ",\"standardDeduction\":" + calculator.getStandardDeduction()
+                + ",\"taxableIncome\":" + calculator.getTaxableIncome() + ",\"taxDue\":" + calculator.getTaxDue()
+                + ",\"netTaxRate\":" + calculator.getNetTaxRate() + ",\"returnRequired\":"
+                + calculator.isReturnRequired() + "}";
+    }
+
+    private static TaxCalculator calculator(String name, int age, int spouseAge, int status, double income) {
+        TaxCalculator calculator = (spouseAge == 0) ? new TaxCalculator(name, age, status)
+                : new TaxCalculator(name, age, status, spouseAge);
+        calculator.setGrossIncome(income);
+        return calculator;
+    }
+
+    @Test
+    public void testSingleJsonTaxpayerIsAnsweredWithOneObject() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("application/json",
+                "{\"name\": \"Jane Q. Public\", \"age\": 70, \"filingStatus\": 0, \"grossIncome\": 85000.5}");
+
+        assertEquals(response.statusCode(), 200);
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"));
+        assertEquals(response.body(), expectedJson(0, calculator("Jane Q. Public", 70, 0, 0, 85000.5)) + "\n");
+    }
+
+    @Test
+    public void testJsonArrayReportsInvalidRecordsInPlace() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("application/json; charset=utf-8", "[\n"
+                + " {\"name\": \"Bob \\\"B\\\" Smith\", \"age\": 44, \"spouseAge\": 41, \"filingStatus\": -2,"
+                + " \"grossIncome\": 123456, \"note\": null},\n"
+                + " {\"name\": \"Bob\", \"age\": 44, \"filingStatus\": 0, \"grossIncome\": 1},\n"
+                + " {\"name\": \"Bob Smith\", \"age\": \"44\", \"filingStatus\": 0, \"grossIncome\": 1}\n"
+                + "]");
+
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.body(), "[" + expectedJson(0, calculator("Bob \"B\" Smith", 44, 41, -2, 123456))
+                + ",{\"record\":1,\"errors\":" + TaxpayerValidator.NAME_INCOMPLETE
+                + ",\"message\":\"Name must have at least a first and last name.\"}"
+                + ",{\"record\":2,\"errors\":" + TaxFileProcessor.MALFORMED
+                + ",\"message\":\"Malformed record.\"}]\n");
+        assertEquals(post("application/json", " [ ] ").body(), "[]\n");
+    }
+
+    @Test
+    public void testCsvIsAnsweredInTheFormatOfTheFileProcessor() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("text/csv",
+                "John Doe,30,0,0,50000\r\n\nMary Doe,66,67,-2,250000.25\nbad line\n");
+
+        assertEquals(response.statusCode(), 200);
+        TaxCalculator john = calculator("John Doe", 30, 0, 0, 50000);
+        TaxCalculator mary = calculator("Mary Doe", 66, 67, -2, 250000.25);
+        assertEquals(response.body(), "0," + john.getStandardDeduction() + "," + john.getTaxableIncome() + ","
+                + john.getTaxDue() + "," + john.getNetTaxRate() + "," + john.isReturnRequired() + "\n"
+                + "1," + mary.getStandardDeduction() + "," + mary.getTaxableIncome() + "," + mary.getTaxDue()
+                + "," + mary.getNetTaxRate() + "," + mary.isReturnRequired() + "\n"
+                + "2,invalid," + TaxFileProcessor.MALFORMED + "\n");
+    }
+
+    @Test
+    public void testBadRequestsAreRejected() throws IOException, InterruptedException {
+        assertEquals(post("application/json", "{\"name\": \"John Doe\", \"age\": [30]}").statusCode(), 400);
+        assertEquals(post("application/json", "{\"name\": \"John Doe\"} {}").statusCode(), 400);
+        assertEquals(post("application/xml", "<taxpayer/>").statusCode(), 415);
+        HttpRequest get = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + TaxServer.PATH))
+                .GET().build();
+        assertEquals(client.send(get, HttpResponse.BodyHandlers.ofString()).statusCode(), 405);
+    }
+
+    @Test
+    public void testNumbersBeyondADoubleAreRejected() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("application/json",
+                "{\"name\": \"John Doe\", \"age\": 30, \"filingStatus\": 0, \"grossIncome\": 1e400}");
+        assertEquals(response.statusCode(), 400);
+        assertEquals(post("application/json",
+                "{\"name\": \"John Doe\", \"age\": -1e400, \"filingStatus\": 0, \"grossIncome\": 1}")
+                .statusCode(), 400);
+        assertEquals(post("application/json",
+                "{\"name\": \"John Doe\", \"age\": 30, \"filingStatus\": 0, \"grossIncome\": 1e300}")
+                .body(), expectedJson(0, calculator("John Doe", 30, 0, 0, 1e300)) + "\n");
+    }
+
+    @Test
+    public void testLargeRequestsAreComputedOnTheirOwn() throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder();
+        int size = server.getMaxBatchSize() + 10;
+        for (int index = 0; index < size; index++) {
+            body.append("Tax Payer,40,0,0,").append(index * 100).append('\n');
+        }
+        long runs = server.getBatchRuns();
+        String[] lines = post("text/csv", body.toString()).body().split("\n");
+
+        assertEquals(lines.length, size);
+        TaxCalculator last = calculator("Tax Payer", 40, 0, 0, (size - 1) * 100);
+        assertEquals(lines[size - 1], (size - 1) + "," + last.getStandardDeduction() + ","
+                + last.getTaxableIncome() + "," + last.getTaxDue() + "," + last.getNetTaxRate() + ","
+                + last.isReturnRequired());
+        assertEquals(server.getBatchRuns(), runs);
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCoalesced() throws Exception {
+        int requests = 16;
+        try (TaxServer lingering = new TaxServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                requests, TimeUnit.SECONDS.toNanos(5))) {
+            lingering.start();
+            ExecutorService clients = Executors.newFixedThreadPool(requests);
+            try {
+                CountDownLatch ready = new CountDownLatch(requests);
+                List<Future<String>> responses = new ArrayList<>();
+                for (int index = 0; index < requests; index++) {
+                    int income = 10000 * index;
+                    responses.add(clients.submit(() -> {
+                        ready.countDown();
+                        ready.await();
+                        return post(client, lingering.getPort(), "application/json",
+                                "{\"name\": \"John Doe\", \"age\": 50, \"filingStatus\": -1, \"grossIncome\": "
+                                        + income + "}").body();
+                    }));
+                }
+                for (int index = 0; index < requests; index++) {
+                    assertEquals(responses.get(index).get(),
+                            expectedJson(0, calculator("John Doe", 50, 0, -1, 10000 * index)) + "\n");
+                }
+            } finally {
+                clients.shutdown();
+            }
+            assertEquals(lingering.getBatchedRecords(), (long) requests);
+            assertTrue(lingering.getBatchRuns() < requests, "runs " + lingering.getBatchRuns());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * This class provides TestNG tests for the tax year registry and its file
+ * format. The 2008 rules loaded from the resource must give exactly the same
+ * results as the rules the calculator was written with.
+ */
+public class TaxYearRegistryTest {
+
+    private static final String TWO_YEARS = "year 2008\n"
+            + "aged-deduction 1050\n"
+            + "rates .10 .15 .25 .28 .33 .35\n"
+            + "status SINGLE deduction 5450 thresholds 8950 10300 brackets 0 8025 32550 78850 164550 357700\n"
+            + "status HEAD_OF_HOUSEHOLD deduction 8000 thresholds 11500 12850"
+            + " brackets 0 11450 43650 112650 182400 357700\n"
+            + "status MARRIED_FILING_JOINTLY deduction 10900 thresholds 17900 18950 20000"
+            + " brackets 0 16050 65100 131450 200300 357700\n"
+            + "status MARRIED_FILING_SEPARATELY deduction 5450 thresholds 3500 3500"
+            + " brackets 0 8025 32550 65725 100150 178850\n"
+            + "status QUALIFYING_WIDOWER deduction 10900 thresholds 14400 15450"
+            + " brackets 0 16050 65100 131450 200300 357700\n"
+            + "end\n"
+            + "\n"
+            + "# A made-up year with a different shape.\n"
+            + "year 2010\n"
+            + "aged-deduction 1100\n"
+            + "rates .10 .20 .30\n"
+            + "status SINGLE deduction 5700 thresholds 9350 10750 brackets 0 10000 50000\n"
+            + "status HEAD_OF_HOUSEHOLD deduction 8400 thresholds 12000 13400 brackets 0 14000 60000\n"
+            + "status MARRIED_FILING_JOINTLY deduction 11400 thresholds 18700 19800 20900 brackets 0 20000 100000\n"
+            + "status MARRIED_FILING_SEPARATELY deduction 5700 thresholds 3650 3650 brackets 0 10000 50000\n"
+            + "status QUALIFYING_WIDOWER deduction 11400 thresholds 15050 16150 brackets 0 20000 100000\n"
+            + "end\n";
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER, 7};
+
+    /**
+     * A year no other test uses, so publishing it cannot disturb them.
+     */
+    private static final int SWAP_YEAR = 2100;
+    private static final double INCOME = 11000;
+    private static final double FIRST_TAX = (INCOME - 1000) * .1;
+    private static final double SECOND_TAX = (INCOME - 2000) * .2;
+
+    @DataProvider(name = "incomeDataProvider")
+    public Object[][] incomeDataProvider() {
+        return new Object[][]{
+                new Object[]{0.0}, new Object[]{3500.0}, new Object[]{8025.0}, new Object[]{17899.99},
+                new Object[]{20000.0}, new Object[]{131450.01}, new Object[]{357700.0}, new Object[]{1234567.89},
+        };
+    }
+
+    @Test(dataProvider = "incomeDataProvider")
+    public void testDefaultYearMatchesBuiltInRules(double income) {
+        TaxYear loaded = TaxYearRegistry.getDefault();
+        TaxYear builtIn = TaxYear.builtIn2008();
+        for (int status : STATUSES) {
+            for (int age = 64; age <= 65; age++) {
+                for (int spouseAge = 64; spouseAge <= 65; spouseAge++) {
+                    assertEquals(loaded.standardDeduction(status, age, spouseAge),
+                            builtIn.standardDeduction(status, age, spouseAge));
+                    assertEquals(loaded.returnRequired(status, age, spouseAge, income),
+                            builtIn.returnRequired(status, age, spouseAge, income));
+                }
+            }
+            assertEquals(Double.doubleToRawLongBits(loaded.taxDue(status, income)),
+                    Double.doubleToRawLongBits(builtIn.taxDue(status, income)));
+        }
+    }
+
+    @Test
+    public void testResourceProvidesDefaultYear() {
+        assertTrue(TaxYearRegistry.class.getResource(TaxYearRegistry.RESOURCE) != null);
+        assertEquals(TaxYearRegistry.getDefault().getYear(), TaxYearRegistry.DEFAULT_YEAR);
+        assertTrue(Arrays.binarySearch(TaxYearRegistry.getYears(), TaxYearRegistry.DEFAULT_YEAR) >= 0);
+        assertSame(TaxYearRegistry.forYear(TaxYearRegistry.DEFAULT_YEAR), TaxYearRegistry.getDefault());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        List<TaxYear> parsed = TaxYearFormat.parseText(new StringReader(TWO_YEARS));
+        List<TaxYear> read = TaxYearFormat.readBinary(ByteBuffer.wrap(binary(parsed)));
+        assertEquals(read.size(), 2);
+        for (int index = 0; index < read.size(); index++) {
+            TaxYear expected = parsed.get(index);
+            TaxYear actual = read.get(index);
+            assertEquals(actual.getYear(), expected.getYear());
+            assertEquals(actual.getAgedDeduction(), expected.getAgedDeduction());
+            for (int status = 0; status < TaxYear.STATUSES; status++) {
+                assertEquals(actual.getBaseDeduction(-status), expected.getBaseDeduction(-status));
+                assertEquals(actual.getThresholds(-status), expected.getThresholds(-status));
+                TaxSchedule schedule = actual.schedule(-status);
+                assertEquals(schedule.getBracketCount(), expected.schedule(-status).getBracketCount());
+                for (int bracket = 0; bracket < schedule.getBracketCount(); bracket++) {
+                    assertEquals(schedule.getRate(bracket), expected.schedule(-status).getRate(bracket));
+                    assertEquals(schedule.getFloor(bracket), expected.schedule(-status).getFloor(bracket));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSecondYearUsesItsOwnRules() throws IOException {
+        TaxYear year = TaxYearFormat.parseText(new StringReader(TWO_YEARS)).get(1);
+        assertEquals(year.standardDeduction(TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 65, 65), 13600.0);
+        assertEquals(year.taxDue(TaxCalculatorInterface.SINGLE, 60000), 1000 + 8000 + 3000.0);
+        assertTrue(year.returnRequired(TaxCalculatorInterface.SINGLE, 30, 0, 9350));
+        assertFalse(year.returnRequired(TaxCalculatorInterface.SINGLE, 65, 0, 9350));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testChecksumMismatchIsRejected() throws IOException {
+        byte[] bytes = binary(TaxYearFormat.parseText(new StringReader(TWO_YEARS)));
+        bytes[20] ^= 1;
+        TaxYearFormat.readBinary(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testBadMagicIsRejected() throws IOException {
+        byte[] bytes = binary(TaxYearFormat.parseText(new StringReader(TWO_YEARS)));
+        bytes[0] = 'X';
+        TaxYearFormat.readBinary(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testMissingStatusIsRejected() throws IOException {
+        TaxYearFormat.parseText(new StringReader("year 2011\naged-deduction 1\nrates .1\nend\n"));
+    }
+
+    @Test
+    public void testYearsTableSkipsGaps() throws IOException {
+        TaxYearRegistry.Years years = new TaxYearRegistry.Years(
+                TaxYearFormat.parseText(new StringReader(TWO_YEARS)), 0);
+        assertEquals(years.years().length, 2);
+        assertEquals(years.find(2010).getYear(), 2010);
+        assertNull(years.find(2009));
+        assertNull(years.find(2007));
+        assertNull(years.find(2011));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnsupportedYearThrows() {
+        TaxYearRegistry.forYear(1999);
+    }
+
+    @Test
+    public void testCalculatorRejectsUnsupportedYear() {
+        try {
+            new TaxCalculator(1999, "Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+            fail("Expected an exception.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(), "Unsupported tax year.");
+        }
+        assertEquals(TaxpayerValidator.validateTaxYear(1999), TaxpayerValidator.TAX_YEAR_UNSUPPORTED);
+    }
+
+    @Test
+    public void testCalculatorWithYearMatchesDefault() {
+        TaxCalculator withYear = new TaxCalculator(2008, "Bob Smith", 65,
+                TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 66);
+        TaxCalculator byDefault = new TaxCalculator("Bob Smith", 65,
+                TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 66);
+        withYear.setGrossIncome(150000);
+        byDefault.setGrossIncome(150000);
+        assertEquals(withYear.getTaxYear(), 2008);
+        assertEquals(withYear.getStandardDeduction(), byDefault.getStandardDeduction());
+        assertEquals(withYear.getTaxDue(), byDefault.getTaxDue());
+        assertEquals(withYear.isReturnRequired(), byDefault.isReturnRequired());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBatchRejectsUnsupportedYear() {
+        TaxBatchTest.randomBatch(1, 1).setTaxYear(1999);
+    }
+
+    @Test
+    public void testPublishReplacesOnlyThatYear() {
+        TaxYear before = TaxYearRegistry.getDefault();
+        long generation = TaxYearRegistry.getGeneration();
+        TaxYear first = flatYear(SWAP_YEAR + 1, 1000, .1);
+        TaxYear second = flatYear(SWAP_YEAR + 1, 2000, .2);
+        assertTrue(TaxYearRegistry.publish(first) > generation);
+        assertSame(TaxYearRegistry.forYear(SWAP_YEAR + 1), first);
+        TaxCalculator calculator = new TaxCalculator(SWAP_YEAR + 1, "Bob Smith", 30,
+                TaxCalculatorInterface.SINGLE);
+        calculator.setGrossIncome(INCOME);
+        assertEquals(calculator.getTaxDue(), FIRST_TAX);
+        TaxYearRegistry.publish(second);
+        assertEquals(calculator.getTaxDue(), SECOND_TAX);
+        assertSame(TaxYearRegistry.getDefault(), before);
+    }
+
+    /**
+     * Readers compute while a writer keeps swapping between two sets of rules
+     * for the same year. A result must come entirely from one set: taking the
+     * deduction from one and the schedule from the other gives a third value.
+     */
+    @Test
+    public void testHotSwapHasNoTornReads() throws InterruptedException {
+        TaxYear first = flatYear(SWAP_YEAR, 1000, .1);
+        TaxYear second = flatYear(SWAP_YEAR, 2000, .2);
+        TaxYearRegistry.publish(first);
+        int readers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(readers);
+        Thread[] threads = new Thread[readers];
+        for (int reader = 0; reader < readers; reader++) {
+            boolean batched = (reader % 2) == 1;
+            threads[reader] = new Thread(() -> {
+                started.countDown();
+                if (batched) {
+                    readBatches(running, failure);
+                } else {
+                    readCalculators(running, failure);
+                }
+            });
+            threads[reader].start();
+        }
+        started.await();
+        for (int swap = 0; swap < 20000; swap++) {
+            TaxYearRegistry.publish(((swap & 1) == 0) ? second : first);
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    private static void readCalculators(AtomicBoolean running, AtomicReference<String> failure) {
+        TaxCalculator calculator = new TaxCalculator(SWAP_YEAR, "Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+        calculator.setGrossIncome(INCOME);
+        while (running.get() && (failure.get() == null)) {
+            double tax = calculator.getTaxDue();
+            double rate = calculator.getNetTaxRate();
+            if (((tax != FIRST_TAX) && (tax != SECOND_TAX))
+                    || ((rate != FIRST_TAX / INCOME) && (rate != SECOND_TAX / INCOME))) {
+                failure.compareAndSet(null, "Torn calculator result " + tax + " " + rate);
+            }
+        }
+    }
+
+    private static void readBatches(AtomicBoolean running, AtomicReference<String> failure) {
+        int size = 64;
+        int[] status = new int[size];
+        int[] age = new int[size];
+        double[] income = new double[size];
+        Arrays.fill(age, 30);
+        Arrays.fill(income, INCOME);
+        TaxBatch batch = new TaxBatch(status, age, new int[size], income, new double[size], new double[size],
+                new double[size], new double[size], new boolean[size]);
+        batch.setTaxYear(SWAP_YEAR);
+        while (running.get() && (failure.get() == null)) {
+            batch.computeVectorized();
+            double expected = batch.getTaxDue()[0];
+            if ((expected != FIRST_TAX) && (expected != SECOND_TAX)) {
+                failure.compareAndSet(null, "Torn batch result " + expected);
+            }
+            for (double tax : batch.getTaxDue()) {
+                if (tax != expected) {
+                    failure.compareAndSet(null, "Batch mixed rules " + tax + " and " + expected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a year whose statuses all have one deduction and a single rate.
+     */
+    static TaxYear flatYear(int year, double deduction, double rate) {
+        double[] deductions = new double[TaxYear.STATUSES];
+        double[][] thresholds = new double[TaxYear.STATUSES][];
+        TaxSchedule[] schedules = new TaxSchedule[TaxYear.STATUSES];
+        for (int status = 0; status < TaxYear.STATUSES; status++) {
+            deductions[status] = deduction;
+            thresholds[status] = (status == 2) ? new double[]{1, 1, 1} : new double[]{1, 1};
+            schedules[status] = new TaxSchedule(new double[]{rate}, new double[]{0});
+        }
+        return new TaxYear(year, 0, deductions, thresholds, schedules);
+    }
+
+    private static byte[] binary(List<TaxYear> years) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TaxYearFormat.writeBinary(years, bytes);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * This class provides TestNG tests for the off-heap taxpayer store. The store
+ * must give back what was added and compute what a batch of the same
+ * taxpayers computes.
+ */
+public class TaxpayerStoreTest {
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD,
+            TaxCalculatorInterface.MARRIED_FILING_JOINTLY, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY,
+            TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * Fill a store with small chunks, so that records and names cross chunks,
+     * from the same taxpayers as a random batch.
+     */
+    private static TaxpayerStore storeOf(TaxBatch batch) {
+        TaxpayerStore store = new TaxpayerStore(64, 100);
+        for (int index = 0; index < batch.size(); index++) {
+            int status = batch.getFilingStatus()[index];
+            String name = "Taxpayer Number" + index;
+            int id;
+            if ((status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+                id = store.add(name, batch.getAge()[index], status, batch.getSpouseAge()[index]);
+            } else {
+                id = store.add(name, batch.getAge()[index], status);
+            }
+            store.setGrossIncome(id, batch.getGrossIncome()[index]);
+        }
+        return store;
+    }
+
+    @Test
+    public void testRecordsReadBackByIdAndCursor() {
+        TaxBatch batch = TaxBatchTest.randomBatch(5000, 17);
+        TaxpayerStore store = storeOf(batch);
+
+        assertEquals(store.size(), batch.size());
+        Random random = new Random(17);
+        for (int sample = 0; sample < 1000; sample++) {
+            int id = random.nextInt(store.size());
+            assertEquals(store.getName(id), "Taxpayer Number" + id);
+            assertEquals(store.getFilingStatus(id), batch.getFilingStatus()[id]);
+            assertEquals(store.getAge(id), batch.getAge()[id]);
+            assertEquals(store.getGrossIncome(id), TaxRules.grossIncome(0.0, batch.getGrossIncome()[id]));
+        }
+
+        TaxpayerStore.Cursor cursor = store.cursor();
+        int count = 0;
+        while (cursor.next()) {
+            assertEquals(cursor.getId(), count);
+            assertEquals(cursor.getFilingStatus(), store.getFilingStatus(count));
+            assertEquals(cursor.getAge(), store.getAge(count));
+            assertEquals(cursor.getSpouseAge(), store.getSpouseAge(count));
+            assertEquals(cursor.getGrossIncome(), store.getGrossIncome(count));
+            assertEquals(cursor.getName(), "Taxpayer Number" + count);
+            count++;
+        }
+        assertEquals(count, store.size());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testComputedTotalsMatchTheBatch() {
+        TaxBatch batch = TaxBatchTest.randomBatch(20000, 18);
+        TaxpayerStore store = storeOf(batch);
+        batch.compute();
+        TaxTotals expected = new TaxTotals();
+        expected.add(batch, 0, batch.size());
+
+        TaxTotals sequential = store.compute();
+        TaxTotals parallel;
+        try (TaxBatchExecutor executor = new TaxBatchExecutor(4, 1000)) {
+            parallel = executor.compute(store);
+        }
+
+        for (int status : STATUSES) {
+            assertEquals(sequential.getRecords(status), expected.getRecords(status));
+            assertEquals(sequential.getReturnsRequired(status), expected.getReturnsRequired(status));
+            assertEquals(sequential.getTaxDue(status), expected.getTaxDue(status));
+            assertEquals(parallel.getRecords(status), expected.getRecords(status));
+            assertEquals(parallel.getTaxDue(status), expected.getTaxDue(status), expected.getTaxDue(status) * 1e-12);
+        }
+    }
+
+    @Test
+    public void testProfilesMatchTheCalculator() {
+        TaxBatch batch = TaxBatchTest.randomBatch(2000, 19);
+        TaxpayerStore store = storeOf(batch);
+        for (int id = 0; id < store.size(); id++) {
+            TaxProfile profile = store.getProfile(id);
+            TaxCalculator calculator = TaxBatchTest.calculatorFor(batch, id);
+            assertEquals(profile.getName(), "Taxpayer Number" + id);
+            assertEquals(profile.getTaxDue(), calculator.getTaxDue());
+            assertEquals(profile.isReturnRequired(), calculator.isReturnRequired());
+        }
+    }
+
+    @Test
+    public void testNamesAreStoredAsUtf8() {
+        TaxpayerStore store = new TaxpayerStore(4, 16);
+        store.add("Zo\u00eb \u00c5ngstr\u00f6m", 30, TaxCalculatorInterface.SINGLE);
+        store.add("Jos\u00e9 N\u00fa\u00f1ez", 30, TaxCalculatorInterface.HEAD_OF_HOUSEHOLD);
+
+        assertEquals(store.getName(0), "Zo\u00eb \u00c5ngstr\u00f6m");
+        assertEquals(store.getName(1), "Jos\u00e9 N\u00fa\u00f1ez");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNameLongerThanAChunkIsRejected() {
+        new TaxpayerStore(4, 16).add("Bartholomew Montgomery", 30, TaxCalculatorInterface.SINGLE);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidTaxpayerIsRejected() {
+        new TaxpayerStore().add("Bob Smith", 30, TaxCalculatorInterface.MARRIED_FILING_JOINTLY);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testUnknownIdIsRejected() {
+        TaxpayerStore store = new TaxpayerStore();
+        store.add("Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+        store.getAge(1);
+    }
+
+    @Test
+    public void testNegativeIncomeIsNormalized() {
+        TaxpayerStore store = new TaxpayerStore();
+        int id = store.add("Bob Smith", 30, TaxCalculatorInterface.SINGLE);
+        store.setGrossIncome(id, -5);
+        assertTrue(store.getGrossIncome(id) == 0.0);
+    }
+}
@@ -0,0 +1,68 @@
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * This class provides TestNG tests for the exception-free validator. The
+ * validator must agree with what the TaxCalculator constructors throw.
+ */
+public class TaxpayerValidatorTest {
+
+    @DataProvider(name = "recordDataProvider")
+    public Object[][] recordDataProvider() {
+        return new Object[][]{
+                new Object[]{"Bob Smith", 30, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.VALID},
+                new Object[]{"Bob Smith", 30, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, 31,
+                        TaxpayerValidator.VALID},
+                new Object[]{"", 30, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.NAME_EMPTY},
+                new Object[]{"Bob", 30, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.NAME_INCOMPLETE},
+                new Object[]{"Bob ", 30, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.NAME_INCOMPLETE},
+                new Object[]{" Bob", 30, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.VALID},
+                new Object[]{"Bob Smith", 0, TaxCalculatorInterface.SINGLE, 0, TaxpayerValidator.AGE_INVALID},
+                new Object[]{"Bob Smith", 30, 7, 0, TaxpayerValidator.FILING_STATUS_INVALID},
+                new Object[]{"Bob Smith", 30, TaxCalculatorInterface.MARRIED_FILING_SEPARATELY, 0,
+                        TaxpayerValidator.SPOUSE_AGE_INVALID},
+                new Object[]{"Bob", -1, TaxCalculatorInterface.MARRIED_FILING_JOINTLY, -1,
+                        TaxpayerValidator.NAME_INCOMPLETE | TaxpayerValidator.AGE_INVALID
+                                | TaxpayerValidator.SPOUSE_AGE_INVALID},
+        };
+    }
+
+    @Test(dataProvider = "recordDataProvider")
+    public void testValidateReportsEveryProblem(String name, int age, int status, int spouseAge, int errors) {
+        assertEquals(TaxpayerValidator.validate(name, age, status, spouseAge), errors);
+    }
+
+    @Test(dataProvider = "recordDataProvider")
+    public void testDescribeMatchesConstructorException(String name, int age, int status, int spouseAge,
+                                                        int errors) {
+        String thrown = null;
+        try {
+            if ((status == TaxCalculatorInterface.MARRIED_FILING_JOINTLY)
+                    || (status == TaxCalculatorInterface.MARRIED_FILING_SEPARATELY)) {
+                new TaxCalculator(name, age, status, spouseAge);
+            } else {
+                new TaxCalculator(name, age, status);
+            }
+        } catch (IllegalArgumentException e) {
+            thrown = e.getMessage();
+        }
+
+        assertEquals(TaxpayerValidator.describe(errors), thrown);
+    }
+
+    @Test
+    public void testDescribeValidIsNull() {
+        assertNull(TaxpayerValidator.describe(TaxpayerValidator.VALID));
+    }
+
+    @Test
+    public void testMarriedStatusIsInvalidWithoutSpouseConstructor() {
+        assertEquals(TaxpayerValidator.validateSingleFilingStatus(TaxCalculatorInterface.MARRIED_FILING_JOINTLY),
+                TaxpayerValidator.FILING_STATUS_INVALID);
+        assertEquals(TaxpayerValidator.validateMarriedFilingStatus(TaxCalculatorInterface.SINGLE),
+                TaxpayerValidator.FILING_STATUS_INVALID);
+    }
+}
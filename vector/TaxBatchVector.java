@@ -0,0 +1,220 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class computes a {@link TaxBatch} with the incubating Java Vector API,
+ * working on as many incomes per instruction as the preferred species holds.
+ * It lives in its own source root because it has to be compiled and run with
+ * {@code --add-modules jdk.incubator.vector}; {@link TaxBatch} only loads it
+ * when that module is present and falls back to the scalar loop otherwise.
+ * <p>
+ * The deduction and the return threshold are integer rules with several
+ * branches, so they are still computed one record at a time. Taxable income,
+ * tax due and the net rate are branch-free lane operations. Each bracket
+ * contributes max(min(taxable, upper) - lower, 0) * rate, added from the top
+ * bracket down, which performs exactly the same floating point operations as
+ * {@link TaxSchedule#taxDue(double)} and so gives bit-identical results.
+ * <p>
+ * The floors and rates of every distinct schedule are kept as one vector per
+ * bracket with a lane per schedule, and each lane picks its own schedule with
+ * a single permute. That needs at least as many lanes as there are distinct
+ * schedules, so narrower species fall back to the scalar loop. The table of
+ * each set of rules is built the first time a batch uses them and kept as long
+ * as the rules are, so batches that alternate between tax years do not
+ * rebuild it.
+ */
+final class TaxBatchVector {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final int[] STATUSES = {TaxCalculatorInterface.SINGLE,
+            TaxCalculatorInterface.HEAD_OF_HOUSEHOLD, TaxCalculatorInterface.MARRIED_FILING_JOINTLY,
+            TaxCalculatorInterface.MARRIED_FILING_SEPARATELY, TaxCalculatorInterface.QUALIFYING_WIDOWER};
+
+    /**
+     * The table of each set of rules, dropped once the rules are no longer
+     * used. TaxYear does not override equals, so the rules are compared by
+     * identity and rules published for a year get a table of their own.
+     */
+    private static final Map<TaxYear, BracketTable> TABLES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private TaxBatchVector() {
+    }
+
+    /**
+     * Compute a range of records in a batch.
+     *
+     * @param batch The batch to compute.
+     * @param rules The rules of the batch's tax year.
+     * @param from  The first record to compute, inclusive.
+     * @param to    The last record to compute, exclusive.
+     */
+    static void compute(TaxBatch batch, TaxYear rules, int from, int to) {
+        batch.checkRange(from, to);
+        BracketTable table = TABLES.computeIfAbsent(rules, BracketTable::build);
+        if (table.brackets == 0) {
+            batch.compute(rules, from, to);
+            return;
+        }
+        int[] filingStatus = batch.getFilingStatus();
+        int[] age = batch.getAge();
+        int[] spouseAge = batch.getSpouseAge();
+        double[] grossIncome = batch.getGrossIncome();
+        double[] standardDeduction = batch.getStandardDeduction();
+        double[] taxableIncome = batch.getTaxableIncome();
+        double[] taxDue = batch.getTaxDue();
+        double[] netTaxRate = batch.getNetTaxRate();
+        boolean[] returnRequired = batch.getReturnRequired();
+
+        // The scalar rules, which also store the normalized income in the
+        // net rate column until the lanes below overwrite it.
+        for (int index = from; index < to; index++) {
+            int status = filingStatus[index];
+            double income = TaxRules.grossIncome(0.0, grossIncome[index]);
+            standardDeduction[index] = rules.standardDeduction(status, age[index], spouseAge[index]);
+            returnRequired[index] = rules.returnRequired(status, age[index], spouseAge[index], income);
+            netTaxRate[index] = income;
+        }
+
+        int lanes = SPECIES.length();
+        int[] schedules = new int[lanes];
+        double[] floors = table.floors;
+        double[] rates = table.rates;
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        int upperBound = from + SPECIES.loopBound(to - from);
+        int index = from;
+        for (; index < upperBound; index += lanes) {
+            for (int lane = 0; lane < lanes; lane++) {
+                schedules[lane] = table.scheduleOf(filingStatus[index + lane]);
+            }
+            VectorShuffle<Double> schedule = VectorShuffle.fromArray(SPECIES, schedules, 0);
+            DoubleVector income = DoubleVector.fromArray(SPECIES, netTaxRate, index);
+            DoubleVector deduction = DoubleVector.fromArray(SPECIES, standardDeduction, index);
+
+            DoubleVector difference = income.sub(deduction);
+            DoubleVector taxable = zero.blend(difference,
+                    difference.compare(VectorOperators.GT, 0.0));
+
+            DoubleVector tax = zero;
+            DoubleVector upper = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+            for (int bracket = table.brackets - 1; bracket >= 0; bracket--) {
+                DoubleVector lower = DoubleVector.fromArray(SPECIES, floors, bracket * lanes)
+                        .rearrange(schedule);
+                DoubleVector rate = DoubleVector.fromArray(SPECIES, rates, bracket * lanes)
+                        .rearrange(schedule);
+                tax = tax.add(taxable.min(upper).sub(lower).max(zero).mul(rate));
+                upper = lower;
+            }
+
+            VectorMask<Double> hasIncome = income.compare(VectorOperators.GT, 0.0);
+            DoubleVector rate = zero.blend(tax.div(income), hasIncome);
+
+            taxable.intoArray(taxableIncome, index);
+            tax.intoArray(taxDue, index);
+            rate.intoArray(netTaxRate, index);
+        }
+        if (index < to) {
+            batch.compute(rules, index, to);
+        }
+    }
+
+    /**
+     * Check whether the schedules of a tax year fit a species.
+     *
+     * @param rules The rules of the tax year.
+     * @param lanes The number of lanes of the species.
+     * @return true if a batch of the year is computed in lanes, false if it
+     * falls back to the scalar loop.
+     */
+    static boolean fits(TaxYear rules, int lanes) {
+        return BracketTable.build(rules, lanes).brackets != 0;
+    }
+
+    /**
+     * The floors and rates of every distinct schedule, one row of lanes per
+     * bracket. Schedules with the same brackets share a lane, however the
+     * rules were built. A table does not refer to its rules, which would keep
+     * them from being dropped from {@link #TABLES}.
+     */
+    private static final class BracketTable {
+
+        private final int brackets; // The number of brackets, 0 if the table is unusable.
+        private final int[] scheduleOfStatus; // The lane of each status, indexed by -status.
+        private final double[] floors; // The floor of each bracket and schedule.
+        private final double[] rates; // The rate of each bracket and schedule.
+
+        private BracketTable(int brackets, int[] scheduleOfStatus, double[] floors, double[] rates) {
+            this.brackets = brackets;
+            this.scheduleOfStatus = scheduleOfStatus;
+            this.floors = floors;
+            this.rates = rates;
+        }
+
+        /**
+         * Lay out the schedules of every status of a tax year.
+         *
+         * @param rules The rules of the tax year.
+         * @return The table, with no brackets if the schedules do not fit the
+         * species.
+         */
+        static BracketTable build(TaxYear rules) {
+            return build(rules, SPECIES.length());
+        }
+
+        /**
+         * @param lanes The number of lanes to lay the schedules out in.
+         */
+        static BracketTable build(TaxYear rules, int lanes) {
+            TaxSchedule[] distinct = new TaxSchedule[STATUSES.length];
+            int[] scheduleOfStatus = new int[STATUSES.length];
+            int count = 0;
+            for (int row = 0; row < STATUSES.length; row++) {
+                TaxSchedule schedule = rules.schedule(STATUSES[row]);
+                int found = 0;
+                while ((found < count) && !distinct[found].hasSameBrackets(schedule)) {
+                    found++;
+                }
+                if (found == count) {
+                    distinct[count++] = schedule;
+                }
+                scheduleOfStatus[row] = found;
+            }
+            int brackets = distinct[0].getBracketCount();
+            if (count > lanes) {
+                return new BracketTable(0, scheduleOfStatus, null, null);
+            }
+            double[] floors = new double[brackets * lanes];
+            double[] rates = new double[brackets * lanes];
+            for (int lane = 0; lane < count; lane++) {
+                if (distinct[lane].getBracketCount() != brackets) {
+                    return new BracketTable(0, scheduleOfStatus, null, null);
+                }
+                for (int bracket = 0; bracket < brackets; bracket++) {
+                    floors[bracket * lanes + lane] = distinct[lane].getFloor(bracket);
+                    rates[bracket * lanes + lane] = distinct[lane].getRate(bracket);
+                }
+            }
+            return new BracketTable(brackets, scheduleOfStatus, floors, rates);
+        }
+
+        /**
+         * @param filingStatus The filing status.
+         * @return The lane of the schedule for the status. Unknown statuses
+         * use the single schedule, like {@link TaxYear#schedule(int)}.
+         */
+        int scheduleOf(int filingStatus) {
+            int row = -filingStatus;
+            if ((row < 0) || (row >= scheduleOfStatus.length)) {
+                row = 0;
+            }
+            return scheduleOfStatus[row];
+        }
+    }
+}